@@ -0,0 +1,360 @@
+package de.lightningbug.api;
+
+import java.io.File;
+import java.net.HttpCookie;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import de.lightningbug.api.domain.Product;
+import de.lightningbug.api.server.StandInBugzilla;
+import de.lightningbug.api.server.SyntheticDataset;
+import de.lightningbug.api.service.ProductService;
+import de.lightningbug.api.xmlrpc.CookieStore;
+import de.lightningbug.api.xmlrpc.TransferStatistics;
+
+/**
+ * Stresses a single {@link BugzillaClient} from concurrent threads against a
+ * {@link StandInBugzilla}. Every round the threads mix logins, logouts, calls, replacements of
+ * the executor of the client, loads of the products by a shared {@link ProductService} and
+ * changes of a shared {@link CookieStore}. While they run, the threads check:
+ * <ul>
+ * <li>every call through the shared transport factory returns the user or bug it asked for,
+ * while other threads switch the compression of the responses</li>
+ * <li>{@link ProductService#getProducts()} only returns complete products, while the first load,
+ * the local cache and its refresh in the background race</li>
+ * <li>a {@link CookieStore} can be iterated while other threads add and remove cookies</li>
+ * </ul>
+ * When they are done, the client is checked:
+ * <ul>
+ * <li>it is logged in, if and only if its cookie store holds the login cookie of the last login
+ * (a {@link BugzillaClient#logout()} must never clear the cookie of a concurrent
+ * {@link BugzillaClient#login()})</li>
+ * <li>every default executor created by the client, but the current one, is shut down</li>
+ * <li>an executor set by the caller is never shut down by the client</li>
+ * <li>the shared cookie store holds exactly the cookies each thread has left in it</li>
+ * <li>the {@link TransferStatistics} of the client count every request and response of a burst
+ * of concurrent calls</li>
+ * </ul>
+ * A violation is printed and makes the harness exit with status <code>1</code>. Like the
+ * benchmarks it is a plain <code>main</code> class, as the project has no test build. The local
+ * cache of the products is written to a temporary user home folder.
+ * <p>
+ * Arguments: <code>[number of threads (8)] [rounds (20)] [operations per thread and round
+ * (20)]</code>
+ * </p>
+ *
+ * @author Sebastian Kirchner
+ *
+ */
+public class BugzillaClientStressTest {
+
+	/**
+	 * The cookie identifying the session of a login
+	 */
+	private static final String LOGIN_COOKIE = "Bugzilla_logincookie"; //$NON-NLS-1$
+
+	private static final int PRODUCTS = 10;
+
+	private static final int COMPONENTS_PER_PRODUCT = 5;
+
+	private static final int USERS = 100;
+
+	private static final int BUGS = 1000;
+
+	public static void main(final String[] args) throws Exception {
+		final int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+		final int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+		final int operations = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+
+		// the local cache reads the user home folder on first use, so it is redirected before
+		final File home = Files.createTempDirectory("lightningbug-stress").toFile(); //$NON-NLS-1$
+		System.setProperty("user.home", home.getAbsolutePath()); //$NON-NLS-1$
+
+		final StandInBugzilla server = new StandInBugzilla(0, new SyntheticDataset(PRODUCTS,
+				COMPONENTS_PER_PRODUCT, USERS, BUGS, 1L));
+		// the jitter shuffles the order, in which concurrent calls complete
+		server.setJitter(3L);
+		server.start();
+		final ExecutorService workers = Executors.newFixedThreadPool(threads);
+		final ExecutorService callerExecutor = Executors.newCachedThreadPool();
+		final List<String> failures = new ArrayList<String>();
+		try{
+			for(int round = 1; round <= rounds; round++){
+				for(final String failure : runRound(server, workers, callerExecutor, threads,
+						operations)){
+					failures.add("round " + round + ": " + failure); //$NON-NLS-1$ //$NON-NLS-2$
+				}
+			}
+		}finally{
+			workers.shutdown();
+			callerExecutor.shutdown();
+			server.stop();
+			delete(home);
+		}
+		for(final String failure : failures){
+			System.out.println(failure);
+		}
+		System.out.println(String.format("%d rounds of %d threads with %d operations each, %d failures", //$NON-NLS-1$
+				rounds, threads, operations, failures.size()));
+		System.exit(failures.isEmpty() ? 0 : 1);
+	}
+
+	/**
+	 * Runs a round with a new client.
+	 *
+	 * @return the violations found
+	 */
+	private static List<String> runRound(final StandInBugzilla server,
+			final ExecutorService workers, final ExecutorService callerExecutor, final int threads,
+			final int operations) throws Exception {
+		final BugzillaClient client = new BugzillaClient(server.getURL(), "user1@example.com", //$NON-NLS-1$
+				"secret"); //$NON-NLS-1$
+		// the first round loads the products from the server, the next ones from the local cache
+		// and refresh it in the background
+		final ProductService productService = new ProductService(client, true);
+		final CookieStore cookieStore = new CookieStore();
+		final Map<String, Object> search = new HashMap<String, Object>();
+		search.put("limit", Integer.valueOf(5)); //$NON-NLS-1$
+		// the default executors handed out by the client
+		final Set<ExecutorService> defaultExecutors = Collections
+				.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<ExecutorService, Boolean>()));
+		// the names of the cookies each thread has left in the shared store
+		final List<Set<String>> storedCookies = new ArrayList<Set<String>>(threads);
+		final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(threads);
+		for(int i = 0; i < threads; i++){
+			final String cookiePrefix = "T" + i + "_"; //$NON-NLS-1$ //$NON-NLS-2$
+			final Set<String> cookies = new HashSet<String>();
+			storedCookies.add(cookies);
+			tasks.add(() -> {
+				final ThreadLocalRandom random = ThreadLocalRandom.current();
+				for(int operation = 0; operation < operations; operation++){
+					switch(random.nextInt(9)){
+						case 0:
+							if(!client.login()){
+								throw new IllegalStateException("The login failed"); //$NON-NLS-1$
+							}
+							break;
+						case 1:
+							client.logout();
+							break;
+						case 2:
+							client.execute("Bug.search", search); //$NON-NLS-1$
+							break;
+						case 3:
+							final ExecutorService executor = client.getExecutorService();
+							if(executor != callerExecutor){
+								defaultExecutors.add(executor);
+							}
+							try{
+								executor.submit(() -> client.execute("User.get", search)).get(); //$NON-NLS-1$
+							}catch(final RejectedExecutionException e){
+								// the executor has been replaced concurrently and is shut down
+							}
+							break;
+						case 4:
+							client.setExecutorService(null);
+							break;
+						case 5:
+							client.setExecutorService(random.nextBoolean() ? callerExecutor : null);
+							break;
+						case 6:
+							checkProducts(productService.getProducts());
+							break;
+						case 7:
+							client.setGzipRequesting(random.nextBoolean());
+							checkCall(client, random);
+							break;
+						default:
+							changeCookies(cookieStore, cookiePrefix, cookies, random);
+							break;
+					}
+				}
+				return null;
+			});
+		}
+		final List<String> failures = runConcurrently(workers, tasks);
+
+		// all threads are done, the state of the client must be consistent
+		boolean loginCookie = false;
+		for(final HttpCookie cookie : client.getCookieStore()){
+			loginCookie |= LOGIN_COOKIE.equals(cookie.getName());
+		}
+		if(client.isLoggedIn() != loginCookie){
+			failures.add("logged in: " + client.isLoggedIn() + ", login cookie stored: " //$NON-NLS-1$ //$NON-NLS-2$
+					+ loginCookie);
+		}
+		final ExecutorService current = client.getExecutorService();
+		for(final ExecutorService executor : defaultExecutors){
+			if(executor != current && !executor.isShutdown()){
+				failures.add("a replaced default executor is not shut down"); //$NON-NLS-1$
+			}
+		}
+		if(callerExecutor.isShutdown()){
+			failures.add("the executor of the caller has been shut down"); //$NON-NLS-1$
+		}
+		final Set<String> expectedCookies = new HashSet<String>();
+		for(final Set<String> cookies : storedCookies){
+			expectedCookies.addAll(cookies);
+		}
+		final Set<String> actualCookies = new HashSet<String>();
+		for(final HttpCookie cookie : cookieStore){
+			actualCookies.add(cookie.getName());
+		}
+		if(!expectedCookies.equals(actualCookies)){
+			failures.add("cookies expected: " + expectedCookies + ", stored: " + actualCookies); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+
+		// a burst of concurrent calls is counted completely
+		final TransferStatistics statistics = client.getTransferStatistics();
+		statistics.reset();
+		final List<Callable<Void>> calls = new ArrayList<Callable<Void>>(threads);
+		for(int i = 0; i < threads; i++){
+			calls.add(() -> {
+				final ThreadLocalRandom random = ThreadLocalRandom.current();
+				for(int operation = 0; operation < operations; operation++){
+					checkCall(client, random);
+				}
+				return null;
+			});
+		}
+		failures.addAll(runConcurrently(workers, calls));
+		final long expectedCalls = (long) threads * operations;
+		if(statistics.getRequests() != expectedCalls || statistics.getResponses() != expectedCalls){
+			failures.add(String.format("%d calls made, %d requests and %d responses counted", //$NON-NLS-1$
+					expectedCalls, statistics.getRequests(), statistics.getResponses()));
+		}
+
+		// a replaced default executor is shut down, a replaced executor of the caller is not
+		final ExecutorService defaultExecutor = current == callerExecutor ? null : current;
+		client.setExecutorService(callerExecutor);
+		if(defaultExecutor != null && !defaultExecutor.isShutdown()){
+			failures.add("the default executor is not shut down, when it is replaced"); //$NON-NLS-1$
+		}
+		client.setExecutorService(null);
+		if(callerExecutor.isShutdown()){
+			failures.add("the executor of the caller has been shut down, when it was replaced"); //$NON-NLS-1$
+		}
+		client.shutdown();
+		return failures;
+	}
+
+	/**
+	 * Starts the tasks at once and waits for them.
+	 *
+	 * @return the failures of the tasks
+	 */
+	private static List<String> runConcurrently(final ExecutorService workers,
+			final List<Callable<Void>> tasks) {
+		final CountDownLatch start = new CountDownLatch(1);
+		final List<Future<Void>> futures = new ArrayList<Future<Void>>(tasks.size());
+		for(final Callable<Void> task : tasks){
+			futures.add(workers.submit(() -> {
+				start.await();
+				return task.call();
+			}));
+		}
+		start.countDown();
+		final List<String> failures = new ArrayList<String>();
+		for(final Future<Void> future : futures){
+			try{
+				future.get(1L, TimeUnit.MINUTES);
+			}catch(final Exception e){
+				failures.add("a thread failed: " + e); //$NON-NLS-1$
+			}
+		}
+		return failures;
+	}
+
+	/**
+	 * Gets a random user or bug and checks, that the response is the one of the call.
+	 */
+	private static void checkCall(final BugzillaClient client, final ThreadLocalRandom random)
+			throws Exception {
+		final boolean user = random.nextBoolean();
+		final Integer id = Integer.valueOf(1 + random.nextInt(user ? USERS : BUGS));
+		final Map<String, Object> params = new HashMap<String, Object>();
+		params.put(user ? "ids" : "id", new Object[] { id }); //$NON-NLS-1$ //$NON-NLS-2$
+		final Map<?, ?> result = (Map<?, ?>) client.execute(user ? "User.get" : "Bug.search", //$NON-NLS-1$ //$NON-NLS-2$
+				params);
+		final Object[] items = (Object[]) result.get(user ? "users" : "bugs"); //$NON-NLS-1$ //$NON-NLS-2$
+		if(items.length != 1 || !id.equals(((Map<?, ?>) items[0]).get("id"))){ //$NON-NLS-1$
+			throw new IllegalStateException((user ? "User.get" : "Bug.search") + " of id " + id //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+					+ " returned " + items.length + " other items"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+	}
+
+	/**
+	 * Checks, that the products are complete, e.g. not published before their components were
+	 * set.
+	 */
+	private static void checkProducts(final List<Product> products) {
+		if(products.size() != PRODUCTS){
+			throw new IllegalStateException(products.size() + " products returned"); //$NON-NLS-1$
+		}
+		for(final Product product : products){
+			if(product.getName() == null || product.getComponents() == null
+					|| product.getComponents().size() != COMPONENTS_PER_PRODUCT
+					|| product.getVersions() == null || product.getVersions().isEmpty()){
+				throw new IllegalStateException("Incomplete product returned: " + product); //$NON-NLS-1$
+			}
+		}
+	}
+
+	/**
+	 * Adds or removes a cookie of the thread and iterates over all cookies of the store.
+	 *
+	 * @param cookies
+	 *            the names of the cookies the thread has left in the store
+	 */
+	private static void changeCookies(final CookieStore store, final String prefix,
+			final Set<String> cookies, final ThreadLocalRandom random) {
+		final HttpCookie cookie = new HttpCookie(prefix + random.nextInt(4), Integer
+				.toString(random.nextInt()));
+		cookie.setPath("/"); //$NON-NLS-1$
+		if(random.nextBoolean()){
+			store.add(cookie);
+			cookies.add(cookie.getName());
+		}else{
+			store.remove(cookie);
+			cookies.remove(cookie.getName());
+		}
+		int ownCookies = 0;
+		for(final HttpCookie stored : store){
+			if(stored.getName().startsWith(prefix)){
+				ownCookies++;
+			}
+		}
+		if(ownCookies != cookies.size()){
+			throw new IllegalStateException(ownCookies + " cookies of the thread found, " //$NON-NLS-1$
+					+ cookies.size() + " expected"); //$NON-NLS-1$
+		}
+		CookieStore.toCookieHeader(store);
+	}
+
+	private static void delete(final File file) {
+		final File[] children = file.listFiles();
+		if(children != null){
+			for(final File child : children){
+				delete(child);
+			}
+		}
+		if(!file.delete()){
+			file.deleteOnExit();
+		}
+	}
+}
@@ -0,0 +1,268 @@
+package de.lightningbug.api.bench;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Measures the throughput of a task and the bytes it allocates per operation.
+ * <p>
+ * The benchmarks of the <code>bench</code> source folder are plain <code>main</code> classes, as
+ * the project has no build, that could run the JMH generator. They are compiled to
+ * <code>bin-bench</code>, so they are not shipped with the library. Every benchmark runs in the
+ * calling thread: it warms up for a number of iterations, so the JIT compiler has done its work,
+ * and then measures a number of iterations of a fixed time. Results are returned to a sink, so the
+ * JIT compiler cannot drop the work. The allocated bytes are read from the thread MX bean of
+ * HotSpot, runtimes without that bean report none.
+ * </p>
+ * <p>
+ * The iterations are configured with system properties:
+ * </p>
+ * <ul>
+ * <li><code>bench.warmup</code>: the number of warm-up iterations (default 5)</li>
+ * <li><code>bench.iterations</code>: the number of measured iterations (default 10)</li>
+ * <li><code>bench.time</code>: the time of an iteration in milliseconds (default 1000)</li>
+ * </ul>
+ * <b>Example:</b>
+ *
+ * <pre>
+ * java -cp bin-bench:bin:lib/* -Dbench.iterations=20 de.lightningbug.api.service.ResponseMappingBenchmark
+ * </pre>
+ *
+ * @author Sebastian Kirchner
+ *
+ */
+public final class Benchmark {
+
+	/**
+	 * The measured result of a benchmark
+	 *
+	 * @author Sebastian Kirchner
+	 *
+	 */
+	public static final class Result {
+
+		private final long allocatedBytes;
+
+		private final String name;
+
+		private final long nanos;
+
+		private final long operations;
+
+		Result(final String name, final long operations, final long nanos, final long allocatedBytes) {
+			this.name = name;
+			this.operations = operations;
+			this.nanos = nanos;
+			this.allocatedBytes = allocatedBytes;
+		}
+
+		/**
+		 * @return the bytes allocated per operation, <code>-1</code> if the runtime does not
+		 *         count allocated bytes
+		 */
+		public double getBytesPerOperation() {
+			return this.allocatedBytes < 0L ? -1d : (double) this.allocatedBytes / this.operations;
+		}
+
+		/**
+		 * @return the name of the benchmark
+		 */
+		public String getName() {
+			return this.name;
+		}
+
+		/**
+		 * @return the average time of an operation in nanoseconds
+		 */
+		public double getNanosPerOperation() {
+			return (double) this.nanos / this.operations;
+		}
+
+		/**
+		 * @return the operations per second
+		 */
+		public double getOperationsPerSecond() {
+			return this.operations * 1e9d / this.nanos;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%-48s %14.1f ops/s %14.1f ns/op %14s B/op", this.name, //$NON-NLS-1$
+					this.getOperationsPerSecond(), this.getNanosPerOperation(),
+					this.allocatedBytes < 0L ? "n/a" : String.format("%.1f", //$NON-NLS-1$ //$NON-NLS-2$
+							this.getBytesPerOperation()));
+		}
+	}
+
+	/**
+	 * A piece of work, that is measured
+	 *
+	 * @author Sebastian Kirchner
+	 *
+	 */
+	public interface Task {
+
+		/**
+		 * @return the result of the work, it is kept, so the work cannot be dropped
+		 * @throws Exception
+		 *             if the work failed, that fails the benchmark
+		 */
+		Object run() throws Exception;
+	}
+
+	/**
+	 * The number of measured iterations
+	 */
+	public static final int ITERATIONS = Integer.getInteger("bench.iterations", 10).intValue(); //$NON-NLS-1$
+
+	/**
+	 * The time of a single iteration in milliseconds
+	 */
+	public static final long ITERATION_TIME = Long.getLong("bench.time", 1000L).longValue(); //$NON-NLS-1$
+
+	/**
+	 * The number of iterations run before measuring
+	 */
+	public static final int WARMUP_ITERATIONS = Integer.getInteger("bench.warmup", 5).intValue(); //$NON-NLS-1$
+
+	/**
+	 * The logger of the library, it is referenced, so its level is kept
+	 */
+	private static final Logger LIBRARY_LOGGER = Logger.getLogger("de.lightningbug.api"); //$NON-NLS-1$
+
+	/**
+	 * keeps the last result of a task
+	 */
+	private static volatile Object sink = null;
+
+	private Benchmark() {
+		// for static use only
+	}
+
+	/**
+	 * @return the bytes allocated by the calling thread so far, <code>-1</code> if unknown
+	 */
+	public static long allocatedBytes() {
+		final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if(bean instanceof com.sun.management.ThreadMXBean){
+			final com.sun.management.ThreadMXBean hotSpotBean = (com.sun.management.ThreadMXBean) bean;
+			if(hotSpotBean.isThreadAllocatedMemorySupported()
+					&& hotSpotBean.isThreadAllocatedMemoryEnabled()){
+				return hotSpotBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+			}
+		}
+		return -1L;
+	}
+
+	/**
+	 * @return the used heap after a full garbage collection. The usage is read from the pools as
+	 *         recorded by the collection, a stand-in server in the same process allocates
+	 *         concurrently.
+	 */
+	public static long liveHeap() {
+		for(int i = 0; i < 2; i++){
+			System.gc();
+		}
+		long used = 0L;
+		for(final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()){
+			final MemoryUsage usage = pool.getCollectionUsage();
+			if(pool.getType() == MemoryType.HEAP && usage != null){
+				used += usage.getUsed();
+			}
+		}
+		return used;
+	}
+
+	/**
+	 * Logs only warnings and errors of the library, e.g. to drop the info about the missing login,
+	 * that every search without login logs. Commons logging delegates to the logging of the JRE,
+	 * if no other logging is found.
+	 */
+	public static void logWarningsOnly() {
+		LIBRARY_LOGGER.setLevel(Level.WARNING);
+	}
+
+	/**
+	 * Prints the head of the result table.
+	 *
+	 * @param title
+	 *            the title of the benchmarks
+	 */
+	public static void printHeader(final String title) {
+		System.out.println();
+		System.out.println(String.format("%s (%d warm-up and %d measured iterations of %d ms)", //$NON-NLS-1$
+				title, WARMUP_ITERATIONS, ITERATIONS, ITERATION_TIME));
+	}
+
+	/**
+	 * Measures a task and prints the result.
+	 *
+	 * @param name
+	 *            the name of the benchmark
+	 * @param task
+	 *            the task. A single run is a single operation.
+	 * @return the result
+	 * @throws Exception
+	 *             if the task failed
+	 */
+	public static Result run(final String name, final Task task) throws Exception {
+		return run(name, 1, task);
+	}
+
+	/**
+	 * Measures a task and prints the result.
+	 *
+	 * @param name
+	 *            the name of the benchmark
+	 * @param operationsPerRun
+	 *            the number of operations of a single run, e.g. the number of bugs decoded, to
+	 *            report the cost per bug
+	 * @param task
+	 *            the task
+	 * @return the result
+	 * @throws Exception
+	 *             if the task failed
+	 */
+	public static Result run(final String name, final int operationsPerRun, final Task task)
+			throws Exception {
+		if(operationsPerRun < 1){
+			throw new IllegalArgumentException("Paramter <operationsPerRun> must be positive"); //$NON-NLS-1$
+		}
+		for(int i = 0; i < WARMUP_ITERATIONS; i++){
+			iterate(task);
+		}
+		long runs = 0L;
+		long nanos = 0L;
+		final long allocatedBefore = allocatedBytes();
+		for(int i = 0; i < ITERATIONS; i++){
+			final long start = System.nanoTime();
+			runs += iterate(task);
+			nanos += System.nanoTime() - start;
+		}
+		final long allocatedAfter = allocatedBytes();
+		final Result result = new Result(name, runs * operationsPerRun, nanos,
+				allocatedBefore < 0L ? -1L : allocatedAfter - allocatedBefore);
+		System.out.println(result);
+		return result;
+	}
+
+	/**
+	 * Runs the task for the time of an iteration, but at least once.
+	 *
+	 * @return the number of runs
+	 */
+	private static long iterate(final Task task) throws Exception {
+		final long end = System.nanoTime() + ITERATION_TIME * 1000000L;
+		long runs = 0L;
+		do{
+			sink = task.run();
+			runs++;
+		}while(System.nanoTime() - end < 0L);
+		return runs;
+	}
+}
@@ -0,0 +1,94 @@
+package de.lightningbug.api.cache;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import de.lightningbug.api.BugzillaClient;
+import de.lightningbug.api.bench.Benchmark;
+import de.lightningbug.api.domain.Product;
+import de.lightningbug.api.server.SyntheticDataset;
+
+/**
+ * Benchmarks saving and loading the products of the {@link LocalCache}:
+ * <ul>
+ * <li>saving the products of one bugzilla instance, while the cache holds further instances</li>
+ * <li>loading the products of one instance from the cache file, as done after a restart or a
+ * change of the file by another process</li>
+ * <li>getting the products already decoded</li>
+ * </ul>
+ * The cache file is written to a temporary user home folder, that is deleted afterwards, so the
+ * cache of the user is not touched.
+ * <p>
+ * Arguments: <code>[number of bugzilla instances (5)] [number of products (50)]</code>
+ * </p>
+ *
+ * @author Sebastian Kirchner
+ *
+ */
+public class LocalCacheBenchmark {
+
+	public static void main(final String[] args) throws Exception {
+		final int instanceCount = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+		final int productCount = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+
+		// the cache reads the user home folder on first use, so it is redirected before
+		final File home = Files.createTempDirectory("lightningbug-bench").toFile(); //$NON-NLS-1$
+		System.setProperty("user.home", home.getAbsolutePath()); //$NON-NLS-1$
+		try{
+			final SyntheticDataset dataset = new SyntheticDataset(productCount, 20, 1, 0, 1L);
+			final List<Product> products = new ArrayList<Product>();
+			for(final Map<String, Object> product : dataset.getProducts().values()){
+				final String name = (String) product.get(Product.NAME);
+				final Product cached = new Product((Integer) product.get(Product.ID), name);
+				cached.setComponents(new TreeSet<String>(dataset.getComponents(name)));
+				cached.setVersions(new TreeSet<String>(Arrays.asList(SyntheticDataset.VERSIONS)));
+				cached.setMilestones(new TreeSet<String>(Arrays.asList(SyntheticDataset.MILESTONES)));
+				cached.setSeverities(new TreeSet<String>(Arrays.asList(SyntheticDataset.SEVERITIES)));
+				products.add(cached);
+			}
+			final List<BugzillaClient> clients = new ArrayList<BugzillaClient>();
+			for(int i = 0; i < instanceCount; i++){
+				final BugzillaClient client = new BugzillaClient(new URL("http://bugzilla" + i //$NON-NLS-1$
+						+ ".example.com/"), null, null); //$NON-NLS-1$
+				LocalCache.setProducts(client, products);
+				clients.add(client);
+			}
+			final BugzillaClient client = clients.get(0);
+			final File file = new File(new File(home, ".lightningbug"), "localCache.bin"); //$NON-NLS-1$ //$NON-NLS-2$
+			final String url = client.getURL().toString();
+
+			Benchmark.printHeader("Local cache with " + instanceCount + " instances of " //$NON-NLS-1$ //$NON-NLS-2$
+					+ productCount + " products (" + file.length() + " bytes)"); //$NON-NLS-1$ //$NON-NLS-2$
+
+			Benchmark.run("LocalCache.setProducts (save)", () -> { //$NON-NLS-1$
+				LocalCache.setProducts(client, products);
+				return file;
+			});
+
+			Benchmark.run("CacheFile.open + readProducts (load)", () -> CacheFile.open(file) //$NON-NLS-1$
+					.readProducts(url));
+
+			Benchmark.run("LocalCache.getProducts (decoded)", () -> LocalCache.getProducts(client)); //$NON-NLS-1$
+		}finally{
+			delete(home);
+		}
+	}
+
+	private static void delete(final File file) {
+		final File[] children = file.listFiles();
+		if(children != null){
+			for(final File child : children){
+				delete(child);
+			}
+		}
+		if(!file.delete()){
+			file.deleteOnExit();
+		}
+	}
+}
@@ -0,0 +1,806 @@
+package de.lightningbug.api.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.xmlrpc.XmlRpcException;
+import org.apache.xmlrpc.XmlRpcHandler;
+import org.apache.xmlrpc.XmlRpcRequest;
+import org.apache.xmlrpc.XmlRpcRequestConfig;
+import org.apache.xmlrpc.common.ServerStreamConnection;
+import org.apache.xmlrpc.common.XmlRpcHttpRequestConfigImpl;
+import org.apache.xmlrpc.server.XmlRpcHandlerMapping;
+import org.apache.xmlrpc.server.XmlRpcNoSuchHandlerException;
+import org.apache.xmlrpc.server.XmlRpcStreamServer;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import de.lightningbug.api.BugzillaClient;
+import de.lightningbug.api.util.JsonReader;
+import de.lightningbug.api.util.JsonWriter;
+import de.lightningbug.api.xmlrpc.RpcProtocol;
+
+/**
+ * An in-process stand-in for the XML-RPC and JSON-RPC interfaces of a Bugzilla instance, that
+ * serves a {@link SyntheticDataset}. It is meant to load test the {@link BugzillaClient} and the
+ * services without a live Bugzilla. It is part of the <code>bench</code> source folder, so the
+ * library does not depend on the XML-RPC server and the HTTP server of the JRE.
+ * <p>
+ * The following methods are implemented: <code>User.login</code>, <code>User.logout</code>,
+ * <code>User.get</code>, <code>Bug.search</code>, <code>Bug.fields</code>,
+ * <code>Bug.create</code>, <code>Product.get</code> and
+ * <code>Product.get_accessible_products</code>. Every call is delayed by the configured latency
+ * plus a random jitter. Logins are accepted for every user of the dataset and answered with the
+ * login cookies of Bugzilla (<code>Bugzilla_login</code> and <code>Bugzilla_logincookie</code>),
+ * that a logout expires. No session is kept though: all methods can be called without login.
+ * <code>Bug.search</code> supports <code>include_fields</code>.
+ * </p>
+ * <p>
+ * Compressed requests (<code>Content-Encoding: gzip</code>) are accepted and responses are
+ * compressed, if the client accepts it ({@link StandInBugzilla#setGzipSupported(boolean)}).
+ * Connections are kept alive between calls. JSON-RPC calls are answered at
+ * <code>jsonrpc.cgi</code> ({@link RpcProtocol#JSON_RPC}), all other paths answer XML-RPC calls.
+ * </p>
+ * <b>Example:</b>
+ *
+ * <pre>
+ * final StandInBugzilla server = new StandInBugzilla(0, new SyntheticDataset(20, 10, 500, 100000, 1L));
+ * server.setLatency(50);
+ * server.setJitter(20);
+ * server.start();
+ * final BugzillaClient client = new BugzillaClient(server.getURL(), &quot;user1@example.com&quot;, &quot;&quot;);
+ * ...
+ * server.stop();
+ * </pre>
+ *
+ * @author Sebastian Kirchner
+ *
+ */
+public class StandInBugzilla {
+
+	/**
+	 * The fault code of a call with an illegal or missing parameter
+	 */
+	public static final int FAULT_INVALID_PARAMETER = 50;
+
+	/**
+	 * The fault code of a failed login
+	 */
+	public static final int FAULT_INVALID_LOGIN = 300;
+
+	/**
+	 * The fault code of a call to an unknown method
+	 */
+	public static final int FAULT_UNKNOWN_METHOD = 32601;
+
+	private static final Log LOG = LogFactory.getLog(StandInBugzilla.class);
+
+	/**
+	 * The system property turning on <code>TCP_NODELAY</code> for the connections of the HTTP
+	 * server of the JRE
+	 */
+	private static final String NODELAY_PROPERTY = "sun.net.httpserver.nodelay"; //$NON-NLS-1$
+
+	/**
+	 * The bug fields returned by <code>Bug.fields</code> and the names of their values in the
+	 * bug hashes
+	 */
+	private static final String[][] FIELDS = { { "component", "component" }, //$NON-NLS-1$ //$NON-NLS-2$
+			{ "version", "version" }, { "target_milestone", "target_milestone" }, //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+			{ "bug_severity", "severity" }, { "bug_status", "status" } }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+
+	/**
+	 * The parameters of <code>Bug.search</code>, that are compared by equality
+	 */
+	private static final String[] EXACT_SEARCH_FIELDS = { "id", "product", "component", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			"version", "target_milestone", "severity", "status", "assigned_to" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+
+	/**
+	 * The <code>Set-Cookie</code> headers of the response to the call executed by the current
+	 * thread
+	 */
+	private final ThreadLocal<List<String>> cookies = ThreadLocal.withInitial(ArrayList::new);
+
+	private final SyntheticDataset dataset;
+
+	private ExecutorService executor = null;
+
+	private volatile boolean gzipSupported = true;
+
+	private final Map<String, XmlRpcHandler> handlers = new ConcurrentHashMap<String, XmlRpcHandler>();
+
+	private HttpServer httpServer = null;
+
+	private volatile long jitter = 0L;
+
+	private volatile long latency = 0L;
+
+	private volatile boolean multiCallSupported = false;
+
+	private final int port;
+
+	/**
+	 * @param port
+	 *            the port to listen on, <code>0</code> for any free port
+	 * @param dataset
+	 *            the products, users and bugs served by the stand-in
+	 */
+	public StandInBugzilla(final int port, final SyntheticDataset dataset) {
+		if(dataset == null){
+			throw new IllegalArgumentException("Paramter <dataset> must not be mull"); //$NON-NLS-1$
+		}
+		this.port = port;
+		this.dataset = dataset;
+
+		this.handlers.put("User.login", request -> this.login(getStruct(request))); //$NON-NLS-1$
+		this.handlers.put("User.logout", request -> this.logout()); //$NON-NLS-1$
+		this.handlers.put("User.get", request -> this.getUsers(getStruct(request))); //$NON-NLS-1$
+		this.handlers.put("Bug.search", request -> this.searchBugs(getStruct(request))); //$NON-NLS-1$
+		this.handlers.put("Bug.fields", request -> this.getBugFields()); //$NON-NLS-1$
+		this.handlers.put("Bug.create", request -> this.createBug(getStruct(request))); //$NON-NLS-1$
+		this.handlers.put("Product.get", request -> this.getProducts(getStruct(request))); //$NON-NLS-1$
+		this.handlers.put("Product.get_accessible_products", //$NON-NLS-1$
+				request -> this.getAccessibleProducts());
+		this.handlers.put("system.multicall", request -> this.multiCall(request)); //$NON-NLS-1$
+	}
+
+	private Object createBug(final Map<?, ?> params) throws XmlRpcException {
+		final Map<String, Object> fields = new HashMap<String, Object>();
+		for(final Map.Entry<?, ?> entry : params.entrySet()){
+			// null values can not be returned by a search
+			if(entry.getValue() != null){
+				fields.put(String.valueOf(entry.getKey()), entry.getValue());
+			}
+		}
+		for(final String required : new String[] { "product", "component", "summary", "version" }){ //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+			if(!(fields.get(required) instanceof String)){
+				throw new XmlRpcException(FAULT_INVALID_PARAMETER,
+						"You must specify a value for " + required); //$NON-NLS-1$
+			}
+		}
+		final String product = (String) fields.get("product"); //$NON-NLS-1$
+		if(!this.dataset.getComponents(product).contains(fields.get("component"))){ //$NON-NLS-1$
+			throw new XmlRpcException(FAULT_INVALID_PARAMETER, "There is no component named '" //$NON-NLS-1$
+					+ fields.get("component") + "' in the product '" + product + "'"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		}
+		final Map<String, Object> result = new HashMap<String, Object>();
+		result.put("id", this.dataset.addBug(fields)); //$NON-NLS-1$
+		return result;
+	}
+
+	/**
+	 * Delays the current call by the latency and a random jitter.
+	 */
+	private void delay() {
+		final long jitter = this.jitter;
+		long millis = this.latency;
+		if(jitter > 0){
+			millis += ThreadLocalRandom.current().nextLong(-jitter, jitter + 1);
+		}
+		if(millis <= 0){
+			return;
+		}
+		try{
+			Thread.sleep(millis);
+		}catch(final InterruptedException e){
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private Object getAccessibleProducts() {
+		final Map<String, Object> result = new HashMap<String, Object>();
+		result.put("ids", this.dataset.getProducts().keySet().toArray()); //$NON-NLS-1$
+		return result;
+	}
+
+	private Object getBugFields() {
+		final Collection<Map<String, Object>> bugs = this.dataset.getBugs();
+		final Set<String> productNames = new HashSet<String>();
+		for(final Map<String, Object> product : this.dataset.getProducts().values()){
+			productNames.add((String) product.get("name")); //$NON-NLS-1$
+		}
+
+		final List<Object> fields = new ArrayList<Object>(FIELDS.length);
+		for(final String[] field : FIELDS){
+			// value -> products, the value is visible for
+			final Map<String, Set<String>> values = new HashMap<String, Set<String>>();
+			if("component".equals(field[0])){ //$NON-NLS-1$
+				for(final String product : productNames){
+					for(final String component : this.dataset.getComponents(product)){
+						addVisibility(values, component, product);
+					}
+				}
+			}
+			for(final Map<String, Object> bug : bugs){
+				final Object value = bug.get(field[1]);
+				if(value instanceof String){
+					addVisibility(values, (String) value, (String) bug.get("product")); //$NON-NLS-1$
+				}
+			}
+			final List<Object> valueHashes = new ArrayList<Object>(values.size());
+			for(final Map.Entry<String, Set<String>> value : values.entrySet()){
+				final Map<String, Object> valueHash = new HashMap<String, Object>();
+				valueHash.put("name", value.getKey()); //$NON-NLS-1$
+				valueHash.put("visibility_values", value.getValue().toArray()); //$NON-NLS-1$
+				valueHashes.add(valueHash);
+			}
+			final Map<String, Object> fieldHash = new HashMap<String, Object>();
+			fieldHash.put("name", field[0]); //$NON-NLS-1$
+			fieldHash.put("values", valueHashes.toArray()); //$NON-NLS-1$
+			fields.add(fieldHash);
+		}
+		final Map<String, Object> result = new HashMap<String, Object>();
+		result.put("fields", fields.toArray()); //$NON-NLS-1$
+		return result;
+	}
+
+	private Object getProducts(final Map<?, ?> params) {
+		final Set<String> ids = toStrings(params.get("ids")); //$NON-NLS-1$
+		final List<Object> products = new ArrayList<Object>();
+		for(final Map<String, Object> product : this.dataset.getProducts().values()){
+			if(ids == null || ids.contains(String.valueOf(product.get("id")))){ //$NON-NLS-1$
+				products.add(product);
+			}
+		}
+		final Map<String, Object> result = new HashMap<String, Object>();
+		result.put("products", products.toArray()); //$NON-NLS-1$
+		return result;
+	}
+
+	/**
+	 * @return the URL of the stand-in, that can be passed to a {@link BugzillaClient}
+	 * @throws IllegalStateException
+	 *             if the stand-in has not been started
+	 */
+	public URL getURL() {
+		final HttpServer httpServer;
+		synchronized(this){
+			httpServer = this.httpServer;
+		}
+		if(httpServer == null){
+			throw new IllegalStateException("The stand-in has not been started"); //$NON-NLS-1$
+		}
+		try{
+			return new URL("http://localhost:" + httpServer.getAddress().getPort() + "/"); //$NON-NLS-1$ //$NON-NLS-2$
+		}catch(final MalformedURLException e){
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private Object getUsers(final Map<?, ?> params) {
+		final Set<String> names = toStrings(params.get("names")); //$NON-NLS-1$
+		final Set<String> ids = toStrings(params.get("ids")); //$NON-NLS-1$
+		final Set<String> matches = toStrings(params.get("match")); //$NON-NLS-1$
+		final List<Object> users = new ArrayList<Object>();
+		for(final Map<String, Object> user : this.dataset.getUsers().values()){
+			if((names != null && names.contains(user.get("name"))) //$NON-NLS-1$
+					|| (ids != null && ids.contains(String.valueOf(user.get("id")))) //$NON-NLS-1$
+					|| (matches != null && matches(matches, user))){
+				users.add(user);
+			}
+		}
+		final Map<String, Object> result = new HashMap<String, Object>();
+		result.put("users", users.toArray()); //$NON-NLS-1$
+		return result;
+	}
+
+	/**
+	 * Executes a single HTTP request.
+	 */
+	private void handle(final XmlRpcStreamServer xmlRpcServer, final HttpExchange exchange)
+			throws IOException {
+		try{
+			if(!"POST".equals(exchange.getRequestMethod())){ //$NON-NLS-1$
+				exchange.sendResponseHeaders(405, -1);
+				return;
+			}
+			final boolean compressedRequest = "gzip".equalsIgnoreCase(exchange //$NON-NLS-1$
+					.getRequestHeaders().getFirst("Content-Encoding")); //$NON-NLS-1$
+			final String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding"); //$NON-NLS-1$
+			final boolean compressResponse = this.gzipSupported && acceptEncoding != null
+					&& acceptEncoding.toLowerCase(Locale.ENGLISH).contains("gzip"); //$NON-NLS-1$
+			this.cookies.get().clear();
+			xmlRpcServer.execute(new XmlRpcHttpRequestConfigImpl(), new ServerStreamConnection() {
+
+				@Override
+				public void close() {
+					// the exchange is closed after the call
+				}
+
+				@Override
+				public InputStream newInputStream() throws IOException {
+					final InputStream in = exchange.getRequestBody();
+					return compressedRequest ? new GZIPInputStream(in) : in;
+				}
+
+				@Override
+				public OutputStream newOutputStream() throws IOException {
+					exchange.getResponseHeaders().set("Content-Type", "text/xml"); //$NON-NLS-1$ //$NON-NLS-2$
+					if(compressResponse){
+						exchange.getResponseHeaders().set("Content-Encoding", "gzip"); //$NON-NLS-1$ //$NON-NLS-2$
+					}
+					StandInBugzilla.this.sendCookies(exchange);
+					// the length is unknown, the response is chunked
+					exchange.sendResponseHeaders(200, 0);
+					final OutputStream out = exchange.getResponseBody();
+					return compressResponse ? new GZIPOutputStream(out) : out;
+				}
+			});
+		}catch(final XmlRpcException e){
+			LOG.warn("The call could not be executed", e); //$NON-NLS-1$
+		}finally{
+			exchange.close();
+		}
+	}
+
+	/**
+	 * Executes a single JSON-RPC request.
+	 */
+	private void handleJson(final HttpExchange exchange) throws IOException {
+		try{
+			if(!"POST".equals(exchange.getRequestMethod())){ //$NON-NLS-1$
+				exchange.sendResponseHeaders(405, -1);
+				return;
+			}
+			final InputStream in = "gzip".equalsIgnoreCase(exchange.getRequestHeaders().getFirst( //$NON-NLS-1$
+					"Content-Encoding")) ? new GZIPInputStream(exchange.getRequestBody()) : exchange //$NON-NLS-1$
+					.getRequestBody();
+			final Object request = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8))
+					.readValue();
+			final Map<String, Object> response = new HashMap<String, Object>();
+			Object error = null;
+			this.cookies.get().clear();
+			try{
+				if(!(request instanceof Map)){
+					throw new XmlRpcException(FAULT_INVALID_PARAMETER,
+							"The request must be an object"); //$NON-NLS-1$
+				}
+				response.put("id", ((Map<?, ?>) request).get("id")); //$NON-NLS-1$ //$NON-NLS-2$
+				final Object method = ((Map<?, ?>) request).get("method"); //$NON-NLS-1$
+				final Object params = ((Map<?, ?>) request).get("params"); //$NON-NLS-1$
+				final XmlRpcHandler handler = this.handlers.get(method);
+				if(handler == null){
+					throw new XmlRpcException(FAULT_UNKNOWN_METHOD, "No such method: " + method); //$NON-NLS-1$
+				}
+				this.delay();
+				response.put("result", handler.execute(new XmlRpcRequest() { //$NON-NLS-1$
+
+					@Override
+					public XmlRpcRequestConfig getConfig() {
+						return new XmlRpcHttpRequestConfigImpl();
+					}
+
+					@Override
+					public String getMethodName() {
+						return (String) method;
+					}
+
+					@Override
+					public Object getParameter(final int pIndex) {
+						return ((Object[]) params)[pIndex];
+					}
+
+					@Override
+					public int getParameterCount() {
+						return params instanceof Object[] ? ((Object[]) params).length : 0;
+					}
+				}));
+			}catch(final XmlRpcException e){
+				final Map<String, Object> fault = new HashMap<String, Object>();
+				fault.put("code", Integer.valueOf(e.code)); //$NON-NLS-1$
+				fault.put("message", e.getMessage()); //$NON-NLS-1$
+				error = fault;
+			}
+			response.put("error", error); //$NON-NLS-1$
+
+			final String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding"); //$NON-NLS-1$
+			final boolean compressResponse = this.gzipSupported && acceptEncoding != null
+					&& acceptEncoding.toLowerCase(Locale.ENGLISH).contains("gzip"); //$NON-NLS-1$
+			exchange.getResponseHeaders().set("Content-Type", "application/json"); //$NON-NLS-1$ //$NON-NLS-2$
+			if(compressResponse){
+				exchange.getResponseHeaders().set("Content-Encoding", "gzip"); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+			this.sendCookies(exchange);
+			// the length is unknown, the response is chunked
+			exchange.sendResponseHeaders(200, 0);
+			final OutputStream body = compressResponse ? new GZIPOutputStream(exchange
+					.getResponseBody()) : exchange.getResponseBody();
+			final Writer out = new OutputStreamWriter(body, StandardCharsets.UTF_8);
+			new JsonWriter(out).write(response);
+			out.close();
+		}catch(final RuntimeException e){
+			LOG.warn("The call could not be executed", e); //$NON-NLS-1$
+		}finally{
+			exchange.close();
+		}
+	}
+
+	private Object login(final Map<?, ?> params) throws XmlRpcException {
+		final Map<String, Object> user = this.dataset.getUsers().get(params.get("login")); //$NON-NLS-1$
+		if(user == null){
+			throw new XmlRpcException(FAULT_INVALID_LOGIN,
+					"The username or password you entered is not valid."); //$NON-NLS-1$
+		}
+		final List<String> cookies = this.cookies.get();
+		cookies.add("Bugzilla_login=" + user.get("id") + "; path=/"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		cookies.add("Bugzilla_logincookie=" + Long.toHexString(ThreadLocalRandom.current() //$NON-NLS-1$
+				.nextLong()) + "; path=/; HttpOnly"); //$NON-NLS-1$
+		final Map<String, Object> result = new HashMap<String, Object>();
+		result.put("id", user.get("id")); //$NON-NLS-1$ //$NON-NLS-2$
+		return result;
+	}
+
+	private Object logout() {
+		final List<String> cookies = this.cookies.get();
+		cookies.add("Bugzilla_login=X; path=/; Max-Age=0"); //$NON-NLS-1$
+		cookies.add("Bugzilla_logincookie=X; path=/; Max-Age=0"); //$NON-NLS-1$
+		return new HashMap<String, Object>();
+	}
+
+	/**
+	 * Adds the cookies set by the executed call to the headers of the response.
+	 */
+	private void sendCookies(final HttpExchange exchange) {
+		final List<String> cookies = this.cookies.get();
+		for(final String cookie : cookies){
+			exchange.getResponseHeaders().add("Set-Cookie", cookie); //$NON-NLS-1$
+		}
+		cookies.clear();
+	}
+
+	/**
+	 * Executes the calls of a <code>system.multicall</code>. Every item of the result is either
+	 * an array containing the result of the call or a fault struct.
+	 */
+	private Object multiCall(final XmlRpcRequest request) throws XmlRpcException {
+		if(!this.multiCallSupported){
+			throw new XmlRpcException(FAULT_UNKNOWN_METHOD, "No such method: system.multicall"); //$NON-NLS-1$
+		}
+		final Object calls = request.getParameterCount() > 0 ? request.getParameter(0) : null;
+		if(!(calls instanceof Object[])){
+			throw new XmlRpcException(FAULT_INVALID_PARAMETER, "An array of calls is required"); //$NON-NLS-1$
+		}
+		final Object[] items = (Object[]) calls;
+		final Object[] results = new Object[items.length];
+		for(int i = 0; i < items.length; i++){
+			try{
+				if(!(items[i] instanceof Map<?, ?>)){
+					throw new XmlRpcException(FAULT_INVALID_PARAMETER, "A call must be a struct"); //$NON-NLS-1$
+				}
+				final Map<?, ?> call = (Map<?, ?>) items[i];
+				final String methodName = String.valueOf(call.get("methodName")); //$NON-NLS-1$
+				final Object params = call.get("params"); //$NON-NLS-1$
+				final Object[] parameters = params instanceof Object[] ? (Object[]) params
+						: new Object[0];
+				final XmlRpcHandler handler = this.handlers.get(methodName);
+				if(handler == null || "system.multicall".equals(methodName)){ //$NON-NLS-1$
+					throw new XmlRpcException(FAULT_UNKNOWN_METHOD, "No such method: " + methodName); //$NON-NLS-1$
+				}
+				results[i] = new Object[] { handler.execute(new XmlRpcRequest() {
+
+					@Override
+					public XmlRpcRequestConfig getConfig() {
+						return request.getConfig();
+					}
+
+					@Override
+					public String getMethodName() {
+						return methodName;
+					}
+
+					@Override
+					public Object getParameter(final int pIndex) {
+						return parameters[pIndex];
+					}
+
+					@Override
+					public int getParameterCount() {
+						return parameters.length;
+					}
+				}) };
+			}catch(final XmlRpcException e){
+				final Map<String, Object> fault = new HashMap<String, Object>();
+				fault.put("faultCode", e.code); //$NON-NLS-1$
+				fault.put("faultString", e.getMessage()); //$NON-NLS-1$
+				results[i] = fault;
+			}
+		}
+		return results;
+	}
+
+	private Object searchBugs(final Map<?, ?> params) {
+		final Map<String, Set<String>> exact = new HashMap<String, Set<String>>();
+		for(final String field : EXACT_SEARCH_FIELDS){
+			final Set<String> values = toStrings(params.get(field));
+			if(values != null){
+				exact.put(field, values);
+			}
+		}
+		final Set<String> summaries = toStrings(params.get("summary")); //$NON-NLS-1$
+		final Object changedSince = params.get("last_change_time"); //$NON-NLS-1$
+		final Object createdSince = params.get("creation_time"); //$NON-NLS-1$
+		final int offset = toInt(params.get("offset"), 0); //$NON-NLS-1$
+		final int limit = toInt(params.get("limit"), 0); //$NON-NLS-1$
+		final Set<String> includeFields = toStrings(params.get("include_fields")); //$NON-NLS-1$
+
+		final List<Object> bugs = new ArrayList<Object>();
+		int skipped = 0;
+		// the bugs are ordered by id, so limit and offset page through a stable order
+		for(final Map<String, Object> bug : this.dataset.getBugs()){
+			if(!matches(bug, exact) || !isAfter(bug.get("last_change_time"), changedSince) //$NON-NLS-1$
+					|| !isAfter(bug.get("creation_time"), createdSince)){ //$NON-NLS-1$
+				continue;
+			}
+			if(summaries != null && !containsAny(bug.get("summary"), summaries)){ //$NON-NLS-1$
+				continue;
+			}
+			if(skipped < offset){
+				skipped++;
+				continue;
+			}
+			bugs.add(includeFields == null ? bug : project(bug, includeFields));
+			if(limit > 0 && bugs.size() == limit){
+				break;
+			}
+		}
+		final Map<String, Object> result = new HashMap<String, Object>();
+		result.put("bugs", bugs.toArray()); //$NON-NLS-1$
+		return result;
+	}
+
+	/**
+	 * @return a copy of the bug only containing the given fields
+	 */
+	private static Map<String, Object> project(final Map<String, Object> bug,
+			final Set<String> includeFields) {
+		final Map<String, Object> projection = new HashMap<String, Object>();
+		for(final String field : includeFields){
+			if(bug.containsKey(field)){
+				projection.put(field, bug.get(field));
+			}
+		}
+		return projection;
+	}
+
+	/**
+	 * @param gzipSupported
+	 *            whether responses are compressed for clients accepting it (default
+	 *            <code>true</code>)
+	 */
+	public void setGzipSupported(final boolean gzipSupported) {
+		this.gzipSupported = gzipSupported;
+	}
+
+	/**
+	 * @param jitter
+	 *            the maximum time in milliseconds, a call is randomly delayed more or less than
+	 *            the latency
+	 */
+	public void setJitter(final long jitter) {
+		if(jitter < 0){
+			throw new IllegalArgumentException("Paramter <jitter> must not be negative"); //$NON-NLS-1$
+		}
+		this.jitter = jitter;
+	}
+
+	/**
+	 * @param latency
+	 *            the time in milliseconds every call is delayed
+	 */
+	public void setLatency(final long latency) {
+		if(latency < 0){
+			throw new IllegalArgumentException("Paramter <latency> must not be negative"); //$NON-NLS-1$
+		}
+		this.latency = latency;
+	}
+
+	/**
+	 * @param multiCallSupported
+	 *            <code>true</code> if the stand-in should answer <code>system.multicall</code>.
+	 *            Like most Bugzilla instances it does not by default.
+	 */
+	public void setMultiCallSupported(final boolean multiCallSupported) {
+		this.multiCallSupported = multiCallSupported;
+	}
+
+	/**
+	 * Starts listening for calls.
+	 *
+	 * @throws IOException
+	 *             if the port could not be opened
+	 */
+	public synchronized void start() throws IOException {
+		if(this.httpServer != null){
+			return;
+		}
+		// HTTP is handled by the HTTP server of the JRE, that supports keep-alive and
+		// compression, the stream server only parses the calls and writes the responses
+		final XmlRpcStreamServer xmlRpcServer = new XmlRpcStreamServer() {
+			// no extensions
+		};
+		xmlRpcServer.setHandlerMapping(new XmlRpcHandlerMapping() {
+
+			@Override
+			public XmlRpcHandler getHandler(final String handlerName)
+					throws XmlRpcNoSuchHandlerException, XmlRpcException {
+				final XmlRpcHandler handler = StandInBugzilla.this.handlers.get(handlerName);
+				if(handler == null){
+					throw new XmlRpcNoSuchHandlerException("No such method: " + handlerName); //$NON-NLS-1$
+				}
+				return request -> {
+					StandInBugzilla.this.delay();
+					return handler.execute(request);
+				};
+			}
+		});
+		// Without it, the end of a response waits for the delayed acknowledgement of the client
+		// (about 40 ms) and every call is that slow. The server reads the property once, when the
+		// first server of the JVM is created.
+		if(System.getProperty(NODELAY_PROPERTY) == null){
+			System.setProperty(NODELAY_PROPERTY, Boolean.TRUE.toString());
+		}
+		final HttpServer httpServer = HttpServer.create(new InetSocketAddress(InetAddress
+				.getByName("localhost"), this.port), 0); //$NON-NLS-1$
+		httpServer.createContext("/", exchange -> this.handle(xmlRpcServer, exchange)); //$NON-NLS-1$
+		httpServer.createContext("/" + RpcProtocol.JSON_RPC.getEndpoint(), this::handleJson); //$NON-NLS-1$
+		final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+			final Thread thread = new Thread(runnable, "stand-in-bugzilla"); //$NON-NLS-1$
+			thread.setDaemon(true);
+			return thread;
+		});
+		httpServer.setExecutor(executor);
+		httpServer.start();
+		this.httpServer = httpServer;
+		this.executor = executor;
+		LOG.info("Stand-in Bugzilla listening on port " + httpServer.getAddress().getPort()); //$NON-NLS-1$
+	}
+
+	/**
+	 * Stops listening for calls.
+	 */
+	public synchronized void stop() {
+		if(this.httpServer != null){
+			this.httpServer.stop(0);
+			this.httpServer = null;
+			this.executor.shutdownNow();
+			this.executor = null;
+		}
+	}
+
+	private static void addVisibility(final Map<String, Set<String>> values, final String value,
+			final String product) {
+		Set<String> products = values.get(value);
+		if(products == null){
+			products = new TreeSet<String>();
+			values.put(value, products);
+		}
+		products.add(product);
+	}
+
+	private static boolean containsAny(final Object value, final Set<String> parts) {
+		if(!(value instanceof String)){
+			return false;
+		}
+		final String text = ((String) value).toLowerCase(Locale.ENGLISH);
+		for(final String part : parts){
+			if(text.contains(part.toLowerCase(Locale.ENGLISH))){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the first parameter of the request, that has to be a struct
+	 */
+	private static Map<?, ?> getStruct(final XmlRpcRequest request) throws XmlRpcException {
+		if(request.getParameterCount() == 0){
+			return new HashMap<String, Object>();
+		}
+		final Object params = request.getParameter(0);
+		if(!(params instanceof Map<?, ?>)){
+			throw new XmlRpcException(FAULT_INVALID_PARAMETER,
+					"The parameters of " + request.getMethodName() + " must be a struct"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		return (Map<?, ?>) params;
+	}
+
+	/**
+	 * @return <code>true</code> if there is no bound or the date is at or after the bound
+	 */
+	private static boolean isAfter(final Object date, final Object bound) {
+		// JSON-RPC passes dates as strings
+		final Object boundDate = bound instanceof String ? JsonReader.parseDate((String) bound)
+				: bound;
+		if(!(boundDate instanceof Date)){
+			return true;
+		}
+		return date instanceof Date && !((Date) date).before((Date) boundDate);
+	}
+
+	private static boolean matches(final Map<String, Object> bug, final Map<String, Set<String>> exact) {
+		for(final Map.Entry<String, Set<String>> field : exact.entrySet()){
+			if(!field.getValue().contains(String.valueOf(bug.get(field.getKey())))){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Matches the login name and the real name of a user. A <code>*</code> matches any
+	 * characters.
+	 */
+	private static boolean matches(final Set<String> patterns, final Map<String, Object> user) {
+		for(final String pattern : patterns){
+			final String part = pattern.replace("*", "").toLowerCase(Locale.ENGLISH); //$NON-NLS-1$ //$NON-NLS-2$
+			if(String.valueOf(user.get("name")).toLowerCase(Locale.ENGLISH).contains(part) //$NON-NLS-1$
+					|| String.valueOf(user.get("real_name")).toLowerCase(Locale.ENGLISH) //$NON-NLS-1$
+							.contains(part)){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static int toInt(final Object value, final int defaultValue) {
+		if(value instanceof Number){
+			return ((Number) value).intValue();
+		}
+		if(value instanceof String){
+			try{
+				return Integer.parseInt((String) value);
+			}catch(final NumberFormatException e){
+				return defaultValue;
+			}
+		}
+		return defaultValue;
+	}
+
+	/**
+	 * @return the string values of a single value or an array, <code>null</code> if the value is
+	 *         <code>null</code>
+	 */
+	private static Set<String> toStrings(final Object value) {
+		if(value == null){
+			return null;
+		}
+		final Set<String> result = new HashSet<String>();
+		if(value instanceof Object[]){
+			for(final Object item : (Object[]) value){
+				result.add(String.valueOf(item));
+			}
+		}else{
+			result.add(String.valueOf(value));
+		}
+		return result;
+	}
+}
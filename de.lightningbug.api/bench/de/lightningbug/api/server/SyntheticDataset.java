@@ -0,0 +1,251 @@
+package de.lightningbug.api.server;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A generated set of products, users and bugs served by the {@link StandInBugzilla}. The data is
+ * held in the shape of the XML-RPC responses of Bugzilla (hashes of strings, integers, doubles,
+ * dates and arrays), so it can be returned without conversion.
+ * <p>
+ * The same seed always produces the same data. Bugs can be created and changed while the server
+ * is running.
+ * </p>
+ *
+ * @author Sebastian Kirchner
+ *
+ */
+public class SyntheticDataset {
+
+	/**
+	 * The legal severities of all bugs
+	 */
+	public static final String[] SEVERITIES = { "blocker", "critical", "major", "normal", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+			"minor", "trivial", "enhancement" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+	/**
+	 * The legal status values of all bugs
+	 */
+	public static final String[] STATUSES = { "UNCONFIRMED", "NEW", "ASSIGNED", "REOPENED", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+			"RESOLVED", "VERIFIED", "CLOSED" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+	/**
+	 * The legal versions of all products
+	 */
+	public static final String[] VERSIONS = { "unspecified", "1.0", "1.1", "2.0", "3.0" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+
+	/**
+	 * The legal milestones of all products
+	 */
+	public static final String[] MILESTONES = { "---", "M1", "M2", "M3" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+
+	private static final long ONE_YEAR = 365L * 24L * 60L * 60L * 1000L;
+
+	/**
+	 * id -> bug hash
+	 */
+	private final ConcurrentSkipListMap<Integer, Map<String, Object>> bugs = new ConcurrentSkipListMap<Integer, Map<String, Object>>();
+
+	/**
+	 * product name -> component names
+	 */
+	private final Map<String, List<String>> components = new LinkedHashMap<String, List<String>>();
+
+	private final AtomicInteger lastBugId = new AtomicInteger();
+
+	/**
+	 * id -> product hash
+	 */
+	private final Map<Integer, Map<String, Object>> products = new LinkedHashMap<Integer, Map<String, Object>>();
+
+	/**
+	 * login name -> user hash
+	 */
+	private final Map<String, Map<String, Object>> users = new LinkedHashMap<String, Map<String, Object>>();
+
+	/**
+	 * Generates a dataset.
+	 *
+	 * @param productCount
+	 *            the number of products
+	 * @param componentsPerProduct
+	 *            the number of components of every product
+	 * @param userCount
+	 *            the number of users
+	 * @param bugCount
+	 *            the number of bugs
+	 * @param seed
+	 *            the seed of the random generator
+	 */
+	public SyntheticDataset(final int productCount, final int componentsPerProduct,
+			final int userCount, final int bugCount, final long seed) {
+		if(productCount < 1 || componentsPerProduct < 1 || userCount < 1 || bugCount < 0){
+			throw new IllegalArgumentException("The dataset needs at least one product, component and user"); //$NON-NLS-1$
+		}
+		final Random random = new Random(seed);
+
+		for(int p = 1; p <= productCount; p++){
+			final String name = "Product " + p; //$NON-NLS-1$
+			final Map<String, Object> product = new HashMap<String, Object>();
+			product.put("id", p); //$NON-NLS-1$
+			product.put("name", name); //$NON-NLS-1$
+			product.put("description", "Synthetic product " + p); //$NON-NLS-1$ //$NON-NLS-2$
+			product.put("internals", new HashMap<String, Object>()); //$NON-NLS-1$
+			this.products.put(p, product);
+
+			final List<String> productComponents = new ArrayList<String>(componentsPerProduct);
+			for(int c = 1; c <= componentsPerProduct; c++){
+				productComponents.add("Component " + p + "." + c); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+			this.components.put(name, productComponents);
+		}
+
+		for(int u = 1; u <= userCount; u++){
+			final Map<String, Object> user = new HashMap<String, Object>();
+			user.put("id", u); //$NON-NLS-1$
+			user.put("name", "user" + u + "@example.com"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			user.put("email", "user" + u + "@example.com"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			user.put("real_name", "User " + u); //$NON-NLS-1$ //$NON-NLS-2$
+			this.users.put((String) user.get("name"), user); //$NON-NLS-1$
+		}
+
+		final List<String> productNames = new ArrayList<String>(this.components.keySet());
+		final List<String> loginNames = new ArrayList<String>(this.users.keySet());
+		final long now = System.currentTimeMillis();
+		for(int b = 1; b <= bugCount; b++){
+			final String product = productNames.get(random.nextInt(productNames.size()));
+			final List<String> productComponents = this.components.get(product);
+			final Map<String, Object> bug = new HashMap<String, Object>();
+			bug.put("id", b); //$NON-NLS-1$
+			bug.put("summary", "Synthetic bug " + b + " of " + product); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			bug.put("product", product); //$NON-NLS-1$
+			bug.put("component", productComponents.get(random.nextInt(productComponents.size()))); //$NON-NLS-1$
+			bug.put("version", VERSIONS[random.nextInt(VERSIONS.length)]); //$NON-NLS-1$
+			bug.put("target_milestone", MILESTONES[random.nextInt(MILESTONES.length)]); //$NON-NLS-1$
+			bug.put("severity", SEVERITIES[random.nextInt(SEVERITIES.length)]); //$NON-NLS-1$
+			bug.put("status", STATUSES[random.nextInt(STATUSES.length)]); //$NON-NLS-1$
+			bug.put("assigned_to", loginNames.get(random.nextInt(loginNames.size()))); //$NON-NLS-1$
+			bug.put("estimated_time", Double.valueOf(random.nextInt(80) / 2.0)); //$NON-NLS-1$
+
+			// dependencies only point to older bugs, so there are no cycles
+			final int dependencyCount = b > 1 ? random.nextInt(4) : 0;
+			final Object[] dependsOn = new Object[dependencyCount];
+			for(int d = 0; d < dependencyCount; d++){
+				dependsOn[d] = Integer.valueOf(1 + random.nextInt(b - 1));
+			}
+			bug.put("depends_on", dependsOn); //$NON-NLS-1$
+
+			final Date created = new Date(now - ONE_YEAR + (long) (random.nextDouble() * ONE_YEAR));
+			bug.put("creation_time", created); //$NON-NLS-1$
+			bug.put("last_change_time", new Date(created.getTime() //$NON-NLS-1$
+					+ (long) (random.nextDouble() * (now - created.getTime()))));
+
+			// fields the client does not decode, they make the responses as large as real ones
+			final String reporter = loginNames.get(random.nextInt(loginNames.size()));
+			bug.put("creator", reporter); //$NON-NLS-1$
+			bug.put("qa_contact", loginNames.get(random.nextInt(loginNames.size()))); //$NON-NLS-1$
+			bug.put("cc", new Object[] { reporter, loginNames.get(random.nextInt(loginNames.size())) }); //$NON-NLS-1$
+			bug.put("priority", "P" + (1 + random.nextInt(5))); //$NON-NLS-1$ //$NON-NLS-2$
+			bug.put("resolution", ""); //$NON-NLS-1$ //$NON-NLS-2$
+			bug.put("op_sys", "All"); //$NON-NLS-1$ //$NON-NLS-2$
+			bug.put("platform", "All"); //$NON-NLS-1$ //$NON-NLS-2$
+			bug.put("classification", "Unclassified"); //$NON-NLS-1$ //$NON-NLS-2$
+			bug.put("url", "http://www.example.com/bugs/" + b); //$NON-NLS-1$ //$NON-NLS-2$
+			bug.put("whiteboard", ""); //$NON-NLS-1$ //$NON-NLS-2$
+			bug.put("keywords", new Object[0]); //$NON-NLS-1$
+			bug.put("is_open", Boolean.TRUE); //$NON-NLS-1$
+			bug.put("is_confirmed", Boolean.TRUE); //$NON-NLS-1$
+			bug.put("remaining_time", bug.get("estimated_time")); //$NON-NLS-1$ //$NON-NLS-2$
+			bug.put("actual_time", Double.valueOf(0)); //$NON-NLS-1$
+			this.bugs.put(b, bug);
+		}
+		this.lastBugId.set(bugCount);
+	}
+
+	/**
+	 * Adds a new bug.
+	 *
+	 * @param fields
+	 *            the fields of the new bug (e.g. <code>product</code>, <code>summary</code>)
+	 * @return the id of the new bug
+	 */
+	public int addBug(final Map<String, Object> fields) {
+		final int id = this.lastBugId.incrementAndGet();
+		final Map<String, Object> bug = new HashMap<String, Object>(fields);
+		bug.put("id", id); //$NON-NLS-1$
+		if(!bug.containsKey("status")){ //$NON-NLS-1$
+			bug.put("status", "NEW"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		if(!bug.containsKey("depends_on")){ //$NON-NLS-1$
+			bug.put("depends_on", new Object[0]); //$NON-NLS-1$
+		}
+		final Date now = new Date();
+		bug.put("creation_time", now); //$NON-NLS-1$
+		bug.put("last_change_time", now); //$NON-NLS-1$
+		this.bugs.put(id, bug);
+		return id;
+	}
+
+	/**
+	 * Changes fields of an existing bug and updates its <code>last_change_time</code>.
+	 *
+	 * @param id
+	 *            the id of the bug
+	 * @param fields
+	 *            the changed fields
+	 * @return <code>false</code>, if there is no bug with the given id
+	 */
+	public boolean changeBug(final int id, final Map<String, Object> fields) {
+		final Map<String, Object> bug = this.bugs.get(id);
+		if(bug == null){
+			return false;
+		}
+		// replace the hash, so concurrent readers never see a half changed bug
+		final Map<String, Object> changed = new HashMap<String, Object>(bug);
+		changed.putAll(fields);
+		changed.put("id", id); //$NON-NLS-1$
+		changed.put("last_change_time", new Date()); //$NON-NLS-1$
+		this.bugs.put(id, changed);
+		return true;
+	}
+
+	/**
+	 * @return the hashes of all bugs ordered by id. The hashes must not be modified.
+	 */
+	public Collection<Map<String, Object>> getBugs() {
+		return Collections.unmodifiableCollection(this.bugs.values());
+	}
+
+	/**
+	 * @param productName
+	 *            the name of a product
+	 * @return the names of the components of the product, an empty list if the product is unknown
+	 */
+	public List<String> getComponents(final String productName) {
+		final List<String> result = this.components.get(productName);
+		return result == null ? Collections.<String> emptyList() : result;
+	}
+
+	/**
+	 * @return the hashes of all products by their id
+	 */
+	public Map<Integer, Map<String, Object>> getProducts() {
+		return Collections.unmodifiableMap(this.products);
+	}
+
+	/**
+	 * @return the hashes of all users by their login name
+	 */
+	public Map<String, Map<String, Object>> getUsers() {
+		return Collections.unmodifiableMap(this.users);
+	}
+}
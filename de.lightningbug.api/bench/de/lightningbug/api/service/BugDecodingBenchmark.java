@@ -0,0 +1,165 @@
+package de.lightningbug.api.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import de.lightningbug.api.BugzillaClient;
+import de.lightningbug.api.bench.Benchmark;
+import de.lightningbug.api.domain.Bug;
+import de.lightningbug.api.domain.Product;
+import de.lightningbug.api.domain.User;
+import de.lightningbug.api.server.StandInBugzilla;
+import de.lightningbug.api.server.SyntheticDataset;
+import de.lightningbug.api.util.HashArray;
+
+/**
+ * Benchmarks the cost of decoding the bug hashes of a <code>Bug.search</code> response into
+ * {@link Bug}s. The same search against a {@link StandInBugzilla} is
+ * <ul>
+ * <li>executed by the client only, that is the baseline of the others</li>
+ * <li>executed and decoded by the chain of string comparisons of earlier versions, that is
+ * reproduced here for all fields the {@link FieldMapper} of the {@link BugService} knows</li>
+ * <li>run by {@link BugService#search(Map)}, that decodes with the {@link FieldMapper}</li>
+ * </ul>
+ * The cost of the decoding is the difference to the baseline. Every search is run for all fields
+ * of the bugs, whose unknown fields are skipped, and for the known fields requested by
+ * <code>include_fields</code>. The client is not logged in, so the assignees are not queried.
+ * <p>
+ * Arguments: <code>[number of bugs (10000)]</code>
+ * </p>
+ *
+ * @author Sebastian Kirchner
+ *
+ */
+public class BugDecodingBenchmark {
+
+	/**
+	 * The fields of a bug decoded by both decoders
+	 */
+	private static final List<String> KNOWN_FIELDS = Arrays.asList("id", "summary", "severity", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			"status", "product", "component", "version", "estimated_time", "depends_on", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$
+			"last_change_time", "assigned_to"); //$NON-NLS-1$ //$NON-NLS-2$
+
+	private static final Log LOG = LogFactory.getLog(BugDecodingBenchmark.class);
+
+	public static void main(final String[] args) throws Exception {
+		final int bugCount = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		final StandInBugzilla server = new StandInBugzilla(0, new SyntheticDataset(50, 20, 1000,
+				bugCount, 1L));
+		Benchmark.logWarningsOnly();
+		server.start();
+		try{
+			final BugzillaClient client = new BugzillaClient(server.getURL(), "user1@example.com", //$NON-NLS-1$
+					"secret"); //$NON-NLS-1$
+			final BugService bugService = new BugService(client);
+			// the fields are requested by the parameters of each search
+			bugService.setIncludeFields(null);
+			final Map<String, Object> all = new HashMap<String, Object>();
+			final Map<String, Object> projected = new HashMap<String, Object>();
+			projected.put("include_fields", KNOWN_FIELDS.toArray()); //$NON-NLS-1$
+
+			Benchmark.printHeader("Decoding of " + bugCount + " bugs, " + KNOWN_FIELDS.size() //$NON-NLS-1$ //$NON-NLS-2$
+					+ " fields known"); //$NON-NLS-1$
+			for(final Map<String, Object> params : Arrays.asList(all, projected)){
+				final String fields = params == all ? "all fields" : "include_fields"; //$NON-NLS-1$ //$NON-NLS-2$
+				Benchmark.run("executed only, " + fields + " (per bug)", bugCount, //$NON-NLS-1$ //$NON-NLS-2$
+						() -> client.execute("Bug.search", params)); //$NON-NLS-1$
+				Benchmark.run("if chain, " + fields + " (per bug)", bugCount, //$NON-NLS-1$ //$NON-NLS-2$
+						() -> decodeByIfChain(new HashArray(((Map<?, ?>) client.execute(
+								"Bug.search", params)).get("bugs")), null)); //$NON-NLS-1$ //$NON-NLS-2$
+				Benchmark.run("FieldMapper, " + fields + " (per bug)", bugCount, //$NON-NLS-1$ //$NON-NLS-2$
+						() -> bugService.search(params));
+			}
+			client.shutdown();
+		}finally{
+			server.stop();
+		}
+	}
+
+	/**
+	 * Decodes the bugs like earlier versions: every key is compared with every known field name,
+	 * the value is looked up again and every property is logged, even if debug is disabled.
+	 *
+	 * @param hashes
+	 *            the hashes of the bugs
+	 * @param users
+	 *            the assignees by their login name, <code>null</code> if they are not resolved
+	 * @return the bugs
+	 */
+	static List<Bug> decodeByIfChain(final Iterable<? extends Map<?, ?>> hashes,
+			final Map<String, User> users) {
+		final List<Bug> bugs = new ArrayList<Bug>();
+		final Map<String, Product> products = new HashMap<String, Product>();
+		for(final Map<?, ?> bug : hashes){
+			final Bug newBug = new Bug();
+			bugs.add(newBug);
+			for(final Object key : bug.keySet()){
+				if("summary".equals(key)){ //$NON-NLS-1$
+					newBug.setSummary((String) bug.get(key));
+					LOG.debug("Property <summary> populated with: " + newBug.getSummary()); //$NON-NLS-1$
+				}
+				if("severity".equals(key)){ //$NON-NLS-1$
+					newBug.setSeverity((String) bug.get(key));
+					LOG.debug("Property <severity> populated with: " + newBug.getSeverity()); //$NON-NLS-1$
+				}
+				if("estimated_time".equals(key)){ //$NON-NLS-1$
+					newBug.setEstimatedTime((Double) bug.get(key));
+					LOG.debug("Property <estimated_time> populated with: " + newBug.getEstimatedTime()); //$NON-NLS-1$
+				}
+				if("id".equals(key)){ //$NON-NLS-1$
+					newBug.setId((Integer) bug.get(key));
+					LOG.debug("Property <id> populated with: " + newBug.getId()); //$NON-NLS-1$
+				}
+				if("status".equals(key)){ //$NON-NLS-1$
+					newBug.setStatus((String) bug.get(key));
+					LOG.debug("Property <status> populated with: " + newBug.getStatus()); //$NON-NLS-1$
+				}
+				if("product".equals(key)){ //$NON-NLS-1$
+					final String name = (String) bug.get(key);
+					Product product = products.get(name);
+					if(product == null){
+						product = new Product.Builder().name(name).build();
+						products.put(name, product);
+					}
+					newBug.setProduct(product);
+					LOG.debug("Property <product> populated with: " + newBug.getProduct()); //$NON-NLS-1$
+				}
+				if("component".equals(key)){ //$NON-NLS-1$
+					newBug.setComponent((String) bug.get(key));
+					LOG.debug("Property <component> populated with: " + newBug.getComponent()); //$NON-NLS-1$
+				}
+				if("version".equals(key)){ //$NON-NLS-1$
+					newBug.setVersion((String) bug.get(key));
+					LOG.debug("Property <version> populated with: " + newBug.getVersion()); //$NON-NLS-1$
+				}
+				if("last_change_time".equals(key)){ //$NON-NLS-1$
+					newBug.setLastChangeTime((Date) bug.get(key));
+					LOG.debug("Property <last_change_time> populated with: " //$NON-NLS-1$
+							+ newBug.getLastChangeTime());
+				}
+				if("assigned_to".equals(key) && users != null){ //$NON-NLS-1$
+					newBug.setAssignee(users.get(bug.get(key)));
+					LOG.debug("Property <assignee> populated with: " + newBug.getAssignee()); //$NON-NLS-1$
+				}
+				if("depends_on".equals(key)){ //$NON-NLS-1$
+					final Object[] idObjs = (Object[]) bug.get(key);
+					final Set<Integer> ids = new TreeSet<Integer>();
+					for(int i = 0; i < idObjs.length; i++){
+						ids.add((Integer) idObjs[i]);
+					}
+					newBug.setDependsOn(ids);
+				}
+			}
+		}
+		return bugs;
+	}
+}
@@ -0,0 +1,105 @@
+package de.lightningbug.api.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import de.lightningbug.api.BugzillaClient;
+import de.lightningbug.api.bench.Benchmark;
+import de.lightningbug.api.domain.Bug;
+import de.lightningbug.api.domain.Product;
+import de.lightningbug.api.server.StandInBugzilla;
+import de.lightningbug.api.server.SyntheticDataset;
+import de.lightningbug.api.util.HashArray;
+
+/**
+ * Benchmarks the mapping of responses to domain objects:
+ * <ul>
+ * <li>a <code>Bug.search</code> executed by the client only, and the same search by
+ * {@link BugService#search(Map)}, that maps the hashes to {@link Bug}s. The difference of both is
+ * the cost of the mapping.</li>
+ * <li>the construction of a {@link HashArray} of the bug hashes</li>
+ * <li>the extraction of the components, versions, milestones and severities of the products from
+ * the <code>Bug.fields</code> response, as done by {@link ProductService}, and
+ * {@link ProductService#getProducts()} without local cache</li>
+ * </ul>
+ * The calls are answered by a {@link StandInBugzilla} without latency. The client is not logged
+ * in, so the search does not query the assignees with <code>User.get</code>.
+ * <p>
+ * Arguments: <code>[number of bugs (10000)] [number of products (50)]</code>
+ * </p>
+ *
+ * @author Sebastian Kirchner
+ *
+ */
+public class ResponseMappingBenchmark {
+
+	public static void main(final String[] args) throws Exception {
+		final int bugCount = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		final int productCount = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+		final SyntheticDataset dataset = new SyntheticDataset(productCount, 20, 1000, bugCount, 1L);
+		final List<String> productNames = new ArrayList<String>();
+		for(final Map<String, Object> product : dataset.getProducts().values()){
+			productNames.add((String) product.get(Product.NAME));
+		}
+		Benchmark.logWarningsOnly();
+
+		final StandInBugzilla server = new StandInBugzilla(0, dataset);
+		server.start();
+		try{
+			final BugzillaClient client = new BugzillaClient(server.getURL(), "user1@example.com", //$NON-NLS-1$
+					"secret"); //$NON-NLS-1$
+			final BugService bugService = new BugService(client);
+			final Map<String, Object> params = new HashMap<String, Object>();
+
+			Benchmark.printHeader("Mapping of responses with " + bugCount + " bugs and " //$NON-NLS-1$ //$NON-NLS-2$
+					+ productNames.size() + " products"); //$NON-NLS-1$
+
+			Benchmark.run("Bug.search, executed only (per bug)", bugCount, //$NON-NLS-1$
+					() -> client.execute("Bug.search", params)); //$NON-NLS-1$
+
+			Benchmark.run("Bug.search, BugService.search (per bug)", bugCount, () -> { //$NON-NLS-1$
+				final List<Bug> bugs = bugService.search(params);
+				if(bugs.size() != bugCount){
+					throw new IllegalStateException("Expected " + bugCount + " bugs, found " //$NON-NLS-1$ //$NON-NLS-2$
+							+ bugs.size());
+				}
+				return bugs;
+			});
+
+			final Object[] bugs = (Object[]) ((Map<?, ?>) client.execute("Bug.search", params)) //$NON-NLS-1$
+					.get("bugs"); //$NON-NLS-1$
+			Benchmark.run("HashArray of Bug.search (per bug)", bugs.length, //$NON-NLS-1$
+					() -> new HashArray(bugs));
+
+			final Object fields = ((Map<?, ?>) client.execute("Bug.fields")).values().iterator() //$NON-NLS-1$
+					.next();
+			Benchmark.run("BugFieldIndex of Bug.fields", () -> new BugFieldIndex(new HashArray(fields))); //$NON-NLS-1$
+
+			final BugFieldIndex index = new BugFieldIndex(new HashArray(fields));
+			Benchmark.run("Product extraction (per product)", productNames.size(), () -> { //$NON-NLS-1$
+				final List<Product> products = new ArrayList<Product>(productNames.size());
+				final Set<String> severities = new TreeSet<String>(index.getValues("bug_severity")); //$NON-NLS-1$
+				for(final String name : productNames){
+					final Product product = new Product(null, name);
+					product.setComponents(new TreeSet<String>(index.getValues("component", name))); //$NON-NLS-1$
+					product.setVersions(new TreeSet<String>(index.getValues("version", name))); //$NON-NLS-1$
+					product.setMilestones(new TreeSet<String>(index.getValues("target_milestone", //$NON-NLS-1$
+							name)));
+					product.setSeverities(severities);
+					products.add(product);
+				}
+				return products;
+			});
+
+			Benchmark.run("ProductService.getProducts (per product)", productNames.size(), //$NON-NLS-1$
+					() -> new ProductService(client, false).getProducts());
+			client.shutdown();
+		}finally{
+			server.stop();
+		}
+	}
+}
@@ -0,0 +1,137 @@
+package de.lightningbug.api.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.lightningbug.api.BugzillaClient;
+import de.lightningbug.api.bench.Benchmark;
+import de.lightningbug.api.domain.Bug;
+import de.lightningbug.api.server.StandInBugzilla;
+import de.lightningbug.api.server.SyntheticDataset;
+import de.lightningbug.api.util.HashArray;
+
+/**
+ * Benchmarks the peak memory of a large <code>Bug.search</code> against a {@link StandInBugzilla}:
+ * <ul>
+ * <li>the tree of the whole response decoded by Apache XML-RPC, copied into a {@link HashArray}
+ * and into a list of {@link Bug}s, like earlier versions did (see
+ * {@link BugDecodingBenchmark#decodeByIfChain(Iterable, Map)})</li>
+ * <li>the bugs decoded while the response is parsed and collected in a list, like
+ * {@link BugService#search(Map)}</li>
+ * <li>the bugs decoded while the response is parsed and passed on without keeping them, like
+ * {@link BugService#search(Map, java.util.function.Consumer)}</li>
+ * </ul>
+ * The peak is the largest live heap after a full garbage collection at the points sampled: when
+ * the whole response has been decoded and every {@link StreamingMemoryBenchmark#SAMPLE_INTERVAL}
+ * bugs while it is parsed. The heap of the stand-in, that is part of the same process, is
+ * subtracted. All fields are requested, so the stand-in returns its bugs without copying them. The
+ * sampling collections slow the calls down, so their times are not reported.
+ * <p>
+ * Arguments: <code>[number of bugs (20000)]</code>. A search of 100000 bugs needs a heap of about
+ * 1 GB for the stand-in and the tree (<code>-Xmx1g</code>).
+ * </p>
+ *
+ * @author Sebastian Kirchner
+ *
+ */
+public class StreamingMemoryBenchmark {
+
+	/**
+	 * Counts bugs and samples the heap every {@link StreamingMemoryBenchmark#SAMPLE_INTERVAL} bugs
+	 */
+	private static class Sampler {
+
+		int bugs = 0;
+
+		long peak = 0L;
+
+		void accept(final Bug bug) {
+			if(++this.bugs % SAMPLE_INTERVAL == 0){
+				this.sample();
+			}
+		}
+
+		void sample() {
+			this.peak = Math.max(this.peak, Benchmark.liveHeap());
+		}
+	}
+
+	/**
+	 * The number of bugs between two samples of the heap while a response is parsed
+	 */
+	static final int SAMPLE_INTERVAL = 2000;
+
+	public static void main(final String[] args) throws Exception {
+		final int bugCount = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+		final StandInBugzilla server = new StandInBugzilla(0, new SyntheticDataset(50, 20, 1000,
+				bugCount, 1L));
+		server.start();
+		try{
+			final BugzillaClient client = new BugzillaClient(server.getURL(), "user1@example.com", //$NON-NLS-1$
+					"secret"); //$NON-NLS-1$
+			final BugService bugService = new BugService(client);
+			// all paths receive the same response and the stand-in does not copy the bugs
+			bugService.setIncludeFields(null);
+			final Map<String, Object> params = new HashMap<String, Object>();
+
+			// the first call loads the classes of all paths
+			bugService.search(params, bug -> {
+				// nothing to do
+			});
+
+			System.out.println();
+			System.out.println("Peak live heap of a Bug.search of " + bugCount + " bugs"); //$NON-NLS-1$ //$NON-NLS-2$
+			measureTree(client, params);
+			measureStreaming(bugService, params, true);
+			measureStreaming(bugService, params, false);
+			client.shutdown();
+		}finally{
+			server.stop();
+		}
+	}
+
+	/**
+	 * Measures the response decoded as a whole. The tree is only referenced by this method, so it
+	 * is not part of the baselines of the other measurements.
+	 */
+	private static void measureTree(final BugzillaClient client, final Map<String, Object> params)
+			throws Exception {
+		final long baseline = Benchmark.liveHeap();
+		final Sampler sampler = new Sampler();
+		final Object result = client.execute("Bug.search", params); //$NON-NLS-1$
+		sampler.sample();
+		final HashArray hashes = new HashArray(((Map<?, ?>) result).get("bugs")); //$NON-NLS-1$
+		final List<Bug> bugs = BugDecodingBenchmark.decodeByIfChain(hashes, null);
+		sampler.sample();
+		print("tree + HashArray + list of bugs", bugs.size(), sampler.peak - baseline); //$NON-NLS-1$
+	}
+
+	/**
+	 * Measures the response decoded while it is parsed.
+	 * 
+	 * @param keep
+	 *            <code>true</code> to collect the bugs in a list
+	 */
+	private static void measureStreaming(final BugService bugService,
+			final Map<String, Object> params, final boolean keep) throws Exception {
+		final long baseline = Benchmark.liveHeap();
+		final Sampler sampler = new Sampler();
+		final List<Bug> bugs = new ArrayList<Bug>();
+		bugService.search(params, bug -> {
+			if(keep){
+				bugs.add(bug);
+			}
+			sampler.accept(bug);
+		});
+		sampler.sample();
+		print(keep ? "streamed into a list of bugs" : "streamed, bugs not kept", sampler.bugs, //$NON-NLS-1$ //$NON-NLS-2$
+				sampler.peak - baseline);
+	}
+
+	private static void print(final String name, final int bugs, final long peak) {
+		System.out.println(String.format("%-48s %10.1f MB %10.1f bytes/bug", name, //$NON-NLS-1$
+				peak / (1024d * 1024d), (double) Math.max(peak, 0L) / Math.max(bugs, 1)));
+	}
+}
@@ -0,0 +1,87 @@
+package de.lightningbug.api.store;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.lightningbug.api.BugzillaClient;
+import de.lightningbug.api.bench.Benchmark;
+import de.lightningbug.api.domain.Bug;
+import de.lightningbug.api.server.StandInBugzilla;
+import de.lightningbug.api.server.SyntheticDataset;
+import de.lightningbug.api.service.BugService;
+
+/**
+ * Benchmarks the live heap of the bugs of a large <code>Bug.search</code> against a
+ * {@link StandInBugzilla}, held as a list of {@link Bug}s and as a {@link BugStore}. Both are
+ * filled while the response is parsed ({@link BugService#search(Map, java.util.function.Consumer)}).
+ * The stand-in is stopped before the heap is measured, and the list and the store are released one
+ * after the other, so each result is the heap freed by releasing it. The store is trimmed to its
+ * size like the stores filled by {@link BugStore#fromSearch(BugService, Map)}.
+ * <p>
+ * The dataset has 50 products with 20 components each and 1000 assignees, so the store holds
+ * thousands of distinct components and assignees besides the few statuses and severities.
+ * </p>
+ * <p>
+ * Arguments: <code>[number of bugs (300000)]</code>. The stand-in needs a heap of about 2 GB for
+ * 300000 bugs (<code>-Xmx2g</code>).
+ * </p>
+ *
+ * @author Sebastian Kirchner
+ *
+ */
+public class BugStoreMemoryBenchmark {
+
+	public static void main(final String[] args) throws Exception {
+		final int bugCount = args.length > 0 ? Integer.parseInt(args[0]) : 300000;
+		// not final, the references are dropped one after the other
+		List<Bug> bugs = new ArrayList<Bug>(bugCount);
+		BugStore store = new BugStore();
+		search(bugCount, bugs, store);
+
+		// the stand-in has been stopped, so the live heap only shrinks by the bugs released
+		final long both = Benchmark.liveHeap();
+		final int listSize = bugs.size();
+		bugs = null;
+		final long storeOnly = Benchmark.liveHeap();
+		final int storeSize = store.size();
+		store = null;
+		final long none = Benchmark.liveHeap();
+
+		System.out.println();
+		System.out.println("Live heap of the bugs of a Bug.search of " + bugCount + " bugs"); //$NON-NLS-1$ //$NON-NLS-2$
+		print("list of bugs", listSize, both - storeOnly); //$NON-NLS-1$
+		print("BugStore", storeSize, storeOnly - none); //$NON-NLS-1$
+		System.out.println(String.format("%-48s %10.1f x", "list / store", //$NON-NLS-1$ //$NON-NLS-2$
+				(double) (both - storeOnly) / Math.max(storeOnly - none, 1L)));
+	}
+
+	/**
+	 * Fills the list and the store with the bugs of two searches against a new stand-in, that is
+	 * stopped afterwards.
+	 */
+	private static void search(final int bugCount, final List<Bug> bugs, final BugStore store)
+			throws Exception {
+		final StandInBugzilla server = new StandInBugzilla(0, new SyntheticDataset(50, 20, 1000,
+				bugCount, 1L));
+		server.start();
+		try{
+			final BugzillaClient client = new BugzillaClient(server.getURL(), "user1@example.com", //$NON-NLS-1$
+					"secret"); //$NON-NLS-1$
+			final BugService bugService = new BugService(client);
+			final Map<String, Object> params = new HashMap<String, Object>();
+			bugService.search(params, bugs::add);
+			bugService.search(params, store::upsert);
+			store.trimToSize();
+			client.shutdown();
+		}finally{
+			server.stop();
+		}
+	}
+
+	private static void print(final String name, final int bugs, final long heap) {
+		System.out.println(String.format("%-48s %10.1f MB %10.1f bytes/bug", name, //$NON-NLS-1$
+				heap / (1024d * 1024d), (double) Math.max(heap, 0L) / Math.max(bugs, 1)));
+	}
+}
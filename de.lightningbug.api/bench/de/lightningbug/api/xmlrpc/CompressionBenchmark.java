@@ -0,0 +1,89 @@
+package de.lightningbug.api.xmlrpc;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import de.lightningbug.api.BugzillaClient;
+import de.lightningbug.api.bench.Benchmark;
+import de.lightningbug.api.domain.Product;
+import de.lightningbug.api.server.StandInBugzilla;
+import de.lightningbug.api.server.SyntheticDataset;
+
+/**
+ * Benchmarks the gzip compression of responses and requests against a {@link StandInBugzilla}:
+ * a <code>Bug.search</code> of all bugs with and without compressed responses and a
+ * <code>Bug.create</code> with a long description with and without a compressed request. Besides
+ * the time of a call it reports the bytes of the XML and the bytes sent or received, as counted by
+ * the {@link TransferStatistics} of the client.
+ * <p>
+ * The calls go through the loopback interface, so the time of a call only shows the cost of
+ * compressing and inflating. On a real network the time saved by sending fewer bytes is added.
+ * </p>
+ * <p>
+ * Arguments: <code>[number of bugs (5000)] [length of the description (65536)]</code>
+ * </p>
+ *
+ * @author Sebastian Kirchner
+ *
+ */
+public class CompressionBenchmark {
+
+	public static void main(final String[] args) throws Exception {
+		final int bugCount = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+		final int descriptionLength = args.length > 1 ? Integer.parseInt(args[1]) : 65536;
+		final SyntheticDataset dataset = new SyntheticDataset(20, 10, 500, bugCount, 1L);
+		final StandInBugzilla server = new StandInBugzilla(0, dataset);
+		server.start();
+		try{
+			final BugzillaClient client = new BugzillaClient(server.getURL(), "user1@example.com", //$NON-NLS-1$
+					"secret"); //$NON-NLS-1$
+			client.login();
+			final TransferStatistics statistics = client.getTransferStatistics();
+
+			Benchmark.printHeader("Bug.search of " + bugCount + " bugs"); //$NON-NLS-1$ //$NON-NLS-2$
+			final Map<String, Object> search = new HashMap<String, Object>();
+			for(final boolean gzip : new boolean[] { false, true }){
+				client.setGzipRequesting(gzip);
+				statistics.reset();
+				Benchmark.run(gzip ? "gzip" : "uncompressed", () -> client.execute("Bug.search", search)); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				printTransfer(statistics.getResponses(), statistics.getResponseBytes(),
+						statistics.getReceivedBytes());
+			}
+
+			// a log file attached to the description compresses like real ones
+			final StringBuilder description = new StringBuilder();
+			for(int line = 0; description.length() < descriptionLength; line++){
+				description.append(String.format("2012-08-22 10:%02d:%02d,%03d ERROR [worker-%d] " //$NON-NLS-1$
+						+ "de.example.Module%d - Request %d failed%n", line / 60 % 60, line % 60, //$NON-NLS-1$
+						line * 7 % 1000, line % 8, line % 13, line));
+			}
+			final Map<String, Object> bug = new HashMap<String, Object>();
+			final Map<String, Object> product = dataset.getProducts().values().iterator().next();
+			final String productName = (String) product.get(Product.NAME);
+			bug.put("product", productName); //$NON-NLS-1$
+			bug.put("component", dataset.getComponents(productName).get(0)); //$NON-NLS-1$
+			bug.put("version", SyntheticDataset.VERSIONS[0]); //$NON-NLS-1$
+			bug.put("summary", "Requests fail"); //$NON-NLS-1$ //$NON-NLS-2$
+			bug.put("description", description.substring(0, descriptionLength)); //$NON-NLS-1$
+
+			Benchmark.printHeader("Bug.create with a description of " + descriptionLength //$NON-NLS-1$
+					+ " characters"); //$NON-NLS-1$
+			for(final boolean gzip : new boolean[] { false, true }){
+				client.setRequestCompressionThreshold(gzip ? 1024 : -1);
+				statistics.reset();
+				Benchmark.run(gzip ? "gzip" : "uncompressed", () -> client.execute("Bug.create", bug)); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				printTransfer(statistics.getRequests(), statistics.getRequestBytes(),
+						statistics.getSentBytes());
+			}
+			client.shutdown();
+		}finally{
+			server.stop();
+		}
+	}
+
+	private static void printTransfer(final long calls, final long xmlBytes, final long wireBytes) {
+		System.out.println(String.format("%-48s %14d bytes XML %14d bytes transferred %5.1f%% saved", //$NON-NLS-1$
+				"  per call", xmlBytes / calls, wireBytes / calls, //$NON-NLS-1$
+				100d - 100d * wireBytes / xmlBytes));
+	}
+}
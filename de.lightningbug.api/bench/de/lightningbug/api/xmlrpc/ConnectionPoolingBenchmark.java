@@ -0,0 +1,77 @@
+package de.lightningbug.api.xmlrpc;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import de.lightningbug.api.BugzillaClient;
+import de.lightningbug.api.bench.Benchmark;
+import de.lightningbug.api.server.StandInBugzilla;
+import de.lightningbug.api.server.SyntheticDataset;
+
+/**
+ * Benchmarks the calls per second of small <code>Bug.search</code> calls sent by the default
+ * transport, that uses a {@link java.net.HttpURLConnection} per call, and by the pool of
+ * persistent connections ({@link XmlRpcClient#setConnectionPoolConfig(ConnectionPoolConfig)}),
+ * each by a single thread and by concurrent threads. The calls go to a {@link StandInBugzilla} on
+ * the loopback interface without TLS, so the savings of a real server, that is farther away and
+ * uses TLS, are larger.
+ * <p>
+ * The {@link java.net.HttpURLConnection}s of the default transport reuse idle connections of the
+ * JRE, unless the keep-alive of the JRE is turned off (<code>-Dhttp.keepAlive=false</code>). To
+ * compare the pool with a new connection for every call, the benchmark is run with keep-alive
+ * turned off. The bytes per operation only count the allocations of the calling thread.
+ * </p>
+ * <p>
+ * Arguments: <code>[number of threads (8)] [bugs per call (10)]</code>
+ * </p>
+ *
+ * @author Sebastian Kirchner
+ *
+ */
+public class ConnectionPoolingBenchmark {
+
+	public static void main(final String[] args) throws Exception {
+		final int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+		final int bugsPerCall = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+		final StandInBugzilla server = new StandInBugzilla(0, new SyntheticDataset(10, 5, 100,
+				1000, 1L));
+		server.start();
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try{
+			final BugzillaClient client = new BugzillaClient(server.getURL(), "user1@example.com", //$NON-NLS-1$
+					"secret"); //$NON-NLS-1$
+			final Map<String, Object> params = new HashMap<String, Object>();
+			params.put("limit", Integer.valueOf(bugsPerCall)); //$NON-NLS-1$
+			final Callable<Object> call = () -> client.execute("Bug.search", params); //$NON-NLS-1$
+
+			Benchmark.printHeader("Calls of Bug.search returning " + bugsPerCall + " bugs"); //$NON-NLS-1$ //$NON-NLS-2$
+
+			for(final ConnectionPoolConfig config : new ConnectionPoolConfig[] { null,
+					new ConnectionPoolConfig() }){
+				client.setConnectionPoolConfig(config);
+				final String transport = config == null ? "HttpURLConnection" : "pooled"; //$NON-NLS-1$ //$NON-NLS-2$
+				Benchmark.run(transport + ", 1 thread", () -> call.call()); //$NON-NLS-1$
+				Benchmark.run(transport + ", " + threads + " threads", threads, () -> { //$NON-NLS-1$ //$NON-NLS-2$
+					final List<Future<Object>> futures = new ArrayList<Future<Object>>(threads);
+					for(int i = 0; i < threads; i++){
+						futures.add(executor.submit(call));
+					}
+					for(final Future<Object> future : futures){
+						future.get();
+					}
+					return futures;
+				});
+			}
+			client.shutdown();
+		}finally{
+			executor.shutdown();
+			server.stop();
+		}
+	}
+}
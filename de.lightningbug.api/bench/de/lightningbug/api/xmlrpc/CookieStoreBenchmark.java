@@ -0,0 +1,61 @@
+package de.lightningbug.api.xmlrpc;
+
+import java.net.HttpCookie;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.lightningbug.api.bench.Benchmark;
+
+/**
+ * Benchmarks the cookie handling of every call: parsing the <code>Set-Cookie</code> headers of a
+ * response ({@link CookieStore#retrieveCoockies(List, String)}) and applying the stored cookies to
+ * a request ({@link CookieStore#applyCookies(URLConnection, java.util.Set)}). The headers look like
+ * the ones of a Bugzilla login.
+ * <p>
+ * Arguments: <code>[number of cookies (4)]</code>
+ * </p>
+ *
+ * @author Sebastian Kirchner
+ *
+ */
+public class CookieStoreBenchmark {
+
+	public static void main(final String[] args) throws Exception {
+		final int cookieCount = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+		final List<String> headers = new ArrayList<String>();
+		headers.add("Bugzilla_login=4711; path=/bugzilla/; expires=Fri, 01-Jan-2038 00:00:00 GMT; HttpOnly"); //$NON-NLS-1$
+		headers.add("Bugzilla_logincookie=Hx8bT2kP0s; path=/bugzilla/; expires=Fri, 01-Jan-2038 00:00:00 GMT; HttpOnly"); //$NON-NLS-1$
+		for(int i = headers.size(); i < cookieCount; i++){
+			headers.add("COOKIE_" + i + "=value" + i + "; path=/; domain=.example.com"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		}
+		final URL url = new URL("http://bugzilla.example.com/bugzilla/xmlrpc.cgi"); //$NON-NLS-1$
+
+		Benchmark.printHeader("Cookie handling with " + headers.size() + " cookies"); //$NON-NLS-1$ //$NON-NLS-2$
+
+		Benchmark.run("retrieveCoockies", () -> CookieStore.retrieveCoockies(headers, null)); //$NON-NLS-1$
+
+		final CookieStore store = new CookieStore();
+		store.addAll(CookieStore.retrieveCoockies(headers, null));
+		// the connection is never connected, the header is only set
+		final URLConnection connection = url.openConnection();
+		Benchmark.run("applyCookies (unchanged store)", () -> { //$NON-NLS-1$
+			CookieStore.applyCookies(connection, store);
+			return connection;
+		});
+
+		final HttpCookie refreshed = store.iterator().next();
+		Benchmark.run("applyCookies (store changed every call)", () -> { //$NON-NLS-1$
+			store.add((HttpCookie) refreshed.clone());
+			CookieStore.applyCookies(connection, store);
+			return connection;
+		});
+
+		Benchmark.run("retrieveCoockies + addAll + applyCookies", () -> { //$NON-NLS-1$
+			store.addAll(CookieStore.retrieveCoockies(headers, null));
+			CookieStore.applyCookies(connection, store);
+			return connection;
+		});
+	}
+}
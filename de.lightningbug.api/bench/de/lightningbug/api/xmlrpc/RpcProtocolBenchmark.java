@@ -0,0 +1,87 @@
+package de.lightningbug.api.xmlrpc;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.lightningbug.api.BugzillaClient;
+import de.lightningbug.api.bench.Benchmark;
+import de.lightningbug.api.domain.Bug;
+import de.lightningbug.api.server.StandInBugzilla;
+import de.lightningbug.api.server.SyntheticDataset;
+import de.lightningbug.api.service.BugService;
+
+/**
+ * Benchmarks a large {@link BugService#search(Map)} sent by XML-RPC and by JSON-RPC
+ * ({@link RpcProtocol}) to the same {@link StandInBugzilla}, with and without compressed
+ * responses. The time and the allocated bytes are reported per bug; besides them the bytes of a
+ * response and the bytes received, as counted by the {@link TransferStatistics} of the client.
+ * <p>
+ * The bugs are parsed in the calling thread by both protocols, so the allocated bytes cover the
+ * whole decoding. The calls go through the loopback interface, on a real network the smaller
+ * responses save transfer time as well.
+ * </p>
+ * <p>
+ * Arguments: <code>[number of bugs (10000)]</code>
+ * </p>
+ *
+ * @author Sebastian Kirchner
+ *
+ */
+public class RpcProtocolBenchmark {
+
+	public static void main(final String[] args) throws Exception {
+		final int bugCount = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		final StandInBugzilla server = new StandInBugzilla(0, new SyntheticDataset(50, 20, 1000,
+				bugCount, 1L));
+		server.start();
+		try{
+			Benchmark.printHeader("BugService.search of " + bugCount + " bugs"); //$NON-NLS-1$ //$NON-NLS-2$
+			for(final RpcProtocol protocol : new RpcProtocol[] { RpcProtocol.XML_RPC,
+					RpcProtocol.JSON_RPC }){
+				final BugzillaClient client = new BugzillaClient(server.getURL(),
+						"user1@example.com", "secret", protocol); //$NON-NLS-1$ //$NON-NLS-2$
+				client.login();
+				final BugService bugService = new BugService(client);
+				final TransferStatistics statistics = client.getTransferStatistics();
+				final Map<String, Object> params = new HashMap<String, Object>();
+				for(final boolean gzip : new boolean[] { false, true }){
+					client.setGzipRequesting(gzip);
+					statistics.reset();
+					final AtomicLong searches = new AtomicLong();
+					Benchmark.run(protocol + (gzip ? ", gzip" : ", uncompressed") + " (per bug)", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+							bugCount, () -> {
+								searches.incrementAndGet();
+								return search(bugService, params, bugCount);
+							});
+					printTransfer(statistics, searches.get());
+				}
+				client.shutdown();
+			}
+		}finally{
+			server.stop();
+		}
+	}
+
+	private static List<Bug> search(final BugService bugService, final Map<String, Object> params,
+			final int bugCount) throws Exception {
+		final List<Bug> bugs = new ArrayList<Bug>(bugCount);
+		bugService.search(params, bugs::add);
+		if(bugs.size() != bugCount){
+			throw new IllegalStateException("Expected " + bugCount + " bugs, found " + bugs.size()); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		return bugs;
+	}
+
+	/**
+	 * Prints the bytes of a search. They include the <code>User.get</code> call resolving the
+	 * assignees, that is small compared to the <code>Bug.search</code> response.
+	 */
+	private static void printTransfer(final TransferStatistics statistics, final long searches) {
+		System.out.println(String.format("%-48s %14d bytes response %14d bytes received", //$NON-NLS-1$
+				"  per search", statistics.getResponseBytes() / searches, //$NON-NLS-1$
+				statistics.getReceivedBytes() / searches));
+	}
+}
@@ -1,17 +1,27 @@
 package de.lightningbug.api;
 
 import java.beans.PropertyChangeSupport;
+import java.lang.reflect.Method;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.xmlrpc.XmlRpcException;
 
 import de.lightningbug.api.domain.Bug;
+import de.lightningbug.api.service.BugFieldRegistry;
+import de.lightningbug.api.xmlrpc.CookieStore;
+import de.lightningbug.api.xmlrpc.MultiCall;
+import de.lightningbug.api.xmlrpc.RpcProtocol;
 import de.lightningbug.api.xmlrpc.XmlRpcClient;
 
 /**
@@ -64,15 +74,39 @@ public class BugzillaClient extends XmlRpcClient {
 	 */
 	public static final String USER_NAME = "userName"; //$NON-NLS-1$
 
-	private boolean login = false;
+	private final BugFieldRegistry bugFieldRegistry;
 
-	private String password;
+	/**
+	 * the executor set or created on first use, <code>null</code> until then
+	 */
+	private volatile ExecutorService executorService = null;
+
+	/**
+	 * guards the creation and replacement of the executor
+	 */
+	private final Object executorLock = new Object();
+
+	private final AtomicBoolean login = new AtomicBoolean(false);
+
+	/**
+	 * <code>true</code> if the executor has been created by this client and is shut down by it
+	 */
+	private boolean ownsExecutorService = false;
+
+	private volatile String password;
 
 	private final PropertyChangeSupport pcs = new PropertyChangeSupport(this);
 
+	/**
+	 * serializes login and logout, so a logout never clears the cookie of a concurrent login. A
+	 * login holds it across <code>User.login</code>, a logout only while it ends the session
+	 * locally.
+	 */
+	private final Object sessionLock = new Object();
+
 	private final java.net.URL url;
 
-	private String userName;
+	private volatile String userName;
 
 	/**
 	 * Constructor for the bugzilla client.
@@ -93,10 +127,34 @@ public class BugzillaClient extends XmlRpcClient {
 	 */
 	public BugzillaClient(final java.net.URL url, final String userName, final String password)
 			throws MalformedURLException {
-		super(createAPIURL(url)); //$NON-NLS-1$
+		this(url, userName, password, RpcProtocol.XML_RPC);
+	}
+
+	/**
+	 * Constructor for a bugzilla client using the given protocol. All services work with
+	 * either protocol.
+	 * 
+	 * @param url
+	 *            the URL to base folder of the bugzilla instance, this client
+	 *            will connect to
+	 * @param userName
+	 *            the name of the account used to login
+	 * @param password
+	 *            the password of the login account
+	 * @param protocol
+	 *            the protocol of the web service, e.g. {@link RpcProtocol#JSON_RPC} for the
+	 *            smaller and faster responses of <code>jsonrpc.cgi</code>
+	 * 
+	 * @throws MalformedURLException
+	 *             if the given URL is invalid
+	 */
+	public BugzillaClient(final java.net.URL url, final String userName, final String password,
+			final RpcProtocol protocol) throws MalformedURLException {
+		super(createAPIURL(url, protocol), protocol);
 		this.url = url;
 		this.userName = userName;
 		this.password = password;
+		this.bugFieldRegistry = new BugFieldRegistry(this);
 	}
 
 	/**
@@ -104,18 +162,24 @@ public class BugzillaClient extends XmlRpcClient {
 	 * 
 	 * @param url
 	 *            the URL to the bugzilla installation
+	 * @param protocol
+	 *            the protocol of the web service
 	 * @return the apiURL needed for the XMLRPCClient
 	 * @throws MalformedURLException
 	 *             if the URL cannot be created becase the given URL has an unknown protocol or
 	 *             could not be parsed
 	 */
-	private static URL createAPIURL(final URL url) throws MalformedURLException {
+	private static URL createAPIURL(final URL url, final RpcProtocol protocol)
+			throws MalformedURLException {
+		if(protocol == null){
+			throw new IllegalArgumentException("Paramter <protocol> must not be mull"); //$NON-NLS-1$
+		}
 		String urlString = url.toString();
 		// add a slash to the end, if it's not there
 		if(!urlString.endsWith("/")){
 			urlString = urlString.concat("/");
 		}
-		return new URL(urlString + "xmlrpc.cgi");
+		return new URL(urlString + protocol.getEndpoint());
 	}
 
 	/**
@@ -124,6 +188,15 @@ public class BugzillaClient extends XmlRpcClient {
 	 * @return <code>true</code> if the connection was established, otherwise <code>false</code>.
 	 */
 	public boolean login() {
+		// the lock is held across User.login: the transport stores the cookie of the new session
+		// while the response is read, before the login flag flips, so a logout between both would
+		// take the flag of the old session and leave the new cookie behind
+		synchronized(this.sessionLock){
+			return this.doLogin();
+		}
+	}
+
+	private boolean doLogin() {
 		try{
 
 			// assemble the map of params
@@ -140,9 +213,9 @@ public class BugzillaClient extends XmlRpcClient {
 			final HashMap<?, ?> resultMap = (HashMap<?, ?>) this.execute("User.login", params); //$NON-NLS-1$
 
 			final Object userId = resultMap.get("id"); //$NON-NLS-1$
-			if(userId instanceof Number && ((Number) userId).intValue() > 0){
-				this.login = true;
-				this.pcs.firePropertyChange(LOGIN, false, this.login);
+			if(userId instanceof Number && ((Number) userId).intValue() > 0
+					&& this.login.compareAndSet(false, true)){
+				this.pcs.firePropertyChange(LOGIN, false, true);
 			}
 		}catch(final XmlRpcException e){
 			// TODO
@@ -153,23 +226,30 @@ public class BugzillaClient extends XmlRpcClient {
 	}
 
 	/**
-	 * Disconnnect the {@link BugzillaClient} from the bugzilla instance.
+	 * Disconnnect the {@link BugzillaClient} from the bugzilla instance. The client is logged out
+	 * right away, the session on the bugzilla instance is ended by a following
+	 * <code>User.logout</code>. A concurrent login does not wait for that call.
 	 * 
 	 * @return <code>true</code> if the connection was closed successfully,
-	 *         otherwise <code>false</code>.
+	 *         otherwise <code>false</code>. If only the <code>User.logout</code> failed, the
+	 *         client is logged out nevertheless and the session expires on the bugzilla instance.
 	 */
 	public boolean logout() {
-		if(!this.isLoggedIn()){
-			return false;
+		final CookieStore cookies = new CookieStore();
+		synchronized(this.sessionLock){
+			if(!this.login.get()){
+				return false;
+			}
+			// take the login cookie out of the coockie store, before the logout becomes visible
+			cookies.addAll(this.getCookieStore());
+			this.getCookieStore().clear();
+			this.login.set(false);
+			this.pcs.firePropertyChange(LOGIN, true, false);
 		}
-		try{
-			this.execute("User.logout"); //$NON-NLS-1$
-			final boolean oldValue = this.login;
-			this.login = false;
-			this.pcs.firePropertyChange(LOGIN, oldValue, this.login);
 
-			// clear coockie store from old login cookie
-			this.getCookieStore().clear();
+		// the call carries the cookie of the ended session, not the one of a concurrent login
+		try{
+			this.executeWithCookies("User.logout", new ArrayList<Object>(), cookies); //$NON-NLS-1$
 		}catch(final XmlRpcException e){
 			// TODO Auto-generated catch block
 			e.printStackTrace();
@@ -178,6 +258,20 @@ public class BugzillaClient extends XmlRpcClient {
 		return true;
 	}
 
+	/**
+	 * Creates a batch of calls, that are sent to the bugzilla instance with a single
+	 * <code>system.multicall</code> request. If the instance does not support that, the calls
+	 * are executed concurrently using the executor of this client.
+	 * 
+	 * @return a new, empty batch of calls
+	 * 
+	 * @see MultiCall
+	 * @see BugzillaClient#getExecutorService()
+	 */
+	public MultiCall createMultiCall() {
+		return new MultiCall(this, this.getExecutorService());
+	}
+
 	/**
 	 * TODO document!!!
 	 * 
@@ -216,6 +310,91 @@ public class BugzillaClient extends XmlRpcClient {
 		return this.execute(methodName, pParams);
 	}
 
+	/**
+	 * Getter for the registry of the names and the legal values of all bug fields of the bugzilla
+	 * instance. The registry is shared by all services using this client.
+	 * 
+	 * @return the bug field registry of this client
+	 */
+	public BugFieldRegistry getBugFieldRegistry() {
+		return this.bugFieldRegistry;
+	}
+
+	/**
+	 * Creates the executor used, if no executor has been set. On runtimes supporting virtual
+	 * threads (Java 21+) every task runs on a new virtual thread, otherwise a cached pool of
+	 * daemon threads is used.
+	 * 
+	 * @return a new executor
+	 */
+	private static ExecutorService createDefaultExecutorService() {
+		try{
+			final Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor"); //$NON-NLS-1$
+			return (ExecutorService) factory.invoke(null);
+		}catch(final NoSuchMethodException e){
+			LOG.debug("Virtual threads are not supported by this runtime"); //$NON-NLS-1$
+		}catch(final ReflectiveOperationException e){
+			LOG.warn("Virtual threads could not be used", e); //$NON-NLS-1$
+		}
+		return Executors.newCachedThreadPool(new ThreadFactory() {
+
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(final Runnable runnable) {
+				final Thread thread = new Thread(runnable, "lightningbug-" //$NON-NLS-1$
+						+ this.count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Getter for the executor used by the services to run independent calls concurrently. If no
+	 * executor has been set, one is created on first use: virtual threads on runtimes supporting
+	 * them, a cached pool of daemon threads otherwise.
+	 * 
+	 * @return the executor used to run calls of this client concurrently
+	 * 
+	 * @see BugzillaClient#setExecutorService(ExecutorService)
+	 */
+	public ExecutorService getExecutorService() {
+		final ExecutorService executorService = this.executorService;
+		if(executorService != null){
+			return executorService;
+		}
+		synchronized(this.executorLock){
+			if(this.executorService == null){
+				this.executorService = createDefaultExecutorService();
+				this.ownsExecutorService = true;
+			}
+			return this.executorService;
+		}
+	}
+
+	/**
+	 * Setter for the executor used by the services to run independent calls concurrently. The
+	 * executor created by this client is shut down, when it is replaced: the calls already
+	 * running complete, new calls are rejected. An executor set by the caller is never shut
+	 * down by this client.
+	 * 
+	 * @param executorService
+	 *            the executor used to run calls of this client concurrently or <code>null</code>
+	 *            to use the default executor
+	 */
+	public void setExecutorService(final ExecutorService executorService) {
+		final ExecutorService replaced;
+		synchronized(this.executorLock){
+			replaced = this.ownsExecutorService ? this.executorService : null;
+			this.executorService = executorService;
+			this.ownsExecutorService = false;
+		}
+		if(replaced != null && replaced != executorService){
+			replaced.shutdown();
+		}
+	}
+
 	/**
 	 * Setter for the HTTP URL of the bugzilla instance this client sould
 	 * connect to. This property can only be set once for a {@link BugzillaClient} via constructor.
@@ -247,7 +426,7 @@ public class BugzillaClient extends XmlRpcClient {
 	 * @see BugzillaClient#logout()
 	 */
 	public boolean isLoggedIn() {
-		return this.login;
+		return this.login.get();
 	}
 
 /**
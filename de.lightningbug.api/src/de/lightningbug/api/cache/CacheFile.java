@@ -0,0 +1,321 @@
+package de.lightningbug.api.cache;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import de.lightningbug.api.domain.Product;
+
+/**
+ * The binary file format of the {@link LocalCache}. The file starts with an offset table, so the
+ * products of a single connection can be decoded without parsing the other connections.
+ * <p>
+ * The file is read into a buffer on the heap instead of mapping it into memory. A mapped file
+ * stays mapped until its buffer has been garbage collected, and on Windows a mapped file cannot
+ * be replaced (JDK-4724038), so the next {@link CacheFile#write(File, Map)} would fail. The file
+ * is small, so reading it completely costs little more than mapping it.
+ * </p>
+ *
+ * <pre>
+ * file       := MAGIC VERSION count:int entry* block*
+ * entry      := url:string offset:long length:int
+ * block      := productCount:int product*
+ * product    := hasId:byte [id:int] name:string components versions milestones severities
+ * set        := size:int (-1 for null) string*
+ * string     := length:int (-1 for null) utf8-bytes
+ * </pre>
+ *
+ * @author Sebastian Kirchner
+ *
+ */
+final class CacheFile {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8"); //$NON-NLS-1$
+
+	/**
+	 * "LBC1"
+	 */
+	private static final int MAGIC = 0x4C424331;
+
+	private static final int VERSION = 1;
+
+	private final ByteBuffer buffer;
+
+	/**
+	 * url -> {offset, length} of the block of the connection
+	 */
+	private final Map<String, long[]> offsets;
+
+	private CacheFile(final ByteBuffer buffer, final Map<String, long[]> offsets) {
+		this.buffer = buffer;
+		this.offsets = offsets;
+	}
+
+	/**
+	 * Reads the given file and its offset table. The file is closed, when this method returns.
+	 *
+	 * @param file
+	 *            a file written by {@link CacheFile#write(File, Map)}
+	 * @return the opened cache file
+	 * @throws IOException
+	 *             if the file could not be read, has an unknown format or is corrupt
+	 */
+	static CacheFile open(final File file) throws IOException {
+		final ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+		if(buffer.remaining() < 12 || buffer.getInt() != MAGIC){
+			throw new IOException("Not a local cache file: " + file); //$NON-NLS-1$
+		}
+		final int version = buffer.getInt();
+		if(version != VERSION){
+			throw new IOException("Unsupported version " + version + " of the local cache file: " //$NON-NLS-1$ //$NON-NLS-2$
+					+ file);
+		}
+		try{
+			final int count = buffer.getInt();
+			final Map<String, long[]> offsets = new LinkedHashMap<String, long[]>();
+			for(int i = 0; i < count; i++){
+				final String url = readString(buffer);
+				final long offset = buffer.getLong();
+				final int length = buffer.getInt();
+				if(offset < 0 || length < 0 || offset + length > buffer.capacity()){
+					throw new IOException("Corrupt local cache file: " + file); //$NON-NLS-1$
+				}
+				offsets.put(url, new long[] { offset, length });
+			}
+			return new CacheFile(buffer, offsets);
+		}catch(final RuntimeException e){
+			// e.g. a truncated file
+			throw new IOException("Corrupt local cache file: " + file, e); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * @return the urls of all connections stored in the file
+	 */
+	Collection<String> getUrls() {
+		return this.offsets.keySet();
+	}
+
+	/**
+	 * @param url
+	 *            the url of a connection
+	 * @return <code>true</code> if the file contains products for the given connection
+	 */
+	boolean contains(final String url) {
+		return this.offsets.containsKey(url);
+	}
+
+	/**
+	 * Decodes the products of a single connection.
+	 *
+	 * @param url
+	 *            the url of the connection
+	 * @return <code>null</code>, if the file contains no products for the given connection
+	 * @throws IOException
+	 *             if the products of the connection are corrupt
+	 */
+	List<Product> readProducts(final String url) throws IOException {
+		final ByteBuffer block = this.getBlock(url);
+		if(block == null){
+			return null;
+		}
+		try{
+			final int count = block.getInt();
+			final List<Product> products = new ArrayList<Product>();
+			for(int i = 0; i < count; i++){
+				final Integer id = block.get() != 0 ? Integer.valueOf(block.getInt()) : null;
+				products.add(new Product.Builder().id(id).name(readString(block))
+						.components(readSet(block)).versions(readSet(block))
+						.milestones(readSet(block)).severities(readSet(block)).build());
+			}
+			return products;
+		}catch(final RuntimeException e){
+			// e.g. BufferUnderflowException or NegativeArraySizeException
+			throw new IOException("Corrupt products of " + url + " in the local cache file", e); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+	}
+
+	/**
+	 * @param url
+	 *            the url of a connection
+	 * @return the encoded products of the connection, <code>null</code> if there are none
+	 */
+	ByteBuffer getBlock(final String url) {
+		final long[] offset = this.offsets.get(url);
+		if(offset == null){
+			return null;
+		}
+		final ByteBuffer block = this.buffer.duplicate();
+		block.position((int) offset[0]);
+		block.limit((int) (offset[0] + offset[1]));
+		return block.slice();
+	}
+
+	/**
+	 * Encodes the given products into a block, that can be written by
+	 * {@link CacheFile#write(File, Map)}.
+	 *
+	 * @param products
+	 *            the products of a connection
+	 * @return the encoded products
+	 */
+	static ByteBuffer encode(final List<Product> products) {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(bytes);
+		try{
+			out.writeInt(products.size());
+			for(final Product product : products){
+				if(product.getId() == null){
+					out.writeByte(0);
+				}else{
+					out.writeByte(1);
+					out.writeInt(product.getId().intValue());
+				}
+				writeString(out, product.getName());
+				writeSet(out, product.getComponents());
+				writeSet(out, product.getVersions());
+				writeSet(out, product.getMilestones());
+				writeSet(out, product.getSeverities());
+			}
+			out.flush();
+		}catch(final IOException e){
+			// writing to memory does not fail
+			throw new IllegalStateException(e);
+		}
+		return ByteBuffer.wrap(bytes.toByteArray());
+	}
+
+	/**
+	 * Writes the given blocks into a new file, that replaces the given file. The blocks are
+	 * created by {@link CacheFile#encode(List)} or taken from an opened file
+	 * ({@link CacheFile#getBlock(String)}).
+	 *
+	 * @param file
+	 *            the file to write
+	 * @param blocks
+	 *            the encoded products by the url of their connection
+	 * @throws IOException
+	 *             if the file could not be written
+	 */
+	static void write(final File file, final Map<String, ByteBuffer> blocks) throws IOException {
+		// the offset table has a fixed size, so the offsets can be computed in advance
+		long tableSize = 12;
+		final List<byte[]> urls = new ArrayList<byte[]>(blocks.size());
+		for(final String url : blocks.keySet()){
+			final byte[] bytes = url.getBytes(UTF_8);
+			urls.add(bytes);
+			tableSize += 4 + bytes.length + 8 + 4;
+		}
+
+		final File tmpFile = new File(file.getParentFile(), file.getName() + ".tmp"); //$NON-NLS-1$
+		final FileOutputStream fileOut = new FileOutputStream(tmpFile);
+		try{
+			final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut));
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(blocks.size());
+			long offset = tableSize;
+			int i = 0;
+			for(final ByteBuffer block : blocks.values()){
+				final byte[] url = urls.get(i++);
+				out.writeInt(url.length);
+				out.write(url);
+				out.writeLong(offset);
+				out.writeInt(block.remaining());
+				offset += block.remaining();
+			}
+			for(final ByteBuffer block : blocks.values()){
+				final ByteBuffer data = block.duplicate();
+				final byte[] chunk = new byte[Math.min(8192, Math.max(1, data.remaining()))];
+				while(data.hasRemaining()){
+					final int length = Math.min(chunk.length, data.remaining());
+					data.get(chunk, 0, length);
+					out.write(chunk, 0, length);
+				}
+			}
+			out.flush();
+		}finally{
+			fileOut.close();
+		}
+		replace(tmpFile, file);
+	}
+
+	/**
+	 * Replaces a file by another one, so readers see either the old or the new file.
+	 *
+	 * @param source
+	 *            the new file
+	 * @param target
+	 *            the file to replace
+	 * @throws IOException
+	 *             if the file could not be replaced
+	 */
+	static void replace(final File source, final File target) throws IOException {
+		try{
+			Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		}catch(final AtomicMoveNotSupportedException e){
+			Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	private static Set<String> readSet(final ByteBuffer buffer) {
+		final int size = buffer.getInt();
+		if(size < 0){
+			return null;
+		}
+		final Set<String> set = new TreeSet<String>();
+		for(int i = 0; i < size; i++){
+			set.add(readString(buffer));
+		}
+		return set;
+	}
+
+	private static String readString(final ByteBuffer buffer) {
+		final int length = buffer.getInt();
+		if(length < 0){
+			return null;
+		}
+		final byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, UTF_8);
+	}
+
+	private static void writeSet(final DataOutputStream out, final Set<String> set)
+			throws IOException {
+		if(set == null){
+			out.writeInt(-1);
+			return;
+		}
+		out.writeInt(set.size());
+		for(final String value : set){
+			writeString(out, value);
+		}
+	}
+
+	private static void writeString(final DataOutputStream out, final String value)
+			throws IOException {
+		if(value == null){
+			out.writeInt(-1);
+			return;
+		}
+		final byte[] bytes = value.getBytes(UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+}
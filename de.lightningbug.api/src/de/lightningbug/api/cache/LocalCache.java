@@ -1,261 +1,413 @@
-package de.lightningbug.api.cache;
-
-import java.io.File;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Set;
-import java.util.TreeSet;
-
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.JAXBException;
-import javax.xml.bind.Marshaller;
-import javax.xml.bind.Unmarshaller;
-import javax.xml.bind.annotation.XmlAttribute;
-import javax.xml.bind.annotation.XmlElement;
-import javax.xml.bind.annotation.XmlRootElement;
-
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
-
-import de.lightningbug.api.BugzillaClient;
-import de.lightningbug.api.domain.Product;
-import de.lightningbug.api.service.ProductService;
-
-/**
- * The local cache is used to store the products configuration of all bugzilla instances the client
- * is connected to.
- * <p>
- * The necessary initial query for those objects {@link ProductService#getProducts()} could take
- * some time. The cache makes it possible share these objects between bugzilla sessions without
- * queriing them each time.
- * </p>
- * <p>
- * The objects are stored in an XML file (<home>/.lightningbug/localCache.xml) in the users home
- * directory. If this file is not available the cache will try to load the objects from a file with
- * the same name in the lightningbug JAR. Such a file is usefull, if you want to deliver a default
- * local cache.
- * </p>
- * 
- * @author Sebastian Kirchner
- * 
- */
-@XmlRootElement
-public class LocalCache {
-
-	/**
-	 * This class is used as the xml root element for storing the product configuration of multiple
-	 * bugzilla instances. Every instance is identified by their connection url, so the cache has
-	 * a set of {@link Connection}.
-	 * 
-	 * @author Sebastian Kirchner
-	 * 
-	 */
-	@XmlRootElement
-	protected static class Cache {
-
-		private Set<Connection> connections = null;
-
-		/**
-		 * @return the connections
-		 */
-		@XmlElement(name = "connection")
-		public Set<Connection> getConnections() {
-			if(this.connections == null){
-				this.connections = new TreeSet<Connection>();
-			}
-			return this.connections;
-		}
-
-		/**
-		 * @param connections
-		 *            the connections to set
-		 */
-		public void setConnections(Set<Connection> connections) {
-			this.connections = connections;
-		}
-
-	}
-
-	/**
-	 * A connection object is used tho store the product configuration of one bugzilla instance.
-	 * Every instance is identified by their connection url. Every Instance can have one or more
-	 * {@link Product}s, thus a connection has a list of products.
-	 * 
-	 * @author Sebastian Kirchner
-	 * 
-	 */
-	protected static class Connection implements Comparable<Connection> {
-
-		private List<Product> products = null;
-
-		private String url = null;
-
-		@Override
-		public int compareTo(Connection o) {
-			if(this.url == null){
-				if(o.getUrl() == null){
-					return 0;
-				}
-				return -1;
-			}
-			return this.getUrl().compareTo(o.getUrl());
-		}
-
-		/**
-		 * @return the products
-		 */
-		@XmlElement(name = "product")
-		public List<Product> getProducts() {
-			if(this.products == null){
-				this.products = new ArrayList<Product>();
-			}
-			return this.products;
-		}
-
-		/**
-		 * @return the url
-		 */
-		@XmlAttribute
-		public String getUrl() {
-			return this.url;
-		}
-
-		/**
-		 * @param products
-		 *            the products to set
-		 */
-		public void setProducts(List<Product> products) {
-			this.products = products;
-		}
-
-		/**
-		 * @param url
-		 *            the url to set
-		 */
-		public void setUrl(String url) {
-			this.url = url;
-		}
-
-	}
-
-	private static Cache cache = null;
-
-	private static JAXBContext context = null;
-
-	private static final Log LOG = LogFactory.getLog(LocalCache.class);
-
-	private static final String CACHE_FILE_NAME = "localCache.xml"; //$NON-NLS-1$
-	private static final File USER_HOME = new File(System.getProperty("user.home")); //$NON-NLS-1$
-	private static final File DEFAULT_CACHE_FILE = new File(CACHE_FILE_NAME);
-	private static final String USER_SETTINGS_FOLDER_NAME = ".lightningbug"; //$NON-NLS-1$
-	private static final File USER_SETTINGS_FOLDER = new File(USER_HOME, USER_SETTINGS_FOLDER_NAME);
-	private static final File USER_CACHE_FILE = new File(USER_SETTINGS_FOLDER, CACHE_FILE_NAME);
-
-	private static JAXBContext getContext() throws JAXBException {
-		if(context == null){
-			context = JAXBContext.newInstance(Cache.class, Connection.class, Product.class);
-		}
-		return context;
-	}
-
-	/**
-	 * TODO Document this!
-	 * 
-	 * @param client
-	 * @return
-	 */
-	public static List<Product> getProducts(final BugzillaClient client) {
-		load();
-		if(cache == null){
-			return null;
-		}
-		final String urlString = client.getURL().toString();
-		for(Connection connection : cache.getConnections()){
-			if(connection.getUrl().equals(urlString)){
-				return new ArrayList<Product>(connection.getProducts());
-			}
-		}
-		return null;
-	}
-
-	private static void load() {
-		// find the cache file in the user home folder
-		File cacheFile = null;
-		if(USER_CACHE_FILE.isFile()){
-			LOG.info("Local cache file in the user home directory found "); //$NON-NLS-1$
-			cacheFile = USER_CACHE_FILE;
-		}else{
-			LOG.info("Local cache file could not be found in the users home dir. " //$NON-NLS-1$
-					+ "Looking for a fallback cache file"); //$NON-NLS-1$
-			if(DEFAULT_CACHE_FILE.isFile()){
-				LOG.info("fallback cache file found"); //$NON-NLS-1$
-				cacheFile = DEFAULT_CACHE_FILE;
-			}
-		}
-		if(cacheFile == null){
-			LOG.info("Local cache file could not be found. Local cache is not available"); //$NON-NLS-1$
-			return;
-		}
-		try{
-			final Unmarshaller unmarshaller = getContext().createUnmarshaller();
-			cache = (Cache) unmarshaller.unmarshal(cacheFile);
-		}catch(JAXBException e){
-			LOG.warn("Error while creating the JAXBContext for the local cache", e); //$NON-NLS-1$
-		}
-	}
-
-	/**
-	 * 
-	 */
-	private static void save() {
-		if(!USER_SETTINGS_FOLDER.isDirectory() && !USER_SETTINGS_FOLDER.mkdir()){
-			LOG.error("The following folder could not be created. The local cache will not be saved: " //$NON-NLS-1$
-					+ USER_SETTINGS_FOLDER.getAbsolutePath());
-			return;
-		}
-		try{
-			final Marshaller marshaller = getContext().createMarshaller();
-			marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
-			marshaller.marshal(cache, USER_CACHE_FILE);
-		}catch(JAXBException e){
-			LOG.warn("Error while creating the JAXBContext for the local cache", e); //$NON-NLS-1$
-		}
-	}
-
-	/**
-	 * TODO Document this!
-	 * 
-	 * @param client
-	 * @param products
-	 */
-	public static void setProducts(final BugzillaClient client, final List<Product> products) {
-		// local cache might not have been loaded before (re)try
-		if(cache == null){
-			load();
-		}
-		// no previous cache - create a new one
-		if(cache == null){
-			cache = new Cache();
-		}
-		// find the right connection in the cache
-		Connection connection = null;
-		for(final Connection c : cache.getConnections()){
-			if(c.getUrl().equals(client.getURL().toString())){
-				connection = c;
-			}
-		}
-		// create a new connection if there was no match in the cache
-		if(connection == null){
-			connection = new Connection();
-			connection.setUrl(client.getURL().toString());
-			cache.getConnections().add(connection);
-		}
-		connection.setProducts(products);
-		save();
-	}
-
-	private LocalCache() {
-		// for static use only
-	}
-
-}
+package de.lightningbug.api.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import de.lightningbug.api.BugzillaClient;
+import de.lightningbug.api.domain.Product;
+import de.lightningbug.api.service.ProductService;
+
+/**
+ * The local cache is used to store the products configuration of all bugzilla instances the client
+ * is connected to.
+ * <p>
+ * The necessary initial query for those objects {@link ProductService#getProducts()} could take
+ * some time. The cache makes it possible share these objects between bugzilla sessions without
+ * queriing them each time.
+ * </p>
+ * <p>
+ * The objects are stored in a binary file (<home>/.lightningbug/localCache.bin) in the users home
+ * directory. The file starts with an offset table, so the products of one bugzilla instance are
+ * read without parsing the others.
+ * </p>
+ * <p>
+ * Earlier versions stored the objects in an XML file (<home>/.lightningbug/localCache.xml). If
+ * there is no binary file, that file is migrated automatically. If it is not available either the
+ * cache will try to migrate a file with the same name in the lightningbug JAR. Such a file is
+ * usefull, if you want to deliver a default local cache.
+ * </p>
+ * <p>
+ * Once decoded, the products of a bugzilla instance are kept in memory. The file is only read
+ * again, if its modification time or size changes. Both are checked at most once per
+ * {@link LocalCache#FILE_CHECK_INTERVAL}.
+ * </p>
+ * 
+ * @author Sebastian Kirchner
+ * 
+ */
+@XmlRootElement
+public class LocalCache {
+
+	/**
+	 * This class is used as the xml root element for reading the product configuration of multiple
+	 * bugzilla instances from the XML file of earlier versions. Every instance is identified by their connection url, so the cache has
+	 * a set of {@link Connection}.
+	 * 
+	 * @author Sebastian Kirchner
+	 * 
+	 */
+	@XmlRootElement
+	protected static class Cache {
+
+		private Set<Connection> connections = null;
+
+		/**
+		 * @return the connections
+		 */
+		@XmlElement(name = "connection")
+		public Set<Connection> getConnections() {
+			if(this.connections == null){
+				this.connections = new TreeSet<Connection>();
+			}
+			return this.connections;
+		}
+
+		/**
+		 * @param connections
+		 *            the connections to set
+		 */
+		public void setConnections(Set<Connection> connections) {
+			this.connections = connections;
+		}
+
+	}
+
+	/**
+	 * A connection object is used tho store the product configuration of one bugzilla instance.
+	 * Every instance is identified by their connection url. Every Instance can have one or more
+	 * {@link Product}s, thus a connection has a list of products.
+	 * 
+	 * @author Sebastian Kirchner
+	 * 
+	 */
+	protected static class Connection implements Comparable<Connection> {
+
+		private List<Product> products = null;
+
+		private String url = null;
+
+		@Override
+		public int compareTo(Connection o) {
+			if(this.url == null){
+				if(o.getUrl() == null){
+					return 0;
+				}
+				return -1;
+			}
+			return this.getUrl().compareTo(o.getUrl());
+		}
+
+		/**
+		 * @return the products
+		 */
+		@XmlElement(name = "product")
+		public List<Product> getProducts() {
+			if(this.products == null){
+				this.products = new ArrayList<Product>();
+			}
+			return this.products;
+		}
+
+		/**
+		 * @return the url
+		 */
+		@XmlAttribute
+		public String getUrl() {
+			return this.url;
+		}
+
+		/**
+		 * @param products
+		 *            the products to set
+		 */
+		public void setProducts(List<Product> products) {
+			this.products = products;
+		}
+
+		/**
+		 * @param url
+		 *            the url to set
+		 */
+		public void setUrl(String url) {
+			this.url = url;
+		}
+
+	}
+
+	/**
+	 * The opened cache file and the products decoded from it.
+	 * 
+	 * @author Sebastian Kirchner
+	 * 
+	 */
+	private static class Snapshot {
+
+		private volatile long checkedAt;
+
+		private final CacheFile file;
+
+		private final long lastModified;
+
+		private final long length;
+
+		/**
+		 * url -> products decoded from the cache file
+		 */
+		private final ConcurrentMap<String, List<Product>> products = new ConcurrentHashMap<String, List<Product>>();
+
+		Snapshot(final CacheFile file) {
+			this.file = file;
+			this.lastModified = USER_BINARY_CACHE_FILE.lastModified();
+			this.length = USER_BINARY_CACHE_FILE.length();
+			this.checkedAt = System.currentTimeMillis();
+		}
+
+		boolean isModified() {
+			return USER_BINARY_CACHE_FILE.lastModified() != this.lastModified
+					|| USER_BINARY_CACHE_FILE.length() != this.length;
+		}
+	}
+
+	/**
+	 * The minimal time in milliseconds between two checks, whether the cache file has been changed
+	 * by another process.
+	 */
+	public static final long FILE_CHECK_INTERVAL = 1000L;
+
+	private static JAXBContext context = null;
+
+	private static volatile Snapshot snapshot = null;
+
+	private static final Log LOG = LogFactory.getLog(LocalCache.class);
+
+	private static final String CACHE_FILE_NAME = "localCache.xml"; //$NON-NLS-1$
+	private static final File USER_HOME = new File(System.getProperty("user.home")); //$NON-NLS-1$
+	private static final File DEFAULT_CACHE_FILE = new File(CACHE_FILE_NAME);
+	private static final String USER_SETTINGS_FOLDER_NAME = ".lightningbug"; //$NON-NLS-1$
+	private static final File USER_SETTINGS_FOLDER = new File(USER_HOME, USER_SETTINGS_FOLDER_NAME);
+	private static final File USER_CACHE_FILE = new File(USER_SETTINGS_FOLDER, CACHE_FILE_NAME);
+	private static final String BINARY_CACHE_FILE_NAME = "localCache.bin"; //$NON-NLS-1$
+	private static final File USER_BINARY_CACHE_FILE = new File(USER_SETTINGS_FOLDER,
+			BINARY_CACHE_FILE_NAME);
+
+	private static JAXBContext getContext() throws JAXBException {
+		if(context == null){
+			context = JAXBContext.newInstance(Cache.class, Connection.class, Product.class);
+		}
+		return context;
+	}
+
+	/**
+	 * Returns the cached products of the bugzilla instance the given client is connected to. The
+	 * products are copies, so the caller may change them without changing the cache.
+	 * 
+	 * @param client
+	 *            the client identifying the bugzilla instance by its URL
+	 * @return <code>null</code>, if there are no cached products for the bugzilla instance
+	 */
+	public static List<Product> getProducts(final BugzillaClient client) {
+		final Snapshot current = current();
+		if(current.file == null){
+			return null;
+		}
+		final String urlString = client.getURL().toString();
+		List<Product> products = current.products.get(urlString);
+		if(products == null){
+			if(!current.file.contains(urlString)){
+				return null;
+			}
+			try{
+				products = current.file.readProducts(urlString);
+			}catch(final IOException e){
+				// the products are replaced by the next call of setProducts
+				LOG.warn("The cached products could not be read", e); //$NON-NLS-1$
+				return null;
+			}
+			final List<Product> concurrent = current.products.putIfAbsent(urlString, products);
+			if(concurrent != null){
+				products = concurrent;
+			}
+		}
+		return copy(products);
+	}
+
+	/**
+	 * @return copies of the given products, that share no sets with them
+	 */
+	private static List<Product> copy(final List<Product> products) {
+		final List<Product> copies = new ArrayList<Product>(products.size());
+		for(final Product product : products){
+			copies.add(new Product.Builder().id(product.getId()).name(product.getName())
+					.components(copy(product.getComponents())).versions(copy(product.getVersions()))
+					.milestones(copy(product.getMilestones()))
+					.severities(copy(product.getSeverities())).build());
+		}
+		return copies;
+	}
+
+	private static Set<String> copy(final Set<String> values) {
+		return values == null ? null : new TreeSet<String>(values);
+	}
+
+	/**
+	 * @return the current snapshot of the cache file, that is reloaded if the file has been
+	 *         changed
+	 */
+	private static Snapshot current() {
+		final Snapshot current = snapshot;
+		if(current != null){
+			final long now = System.currentTimeMillis();
+			if(now - current.checkedAt < FILE_CHECK_INTERVAL){
+				return current;
+			}
+			if(!current.isModified()){
+				current.checkedAt = now;
+				return current;
+			}
+		}
+		synchronized(LocalCache.class){
+			// another thread might have reloaded the file in the meantime
+			if(snapshot == current){
+				snapshot = new Snapshot(open());
+			}
+			return snapshot;
+		}
+	}
+
+	/**
+	 * Opens the binary cache file. If there is none, the XML file of earlier versions is migrated.
+	 * 
+	 * @return <code>null</code>, if the cache file is not available
+	 */
+	private static CacheFile open() {
+		if(!USER_BINARY_CACHE_FILE.isFile() && !migrate()){
+			return null;
+		}
+		try{
+			return CacheFile.open(USER_BINARY_CACHE_FILE);
+		}catch(final IOException e){
+			LOG.warn("The local cache file could not be read", e); //$NON-NLS-1$
+			return null;
+		}
+	}
+
+	/**
+	 * Converts the XML cache file of earlier versions into the binary cache file.
+	 * 
+	 * @return <code>true</code> if a binary cache file has been written
+	 */
+	private static boolean migrate() {
+		// find the cache file in the user home folder
+		File cacheFile = null;
+		if(USER_CACHE_FILE.isFile()){
+			LOG.info("Local cache file in the user home directory found "); //$NON-NLS-1$
+			cacheFile = USER_CACHE_FILE;
+		}else{
+			LOG.info("Local cache file could not be found in the users home dir. " //$NON-NLS-1$
+					+ "Looking for a fallback cache file"); //$NON-NLS-1$
+			if(DEFAULT_CACHE_FILE.isFile()){
+				LOG.info("fallback cache file found"); //$NON-NLS-1$
+				cacheFile = DEFAULT_CACHE_FILE;
+			}
+		}
+		if(cacheFile == null){
+			LOG.info("Local cache file could not be found. Local cache is not available"); //$NON-NLS-1$
+			return false;
+		}
+		try{
+			final Unmarshaller unmarshaller = getContext().createUnmarshaller();
+			final Cache cache = (Cache) unmarshaller.unmarshal(cacheFile);
+			final Map<String, ByteBuffer> blocks = new LinkedHashMap<String, ByteBuffer>();
+			for(final Connection connection : cache.getConnections()){
+				blocks.put(connection.getUrl(), CacheFile.encode(connection.getProducts()));
+			}
+			if(!save(blocks)){
+				return false;
+			}
+			LOG.info("Local cache file migrated to " + USER_BINARY_CACHE_FILE.getAbsolutePath()); //$NON-NLS-1$
+			return true;
+		}catch(JAXBException e){
+			LOG.warn("Error while creating the JAXBContext for the local cache", e); //$NON-NLS-1$
+			return false;
+		}
+	}
+
+	/**
+	 * @param blocks
+	 *            the encoded products by the url of their connection
+	 * @return <code>true</code> if the cache file has been written
+	 */
+	private static boolean save(final Map<String, ByteBuffer> blocks) {
+		if(!USER_SETTINGS_FOLDER.isDirectory() && !USER_SETTINGS_FOLDER.mkdir()){
+			LOG.error("The following folder could not be created. The local cache will not be saved: " //$NON-NLS-1$
+					+ USER_SETTINGS_FOLDER.getAbsolutePath());
+			return false;
+		}
+		try{
+			CacheFile.write(USER_BINARY_CACHE_FILE, blocks);
+			return true;
+		}catch(final IOException e){
+			LOG.warn("Error while writing the local cache file", e); //$NON-NLS-1$
+			return false;
+		}
+	}
+
+	/**
+	 * Stores the products of the bugzilla instance the given client is connected to. The cached
+	 * products of other bugzilla instances are copied without decoding them. The cache keeps
+	 * copies of the given products, later changes of them are not cached.
+	 * 
+	 * @param client
+	 *            the client identifying the bugzilla instance by its URL
+	 * @param products
+	 *            the products of the bugzilla instance
+	 */
+	public static void setProducts(final BugzillaClient client, final List<Product> products) {
+		final String urlString = client.getURL().toString();
+		synchronized(LocalCache.class){
+			final Map<String, ByteBuffer> blocks = new LinkedHashMap<String, ByteBuffer>();
+			final CacheFile cacheFile = current().file;
+			if(cacheFile != null){
+				for(final String url : cacheFile.getUrls()){
+					blocks.put(url, cacheFile.getBlock(url));
+				}
+			}
+			blocks.put(urlString, CacheFile.encode(products));
+			if(!save(blocks)){
+				return;
+			}
+			// keep the decoded products of the other connections, they haven't changed
+			final Snapshot previous = snapshot;
+			final Snapshot updated = new Snapshot(open());
+			if(previous != null){
+				updated.products.putAll(previous.products);
+			}
+			updated.products.put(urlString, copy(products));
+			snapshot = updated;
+		}
+	}
+
+	private LocalCache() {
+		// for static use only
+	}
+
+}
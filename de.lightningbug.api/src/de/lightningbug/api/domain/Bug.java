@@ -1,7 +1,9 @@
 package de.lightningbug.api.domain;
 
+import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
 import java.text.MessageFormat;
+import java.util.Date;
 import java.util.Set;
 
 import javax.xml.bind.annotation.XmlRootElement;
@@ -18,6 +20,170 @@ import de.lightningbug.api.BugzillaClient;
 @XmlRootElement
 public class Bug implements Comparable<Bug> {
 
+	/**
+	 * Sets the properties of a {@link Bug} directly, without firing property change events or
+	 * validating the version against the product. Used to construct many bugs at once, e.g. from
+	 * the results of a search.
+	 * 
+	 * @author Sebastian Kirchner
+	 * 
+	 */
+	public static class Builder {
+
+		private User assignee;
+
+		private String component;
+
+		private Set<Integer> dependsOn;
+
+		private String description;
+
+		private Double estimatedTime;
+
+		private Integer id;
+
+		private Date lastChangeTime;
+
+		private Product product;
+
+		private String severity;
+
+		private String status;
+
+		private String summary;
+
+		private String version;
+
+		/**
+		 * @return a new {@link Bug} holding the values set on this builder. The builder can be
+		 *         reused afterwards.
+		 */
+		public Bug build() {
+			return new Bug(this);
+		}
+
+		/**
+		 * @param assignee
+		 *            the user to whom the bug is assigned to
+		 * @return this builder
+		 */
+		public Builder assignee(final User assignee) {
+			this.assignee = assignee;
+			return this;
+		}
+
+		/**
+		 * @param component
+		 *            The name of a component in the product
+		 * @return this builder
+		 */
+		public Builder component(final String component) {
+			this.component = component;
+			return this;
+		}
+
+		/**
+		 * @param dependsOn
+		 *            the id's of the bugs this bug depends on
+		 * @return this builder
+		 */
+		public Builder dependsOn(final Set<Integer> dependsOn) {
+			this.dependsOn = dependsOn;
+			return this;
+		}
+
+		/**
+		 * @param description
+		 *            The initial description for this bug
+		 * @return this builder
+		 */
+		public Builder description(final String description) {
+			this.description = description;
+			return this;
+		}
+
+		/**
+		 * @param estimatedTime
+		 *            The estimated time of the bug
+		 * @return this builder
+		 */
+		public Builder estimatedTime(final Double estimatedTime) {
+			this.estimatedTime = estimatedTime;
+			return this;
+		}
+
+		/**
+		 * @param id
+		 *            The unique numeric id of this bug
+		 * @return this builder
+		 */
+		public Builder id(final Integer id) {
+			this.id = id;
+			return this;
+		}
+
+		/**
+		 * @param lastChangeTime
+		 *            When the bug was last changed
+		 * @return this builder
+		 */
+		public Builder lastChangeTime(final Date lastChangeTime) {
+			this.lastChangeTime = lastChangeTime;
+			return this;
+		}
+
+		/**
+		 * @param product
+		 *            the product the bug is being filed against. The version is not checked against
+		 *            the versions of the product.
+		 * @return this builder
+		 */
+		public Builder product(final Product product) {
+			this.product = product;
+			return this;
+		}
+
+		/**
+		 * @param severity
+		 *            the severity of the bug
+		 * @return this builder
+		 */
+		public Builder severity(final String severity) {
+			this.severity = severity;
+			return this;
+		}
+
+		/**
+		 * @param status
+		 *            The current status of the bug
+		 * @return this builder
+		 */
+		public Builder status(final String status) {
+			this.status = status;
+			return this;
+		}
+
+		/**
+		 * @param summary
+		 *            A brief description of the bug
+		 * @return this builder
+		 */
+		public Builder summary(final String summary) {
+			this.summary = summary;
+			return this;
+		}
+
+		/**
+		 * @param version
+		 *            The version of the product the bug was found in
+		 * @return this builder
+		 */
+		public Builder version(final String version) {
+			this.version = version;
+			return this;
+		}
+	}
+
 	/**
 	 * Constant for the name of the property
 	 */
@@ -48,6 +214,11 @@ public class Bug implements Comparable<Bug> {
 	 */
 	public static final String ID = "id"; //$NON-NLS-1$
 
+	/**
+	 * Constant for the name of the appropriate bean property
+	 */
+	public static final String LAST_CHANGE_TIME = "lastChangeTime"; //$NON-NLS-1$
+
 	/**
 	 * Constant for the name of the appropriate bean property
 	 */
@@ -85,7 +256,13 @@ public class Bug implements Comparable<Bug> {
 
 	private Integer id;
 
-	private final PropertyChangeSupport pcs = new PropertyChangeSupport(this);
+	private Date lastChangeTime;
+
+	/**
+	 * created when the first listener is added. Volatile, so setters called on other threads
+	 * than the one adding the listener notify it.
+	 */
+	private volatile PropertyChangeSupport pcs = null;
 
 	private Product product;
 
@@ -97,6 +274,64 @@ public class Bug implements Comparable<Bug> {
 
 	private String version;
 
+	/**
+	 * Constructs a bug without any values
+	 */
+	public Bug() {
+		super();
+	}
+
+	/**
+	 * Copies the values of a builder without firing property change events.
+	 * 
+	 * @param builder
+	 *            the builder holding the values
+	 */
+	private Bug(final Builder builder) {
+		this();
+		this.assignee = builder.assignee;
+		this.component = builder.component;
+		this.dependsOn = builder.dependsOn;
+		this.description = builder.description;
+		this.estimatedTime = builder.estimatedTime;
+		this.id = builder.id;
+		this.lastChangeTime = builder.lastChangeTime;
+		this.product = builder.product;
+		this.severity = builder.severity;
+		this.status = builder.status;
+		this.summary = builder.summary;
+		this.version = builder.version;
+	}
+
+	/**
+	 * Adds a listener, that is notified about changes of all properties.
+	 * 
+	 * @param listener
+	 *            the listener to add
+	 */
+	public synchronized void addPropertyChangeListener(final PropertyChangeListener listener) {
+		if(this.pcs == null){
+			this.pcs = new PropertyChangeSupport(this);
+		}
+		this.pcs.addPropertyChangeListener(listener);
+	}
+
+	/**
+	 * Adds a listener, that is notified about changes of a single property.
+	 * 
+	 * @param propertyName
+	 *            the name of the property (e.g. {@link Bug#STATUS})
+	 * @param listener
+	 *            the listener to add
+	 */
+	public synchronized void addPropertyChangeListener(final String propertyName,
+			final PropertyChangeListener listener) {
+		if(this.pcs == null){
+			this.pcs = new PropertyChangeSupport(this);
+		}
+		this.pcs.addPropertyChangeListener(propertyName, listener);
+	}
+
 	@Override
 	public int compareTo(final Bug bug) {
 		if(bug == null){
@@ -111,6 +346,15 @@ public class Bug implements Comparable<Bug> {
 		return this.getId().compareTo(bug.getId());
 	}
 
+	private void firePropertyChange(final String propertyName, final Object oldValue,
+			final Object newValue) {
+		// nothing to do until the first listener has been added
+		final PropertyChangeSupport pcs = this.pcs;
+		if(pcs != null){
+			pcs.firePropertyChange(propertyName, oldValue, newValue);
+		}
+	}
+
 	/**
 	 * Getter for the user to whom the bug is assigned to
 	 * 
@@ -156,6 +400,13 @@ public class Bug implements Comparable<Bug> {
 		return this.id;
 	}
 
+	/**
+	 * @return When the bug was last changed, <code>null</code> if unknown.
+	 */
+	public Date getLastChangeTime() {
+		return this.lastChangeTime;
+	}
+
 	/**
 	 * @return the product the bug is being filed against.
 	 */
@@ -191,6 +442,29 @@ public class Bug implements Comparable<Bug> {
 		return this.version;
 	}
 
+	/**
+	 * @param listener
+	 *            the listener to remove
+	 */
+	public synchronized void removePropertyChangeListener(final PropertyChangeListener listener) {
+		if(this.pcs != null){
+			this.pcs.removePropertyChangeListener(listener);
+		}
+	}
+
+	/**
+	 * @param propertyName
+	 *            the name of the property, the listener has been added for
+	 * @param listener
+	 *            the listener to remove
+	 */
+	public synchronized void removePropertyChangeListener(final String propertyName,
+			final PropertyChangeListener listener) {
+		if(this.pcs != null){
+			this.pcs.removePropertyChangeListener(propertyName, listener);
+		}
+	}
+
 	/**
 	 * Setter for the user to whom the bug is assigned to
 	 * 
@@ -200,7 +474,7 @@ public class Bug implements Comparable<Bug> {
 	public void setAssignee(final User assignee) {
 		final User oldValue = this.assignee;
 		this.assignee = assignee;
-		this.pcs.firePropertyChange(ASSIGNEE, oldValue, this.assignee);
+		this.firePropertyChange(ASSIGNEE, oldValue, this.assignee);
 	}
 
 	/**
@@ -210,7 +484,7 @@ public class Bug implements Comparable<Bug> {
 	public void setComponent(final String component) {
 		final String oldValue = this.component;
 		this.component = component;
-		this.pcs.firePropertyChange(COMPONENT, oldValue, this.component);
+		this.firePropertyChange(COMPONENT, oldValue, this.component);
 	}
 
 	/**
@@ -222,7 +496,7 @@ public class Bug implements Comparable<Bug> {
 	public void setDependsOn(final Set<Integer> dependsOn) {
 		final Set<Integer> oldValue = this.dependsOn;
 		this.dependsOn = dependsOn;
-		this.pcs.firePropertyChange(DEPENDS_ON, oldValue, this.dependsOn);
+		this.firePropertyChange(DEPENDS_ON, oldValue, this.dependsOn);
 	}
 
 	/**
@@ -233,7 +507,7 @@ public class Bug implements Comparable<Bug> {
 	public void setDescription(final String description) {
 		final String oldValue = this.description;
 		this.description = description;
-		this.pcs.firePropertyChange(DESCRIPTION, oldValue, this.description);
+		this.firePropertyChange(DESCRIPTION, oldValue, this.description);
 	}
 
 	/**
@@ -243,7 +517,7 @@ public class Bug implements Comparable<Bug> {
 	public void setEstimatedTime(final Double estimatedTime) {
 		final Object oldValue = this.estimatedTime;
 		this.estimatedTime = estimatedTime;
-		this.pcs.firePropertyChange(ESTIMATED_TIME, oldValue, this.estimatedTime);
+		this.firePropertyChange(ESTIMATED_TIME, oldValue, this.estimatedTime);
 	}
 
 	/**
@@ -253,7 +527,17 @@ public class Bug implements Comparable<Bug> {
 	public void setId(final Integer id) {
 		final Integer oldValue = this.id;
 		this.id = id;
-		this.pcs.firePropertyChange(ID, oldValue, this.id);
+		this.firePropertyChange(ID, oldValue, this.id);
+	}
+
+	/**
+	 * @param lastChangeTime
+	 *            When the bug was last changed.
+	 */
+	public void setLastChangeTime(final Date lastChangeTime) {
+		final Date oldValue = this.lastChangeTime;
+		this.lastChangeTime = lastChangeTime;
+		this.firePropertyChange(LAST_CHANGE_TIME, oldValue, this.lastChangeTime);
 	}
 
 	/**
@@ -296,8 +580,8 @@ public class Bug implements Comparable<Bug> {
 	public void setProduct(final Product product) {
 		final Product oldValue = this.product;
 		this.product = product;
-		this.pcs.firePropertyChange(PRODUCT, oldValue, this.product);
-		if(this.getVersion() != null && product != null
+		this.firePropertyChange(PRODUCT, oldValue, this.product);
+		if(this.getVersion() != null && product != null && product.getVersions() != null
 				&& !product.getVersions().contains(this.getVersion())){
 			this.setVersion(null);
 		}
@@ -324,7 +608,7 @@ public class Bug implements Comparable<Bug> {
 	public void setSeverity(final String severity) {
 		final String oldValue = this.severity;
 		this.severity = severity;
-		this.pcs.firePropertyChange(SEVERITY, oldValue, this.severity);
+		this.firePropertyChange(SEVERITY, oldValue, this.severity);
 	}
 
 	/**
@@ -334,7 +618,7 @@ public class Bug implements Comparable<Bug> {
 	public void setStatus(final String status) {
 		final String oldValue = this.status;
 		this.status = status;
-		this.pcs.firePropertyChange(STATUS, oldValue, this.status);
+		this.firePropertyChange(STATUS, oldValue, this.status);
 	}
 
 	/**
@@ -344,7 +628,7 @@ public class Bug implements Comparable<Bug> {
 	public void setSummary(final String summary) {
 		final String oldValue = this.summary;
 		this.summary = summary;
-		this.pcs.firePropertyChange(SUMMARY, oldValue, this.summary);
+		this.firePropertyChange(SUMMARY, oldValue, this.summary);
 	}
 
 	/**
@@ -361,8 +645,8 @@ public class Bug implements Comparable<Bug> {
 	public void setVersion(final String version) {
 		// version must match one of the versions of the associated product if
 		// product and version is not null
-		if(this.getProduct() != null && this.version != null
-				&& !this.getProduct().getVersions().contains(version)){
+		if(this.getProduct() != null && this.getProduct().getVersions() != null
+				&& this.version != null && !this.getProduct().getVersions().contains(version)){
 			final String pattern = "The product {0} doesn't ship in the version {1}"; //$NON-NLS-1$
 			final String message = MessageFormat.format(pattern, this.getProduct().getName(),
 					version);
@@ -370,7 +654,7 @@ public class Bug implements Comparable<Bug> {
 		}
 		final Object oldValue = this.version;
 		this.version = version;
-		this.pcs.firePropertyChange(VERSION, oldValue, this.version);
+		this.firePropertyChange(VERSION, oldValue, this.version);
 	}
 
 	/*
@@ -382,7 +666,8 @@ public class Bug implements Comparable<Bug> {
 	public String toString() {
 		return "Bug [component=" + this.component + ", dependsOn=" + this.dependsOn + ", description=" //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ 
 				+ this.description
-				+ ", estimatedTime=" + this.estimatedTime + ", id=" + this.id + ", pcs=" + this.pcs //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ 
+				+ ", estimatedTime=" + this.estimatedTime + ", id=" + this.id //$NON-NLS-1$ //$NON-NLS-2$
+				+ ", lastChangeTime=" + this.lastChangeTime + ", pcs=" + this.pcs //$NON-NLS-1$ //$NON-NLS-2$
 				+ ", product=" + this.product + ", severity=" + this.severity + ", summary=" + this.summary //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 				+ ", version=" + this.version + "]"; //$NON-NLS-1$ //$NON-NLS-2$ 
 	}
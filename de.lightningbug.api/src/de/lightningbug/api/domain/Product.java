@@ -3,6 +3,7 @@
  */
 package de.lightningbug.api.domain;
 
+import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
 import java.util.Set;
 
@@ -20,6 +21,95 @@ import javax.xml.bind.annotation.XmlElement;
  */
 public class Product {
 
+	/**
+	 * Sets the properties of a {@link Product} directly, without firing property change events.
+	 * 
+	 * @author Sebastian Kirchner
+	 * 
+	 */
+	public static class Builder {
+
+		private Set<String> components;
+
+		private Integer id;
+
+		private Set<String> milestones;
+
+		private String name;
+
+		private Set<String> severities;
+
+		private Set<String> versions;
+
+		/**
+		 * @return a new {@link Product} holding the values set on this builder. The builder can be
+		 *         reused afterwards.
+		 */
+		public Product build() {
+			return new Product(this);
+		}
+
+		/**
+		 * @param components
+		 *            the components of the product
+		 * @return this builder
+		 */
+		public Builder components(final Set<String> components) {
+			this.components = components;
+			return this;
+		}
+
+		/**
+		 * @param id
+		 *            the id of the product
+		 * @return this builder
+		 */
+		public Builder id(final Integer id) {
+			this.id = id;
+			return this;
+		}
+
+		/**
+		 * @param milestones
+		 *            the milestones of the product
+		 * @return this builder
+		 */
+		public Builder milestones(final Set<String> milestones) {
+			this.milestones = milestones;
+			return this;
+		}
+
+		/**
+		 * @param name
+		 *            the name of the product
+		 * @return this builder
+		 */
+		public Builder name(final String name) {
+			this.name = name;
+			return this;
+		}
+
+		/**
+		 * @param severities
+		 *            the legal severities of bugs of the product
+		 * @return this builder
+		 */
+		public Builder severities(final Set<String> severities) {
+			this.severities = severities;
+			return this;
+		}
+
+		/**
+		 * @param versions
+		 *            the versions of the product
+		 * @return this builder
+		 */
+		public Builder versions(final Set<String> versions) {
+			this.versions = versions;
+			return this;
+		}
+	}
+
 	/**
 	 * Konstante des Namens der Eigenschaft {@link Product#components}
 	 */
@@ -58,7 +148,11 @@ public class Product {
 
 	private String name;
 
-	private final PropertyChangeSupport pcs = new PropertyChangeSupport(this);
+	/**
+	 * created when the first listener is added. Volatile, so setters called on other threads
+	 * than the one adding the listener notify it.
+	 */
+	private volatile PropertyChangeSupport pcs = null;
 
 	private Set<String> severities;
 
@@ -85,6 +179,60 @@ public class Product {
 		this.name = name;
 	}
 
+	/**
+	 * Copies the values of a builder without firing property change events.
+	 * 
+	 * @param builder
+	 *            the builder holding the values
+	 */
+	private Product(final Builder builder) {
+		this();
+		this.components = builder.components;
+		this.id = builder.id;
+		this.milestones = builder.milestones;
+		this.name = builder.name;
+		this.severities = builder.severities;
+		this.versions = builder.versions;
+	}
+
+	/**
+	 * Adds a listener, that is notified about changes of all properties.
+	 * 
+	 * @param listener
+	 *            the listener to add
+	 */
+	public synchronized void addPropertyChangeListener(final PropertyChangeListener listener) {
+		if(this.pcs == null){
+			this.pcs = new PropertyChangeSupport(this);
+		}
+		this.pcs.addPropertyChangeListener(listener);
+	}
+
+	/**
+	 * Adds a listener, that is notified about changes of a single property.
+	 * 
+	 * @param propertyName
+	 *            the name of the property (e.g. {@link Product#VERSIONS})
+	 * @param listener
+	 *            the listener to add
+	 */
+	public synchronized void addPropertyChangeListener(final String propertyName,
+			final PropertyChangeListener listener) {
+		if(this.pcs == null){
+			this.pcs = new PropertyChangeSupport(this);
+		}
+		this.pcs.addPropertyChangeListener(propertyName, listener);
+	}
+
+	private void firePropertyChange(final String propertyName, final Object oldValue,
+			final Object newValue) {
+		// nothing to do until the first listener has been added
+		final PropertyChangeSupport pcs = this.pcs;
+		if(pcs != null){
+			pcs.firePropertyChange(propertyName, oldValue, newValue);
+		}
+	}
+
 	/**
 	 * Gibt den Wert der Eigenschaft {@link Product#components} zurck.
 	 * 
@@ -138,6 +286,29 @@ public class Product {
 		return this.versions;
 	}
 
+	/**
+	 * @param listener
+	 *            the listener to remove
+	 */
+	public synchronized void removePropertyChangeListener(final PropertyChangeListener listener) {
+		if(this.pcs != null){
+			this.pcs.removePropertyChangeListener(listener);
+		}
+	}
+
+	/**
+	 * @param propertyName
+	 *            the name of the property, the listener has been added for
+	 * @param listener
+	 *            the listener to remove
+	 */
+	public synchronized void removePropertyChangeListener(final String propertyName,
+			final PropertyChangeListener listener) {
+		if(this.pcs != null){
+			this.pcs.removePropertyChangeListener(propertyName, listener);
+		}
+	}
+
 	/**
 	 * Setzt den Wert der Eigenschaft {@link Product#components}.
 	 * 
@@ -147,7 +318,7 @@ public class Product {
 	public void setComponents(final Set<String> components) {
 		final Set<String> oldValue = this.components;
 		this.components = components;
-		this.pcs.firePropertyChange(COMPONENTS, oldValue, this.components);
+		this.firePropertyChange(COMPONENTS, oldValue, this.components);
 	}
 
 	/**
@@ -159,7 +330,7 @@ public class Product {
 	public void setId(final Integer id) {
 		final Integer oldValue = this.id;
 		this.id = id;
-		this.pcs.firePropertyChange(ID, oldValue, this.id);
+		this.firePropertyChange(ID, oldValue, this.id);
 	}
 
 	/**
@@ -171,7 +342,7 @@ public class Product {
 	public void setMilestones(final Set<String> milestones) {
 		final Set<String> oldValue = this.milestones;
 		this.milestones = milestones;
-		this.pcs.firePropertyChange(VERSIONS, oldValue, this.milestones);
+		this.firePropertyChange(VERSIONS, oldValue, this.milestones);
 	}
 
 	/**
@@ -183,7 +354,7 @@ public class Product {
 	public void setName(final String name) {
 		final String oldValue = this.name;
 		this.name = name;
-		this.pcs.firePropertyChange(NAME, oldValue, this.name);
+		this.firePropertyChange(NAME, oldValue, this.name);
 	}
 
 	/**
@@ -195,7 +366,7 @@ public class Product {
 	public void setSeverities(final Set<String> severities) {
 		final Set<String> oldValue = this.severities;
 		this.severities = severities;
-		this.pcs.firePropertyChange(SEVERITIES, oldValue, this.severities);
+		this.firePropertyChange(SEVERITIES, oldValue, this.severities);
 	}
 
 	/**
@@ -207,7 +378,7 @@ public class Product {
 	public void setVersions(final Set<String> versions) {
 		final Set<String> oldValue = this.versions;
 		this.versions = versions;
-		this.pcs.firePropertyChange(VERSIONS, oldValue, this.versions);
+		this.firePropertyChange(VERSIONS, oldValue, this.versions);
 	}
 
 	/**
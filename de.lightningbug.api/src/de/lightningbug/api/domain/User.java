@@ -1,5 +1,6 @@
 package de.lightningbug.api.domain;
 
+import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
 
 /**
@@ -10,6 +11,72 @@ import java.beans.PropertyChangeSupport;
  */
 public class User {
 
+	/**
+	 * Sets the properties of a {@link User} directly, without firing property change events. Used
+	 * to construct many users at once.
+	 * 
+	 * @author Sebastian Kirchner
+	 * 
+	 */
+	public static class Builder {
+
+		private String email;
+
+		private Integer id;
+
+		private String loginName;
+
+		private String realName;
+
+		/**
+		 * @return a new {@link User} holding the values set on this builder. The builder can be
+		 *         reused afterwards.
+		 */
+		public User build() {
+			return new User(this);
+		}
+
+		/**
+		 * @param email
+		 *            The email address of the user
+		 * @return this builder
+		 */
+		public Builder email(final String email) {
+			this.email = email;
+			return this;
+		}
+
+		/**
+		 * @param id
+		 *            The unique integer ID that Bugzilla uses to represent this user
+		 * @return this builder
+		 */
+		public Builder id(final Integer id) {
+			this.id = id;
+			return this;
+		}
+
+		/**
+		 * @param loginName
+		 *            The login name of the user
+		 * @return this builder
+		 */
+		public Builder loginName(final String loginName) {
+			this.loginName = loginName;
+			return this;
+		}
+
+		/**
+		 * @param realName
+		 *            The actual name of the user
+		 * @return this builder
+		 */
+		public Builder realName(final String realName) {
+			this.realName = realName;
+			return this;
+		}
+	}
+
 	/**
 	 * Constant for the name of the property {@link User#email}
 	 */
@@ -36,10 +103,64 @@ public class User {
 
 	private String loginName;
 
-	private final PropertyChangeSupport pcs = new PropertyChangeSupport(this);
+	/**
+	 * created when the first listener is added. Volatile, so setters called on other threads
+	 * than the one adding the listener notify it.
+	 */
+	private volatile PropertyChangeSupport pcs = null;
 
 	private String realName;
 
+	/**
+	 * Constructs a user without any values
+	 */
+	public User() {
+		super();
+	}
+
+	/**
+	 * Copies the values of a builder without firing property change events.
+	 * 
+	 * @param builder
+	 *            the builder holding the values
+	 */
+	private User(final Builder builder) {
+		this();
+		this.email = builder.email;
+		this.id = builder.id;
+		this.loginName = builder.loginName;
+		this.realName = builder.realName;
+	}
+
+	/**
+	 * Adds a listener, that is notified about changes of all properties.
+	 * 
+	 * @param listener
+	 *            the listener to add
+	 */
+	public synchronized void addPropertyChangeListener(final PropertyChangeListener listener) {
+		if(this.pcs == null){
+			this.pcs = new PropertyChangeSupport(this);
+		}
+		this.pcs.addPropertyChangeListener(listener);
+	}
+
+	/**
+	 * Adds a listener, that is notified about changes of a single property.
+	 * 
+	 * @param propertyName
+	 *            the name of the property (e.g. {@link User#LOGIN_NAME})
+	 * @param listener
+	 *            the listener to add
+	 */
+	public synchronized void addPropertyChangeListener(final String propertyName,
+			final PropertyChangeListener listener) {
+		if(this.pcs == null){
+			this.pcs = new PropertyChangeSupport(this);
+		}
+		this.pcs.addPropertyChangeListener(propertyName, listener);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -88,6 +209,15 @@ public class User {
 		return true;
 	}
 
+	private void firePropertyChange(final String propertyName, final Object oldValue,
+			final Object newValue) {
+		// nothing to do until the first listener has been added
+		final PropertyChangeSupport pcs = this.pcs;
+		if(pcs != null){
+			pcs.firePropertyChange(propertyName, oldValue, newValue);
+		}
+	}
+
 	/**
 	 * Getter for the email address of the user. Must not be <code>null</code>
 	 * 
@@ -143,6 +273,29 @@ public class User {
 		return result;
 	}
 
+	/**
+	 * @param listener
+	 *            the listener to remove
+	 */
+	public synchronized void removePropertyChangeListener(final PropertyChangeListener listener) {
+		if(this.pcs != null){
+			this.pcs.removePropertyChangeListener(listener);
+		}
+	}
+
+	/**
+	 * @param propertyName
+	 *            the name of the property, the listener has been added for
+	 * @param listener
+	 *            the listener to remove
+	 */
+	public synchronized void removePropertyChangeListener(final String propertyName,
+			final PropertyChangeListener listener) {
+		if(this.pcs != null){
+			this.pcs.removePropertyChangeListener(propertyName, listener);
+		}
+	}
+
 	/**
 	 * Setter for the email address of the user. {@link User#email}.
 	 * 
@@ -152,7 +305,7 @@ public class User {
 	public void setEMail(final String email) {
 		final String oldValue = this.email;
 		this.email = email;
-		this.pcs.firePropertyChange(E_MAIL, oldValue, this.email);
+		this.firePropertyChange(E_MAIL, oldValue, this.email);
 	}
 
 	/**
@@ -166,7 +319,7 @@ public class User {
 	public void setId(final Integer id) {
 		final Integer oldValue = this.id;
 		this.id = id;
-		this.pcs.firePropertyChange(upper_prop_name, oldValue, this.id);
+		this.firePropertyChange(upper_prop_name, oldValue, this.id);
 	}
 
 	/**
@@ -179,7 +332,7 @@ public class User {
 	public void setLoginName(final String loginName) {
 		final String oldValue = this.loginName;
 		this.loginName = loginName;
-		this.pcs.firePropertyChange(LOGIN_NAME, oldValue, this.loginName);
+		this.firePropertyChange(LOGIN_NAME, oldValue, this.loginName);
 	}
 
 	/**
@@ -191,7 +344,7 @@ public class User {
 	public void setRealName(final String realName) {
 		final String oldValue = this.realName;
 		this.realName = realName;
-		this.pcs.firePropertyChange(REAL_NAME, oldValue, this.realName);
+		this.firePropertyChange(REAL_NAME, oldValue, this.realName);
 	}
 
 	/*
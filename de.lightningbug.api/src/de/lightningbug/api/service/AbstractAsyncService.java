@@ -0,0 +1,73 @@
+package de.lightningbug.api.service;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+import de.lightningbug.api.BugzillaClient;
+
+/**
+ * Base class of the services, that run their calls on an {@link Executor} and return a
+ * {@link CompletableFuture} instead of blocking the caller.
+ * 
+ * @author Sebastian Kirchner
+ * 
+ */
+public abstract class AbstractAsyncService extends AbstractService {
+
+	private final Executor executor;
+
+	/**
+	 * @param client
+	 *            the client used by the service to query information from the
+	 *            bugzilla instance
+	 * @param executor
+	 *            the executor running the calls or <code>null</code> to use the executor of the
+	 *            client ({@link BugzillaClient#getExecutorService()})
+	 */
+	public AbstractAsyncService(final BugzillaClient client, final Executor executor) {
+		super(client);
+		this.executor = executor;
+	}
+
+	/**
+	 * @return the executor running the calls of this service
+	 */
+	public Executor getExecutor() {
+		return this.executor != null ? this.executor : this.client.getExecutorService();
+	}
+
+	/**
+	 * Runs the given call on the executor of this service. The future completes exceptionally
+	 * with the exception thrown by the call.
+	 * 
+	 * @param call
+	 *            the blocking call
+	 * @return the future result of the call
+	 */
+	protected <T> CompletableFuture<T> callAsync(final Callable<T> call) {
+		return this.supplyAsync(() -> {
+			try{
+				return call.call();
+			}catch(final RuntimeException e){
+				throw e;
+			}catch(final Exception e){
+				throw new CompletionException(e);
+			}
+		});
+	}
+
+	/**
+	 * Runs the given call on the executor of this service.
+	 * 
+	 * @param call
+	 *            the blocking call
+	 * @return the future result of the call
+	 */
+	protected <T> CompletableFuture<T> supplyAsync(final Supplier<T> call) {
+		return CompletableFuture.supplyAsync(call, this.getExecutor());
+	}
+
+}
@@ -4,7 +4,7 @@ import de.lightningbug.api.BugzillaClient;
 
 public abstract class AbstractService {
 
-	protected BugzillaClient client = null;
+	protected final BugzillaClient client;
 
 	/**
 	 * @param client
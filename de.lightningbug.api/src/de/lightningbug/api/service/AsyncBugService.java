@@ -0,0 +1,82 @@
+package de.lightningbug.api.service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import de.lightningbug.api.BugzillaClient;
+import de.lightningbug.api.domain.Bug;
+import de.lightningbug.api.util.HashArray;
+
+/**
+ * The asynchronous variant of the {@link BugService}. Every call runs on the executor of the
+ * service and returns immediately.
+ * 
+ * @author Sebastian Kirchner
+ * 
+ * @see BugService
+ */
+public class AsyncBugService extends AbstractAsyncService {
+
+	private final BugService bugService;
+
+	/**
+	 * @param client
+	 *            the client used by the service to query information from the
+	 *            bugzilla instance
+	 */
+	public AsyncBugService(final BugzillaClient client) {
+		this(client, null);
+	}
+
+	/**
+	 * @param client
+	 *            the client used by the service to query information from the
+	 *            bugzilla instance
+	 * @param executor
+	 *            the executor running the calls or <code>null</code> to use the executor of the
+	 *            client ({@link BugzillaClient#getExecutorService()})
+	 */
+	public AsyncBugService(final BugzillaClient client, final Executor executor) {
+		super(client, executor);
+		this.bugService = new BugService(client);
+	}
+
+	/**
+	 * @param bug
+	 * @return whether the bug was created. The future completes exceptionally, if the call failed.
+	 * @see BugService#create(Bug)
+	 */
+	public CompletableFuture<Boolean> create(final Bug bug) {
+		return this.callAsync(() -> this.bugService.createOrFail(bug));
+	}
+
+	/**
+	 * @return the legal bug fields. The future completes exceptionally, if the fields could not be
+	 *         queried.
+	 * @see BugService#getLegalBugFields()
+	 */
+	public CompletableFuture<HashArray> getLegalBugFields() {
+		return this.callAsync(() -> this.bugService.getLegalBugFields());
+	}
+
+	/**
+	 * @param fieldName
+	 * @return the legal values of the field. The future completes exceptionally, if the fields
+	 *         could not be queried.
+	 * @see BugService#getLegalBugFieldValues(String)
+	 */
+	public CompletableFuture<List<String>> getLegalBugFieldValues(final String fieldName) {
+		return this.callAsync(() -> this.bugService.getLegalBugFieldValuesOrFail(fieldName));
+	}
+
+	/**
+	 * @param searchParams
+	 * @return the found bugs. The future completes exceptionally, if the search failed.
+	 * @see BugService#search(Map)
+	 */
+	public CompletableFuture<List<Bug>> search(final Map<String, Object> searchParams) {
+		return this.callAsync(() -> this.bugService.searchOrFail(searchParams));
+	}
+}
@@ -0,0 +1,53 @@
+package de.lightningbug.api.service;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import de.lightningbug.api.BugzillaClient;
+import de.lightningbug.api.domain.Product;
+
+/**
+ * The asynchronous variant of the {@link ProductService}. Every call runs on the executor of the
+ * service and returns immediately.
+ * 
+ * @author Sebastian Kirchner
+ * 
+ * @see ProductService
+ */
+public class AsyncProductService extends AbstractAsyncService {
+
+	private final ProductService productService;
+
+	/**
+	 * @param client
+	 *            the client used by the service to query information from the
+	 *            bugzilla instance
+	 */
+	public AsyncProductService(final BugzillaClient client) {
+		this(client, true, null);
+	}
+
+	/**
+	 * @param client
+	 *            the client used by the service to query information from the
+	 *            bugzilla instance
+	 * @param useLocalCache
+	 * @param executor
+	 *            the executor running the calls or <code>null</code> to use the executor of the
+	 *            client ({@link BugzillaClient#getExecutorService()})
+	 */
+	public AsyncProductService(final BugzillaClient client, final boolean useLocalCache,
+			final Executor executor) {
+		super(client, executor);
+		this.productService = new ProductService(client, useLocalCache);
+	}
+
+	/**
+	 * @return the products. The future completes exceptionally, if they could not be loaded.
+	 * @see ProductService#getProducts()
+	 */
+	public CompletableFuture<List<Product>> getProducts() {
+		return this.callAsync(() -> this.productService.getProductsOrFail());
+	}
+}
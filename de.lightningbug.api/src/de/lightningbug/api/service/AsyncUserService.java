@@ -0,0 +1,81 @@
+package de.lightningbug.api.service;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import de.lightningbug.api.BugzillaClient;
+import de.lightningbug.api.domain.User;
+
+/**
+ * The asynchronous variant of the {@link UserService}. Every call runs on the executor of the
+ * service and returns immediately.
+ * 
+ * @author Sebastian Kirchner
+ * 
+ * @see UserService
+ */
+public class AsyncUserService extends AbstractAsyncService {
+
+	private final UserService userService;
+
+	/**
+	 * @param client
+	 *            the client used by the service to query information from the
+	 *            bugzilla instance
+	 */
+	public AsyncUserService(final BugzillaClient client) {
+		this(client, null);
+	}
+
+	/**
+	 * @param client
+	 *            the client used by the service to query information from the
+	 *            bugzilla instance
+	 * @param executor
+	 *            the executor running the calls or <code>null</code> to use the executor of the
+	 *            client ({@link BugzillaClient#getExecutorService()})
+	 */
+	public AsyncUserService(final BugzillaClient client, final Executor executor) {
+		super(client, executor);
+		this.userService = new UserService(client);
+	}
+
+	/**
+	 * @return the active users. The future completes exceptionally, if they could not be queried.
+	 * @see UserService#getActiveUsers()
+	 */
+	public CompletableFuture<Set<User>> getActiveUsers() {
+		return this.callAsync(() -> this.userService.getActiveUsersOrFail());
+	}
+
+	/**
+	 * @param loginName
+	 * @return the user or <code>null</code>, if there is no such user. The future completes
+	 *         exceptionally, if the user could not be queried.
+	 * @see UserService#getUser(String)
+	 */
+	public CompletableFuture<User> getUser(final String loginName) {
+		return this.callAsync(() -> this.userService.getUserOrFail(loginName));
+	}
+
+	/**
+	 * @return all users. The future completes exceptionally, if they could not be queried.
+	 * @see UserService#getUsers()
+	 */
+	public CompletableFuture<Set<User>> getUsers() {
+		return this.callAsync(() -> this.userService.getUsersOrFail());
+	}
+
+	/**
+	 * @param loginNames
+	 * @return the found users by their login name. The future completes exceptionally, if the
+	 *         users could not be queried.
+	 * @see UserService#getUsers(Collection)
+	 */
+	public CompletableFuture<Map<String, User>> getUsers(final Collection<String> loginNames) {
+		return this.callAsync(() -> this.userService.getUsersOrFail(loginNames));
+	}
+}
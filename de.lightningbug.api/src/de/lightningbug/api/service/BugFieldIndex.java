@@ -0,0 +1,110 @@
+package de.lightningbug.api.service;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import de.lightningbug.api.util.HashArray;
+import de.lightningbug.api.util.HashArray.NoHashArrayException;
+
+/**
+ * An inverted index over the legal values of all bug fields (<code>Bug.fields</code>). For
+ * every field it holds all legal values and the values by their visibility value (e.g. the
+ * components by product name). The index is built once per loaded set of fields, so looking up
+ * the values of a product is a hash lookup instead of a scan over all fields and values.
+ * 
+ * @author Sebastian Kirchner
+ * 
+ * @see BugFieldRegistry#getIndex()
+ */
+public class BugFieldIndex {
+
+	private static final String NAME = "name"; //$NON-NLS-1$
+
+	private static final String VALUES = "values"; //$NON-NLS-1$
+
+	private static final String VISIBILITY_VALUES = "visibility_values"; //$NON-NLS-1$
+
+	/**
+	 * field name -> legal values
+	 */
+	private final Map<String, Set<String>> values = new HashMap<String, Set<String>>();
+
+	/**
+	 * field name -> visibility value (e.g. product name) -> legal values
+	 */
+	private final Map<String, Map<String, Set<String>>> valuesByVisibility = new HashMap<String, Map<String, Set<String>>>();
+
+	/**
+	 * Builds the index.
+	 * 
+	 * @param fields
+	 *            the result of <code>Bug.fields</code>, a hash for every bug field
+	 * @throws NoHashArrayException
+	 *             if the legal values of a field could not be interpreted
+	 */
+	public BugFieldIndex(final HashArray fields) throws NoHashArrayException {
+		for(final Map<?, ?> field : fields){
+			final Object fieldName = field.get(NAME);
+			final Object fieldValues = field.get(VALUES);
+			if(!(fieldName instanceof String) || !(fieldValues instanceof Object[])
+					|| ((Object[]) fieldValues).length == 0){
+				continue;
+			}
+			final Set<String> all = new TreeSet<String>();
+			final Map<String, Set<String>> byVisibility = new HashMap<String, Set<String>>();
+			for(final Map<?, ?> value : new HashArray(fieldValues)){
+				final String valueName = (String) value.get(NAME);
+				all.add(valueName);
+				final Object visibilityValues = value.get(VISIBILITY_VALUES);
+				if(!(visibilityValues instanceof Object[])){
+					continue;
+				}
+				for(final Object visibilityValue : (Object[]) visibilityValues){
+					Set<String> visible = byVisibility.get(visibilityValue);
+					if(visible == null){
+						visible = new TreeSet<String>();
+						byVisibility.put((String) visibilityValue, visible);
+					}
+					visible.add(valueName);
+				}
+			}
+			for(final Map.Entry<String, Set<String>> entry : byVisibility.entrySet()){
+				entry.setValue(Collections.unmodifiableSet(entry.getValue()));
+			}
+			this.values.put((String) fieldName, Collections.unmodifiableSet(all));
+			this.valuesByVisibility.put((String) fieldName, byVisibility);
+		}
+	}
+
+	/**
+	 * @param fieldName
+	 *            the name of the bug field (e.g. <code>bug_severity</code>)
+	 * @return the legal values of the field, ordered by name. An empty set, if the field is
+	 *         unknown.
+	 */
+	public Set<String> getValues(final String fieldName) {
+		final Set<String> result = this.values.get(fieldName);
+		return result == null ? Collections.<String> emptySet() : result;
+	}
+
+	/**
+	 * @param fieldName
+	 *            the name of the bug field (e.g. <code>component</code>)
+	 * @param visibilityValue
+	 *            the value controlling the visibility of the field values (e.g. the name of a
+	 *            product)
+	 * @return the legal values of the field visible for the given value, ordered by name. An empty
+	 *         set, if there are none.
+	 */
+	public Set<String> getValues(final String fieldName, final String visibilityValue) {
+		final Map<String, Set<String>> byVisibility = this.valuesByVisibility.get(fieldName);
+		if(byVisibility == null){
+			return Collections.emptySet();
+		}
+		final Set<String> result = byVisibility.get(visibilityValue);
+		return result == null ? Collections.<String> emptySet() : result;
+	}
+}
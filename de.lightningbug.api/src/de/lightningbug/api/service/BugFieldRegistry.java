@@ -0,0 +1,207 @@
+package de.lightningbug.api.service;
+
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.xmlrpc.XmlRpcException;
+
+import de.lightningbug.api.BugzillaClient;
+import de.lightningbug.api.util.HashArray;
+import de.lightningbug.api.util.HashArray.NoHashArrayException;
+
+/**
+ * Holds the names and the legal values of all bug fields (<code>Bug.fields</code>) of a
+ * bugzilla instance. There is one registry per {@link BugzillaClient}, that is shared by all
+ * services using the client, so the fields are only queried once.
+ * <p>
+ * The fields are queried on first use and again, if they are older than the time to live or if
+ * {@link BugFieldRegistry#refresh()} is called. Reading the fields is safe from many threads at
+ * once. The returned {@link HashArray} is shared and must not be modified.
+ * </p>
+ * 
+ * @author Sebastian Kirchner
+ * 
+ * @see BugzillaClient#getBugFieldRegistry()
+ */
+public class BugFieldRegistry {
+
+	/**
+	 * An immutable pair of the loaded fields and the time they have been loaded.
+	 */
+	private static class Snapshot {
+
+		private final HashArray fields;
+
+		private volatile BugFieldIndex index = null;
+
+		private final long loadedAt;
+
+		Snapshot(final HashArray fields) {
+			this.fields = fields;
+			this.loadedAt = System.currentTimeMillis();
+		}
+
+		BugFieldIndex getIndex() throws NoHashArrayException {
+			BugFieldIndex result = this.index;
+			if(result == null){
+				synchronized(this){
+					result = this.index;
+					if(result == null){
+						result = new BugFieldIndex(this.fields);
+						this.index = result;
+					}
+				}
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * The default of the property {@link BugFieldRegistry#timeToLive} (in milliseconds)
+	 */
+	public static final long DEFAULT_TIME_TO_LIVE = 60L * 60L * 1000L;
+
+	private static final Log LOG = LogFactory.getLog(BugFieldRegistry.class);
+
+	private final BugzillaClient client;
+
+	private final Object refreshLock = new Object();
+
+	private volatile Snapshot snapshot = null;
+
+	private volatile long timeToLive = DEFAULT_TIME_TO_LIVE;
+
+	/**
+	 * @param client
+	 *            the client used to query the fields
+	 */
+	public BugFieldRegistry(final BugzillaClient client) {
+		if(client == null){
+			throw new IllegalArgumentException("Paramter <client> must not be mull"); //$NON-NLS-1$
+		}
+		this.client = client;
+	}
+
+	/**
+	 * Returns the names and the legal values of all bug fields. The fields are queried, if they
+	 * have not been loaded yet or if they are expired.
+	 * 
+	 * @return a hash for every bug field
+	 * @throws XmlRpcException
+	 *             if the fields could not be queried
+	 * @throws NoHashArrayException
+	 *             if the response could not be interpreted
+	 */
+	public HashArray getFields() throws XmlRpcException, NoHashArrayException {
+		return this.getSnapshot().fields;
+	}
+
+	/**
+	 * Returns an index over the legal values of all bug fields. The index is built once for
+	 * every loaded set of fields.
+	 * 
+	 * @return the index of the current fields
+	 * @throws XmlRpcException
+	 *             if the fields could not be queried
+	 * @throws NoHashArrayException
+	 *             if the response could not be interpreted
+	 */
+	public BugFieldIndex getIndex() throws XmlRpcException, NoHashArrayException {
+		return this.getSnapshot().getIndex();
+	}
+
+	private Snapshot getSnapshot() throws XmlRpcException, NoHashArrayException {
+		Snapshot current = this.snapshot;
+		if(current != null && !this.isExpired(current)){
+			return current;
+		}
+		synchronized(this.refreshLock){
+			// another thread might have refreshed the fields in the meantime
+			current = this.snapshot;
+			if(current == null || this.isExpired(current)){
+				current = this.load();
+			}
+		}
+		return current;
+	}
+
+	/**
+	 * @return the time in milliseconds the fields are used before they are queried again
+	 */
+	public long getTimeToLive() {
+		return this.timeToLive;
+	}
+
+	/**
+	 * Forgets the loaded fields, so they are queried again on next use.
+	 */
+	public void invalidate() {
+		this.snapshot = null;
+	}
+
+	private boolean isExpired(final Snapshot current) {
+		final long ttl = this.timeToLive;
+		return ttl >= 0 && System.currentTimeMillis() - current.loadedAt > ttl;
+	}
+
+	/**
+	 * @return <code>true</code> if the fields have been loaded and are not expired
+	 */
+	public boolean isLoaded() {
+		final Snapshot current = this.snapshot;
+		return current != null && !this.isExpired(current);
+	}
+
+	private Snapshot load() throws XmlRpcException, NoHashArrayException {
+		LOG.info("Loading the legal bug fields"); //$NON-NLS-1$
+		return this.store(this.client.execute("Bug.fields")); //$NON-NLS-1$
+	}
+
+	/**
+	 * Queries the fields again, regardless of their age.
+	 * 
+	 * @return a hash for every bug field
+	 * @throws XmlRpcException
+	 *             if the fields could not be queried
+	 * @throws NoHashArrayException
+	 *             if the response could not be interpreted
+	 */
+	public HashArray refresh() throws XmlRpcException, NoHashArrayException {
+		synchronized(this.refreshLock){
+			return this.load().fields;
+		}
+	}
+
+	/**
+	 * @param timeToLive
+	 *            the time in milliseconds the fields are used before they are queried again. A
+	 *            negative value keeps them until {@link BugFieldRegistry#refresh()} or
+	 *            {@link BugFieldRegistry#invalidate()} is called.
+	 */
+	public void setTimeToLive(final long timeToLive) {
+		this.timeToLive = timeToLive;
+	}
+
+	/**
+	 * Sets the fields from a <code>Bug.fields</code> result, that has been queried elsewhere
+	 * (e.g. within a {@link de.lightningbug.api.xmlrpc.MultiCall}).
+	 * 
+	 * @param result
+	 *            the result of a <code>Bug.fields</code> call
+	 * @throws NoHashArrayException
+	 *             if the result could not be interpreted
+	 */
+	void update(final Object result) throws NoHashArrayException {
+		this.store(result);
+	}
+
+	private Snapshot store(final Object result) throws NoHashArrayException {
+		// result = a hash containing a single element, fields. This is
+		// an array of hashes, containing the keys
+		final Snapshot updated = new Snapshot(new HashArray(((Map<?, ?>) result).values()
+				.iterator().next()));
+		this.snapshot = updated;
+		return updated;
+	}
+}
@@ -0,0 +1,135 @@
+package de.lightningbug.api.service;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import de.lightningbug.api.domain.Bug;
+
+/**
+ * Iterates over the results of a <code>Bug.search</code> page by page, using the parameters
+ * <code>limit</code> and <code>offset</code>. While the caller works on the current page, the
+ * next page is already being fetched. So at most two pages are held in memory.
+ * <p>
+ * The offset of a page is the number of bugs received before, so a server returning fewer bugs
+ * than the page size (e.g. because of its own maximum) skips none. The iteration ends with the
+ * first empty page. If a page cannot be fetched, {@link BugPageIterator#hasNext()} and
+ * {@link BugPageIterator#next()} throw a {@link CompletionException} with the cause of the
+ * failure, instead of ending the iteration as if all bugs had been found.
+ * </p>
+ * 
+ * @author Sebastian Kirchner
+ * 
+ * @see BugService#searchPaged(Map, int)
+ */
+class BugPageIterator implements Iterator<Bug> {
+
+	private final BugService bugService;
+
+	private Iterator<Bug> current = Collections.<Bug> emptyList().iterator();
+
+	private CompletableFuture<List<Bug>> nextPage = null;
+
+	/**
+	 * the offset of the next page
+	 */
+	private int offset = 0;
+
+	private final int pageSize;
+
+	private final Map<String, Object> params;
+
+	/**
+	 * @param bugService
+	 *            the service used to fetch the pages
+	 * @param searchParams
+	 *            the parameters of the search, <code>null</code> for all bugs
+	 * @param pageSize
+	 *            the maximum number of bugs per page
+	 */
+	BugPageIterator(final BugService bugService, final Map<String, Object> searchParams,
+			final int pageSize) {
+		if(pageSize < 1){
+			throw new IllegalArgumentException("Paramter <pageSize> must be positive"); //$NON-NLS-1$
+		}
+		this.bugService = bugService;
+		this.pageSize = pageSize;
+		this.params = searchParams == null ? new HashMap<String, Object>()
+				: new HashMap<String, Object>(searchParams);
+		this.prefetch(0);
+	}
+
+	/**
+	 * Stops prefetching. Pages, that are already being fetched are discarded.
+	 */
+	void close() {
+		if(this.nextPage != null){
+			this.nextPage.cancel(false);
+			this.nextPage = null;
+		}
+		this.current = Collections.<Bug> emptyList().iterator();
+	}
+
+	/**
+	 * @throws CompletionException
+	 *             if the next page could not be fetched
+	 */
+	@Override
+	public boolean hasNext() {
+		while(!this.current.hasNext()){
+			if(this.nextPage == null){
+				return false;
+			}
+			// a failed page is thrown again by every call
+			final List<Bug> page = this.nextPage.join();
+			final int offset = this.offset;
+			this.nextPage = null;
+			if(!page.isEmpty() && page.size() <= this.pageSize){
+				// there might be more results, fetch them while this page is processed. More bugs
+				// than requested mean, that the server ignores the limit and returned all of them.
+				this.prefetch(offset + page.size());
+			}
+			this.current = page.iterator();
+		}
+		return true;
+	}
+
+	/**
+	 * @throws CompletionException
+	 *             if the next page could not be fetched
+	 */
+	@Override
+	public Bug next() {
+		if(!this.hasNext()){
+			throw new NoSuchElementException();
+		}
+		return this.current.next();
+	}
+
+	/**
+	 * Starts fetching the page at the given offset.
+	 */
+	private void prefetch(final int offset) {
+		final Map<String, Object> pageParams = new HashMap<String, Object>(this.params);
+		pageParams.put(BugService.BUG_SEARCH_FIELD_LIMIT, this.pageSize);
+		pageParams.put(BugService.BUG_SEARCH_FIELD_OFFSET, offset);
+		this.offset = offset;
+		this.nextPage = CompletableFuture.supplyAsync(() -> {
+			try{
+				return this.bugService.searchOrFail(pageParams);
+			}catch(final Exception e){
+				throw new CompletionException(e);
+			}
+		}, this.bugService.client.getExecutorService());
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+}
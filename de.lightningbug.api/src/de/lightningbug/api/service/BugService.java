@@ -1,227 +1,473 @@
-package de.lightningbug.api.service;
-
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
-import java.util.TreeSet;
-
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
-import org.apache.xmlrpc.XmlRpcException;
-
-import de.lightningbug.api.BugzillaClient;
-import de.lightningbug.api.domain.Bug;
-import de.lightningbug.api.domain.User;
-import de.lightningbug.api.util.HashArray;
-import de.lightningbug.api.util.HashArray.NoHashArrayException;
-
-/**
- * TODO Complete documentation!
- * 
- * @author Sebastian Kirchner (AutoVision GmbH)
- * 
- */
-public class BugService extends AbstractService {
-
-	protected final static Log LOG = LogFactory.getLog(ProductService.class);
-
-	public static final String BUG_SEARCH_FIELD_SEVERITY = "severity"; //$NON-NLS-1$
-	public static final String BUG_SEARCH_FIELD_ID = "id"; //$NON-NLS-1$
-
-	/**
-	 * TODO isn't that stored in the cache???
-	 * 
-	 * Cache for the names and the legal values of all bug fields
-	 */
-	private HashArray legalBugFields = null;
-
-	/**
-	 * @param client
-	 *            the client used by the service to query information from the
-	 *            bugzilla instance
-	 */
-	public BugService(BugzillaClient client) {
-		super(client);
-	}
-
-	/**
-	 * TODO add documentation
-	 * 
-	 * To get a list of all bugs just pass <code>null</code>
-	 * 
-	 * @param params
-	 * @return
-	 */
-	public List<Bug> search(final Map<String, Object> searchParams) {
-
-		// convert null into an empty map of parameters
-		final Map<String, Object> params = searchParams == null ? new HashMap<String, Object>()
-				: searchParams;
-
-		final List<Bug> results = new ArrayList<Bug>();
-
-		try{
-			// search for the bugs
-			final Object execResult = ((Map<?, ?>) this.client.execute("Bug.search", params))
-					.get("bugs");
-			if(execResult == null
-					|| (execResult.getClass().isArray() && ((Object[]) execResult).length == 0)){
-				LOG.warn("Search was not successful: " + searchParams);
-				return new LinkedList<Bug>();
-			}
-			final HashArray bugs = new HashArray(execResult); //$NON-NLS-1$ //$NON-NLS-2$
-
-			final Map<String, User> userCache = new HashMap<String, User>();
-			final UserService userService = new UserService(this.client);
-
-			// create bug objects 4 every item in the array
-			for(final Map<?, ?> bug : bugs){
-				final Bug newBug = new Bug();
-				results.add(newBug);
-
-				for(final Object key : bug.keySet()){
-					if("summary".equals(key)){ //$NON-NLS-1$
-						newBug.setSummary((String) bug.get(key));
-						LOG.debug("Property <summary> populated with: " + newBug.getSummary()); //$NON-NLS-1$
-					}
-					if("severity".equals(key)){ //$NON-NLS-1$
-						newBug.setSeverity((String) bug.get(key));
-						LOG.debug("Property <severity> populated with: " + newBug.getSeverity()); //$NON-NLS-1$
-					}
-
-					if("estimated_time".equals(key)){ //$NON-NLS-1$
-						newBug.setEstimatedTime((Double) bug.get(key));
-						LOG.debug("Property <estimated_time> populated with: " + newBug.getEstimatedTime()); //$NON-NLS-1$
-					}
-					if("id".equals(key)){ //$NON-NLS-1$
-						newBug.setId((Integer) bug.get(key));
-						LOG.debug("Property <id> populated with: " + newBug.getId()); //$NON-NLS-1$
-					}
-					if("status".equals(key)){ //$NON-NLS-1$
-						newBug.setStatus((String) bug.get(key));
-						LOG.debug("Property <status> populated with: " + newBug.getId()); //$NON-NLS-1$
-					}
-					if("assigned_to".equals(key)){ //$NON-NLS-1$
-
-						if(!this.client.isLoggedIn()){
-							LOG.info("BugzillaClient is not logged in. Users cannot be queried. Property <assignee> cannot be populated.");
-						}else{
-							final String loginName = (String) bug.get(key);
-							User user = userCache.get(loginName);
-							if(user == null){
-								user = userService.getUser(loginName);
-								userCache.put(loginName, user);
-							}
-							newBug.setAssignee(user);
-							LOG.debug("Property <assignee> populated with: " + newBug.getAssignee()); //$NON-NLS-1$
-						}
-					}
-					if("depends_on".equals(key)){
-						final Object[] idObjs = (Object[]) bug.get(key);
-						final Set<Integer> ids = new TreeSet<Integer>();
-						for(int i = 0; i < idObjs.length; i++){
-							ids.add((Integer) idObjs[i]);
-						}
-						newBug.setDependsOn(ids);
-					}
-
-					// else {
-					// LOGGER.warning("The field " + key + " (" + bug.get(key)
-					// + ") has been skipped");
-					// }
-				}
-			}
-		}catch(final XmlRpcException e){
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}catch(final NoHashArrayException e){
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
-		return results;
-	}
-
-	/**
-	 * TODO
-	 * 
-	 * @return
-	 * @throws XmlRpcException
-	 * @throws NoHashArrayException
-	 */
-	public HashArray getLegalBugFields() throws XmlRpcException, NoHashArrayException {
-		if(this.legalBugFields == null){
-			// result = a hash containing a single element, fields. This is
-			// an array of hashes, containing the keys
-			final Map<?, ?> result = (Map<?, ?>) this.client.execute("Bug.fields");
-			this.legalBugFields = new HashArray(result.values().iterator().next());
-		}
-		return this.legalBugFields;
-	}
-
-	/**
-	 * TODO
-	 * 
-	 * @param fieldName
-	 * @return
-	 */
-	public List<String> getLegalBugFieldValues(final String fieldName) {
-		try{
-			final HashArray fields = this.getLegalBugFields();
-			for(final Map<?, ?> field : fields){
-				// search for component field
-				if(!field.get("name").equals(fieldName)){ //$NON-NLS-1$
-					continue;
-				}
-				// legal component values found
-				final HashArray values = new HashArray(field.get("values")); //$NON-NLS-1$
-				final List<String> result = new ArrayList<String>(values.size());
-				for(final Map<?, ?> value : values){
-					result.add((String) value.get("name")); //$NON-NLS-1$
-				}
-				return result;
-			}
-		}catch(final XmlRpcException e){
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}catch(final NoHashArrayException e){
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
-		return new LinkedList<String>();
-	}
-
-	/**
-	 * @param bug
-	 * @return
-	 */
-	public boolean create(final Bug bug) {
-		try{
-
-			final Map<String, Object> params = new HashMap<String, Object>();
-			params.put(Bug.PRODUCT, bug.getProduct());
-			params.put(Bug.COMPONENT, bug.getComponent());
-			params.put(Bug.SUMMARY, bug.getSummary());
-			params.put(Bug.VERSION, bug.getVersion());
-			params.put(Bug.DESCRIPTION, bug.getDescription());
-			params.put(Bug.SEVERITY, bug.getSeverity());
-
-			final Object result = this.client.execute("Bug.create", params);
-
-			if(result instanceof Map){
-				Object idParam = ((Map<?, ?>) result).get("id"); //$NON-NLS-1$
-				if(idParam instanceof Number){
-					final Integer id = ((Number) idParam).intValue();
-					bug.setId(id);
-					return true;
-				}
-			}
-		}catch(XmlRpcException e){
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
-		return false;
-	}
-}
+package de.lightningbug.api.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.xmlrpc.XmlRpcException;
+
+import de.lightningbug.api.BugzillaClient;
+import de.lightningbug.api.domain.Bug;
+import de.lightningbug.api.domain.Product;
+import de.lightningbug.api.domain.User;
+import de.lightningbug.api.util.HashArray;
+import de.lightningbug.api.util.HashArray.NoHashArrayException;
+
+/**
+ * TODO Complete documentation!
+ * 
+ * @author Sebastian Kirchner (AutoVision GmbH)
+ * 
+ */
+public class BugService extends AbstractService {
+
+	/**
+	 * The products and users shared by all bugs of a single search result.
+	 */
+	private static class SearchContext {
+
+		/**
+		 * name -> product
+		 */
+		private final Map<String, Product> products = new HashMap<String, Product>();
+
+		/**
+		 * login name -> user
+		 */
+		private final Map<String, User> users = new HashMap<String, User>();
+
+		/**
+		 * @return a product only carrying its name. Components, versions etc. are provided by the
+		 *         {@link ProductService}.
+		 */
+		Product getProduct(final String name) {
+			Product product = this.products.get(name);
+			if(product == null){
+				product = new Product.Builder().name(name).build();
+				this.products.put(name, product);
+			}
+			return product;
+		}
+
+		/**
+		 * @return a user only carrying the login name, until the users are resolved
+		 * @see SearchContext#resolveUsers(Map)
+		 */
+		User getUser(final String loginName) {
+			User user = this.users.get(loginName);
+			if(user == null){
+				user = new User.Builder().loginName(loginName).build();
+				this.users.put(loginName, user);
+			}
+			return user;
+		}
+
+		/**
+		 * Completes the users of all bugs of the search result.
+		 * 
+		 * @param resolved
+		 *            the resolved users by their login name
+		 */
+		void resolveUsers(final Map<String, User> resolved) {
+			for(final User user : this.users.values()){
+				final User resolvedUser = resolved.get(user.getLoginName());
+				if(resolvedUser != null){
+					user.setId(resolvedUser.getId());
+					user.setRealName(resolvedUser.getRealName());
+					user.setEMail(resolvedUser.getEMail());
+				}
+			}
+		}
+	}
+
+	protected final static Log LOG = LogFactory.getLog(ProductService.class);
+
+	public static final String BUG_SEARCH_FIELD_SEVERITY = "severity"; //$NON-NLS-1$
+	public static final String BUG_SEARCH_FIELD_ID = "id"; //$NON-NLS-1$
+	public static final String BUG_SEARCH_FIELD_LIMIT = "limit"; //$NON-NLS-1$
+	public static final String BUG_SEARCH_FIELD_OFFSET = "offset"; //$NON-NLS-1$
+	public static final String BUG_SEARCH_FIELD_INCLUDE_FIELDS = "include_fields"; //$NON-NLS-1$
+
+	/**
+	 * The number of bugs fetched with a single call by {@link BugService#searchPaged(Map)}
+	 */
+	public static final int DEFAULT_PAGE_SIZE = 500;
+
+	/**
+	 * Decodes the hashes returned by <code>Bug.search</code>
+	 */
+	private static final FieldMapper<Bug.Builder, SearchContext> BUG_MAPPER = new FieldMapper<Bug.Builder, SearchContext>()
+			.map("id", (bug, value, context) -> bug.id(FieldMapper.toInteger(value))) //$NON-NLS-1$
+			.map("summary", (bug, value, context) -> bug.summary((String) value)) //$NON-NLS-1$
+			.map("severity", (bug, value, context) -> bug.severity((String) value)) //$NON-NLS-1$
+			.map("status", (bug, value, context) -> bug.status((String) value)) //$NON-NLS-1$
+			.map("product", (bug, value, context) -> bug.product(context.getProduct((String) value))) //$NON-NLS-1$
+			.map("component", (bug, value, context) -> bug.component((String) value)) //$NON-NLS-1$
+			.map("version", (bug, value, context) -> bug.version((String) value)) //$NON-NLS-1$
+			.map("estimated_time", //$NON-NLS-1$
+					(bug, value, context) -> bug.estimatedTime(FieldMapper.toDouble(value)))
+			.map("depends_on", //$NON-NLS-1$
+					(bug, value, context) -> bug.dependsOn(FieldMapper.toIntegers(value)))
+			.map("last_change_time", //$NON-NLS-1$
+					(bug, value, context) -> bug.lastChangeTime(FieldMapper.toDate(value)))
+			.map("assigned_to", (bug, value, context) -> bug.assignee(context.getUser((String) value))); //$NON-NLS-1$
+
+	/**
+	 * The fields of a bug requested by default: all fields a {@link Bug} can hold
+	 */
+	public static final Set<String> DEFAULT_INCLUDE_FIELDS = BUG_MAPPER.getItemNames();
+
+	/**
+	 * the fields requested by a search, <code>null</code> for all fields
+	 */
+	private volatile Object[] includeFields = DEFAULT_INCLUDE_FIELDS.toArray();
+
+	/**
+	 * @param client
+	 *            the client used by the service to query information from the
+	 *            bugzilla instance
+	 */
+	public BugService(BugzillaClient client) {
+		super(client);
+	}
+
+	/**
+	 * @return the fields requested by a search, <code>null</code> if all fields are requested
+	 * @see BugService#setIncludeFields(Collection)
+	 */
+	public Set<String> getIncludeFields() {
+		final Object[] fields = this.includeFields;
+		if(fields == null){
+			return null;
+		}
+		final Set<String> result = new TreeSet<String>();
+		for(final Object field : fields){
+			result.add((String) field);
+		}
+		return result;
+	}
+
+	/**
+	 * TODO add documentation
+	 * 
+	 * To get a list of all bugs just pass <code>null</code>
+	 * 
+	 * @param params
+	 * @return
+	 */
+	public List<Bug> search(final Map<String, Object> searchParams) {
+		try{
+			final List<Bug> results = this.searchOrFail(searchParams);
+			if(results.isEmpty()){
+				LOG.warn("Search was not successful: " + searchParams);
+			}
+			return results;
+		}catch(final XmlRpcException e){
+			// TODO Auto-generated catch block
+			e.printStackTrace();
+		}catch(final NoHashArrayException e){
+			// TODO Auto-generated catch block
+			e.printStackTrace();
+		}
+		return new LinkedList<Bug>();
+	}
+
+	/**
+	 * Searches for bugs and passes them to the consumer while the response is parsed, so neither
+	 * the response nor the list of all bugs are kept in memory.
+	 * <p>
+	 * The assignees of the bugs only carry their login name while the bugs are passed. They are
+	 * completed with as few <code>User.get</code> calls as possible, after the response has been
+	 * parsed and before this method returns.
+	 * </p>
+	 * 
+	 * @param searchParams
+	 *            the parameters of the search, <code>null</code> for all bugs
+	 * @param consumer
+	 *            receives the found bugs one by one in the calling thread
+	 * @throws XmlRpcException
+	 *             if the call failed or the assignees could not be resolved. The bugs passed to
+	 *             the consumer before then only carry the login names of their assignees.
+	 * @throws NoHashArrayException
+	 *             if the response contains no bugs array
+	 */
+	public void search(final Map<String, Object> searchParams, final Consumer<? super Bug> consumer)
+			throws XmlRpcException, NoHashArrayException {
+
+		// copy the parameters, so the projection does not change the map of the caller
+		final Map<String, Object> params = searchParams == null ? new HashMap<String, Object>()
+				: new HashMap<String, Object>(searchParams);
+		final Object[] fields = this.includeFields;
+		if(fields != null && !params.containsKey(BUG_SEARCH_FIELD_INCLUDE_FIELDS)){
+			params.put(BUG_SEARCH_FIELD_INCLUDE_FIELDS, fields);
+		}
+
+		// create a bug object 4 every item in the array, while it is parsed
+		final SearchContext context = new SearchContext();
+		final Object result = this.client.executeStreaming("Bug.search", params, "bugs", bug -> { //$NON-NLS-1$ //$NON-NLS-2$
+			final Bug newBug = BUG_MAPPER.populate(new Bug.Builder(), bug, context).build();
+			if(LOG.isDebugEnabled()){
+				LOG.debug("Bug populated: " + newBug); //$NON-NLS-1$
+			}
+			consumer.accept(newBug);
+		});
+		if(!(result instanceof Map) || !(((Map<?, ?>) result).get("bugs") instanceof Object[])){ //$NON-NLS-1$
+			throw new NoHashArrayException();
+		}
+
+		// resolve all assignees at once instead of one call per user
+		this.resolveAssignees(context);
+	}
+
+	/**
+	 * Searches for bugs like {@link BugService#search(Map)}, but reports failing calls to the
+	 * caller instead of returning an empty list.
+	 * 
+	 * @param searchParams
+	 *            the parameters of the search, <code>null</code> for all bugs
+	 * @return the found bugs
+	 * @throws XmlRpcException
+	 *             if the call failed
+	 * @throws NoHashArrayException
+	 *             if the response could not be decoded
+	 */
+	List<Bug> searchOrFail(final Map<String, Object> searchParams) throws XmlRpcException,
+			NoHashArrayException {
+		final List<Bug> results = new ArrayList<Bug>();
+		this.search(searchParams, results::add);
+		return results;
+	}
+
+	/**
+	 * Searches for bugs page by page with the {@link BugService#DEFAULT_PAGE_SIZE}.
+	 * 
+	 * @param searchParams
+	 *            the parameters of the search, <code>null</code> for all bugs
+	 * @return a lazy iterator over the found bugs
+	 * @see BugService#searchPaged(Map, int)
+	 */
+	public Iterator<Bug> searchPaged(final Map<String, Object> searchParams) {
+		return this.searchPaged(searchParams, DEFAULT_PAGE_SIZE);
+	}
+
+	/**
+	 * Searches for bugs page by page, using the parameters <code>limit</code> and
+	 * <code>offset</code>. The next page is fetched while the caller works on the current one,
+	 * so the memory used depends on the page size, not on the number of found bugs.
+	 * <p>
+	 * The pages are only consistent, if the result order of the server is stable and the bugs
+	 * don't change while iterating. If a page cannot be fetched, <code>hasNext()</code> and
+	 * <code>next()</code> of the iterator throw a
+	 * {@link java.util.concurrent.CompletionException} with the cause of the failure.
+	 * </p>
+	 * 
+	 * @param searchParams
+	 *            the parameters of the search, <code>null</code> for all bugs. The parameters
+	 *            <code>limit</code> and <code>offset</code> are overwritten.
+	 * @param pageSize
+	 *            the maximum number of bugs fetched with a single call
+	 * @return a lazy iterator over the found bugs
+	 */
+	public Iterator<Bug> searchPaged(final Map<String, Object> searchParams, final int pageSize) {
+		return new BugPageIterator(this, searchParams, pageSize);
+	}
+
+	/**
+	 * Sets the fields requested by a search (<code>include_fields</code>). Requesting fewer fields
+	 * shrinks the responses and speeds up their decoding; the properties of the bugs belonging to
+	 * other fields stay <code>null</code>. A search passing <code>include_fields</code> itself
+	 * overrides this setting.
+	 * 
+	 * @param fields
+	 *            the names of the fields (e.g. <code>status</code>), <code>id</code> is always
+	 *            requested. <code>null</code> requests all fields the server returns, e.g. for
+	 *            servers not supporting <code>include_fields</code>.
+	 * @see BugService#DEFAULT_INCLUDE_FIELDS
+	 */
+	public void setIncludeFields(final Collection<String> fields) {
+		if(fields == null){
+			this.includeFields = null;
+			return;
+		}
+		final Set<String> includeFields = new TreeSet<String>(fields);
+		includeFields.add(BUG_SEARCH_FIELD_ID);
+		this.includeFields = includeFields.toArray();
+	}
+
+	/**
+	 * Searches for bugs page by page like {@link BugService#searchPaged(Map, int)}. Closing the
+	 * stream stops fetching pages. A page, that cannot be fetched, fails the stream with a
+	 * {@link java.util.concurrent.CompletionException}.
+	 * 
+	 * @param searchParams
+	 *            the parameters of the search, <code>null</code> for all bugs
+	 * @param pageSize
+	 *            the maximum number of bugs fetched with a single call
+	 * @return a lazy, sequential stream of the found bugs
+	 */
+	public Stream<Bug> stream(final Map<String, Object> searchParams, final int pageSize) {
+		final BugPageIterator iterator = new BugPageIterator(this, searchParams, pageSize);
+		return StreamSupport.stream(
+				Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED
+						| Spliterator.NONNULL), false).onClose(iterator::close);
+	}
+
+	/**
+	 * Resolves the assignees of a search result with as few <code>User.get</code> calls as
+	 * possible.
+	 * 
+	 * @param context
+	 *            the context of the search result holding the assignees
+	 * @throws XmlRpcException
+	 *             if the users could not be queried
+	 */
+	private void resolveAssignees(final SearchContext context) throws XmlRpcException {
+		if(context.users.isEmpty()){
+			return;
+		}
+		if(!this.client.isLoggedIn()){
+			LOG.info("BugzillaClient is not logged in. Users cannot be queried. Assignees only carry their login name."); //$NON-NLS-1$
+			return;
+		}
+		context.resolveUsers(new UserService(this.client).getUsersOrFail(context.users.keySet()));
+	}
+
+	/**
+	 * Returns the names and the legal values of all bug fields. The fields are shared by all
+	 * services of the client and must not be modified.
+	 * 
+	 * @return a hash for every bug field
+	 * @throws XmlRpcException
+	 * @throws NoHashArrayException
+	 * @see BugzillaClient#getBugFieldRegistry()
+	 */
+	public HashArray getLegalBugFields() throws XmlRpcException, NoHashArrayException {
+		return this.client.getBugFieldRegistry().getFields();
+	}
+
+	/**
+	 * @return <code>true</code> if the legal bug fields have already been loaded
+	 */
+	boolean isLegalBugFieldsLoaded() {
+		return this.client.getBugFieldRegistry().isLoaded();
+	}
+
+	/**
+	 * Sets the legal bug fields from a <code>Bug.fields</code> result, that has been queried
+	 * elsewhere (e.g. within a {@link de.lightningbug.api.xmlrpc.MultiCall}).
+	 * 
+	 * @param result
+	 *            the result of a <code>Bug.fields</code> call
+	 * @throws NoHashArrayException
+	 */
+	void setLegalBugFields(final Object result) throws NoHashArrayException {
+		this.client.getBugFieldRegistry().update(result);
+	}
+
+	/**
+	 * TODO
+	 * 
+	 * @param fieldName
+	 * @return
+	 */
+	public List<String> getLegalBugFieldValues(final String fieldName) {
+		try{
+			return this.getLegalBugFieldValuesOrFail(fieldName);
+		}catch(final XmlRpcException e){
+			// TODO Auto-generated catch block
+			e.printStackTrace();
+		}catch(final NoHashArrayException e){
+			// TODO Auto-generated catch block
+			e.printStackTrace();
+		}
+		return new LinkedList<String>();
+	}
+
+	/**
+	 * @param fieldName
+	 *            the name of a bug field
+	 * @return the legal values of the field, an empty list if there is no such field
+	 * @throws XmlRpcException
+	 *             if the bug fields could not be queried
+	 * @throws NoHashArrayException
+	 *             if the bug fields could not be decoded
+	 */
+	List<String> getLegalBugFieldValuesOrFail(final String fieldName) throws XmlRpcException,
+			NoHashArrayException {
+		final HashArray fields = this.getLegalBugFields();
+		for(final Map<?, ?> field : fields){
+			// search for component field
+			if(!field.get("name").equals(fieldName)){ //$NON-NLS-1$
+				continue;
+			}
+			// legal component values found
+			final HashArray values = new HashArray(field.get("values")); //$NON-NLS-1$
+			final List<String> result = new ArrayList<String>(values.size());
+			for(final Map<?, ?> value : values){
+				result.add((String) value.get("name")); //$NON-NLS-1$
+			}
+			return result;
+		}
+		return new LinkedList<String>();
+	}
+
+	/**
+	 * @param bug
+	 * @return
+	 */
+	public boolean create(final Bug bug) {
+		try{
+			return this.createOrFail(bug);
+		}catch(XmlRpcException e){
+			// TODO Auto-generated catch block
+			e.printStackTrace();
+		}
+		return false;
+	}
+
+	/**
+	 * Creates a bug like {@link BugService#create(Bug)}, but reports a failing call to the caller
+	 * instead of returning <code>false</code>.
+	 * 
+	 * @param bug
+	 *            the bug to create, its id is set if the bug was created
+	 * @return <code>true</code> if the response carried the id of the new bug
+	 * @throws XmlRpcException
+	 *             if the call failed
+	 */
+	boolean createOrFail(final Bug bug) throws XmlRpcException {
+
+		final Map<String, Object> params = new HashMap<String, Object>();
+		params.put(Bug.PRODUCT, bug.getProduct());
+		params.put(Bug.COMPONENT, bug.getComponent());
+		params.put(Bug.SUMMARY, bug.getSummary());
+		params.put(Bug.VERSION, bug.getVersion());
+		params.put(Bug.DESCRIPTION, bug.getDescription());
+		params.put(Bug.SEVERITY, bug.getSeverity());
+
+		final Object result = this.client.execute("Bug.create", params);
+
+		if(result instanceof Map){
+			Object idParam = ((Map<?, ?>) result).get("id"); //$NON-NLS-1$
+			if(idParam instanceof Number){
+				final Integer id = ((Number) idParam).intValue();
+				bug.setId(id);
+				return true;
+			}
+		}
+		return false;
+	}
+}
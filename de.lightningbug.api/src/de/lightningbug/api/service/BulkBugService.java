@@ -0,0 +1,649 @@
+package de.lightningbug.api.service;
+
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.xmlrpc.XmlRpcException;
+import org.apache.xmlrpc.client.XmlRpcHttpTransportException;
+
+import de.lightningbug.api.BugzillaClient;
+import de.lightningbug.api.domain.Bug;
+import de.lightningbug.api.util.HashArray.NoHashArrayException;
+
+/**
+ * Fetches large lists of bugs by their ids.
+ * <p>
+ * The ids are split into chunks, that are searched with up to
+ * {@link BulkBugService#setMaxConcurrency(int)} concurrent calls. The size of the next chunk
+ * follows the observed cost of the previous ones: it grows while the calls are faster than the
+ * target latency and shrinks when they get slower, bounded by the number of bugs a single
+ * response may carry. A chunk, that times out or is too large for the server, is split in halves
+ * and retried, so a single huge request never times out the whole fetch. Any other error (e.g. a
+ * refused connection, a failed authentication or a fault) aborts the fetch, as smaller chunks
+ * would fail the same way.
+ * </p>
+ * <p>
+ * The learned chunk size and the statistics are kept for the lifetime of the service, so a
+ * service should be reused for further fetches from the same bugzilla instance.
+ * </p>
+ * <b>Example:</b>
+ *
+ * <pre>
+ * final BulkBugService service = new BulkBugService(client);
+ * final List&lt;Bug&gt; bugs = service.getBugs(ids);
+ * LOG.info(service.getStatistics());
+ * </pre>
+ *
+ * @author Sebastian Kirchner
+ *
+ */
+public class BulkBugService extends AbstractAsyncService {
+
+	/**
+	 * A single fetch. Every worker takes the next chunk of the current size, until all ids have
+	 * been fetched.
+	 */
+	private class Fetch implements Runnable {
+
+		private boolean aborted = false;
+
+		/**
+		 * the first error, that made ids fail
+		 */
+		private Exception error = null;
+
+		private final SortedSet<Integer> failedIds = new TreeSet<Integer>();
+
+		/**
+		 * the ids not taken by a worker yet
+		 */
+		private final Integer[] ids;
+
+		private int next = 0;
+
+		/**
+		 * chunks to retry in smaller pieces
+		 */
+		private final LinkedList<List<Integer>> retries = new LinkedList<List<Integer>>();
+
+		private final List<Bug> result;
+
+		final int size;
+
+		Fetch(final Collection<Integer> ids) {
+			this.ids = ids.toArray(new Integer[ids.size()]);
+			this.size = this.ids.length;
+			this.result = new ArrayList<Bug>(this.size);
+		}
+
+		/**
+		 * @return the number of chunks of the current chunk size
+		 */
+		int chunkCount() {
+			final int chunkSize = BulkBugService.this.getChunkSize();
+			return (this.size + chunkSize - 1) / chunkSize;
+		}
+
+		/**
+		 * Stops the fetch after an error, that smaller chunks would run into as well. The failed
+		 * chunk and all ids not taken yet fail. Chunks taken by other workers are completed.
+		 */
+		private synchronized void abort(final List<Integer> chunk, final Exception e) {
+			if(!this.aborted){
+				this.aborted = true;
+				this.error = e;
+				for(final List<Integer> retry : this.retries){
+					this.failedIds.addAll(retry);
+				}
+				this.retries.clear();
+				for(int i = this.next; i < this.size; i++){
+					this.failedIds.add(this.ids[i]);
+				}
+				this.next = this.size;
+			}
+			this.failedIds.addAll(chunk);
+		}
+
+		/**
+		 * @param bugs
+		 *            the bugs of a successful chunk
+		 */
+		private synchronized void addAll(final List<Bug> bugs) {
+			this.result.addAll(bugs);
+		}
+
+		/**
+		 * @return the exception reporting the ids, that could not be fetched, <code>null</code> if
+		 *         all ids have been fetched
+		 */
+		synchronized IncompleteFetchException getError() {
+			if(this.failedIds.isEmpty()){
+				return null;
+			}
+			return new IncompleteFetchException(this.getResult(), this.failedIds, this.size,
+					this.error);
+		}
+
+		/**
+		 * @return the found bugs ordered by id
+		 */
+		synchronized List<Bug> getResult() {
+			Collections.sort(this.result);
+			return this.result;
+		}
+
+		@Override
+		public void run() {
+			List<Integer> chunk;
+			while((chunk = this.take()) != null){
+				final Map<String, Object> params = new HashMap<String, Object>();
+				params.put(BugService.BUG_SEARCH_FIELD_ID, chunk.toArray());
+				final long start = System.currentTimeMillis();
+				try{
+					final List<Bug> bugs = BulkBugService.this.bugService.searchOrFail(params);
+					final long latency = System.currentTimeMillis() - start;
+					BulkBugService.this.chunkSucceeded(chunk.size(), bugs.size(), latency);
+					this.addAll(bugs);
+				}catch(final XmlRpcException e){
+					this.failed(chunk, e);
+				}catch(final NoHashArrayException e){
+					this.failed(chunk, e);
+				}catch(final RuntimeException e){
+					this.failed(chunk, e);
+				}
+			}
+		}
+
+		private void failed(final List<Integer> chunk, final Exception e) {
+			final boolean splittable = isSplittable(e);
+			BulkBugService.this.chunkFailed(chunk.size(), splittable);
+			if(!splittable){
+				LOG.warn("The fetch of " + this.size + " bugs is aborted", e); //$NON-NLS-1$ //$NON-NLS-2$
+				this.abort(chunk, e);
+				return;
+			}
+			if(chunk.size() <= MIN_CHUNK_SIZE){
+				LOG.warn("The bugs " + chunk + " could not be fetched", e); //$NON-NLS-1$ //$NON-NLS-2$
+				synchronized(this){
+					this.failedIds.addAll(chunk);
+					if(this.error == null){
+						this.error = e;
+					}
+				}
+				return;
+			}
+			LOG.info("A chunk of " + chunk.size() + " bugs failed and is retried in halves: " //$NON-NLS-1$ //$NON-NLS-2$
+					+ e.getMessage());
+			synchronized(this){
+				this.retries.add(new ArrayList<Integer>(chunk.subList(0, chunk.size() / 2)));
+				this.retries.add(new ArrayList<Integer>(chunk.subList(chunk.size() / 2, chunk
+						.size())));
+			}
+		}
+
+		/**
+		 * @return the next chunk, <code>null</code> if all ids have been taken
+		 */
+		private synchronized List<Integer> take() {
+			if(this.aborted){
+				return null;
+			}
+			if(!this.retries.isEmpty()){
+				return this.retries.removeFirst();
+			}
+			if(this.next == this.size){
+				return null;
+			}
+			final int end = Math.min(this.size, this.next + BulkBugService.this.getChunkSize());
+			final List<Integer> chunk = new ArrayList<Integer>(end - this.next);
+			for(int i = this.next; i < end; i++){
+				chunk.add(this.ids[i]);
+			}
+			this.next = end;
+			return chunk;
+		}
+	}
+
+	/**
+	 * Thrown if some of the requested bugs could not be fetched. It carries the bugs, that have
+	 * been fetched, and the ids, that failed.
+	 *
+	 * @author Sebastian Kirchner
+	 *
+	 */
+	public static class IncompleteFetchException extends XmlRpcException {
+
+		private static final long serialVersionUID = 1L;
+
+		private final List<Bug> bugs;
+
+		private final SortedSet<Integer> failedIds;
+
+		IncompleteFetchException(final List<Bug> bugs, final SortedSet<Integer> failedIds,
+				final int size, final Throwable cause) {
+			super(failedIds.size() + " of " + size + " bugs could not be fetched", cause); //$NON-NLS-1$ //$NON-NLS-2$
+			this.bugs = Collections.unmodifiableList(new ArrayList<Bug>(bugs));
+			this.failedIds = Collections.unmodifiableSortedSet(new TreeSet<Integer>(failedIds));
+		}
+
+		/**
+		 * @return the bugs, that have been fetched, ordered by id
+		 */
+		public List<Bug> getBugs() {
+			return this.bugs;
+		}
+
+		/**
+		 * @return the ids of the bugs, that could not be fetched
+		 */
+		public SortedSet<Integer> getFailedIds() {
+			return this.failedIds;
+		}
+	}
+
+	/**
+	 * A snapshot of the statistics of a {@link BulkBugService}.
+	 *
+	 * @author Sebastian Kirchner
+	 *
+	 */
+	public static final class Statistics {
+
+		private final long bugs;
+
+		private final long chunkLatencySum;
+
+		private final int chunkSize;
+
+		private final long chunks;
+
+		private final long elapsedTime;
+
+		private final long failedChunks;
+
+		private final long ids;
+
+		private final long maxChunkLatency;
+
+		private final long minChunkLatency;
+
+		private Statistics(final BulkBugService service) {
+			this.bugs = service.bugs;
+			this.chunkLatencySum = service.chunkLatencySum;
+			this.chunkSize = service.chunkSize;
+			this.chunks = service.chunks;
+			this.elapsedTime = service.elapsedTime;
+			this.failedChunks = service.failedChunks;
+			this.ids = service.ids;
+			this.maxChunkLatency = service.maxChunkLatency;
+			this.minChunkLatency = service.chunks == 0 ? 0L : service.minChunkLatency;
+		}
+
+		/**
+		 * @return the average time of a successful chunk in milliseconds
+		 */
+		public double getAverageChunkLatency() {
+			return this.chunks == 0 ? 0d : (double) this.chunkLatencySum / this.chunks;
+		}
+
+		/**
+		 * @return the number of fetched bugs
+		 */
+		public long getBugs() {
+			return this.bugs;
+		}
+
+		/**
+		 * @return the fetched bugs per second of all fetches
+		 */
+		public double getBugsPerSecond() {
+			return this.elapsedTime == 0 ? 0d : this.bugs * 1000d / this.elapsedTime;
+		}
+
+		/**
+		 * @return the number of successful chunks
+		 */
+		public long getChunks() {
+			return this.chunks;
+		}
+
+		/**
+		 * @return the size the next chunk will have
+		 */
+		public int getChunkSize() {
+			return this.chunkSize;
+		}
+
+		/**
+		 * @return the time spent in {@link BulkBugService#getBugs(Collection)} in milliseconds
+		 */
+		public long getElapsedTime() {
+			return this.elapsedTime;
+		}
+
+		/**
+		 * @return the number of failed chunks, including the ones, that have been retried
+		 *         successfully in smaller chunks
+		 */
+		public long getFailedChunks() {
+			return this.failedChunks;
+		}
+
+		/**
+		 * @return the number of requested ids
+		 */
+		public long getIds() {
+			return this.ids;
+		}
+
+		/**
+		 * @return the time of the slowest successful chunk in milliseconds
+		 */
+		public long getMaxChunkLatency() {
+			return this.maxChunkLatency;
+		}
+
+		/**
+		 * @return the time of the fastest successful chunk in milliseconds
+		 */
+		public long getMinChunkLatency() {
+			return this.minChunkLatency;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d of %d bugs in %d ms (%.1f bugs/s), %d chunks (%d failed), " //$NON-NLS-1$
+					+ "chunk latency min/avg/max %d/%.1f/%d ms, chunk size %d", this.bugs, //$NON-NLS-1$
+					this.ids, this.elapsedTime, this.getBugsPerSecond(), this.chunks,
+					this.failedChunks, this.minChunkLatency, this.getAverageChunkLatency(),
+					this.maxChunkLatency, this.chunkSize);
+		}
+	}
+
+	/**
+	 * The size of the first chunk
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 500;
+
+	/**
+	 * The default number of concurrent calls of a fetch
+	 */
+	public static final int DEFAULT_MAX_CONCURRENCY = 4;
+
+	/**
+	 * The default maximum number of bugs returned by a single call
+	 */
+	public static final int DEFAULT_MAX_CHUNK_SIZE = 5000;
+
+	/**
+	 * The default time in milliseconds a single call should take
+	 */
+	public static final long DEFAULT_TARGET_LATENCY = 2000L;
+
+	private static final Log LOG = LogFactory.getLog(BulkBugService.class);
+
+	/**
+	 * The smallest chunk
+	 */
+	private static final int MIN_CHUNK_SIZE = 10;
+
+	/**
+	 * The HTTP status codes of responses, that report a request as too large or too slow: 408
+	 * (request timeout), 413 (entity too large), 414 (URI too long), 502 (bad gateway) and 504
+	 * (gateway timeout)
+	 */
+	private static final int[] SPLITTABLE_STATUS_CODES = { 408, 413, 414, 502, 504 };
+
+	/**
+	 * The weight of the last chunk in the estimated cost per id
+	 */
+	private static final double SMOOTHING = 0.3d;
+
+	private final BugService bugService;
+
+	private long bugs = 0L;
+
+	private long chunkLatencySum = 0L;
+
+	private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+	private long chunks = 0L;
+
+	/**
+	 * the estimated time of a call in milliseconds per requested id, <code>0</code> if unknown
+	 */
+	private double costPerId = 0d;
+
+	private long elapsedTime = 0L;
+
+	private long failedChunks = 0L;
+
+	private long ids = 0L;
+
+	private int maxChunkSize = DEFAULT_MAX_CHUNK_SIZE;
+
+	private int maxConcurrency = DEFAULT_MAX_CONCURRENCY;
+
+	private long maxChunkLatency = 0L;
+
+	private long minChunkLatency = Long.MAX_VALUE;
+
+	private long targetLatency = DEFAULT_TARGET_LATENCY;
+
+	/**
+	 * @param client
+	 *            the client used by the service to query information from the
+	 *            bugzilla instance
+	 */
+	public BulkBugService(final BugzillaClient client) {
+		this(client, null);
+	}
+
+	/**
+	 * @param client
+	 *            the client used by the service to query information from the
+	 *            bugzilla instance
+	 * @param executor
+	 *            the executor running the calls or <code>null</code> to use the executor of the
+	 *            client ({@link BugzillaClient#getExecutorService()})
+	 */
+	public BulkBugService(final BugzillaClient client, final Executor executor) {
+		super(client, executor);
+		this.bugService = new BugService(client);
+	}
+
+	/**
+	 * Fetches the bugs of the given ids. The calling thread takes part in fetching, so the fetch
+	 * makes progress even if it is started on a busy thread of the executor.
+	 *
+	 * @param ids
+	 *            the ids of the bugs, duplicates are fetched once
+	 * @return the found bugs ordered by id. Bugs, that don't exist or must not be seen by the
+	 *         user, are left out.
+	 * @throws IncompleteFetchException
+	 *             if some of the ids could not be fetched: the fetch has been aborted or chunks
+	 *             failed even with the smallest chunk size. It carries the bugs fetched anyway.
+	 */
+	public List<Bug> getBugs(final Collection<Integer> ids) throws IncompleteFetchException {
+		if(ids == null){
+			throw new IllegalArgumentException("Paramter <ids> must not be mull"); //$NON-NLS-1$
+		}
+		final long start = System.currentTimeMillis();
+		final Fetch fetch = new Fetch(new TreeSet<Integer>(ids));
+		final List<CompletableFuture<Void>> workers = new ArrayList<CompletableFuture<Void>>();
+		for(int i = 1; i < Math.min(this.getMaxConcurrency(), fetch.chunkCount()); i++){
+			workers.add(CompletableFuture.runAsync(fetch, this.getExecutor()));
+		}
+		fetch.run();
+		for(final CompletableFuture<Void> worker : workers){
+			worker.join();
+		}
+		final List<Bug> result = fetch.getResult();
+		synchronized(this){
+			this.ids += fetch.size;
+			this.elapsedTime += System.currentTimeMillis() - start;
+		}
+		if(LOG.isDebugEnabled()){
+			LOG.debug(this.getStatistics());
+		}
+		final IncompleteFetchException error = fetch.getError();
+		if(error != null){
+			throw error;
+		}
+		return result;
+	}
+
+	/**
+	 * @return the maximum number of bugs requested with a single call
+	 */
+	public synchronized int getMaxChunkSize() {
+		return this.maxChunkSize;
+	}
+
+	/**
+	 * @return the maximum number of concurrent calls of a fetch
+	 */
+	public synchronized int getMaxConcurrency() {
+		return this.maxConcurrency;
+	}
+
+	/**
+	 * @return a snapshot of the statistics of all fetches
+	 */
+	public synchronized Statistics getStatistics() {
+		return new Statistics(this);
+	}
+
+	/**
+	 * @return the time in milliseconds a single call should take
+	 */
+	public synchronized long getTargetLatency() {
+		return this.targetLatency;
+	}
+
+	/**
+	 * Resets the statistics. The learned chunk size is kept.
+	 */
+	public synchronized void resetStatistics() {
+		this.bugs = 0L;
+		this.chunkLatencySum = 0L;
+		this.chunks = 0L;
+		this.elapsedTime = 0L;
+		this.failedChunks = 0L;
+		this.ids = 0L;
+		this.maxChunkLatency = 0L;
+		this.minChunkLatency = Long.MAX_VALUE;
+	}
+
+	/**
+	 * @param maxChunkSize
+	 *            the maximum number of bugs requested with a single call. Use it to stay below
+	 *            the response size limits of the server.
+	 */
+	public synchronized void setMaxChunkSize(final int maxChunkSize) {
+		if(maxChunkSize < MIN_CHUNK_SIZE){
+			throw new IllegalArgumentException("Paramter <maxChunkSize> must be at least " //$NON-NLS-1$
+					+ MIN_CHUNK_SIZE);
+		}
+		this.maxChunkSize = maxChunkSize;
+		this.chunkSize = Math.min(this.chunkSize, maxChunkSize);
+	}
+
+	/**
+	 * @param maxConcurrency
+	 *            the maximum number of concurrent calls of a fetch
+	 */
+	public synchronized void setMaxConcurrency(final int maxConcurrency) {
+		if(maxConcurrency < 1){
+			throw new IllegalArgumentException("Paramter <maxConcurrency> must be positive"); //$NON-NLS-1$
+		}
+		this.maxConcurrency = maxConcurrency;
+	}
+
+	/**
+	 * @param targetLatency
+	 *            the time in milliseconds a single call should take
+	 */
+	public synchronized void setTargetLatency(final long targetLatency) {
+		if(targetLatency < 1L){
+			throw new IllegalArgumentException("Paramter <targetLatency> must be positive"); //$NON-NLS-1$
+		}
+		this.targetLatency = targetLatency;
+	}
+
+	/**
+	 * Adapts the chunk size to a failed chunk: the next chunks are at most half as large, if the
+	 * chunk has been too large.
+	 */
+	private synchronized void chunkFailed(final int size, final boolean tooLarge) {
+		this.failedChunks++;
+		if(tooLarge){
+			this.chunkSize = Math.max(MIN_CHUNK_SIZE, Math.min(this.chunkSize, size / 2));
+		}
+	}
+
+	/**
+	 * Adapts the chunk size to the cost of a successful chunk.
+	 */
+	private synchronized void chunkSucceeded(final int size, final int found, final long latency) {
+		this.chunks++;
+		this.bugs += found;
+		this.chunkLatencySum += latency;
+		this.minChunkLatency = Math.min(this.minChunkLatency, latency);
+		this.maxChunkLatency = Math.max(this.maxChunkLatency, latency);
+
+		// the fixed cost of a call dominates small chunks (e.g. the rest of the ids), they would
+		// shrink the chunks for no reason
+		if(size * 2 < this.chunkSize){
+			return;
+		}
+
+		// the latency of a call grows with the number of requested ids and returned bugs
+		final double cost = (double) Math.max(latency, 1L) / size;
+		this.costPerId = this.costPerId == 0d ? cost : SMOOTHING * cost + (1d - SMOOTHING)
+				* this.costPerId;
+		final int target = (int) Math.min(this.targetLatency / this.costPerId, Integer.MAX_VALUE);
+
+		// grow at most by factor 2 per chunk, a single fast chunk could be an outlier
+		this.chunkSize = Math.max(MIN_CHUNK_SIZE, Math.min(Math.min(target, this.chunkSize * 2),
+				this.maxChunkSize));
+	}
+
+	private synchronized int getChunkSize() {
+		return this.chunkSize;
+	}
+
+	/**
+	 * @return <code>true</code> if the error may be caused by the size of the chunk, i.e. the call
+	 *         timed out or the server rejected the request or response as too large
+	 */
+	private static boolean isSplittable(final Exception e) {
+		for(Throwable t = e; t != null; t = t.getCause()){
+			if(t instanceof SocketTimeoutException){
+				return true;
+			}
+			if(t instanceof XmlRpcHttpTransportException){
+				final int status = ((XmlRpcHttpTransportException) t).getStatusCode();
+				for(final int code : SPLITTABLE_STATUS_CODES){
+					if(status == code){
+						return true;
+					}
+				}
+				return false;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,462 @@
+package de.lightningbug.api.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import de.lightningbug.api.domain.Bug;
+
+/**
+ * The graph of the bugs blocking a set of root bugs: an edge leads from a bug to every bug it
+ * depends on ({@link Bug#getDependsOn()}).
+ * <p>
+ * The bugs are the nodes <code>0..size()-1</code> in id order. The edges are stored as primitive
+ * adjacency arrays in both directions (depends on / blocks), so walking the graph allocates no
+ * objects. Bugs, that are referenced but could not be fetched (e.g. because the user must not
+ * see them), are part of the graph without a {@link Bug}.
+ * </p>
+ * The graph is immutable and safe for concurrent use.
+ *
+ * @author Sebastian Kirchner
+ *
+ * @see DependencyService
+ */
+public final class DependencyGraph {
+
+	/**
+	 * node -> first edge in {@link DependencyGraph#blockedBy}, the edges of a node end at the
+	 * first edge of the next node
+	 */
+	private final int[] blockedByStarts;
+
+	/**
+	 * the nodes blocked by each node
+	 */
+	private final int[] blockedBy;
+
+	/**
+	 * node -> bug, <code>null</code> if the bug could not be fetched
+	 */
+	private final Bug[] bugs;
+
+	/**
+	 * node -> first edge in {@link DependencyGraph#dependsOn}
+	 */
+	private final int[] dependsOnStarts;
+
+	/**
+	 * the nodes each node depends on
+	 */
+	private final int[] dependsOn;
+
+	/**
+	 * node -> estimated time, <code>0</code> if unknown
+	 */
+	private final double[] estimatedTimes;
+
+	/**
+	 * node -> id, ascending
+	 */
+	private final int[] ids;
+
+	private final int[] rootIds;
+
+	/**
+	 * @param rootIds
+	 *            the ids the graph has been built for
+	 * @param bugs
+	 *            id -> bug of every node, <code>null</code> for bugs that could not be fetched.
+	 *            The bugs every bug depends on must be part of the map.
+	 */
+	DependencyGraph(final int[] rootIds, final Map<Integer, Bug> bugs) {
+		this.rootIds = rootIds.clone();
+		final int size = bugs.size();
+		this.ids = new int[size];
+		this.bugs = new Bug[size];
+		this.estimatedTimes = new double[size];
+		int node = 0;
+		int edgeCount = 0;
+		for(final Map.Entry<Integer, Bug> entry : new TreeMap<Integer, Bug>(bugs).entrySet()){
+			final Bug bug = entry.getValue();
+			this.ids[node] = entry.getKey().intValue();
+			this.bugs[node] = bug;
+			if(bug != null){
+				this.estimatedTimes[node] = bug.getEstimatedTime() == null ? 0d : bug
+						.getEstimatedTime().doubleValue();
+				edgeCount += bug.getDependsOn() == null ? 0 : bug.getDependsOn().size();
+			}
+			node++;
+		}
+
+		// depends on, in the order of the nodes
+		this.dependsOnStarts = new int[size + 1];
+		this.dependsOn = new int[edgeCount];
+		final int[] blockedByCounts = new int[size + 1];
+		int edge = 0;
+		for(node = 0; node < size; node++){
+			this.dependsOnStarts[node] = edge;
+			final Bug bug = this.bugs[node];
+			if(bug != null && bug.getDependsOn() != null){
+				for(final Integer id : bug.getDependsOn()){
+					final int target = this.nodeOf(id.intValue());
+					if(target < 0){
+						throw new IllegalArgumentException("Bug " + id + " is not part of the graph"); //$NON-NLS-1$ //$NON-NLS-2$
+					}
+					this.dependsOn[edge++] = target;
+					blockedByCounts[target + 1]++;
+				}
+			}
+		}
+		this.dependsOnStarts[size] = edge;
+
+		// blocked by: the reversed edges
+		this.blockedByStarts = new int[size + 1];
+		for(node = 0; node < size; node++){
+			this.blockedByStarts[node + 1] = this.blockedByStarts[node] + blockedByCounts[node + 1];
+		}
+		this.blockedBy = new int[edgeCount];
+		final int[] next = Arrays.copyOf(this.blockedByStarts, size);
+		for(node = 0; node < size; node++){
+			for(int e = this.dependsOnStarts[node]; e < this.dependsOnStarts[node + 1]; e++){
+				this.blockedBy[next[this.dependsOn[e]]++] = node;
+			}
+		}
+	}
+
+	/**
+	 * Builds the graph of bugs, that are already known. Bugs referenced but not given are part
+	 * of the graph without a {@link Bug}.
+	 *
+	 * @param bugs
+	 *            the bugs
+	 * @return the graph of the bugs, all bugs are roots
+	 */
+	public static DependencyGraph of(final Collection<Bug> bugs) {
+		final Map<Integer, Bug> nodes = new TreeMap<Integer, Bug>();
+		for(final Bug bug : bugs){
+			if(bug.getDependsOn() != null){
+				for(final Integer id : bug.getDependsOn()){
+					if(!nodes.containsKey(id)){
+						nodes.put(id, null);
+					}
+				}
+			}
+		}
+		final int[] rootIds = new int[bugs.size()];
+		int i = 0;
+		for(final Bug bug : bugs){
+			if(bug.getId() == null){
+				throw new IllegalArgumentException("Bug without id: " + bug); //$NON-NLS-1$
+			}
+			nodes.put(bug.getId(), bug);
+			rootIds[i++] = bug.getId().intValue();
+		}
+		return new DependencyGraph(rootIds, nodes);
+	}
+
+	/**
+	 * The longest chain of dependencies of the whole graph, weighted by the estimated time of the
+	 * bugs (bugs without an estimated time count as <code>0</code>).
+	 *
+	 * @return the ids of the chain, starting with the first bug to work on
+	 * @throws IllegalStateException
+	 *             if the graph has cycles
+	 */
+	public int[] getCriticalPath() {
+		final int[] predecessors = new int[this.ids.length];
+		final double[] times = this.longestPaths(predecessors);
+		int end = -1;
+		for(int node = 0; node < times.length; node++){
+			if(end < 0 || times[node] > times[end]){
+				end = node;
+			}
+		}
+		return this.toPath(end, predecessors);
+	}
+
+	/**
+	 * The longest chain of dependencies, that blocks a bug, weighted by the estimated time of the
+	 * bugs.
+	 *
+	 * @param id
+	 *            the id of a bug of the graph
+	 * @return the ids of the chain, starting with the first bug to work on and ending with the
+	 *         given bug
+	 * @throws IllegalStateException
+	 *             if the graph has cycles
+	 */
+	public int[] getCriticalPath(final int id) {
+		final int[] predecessors = new int[this.ids.length];
+		this.longestPaths(predecessors);
+		return this.toPath(this.checkedNodeOf(id), predecessors);
+	}
+
+	/**
+	 * The estimated time of the longest chain of dependencies, that blocks a bug, including the
+	 * time of the bug itself.
+	 *
+	 * @param id
+	 *            the id of a bug of the graph
+	 * @return the sum of the estimated times of the critical path of the bug
+	 * @throws IllegalStateException
+	 *             if the graph has cycles
+	 */
+	public double getCriticalPathTime(final int id) {
+		return this.longestPaths(new int[this.ids.length])[this.checkedNodeOf(id)];
+	}
+
+	/**
+	 * Finds the groups of bugs, that depend on each other, directly or transitively (the strongly
+	 * connected components with more than one bug, or a bug depending on itself).
+	 *
+	 * @return the ids of the bugs of each cycle, an empty list if the graph is acyclic
+	 */
+	public List<int[]> getCycles() {
+		final int size = this.ids.length;
+		final List<int[]> cycles = new ArrayList<int[]>();
+		final int[] index = new int[size];
+		Arrays.fill(index, -1);
+		final int[] low = new int[size];
+		final int[] nextEdge = new int[size];
+		final boolean[] onStack = new boolean[size];
+		final int[] stack = new int[size];
+		final int[] callStack = new int[size];
+		int stackSize = 0;
+		int counter = 0;
+
+		// Tarjan's algorithm without recursion, deep chains would overflow the call stack
+		for(int start = 0; start < size; start++){
+			if(index[start] >= 0){
+				continue;
+			}
+			int depth = 0;
+			callStack[depth++] = start;
+			index[start] = low[start] = counter++;
+			stack[stackSize++] = start;
+			onStack[start] = true;
+			nextEdge[start] = this.dependsOnStarts[start];
+			while(depth > 0){
+				final int node = callStack[depth - 1];
+				if(nextEdge[node] < this.dependsOnStarts[node + 1]){
+					final int target = this.dependsOn[nextEdge[node]++];
+					if(index[target] < 0){
+						index[target] = low[target] = counter++;
+						stack[stackSize++] = target;
+						onStack[target] = true;
+						nextEdge[target] = this.dependsOnStarts[target];
+						callStack[depth++] = target;
+					}else if(onStack[target]){
+						low[node] = Math.min(low[node], index[target]);
+					}
+					continue;
+				}
+				depth--;
+				if(depth > 0){
+					final int caller = callStack[depth - 1];
+					low[caller] = Math.min(low[caller], low[node]);
+				}
+				if(low[node] == index[node]){
+					int componentStart = stackSize;
+					do{
+						onStack[stack[--componentStart]] = false;
+					}while(stack[componentStart] != node);
+					final int componentSize = stackSize - componentStart;
+					if(componentSize > 1 || this.dependsOnItself(node)){
+						final int[] cycle = new int[componentSize];
+						for(int i = 0; i < componentSize; i++){
+							cycle[i] = this.ids[stack[componentStart + i]];
+						}
+						Arrays.sort(cycle);
+						cycles.add(cycle);
+					}
+					stackSize = componentStart;
+				}
+			}
+		}
+		return cycles;
+	}
+
+	/**
+	 * @param id
+	 *            the id of a bug of the graph
+	 * @return the bug, <code>null</code> if it is not part of the graph or could not be fetched
+	 */
+	public Bug getBug(final int id) {
+		final int node = this.nodeOf(id);
+		return node < 0 ? null : this.bugs[node];
+	}
+
+	/**
+	 * @param id
+	 *            the id of a bug of the graph
+	 * @return the ids of the bugs directly blocked by the bug
+	 */
+	public int[] getBlocks(final int id) {
+		final int node = this.checkedNodeOf(id);
+		return this.toIds(this.blockedBy, this.blockedByStarts[node], this.blockedByStarts[node + 1]);
+	}
+
+	/**
+	 * @param id
+	 *            the id of a bug of the graph
+	 * @return the ids of the bugs the bug directly depends on
+	 */
+	public int[] getDependsOn(final int id) {
+		final int node = this.checkedNodeOf(id);
+		return this.toIds(this.dependsOn, this.dependsOnStarts[node], this.dependsOnStarts[node + 1]);
+	}
+
+	/**
+	 * @return the ids of all bugs of the graph, ascending
+	 */
+	public int[] getIds() {
+		return this.ids.clone();
+	}
+
+	/**
+	 * @return the ids the graph has been built for
+	 */
+	public int[] getRootIds() {
+		return this.rootIds.clone();
+	}
+
+	/**
+	 * Orders the bugs, so every bug comes after all bugs it depends on.
+	 *
+	 * @return the ids of all bugs of the graph in dependency order
+	 * @throws IllegalStateException
+	 *             if the graph has cycles ({@link DependencyGraph#getCycles()})
+	 */
+	public int[] getTopologicalOrder() {
+		final int[] order = this.topologicalOrder();
+		final int[] orderedIds = new int[order.length];
+		for(int i = 0; i < order.length; i++){
+			orderedIds[i] = this.ids[order[i]];
+		}
+		return orderedIds;
+	}
+
+	/**
+	 * @return <code>true</code> if some bugs depend on each other
+	 */
+	public boolean hasCycles() {
+		return !this.getCycles().isEmpty();
+	}
+
+	/**
+	 * @return the number of bugs in the graph
+	 */
+	public int size() {
+		return this.ids.length;
+	}
+
+	@Override
+	public String toString() {
+		return "DependencyGraph [bugs=" + this.ids.length + ", dependencies=" //$NON-NLS-1$ //$NON-NLS-2$
+				+ this.dependsOn.length + ", roots=" + Arrays.toString(this.rootIds) + "]"; //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	private int checkedNodeOf(final int id) {
+		final int node = this.nodeOf(id);
+		if(node < 0){
+			throw new IllegalArgumentException("Bug " + id + " is not part of the graph"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		return node;
+	}
+
+	private boolean dependsOnItself(final int node) {
+		for(int e = this.dependsOnStarts[node]; e < this.dependsOnStarts[node + 1]; e++){
+			if(this.dependsOn[e] == node){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param predecessors
+	 *            filled with the previous node of the longest path to each node, <code>-1</code>
+	 *            for the first node of a path
+	 * @return node -> time of the longest path ending with the node
+	 */
+	private double[] longestPaths(final int[] predecessors) {
+		final double[] times = new double[this.ids.length];
+		for(final int node : this.topologicalOrder()){
+			predecessors[node] = -1;
+			double longest = 0d;
+			for(int e = this.dependsOnStarts[node]; e < this.dependsOnStarts[node + 1]; e++){
+				final int blocker = this.dependsOn[e];
+				if(predecessors[node] < 0 || times[blocker] > longest){
+					longest = times[blocker];
+					predecessors[node] = blocker;
+				}
+			}
+			times[node] = longest + this.estimatedTimes[node];
+		}
+		return times;
+	}
+
+	/**
+	 * @return the node of a bug, a negative value if the bug is not part of the graph
+	 */
+	private int nodeOf(final int id) {
+		return Arrays.binarySearch(this.ids, id);
+	}
+
+	private int[] toIds(final int[] nodes, final int from, final int to) {
+		final int[] result = new int[to - from];
+		for(int i = from; i < to; i++){
+			result[i - from] = this.ids[nodes[i]];
+		}
+		return result;
+	}
+
+	private int[] toPath(final int end, final int[] predecessors) {
+		if(end < 0){
+			return new int[0];
+		}
+		int length = 0;
+		for(int node = end; node >= 0; node = predecessors[node]){
+			length++;
+		}
+		final int[] path = new int[length];
+		for(int node = end; node >= 0; node = predecessors[node]){
+			path[--length] = this.ids[node];
+		}
+		return path;
+	}
+
+	/**
+	 * Kahn's algorithm: a bug is ready, when all bugs it depends on are ordered.
+	 *
+	 * @return the nodes in dependency order
+	 */
+	private int[] topologicalOrder() {
+		final int size = this.ids.length;
+		final int[] pending = new int[size];
+		final int[] order = new int[size];
+		int tail = 0;
+		for(int node = 0; node < size; node++){
+			pending[node] = this.dependsOnStarts[node + 1] - this.dependsOnStarts[node];
+			if(pending[node] == 0){
+				order[tail++] = node;
+			}
+		}
+		for(int head = 0; head < tail; head++){
+			final int node = order[head];
+			for(int e = this.blockedByStarts[node]; e < this.blockedByStarts[node + 1]; e++){
+				if(--pending[this.blockedBy[e]] == 0){
+					order[tail++] = this.blockedBy[e];
+				}
+			}
+		}
+		if(tail < size){
+			throw new IllegalStateException((size - tail)
+					+ " bugs could not be ordered because of cyclic dependencies"); //$NON-NLS-1$
+		}
+		return order;
+	}
+}
@@ -0,0 +1,125 @@
+package de.lightningbug.api.service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Executor;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import de.lightningbug.api.BugzillaClient;
+import de.lightningbug.api.domain.Bug;
+
+/**
+ * Builds the {@link DependencyGraph} of the bugs blocking a set of root bugs.
+ * <p>
+ * The graph is fetched level by level: all bugs of a level are fetched by their ids with a
+ * {@link BulkBugService}, that searches them in concurrent chunks. The bugs the level depends on
+ * and that are not known yet form the next level. A tree of 10.000 bugs with a depth of 10 takes
+ * a few dozen calls instead of 10.000.
+ * </p>
+ * <b>Example:</b>
+ *
+ * <pre>
+ * final DependencyGraph graph = new DependencyService(client).getDependencyGraph(Arrays.asList(4711));
+ * final int[] criticalPath = graph.getCriticalPath(4711);
+ * </pre>
+ *
+ * @author Sebastian Kirchner
+ *
+ */
+public class DependencyService extends AbstractService {
+
+	private static final Log LOG = LogFactory.getLog(DependencyService.class);
+
+	private final BulkBugService bulkBugService;
+
+	/**
+	 * @param client
+	 *            the client used by the service to query information from the
+	 *            bugzilla instance
+	 */
+	public DependencyService(final BugzillaClient client) {
+		this(client, null);
+	}
+
+	/**
+	 * @param client
+	 *            the client used by the service to query information from the
+	 *            bugzilla instance
+	 * @param executor
+	 *            the executor running the chunks of the {@link BulkBugService} or
+	 *            <code>null</code> to use the executor of the client
+	 *            ({@link BugzillaClient#getExecutorService()})
+	 */
+	public DependencyService(final BugzillaClient client, final Executor executor) {
+		super(client);
+		this.bulkBugService = new BulkBugService(client, executor);
+	}
+
+	/**
+	 * @return the service fetching the bugs of each level, e.g. to tune the chunks or to read
+	 *         the statistics
+	 */
+	public BulkBugService getBulkBugService() {
+		return this.bulkBugService;
+	}
+
+	/**
+	 * Fetches the given bugs and all bugs blocking them, directly or transitively.
+	 *
+	 * @param rootIds
+	 *            the ids of the root bugs
+	 * @return the graph of the root bugs and their blockers. Bugs, that could not be fetched,
+	 *         are part of the graph without a {@link Bug}.
+	 */
+	public DependencyGraph getDependencyGraph(final Collection<Integer> rootIds) {
+		if(rootIds == null){
+			throw new IllegalArgumentException("Paramter <rootIds> must not be mull"); //$NON-NLS-1$
+		}
+		final long start = System.currentTimeMillis();
+		final Map<Integer, Bug> nodes = new HashMap<Integer, Bug>();
+		Set<Integer> level = new TreeSet<Integer>(rootIds);
+		int depth = 0;
+		while(!level.isEmpty()){
+			for(final Integer id : level){
+				// bugs missing in the results stay in the graph without a bug
+				nodes.put(id, null);
+			}
+			final Set<Integer> nextLevel = new TreeSet<Integer>();
+			List<Bug> bugs;
+			try{
+				bugs = this.bulkBugService.getBugs(level);
+			}catch(final BulkBugService.IncompleteFetchException e){
+				LOG.warn("The bugs " + e.getFailedIds() + " of level " + depth //$NON-NLS-1$ //$NON-NLS-2$
+						+ " could not be fetched", e); //$NON-NLS-1$
+				bugs = e.getBugs();
+			}
+			for(final Bug bug : bugs){
+				nodes.put(bug.getId(), bug);
+				if(bug.getDependsOn() != null){
+					for(final Integer id : bug.getDependsOn()){
+						if(!nodes.containsKey(id)){
+							nextLevel.add(id);
+						}
+					}
+				}
+			}
+			level = nextLevel;
+			depth++;
+		}
+		final int[] roots = new int[rootIds.size()];
+		int i = 0;
+		for(final Integer id : rootIds){
+			roots[i++] = id.intValue();
+		}
+		final DependencyGraph graph = new DependencyGraph(roots, nodes);
+		LOG.info(String.format("Dependency graph of %d bugs with %d levels fetched in %d ms", //$NON-NLS-1$
+				graph.size(), depth, System.currentTimeMillis() - start));
+		return graph;
+	}
+}
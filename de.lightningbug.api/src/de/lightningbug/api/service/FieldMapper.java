@@ -0,0 +1,151 @@
+package de.lightningbug.api.service;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import de.lightningbug.api.util.JsonReader;
+
+/**
+ * Copies the items of a hash returned by Bugzilla (e.g. a bug of <code>Bug.search</code>) into
+ * the properties of a domain object. The setters are registered once, so decoding a hash needs a
+ * single table lookup per item. Unknown items and <code>null</code> values are skipped.
+ * <p>
+ * A mapper is immutable after its setters have been registered and can be shared between
+ * threads.
+ * </p>
+ *
+ * @author Sebastian Kirchner
+ *
+ * @param <T>
+ *            the type of the domain object
+ * @param <C>
+ *            the type of an additional context passed to every setter (e.g. already resolved
+ *            users), {@link Void} if there is none
+ */
+final class FieldMapper<T, C> {
+
+	/**
+	 * Sets a single property of a domain object.
+	 */
+	interface Setter<T, C> {
+
+		/**
+		 * @param target
+		 *            the domain object
+		 * @param value
+		 *            the value of the item, never <code>null</code>
+		 * @param context
+		 *            the context passed to {@link FieldMapper#populate(Object, Map, Object)}
+		 */
+		void set(T target, Object value, C context);
+	}
+
+	/**
+	 * item name -> setter
+	 */
+	private final Map<String, Setter<T, C>> setters = new HashMap<String, Setter<T, C>>();
+
+	/**
+	 * @return the names of all items with a setter
+	 */
+	Set<String> getItemNames() {
+		return Collections.unmodifiableSet(this.setters.keySet());
+	}
+
+	/**
+	 * Registers the setter of an item.
+	 *
+	 * @param itemName
+	 *            the name of the item in the hash (e.g. <code>assigned_to</code>)
+	 * @param setter
+	 *            the setter of the corresponding property
+	 * @return this mapper
+	 */
+	FieldMapper<T, C> map(final String itemName, final Setter<T, C> setter) {
+		this.setters.put(itemName, setter);
+		return this;
+	}
+
+	/**
+	 * Copies all known items of the hash into the domain object.
+	 *
+	 * @param target
+	 *            the domain object
+	 * @param hash
+	 *            a hash returned by Bugzilla
+	 * @param context
+	 *            passed to every setter
+	 * @return the given domain object
+	 */
+	T populate(final T target, final Map<?, ?> hash, final C context) {
+		for(final Map.Entry<?, ?> item : hash.entrySet()){
+			final Object value = item.getValue();
+			if(value == null){
+				continue;
+			}
+			final Setter<T, C> setter = this.setters.get(item.getKey());
+			if(setter != null){
+				setter.set(target, value, context);
+			}
+		}
+		return target;
+	}
+
+	/**
+	 * @return the value as {@link Date}, <code>null</code> if the value is no date. Strings are
+	 *         parsed, JSON-RPC returns dates as strings.
+	 */
+	static Date toDate(final Object value) {
+		if(value instanceof String){
+			return JsonReader.parseDate((String) value);
+		}
+		return value instanceof Date ? (Date) value : null;
+	}
+
+	/**
+	 * @return the value as {@link Double}, a string is parsed
+	 */
+	static Double toDouble(final Object value) {
+		if(value instanceof Double){
+			return (Double) value;
+		}
+		if(value instanceof Number){
+			return Double.valueOf(((Number) value).doubleValue());
+		}
+		return Double.valueOf(value.toString());
+	}
+
+	/**
+	 * @return the value as {@link Integer}, a string is parsed
+	 */
+	static Integer toInteger(final Object value) {
+		if(value instanceof Integer){
+			return (Integer) value;
+		}
+		if(value instanceof Number){
+			return Integer.valueOf(((Number) value).intValue());
+		}
+		return Integer.valueOf(value.toString());
+	}
+
+	/**
+	 * @return the items of an array as ordered set of {@link Integer}s
+	 */
+	static Set<Integer> toIntegers(final Object value) {
+		final Set<Integer> result = new TreeSet<Integer>();
+		if(value instanceof Object[]){
+			for(final Object item : (Object[]) value){
+				if(item != null){
+					result.add(toInteger(item));
+				}
+			}
+		}else{
+			result.add(toInteger(value));
+		}
+		return result;
+	}
+}
@@ -9,16 +9,21 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.xmlrpc.XmlRpcException;
+import org.apache.xmlrpc.client.XmlRpcClientException;
 
 import de.lightningbug.api.BugzillaClient;
 import de.lightningbug.api.cache.LocalCache;
 import de.lightningbug.api.domain.Product;
-import de.lightningbug.api.util.HashArray;
 import de.lightningbug.api.util.HashArray.NoHashArrayException;
+import de.lightningbug.api.xmlrpc.MultiCall;
 
 /**
  * encapsulates methods to handle Bugzilla {@link Product} objects.
@@ -30,16 +35,27 @@ public class ProductService extends AbstractService {
 
 	protected final static Log LOG = LogFactory.getLog(ProductService.class);
 
-	protected BugService bugService = null;
+	protected final BugService bugService;
 
 	/**
 	 * Cache for the id's of products the user can search or enter bugs against
 	 */
-	private Integer[] accessibleProductIds = null;
+	private volatile Integer[] accessibleProductIds = null;
 
-	protected List<Product> products = null;
+	/**
+	 * the products, published by the thread that has loaded them
+	 */
+	protected volatile List<Product> products = null;
+
+	/**
+	 * the initial loading of the products, awaited by concurrent callers of
+	 * {@link ProductService#getProducts()}. <code>null</code> if it has not been started or
+	 * failed.
+	 */
+	private final AtomicReference<FutureTask<List<Product>>> productsLoader =
+			new AtomicReference<FutureTask<List<Product>>>();
 
-	private boolean useLocalCache = true;
+	private final boolean useLocalCache;
 
 	/**
 	 * @param client
@@ -58,15 +74,73 @@ public class ProductService extends AbstractService {
 	 */
 	public ProductService(final BugzillaClient client, final boolean useLocalCache) {
 		super(client);
-		this.client = client;
+		this.bugService = new BugService(client);
 		this.useLocalCache = useLocalCache;
 	}
 
+	/**
+	 * Returns the products like {@link ProductService#getProductsOrFail()}.
+	 * 
+	 * @return the products, an empty list if they could not be loaded
+	 */
 	public List<Product> getProducts() {
+		try{
+			return this.getProductsOrFail();
+		}catch(final XmlRpcException e){
+			LOG.error("The products could not be loaded", e); //$NON-NLS-1$
+			return new LinkedList<Product>();
+		}
+	}
 
-		if(this.products != null){
-			return this.products;
+	/**
+	 * Returns the products. They are loaded once, concurrent callers wait for the first one
+	 * loading them. If loading fails, the next call tries again.
+	 * 
+	 * @return the products
+	 * @throws XmlRpcException
+	 *             if the products could not be loaded
+	 */
+	List<Product> getProductsOrFail() throws XmlRpcException {
+		while(true){
+			final List<Product> products = this.products;
+			if(products != null){
+				return products;
+			}
+			final FutureTask<List<Product>> loader = this.productsLoader.get();
+			if(loader == null){
+				final FutureTask<List<Product>> created = new FutureTask<List<Product>>(
+						this::initProducts);
+				if(this.productsLoader.compareAndSet(null, created)){
+					created.run();
+				}
+				continue;
+			}
+			try{
+				return loader.get();
+			}catch(final InterruptedException e){
+				Thread.currentThread().interrupt();
+				throw new XmlRpcClientException("Interrupted while waiting for the products", e); //$NON-NLS-1$
+			}catch(final ExecutionException e){
+				// the next call tries again
+				this.productsLoader.compareAndSet(loader, null);
+				if(e.getCause() instanceof XmlRpcException){
+					throw (XmlRpcException) e.getCause();
+				}
+				throw new XmlRpcClientException("The products could not be loaded", e.getCause()); //$NON-NLS-1$
+			}
 		}
+	}
+
+	/**
+	 * Loads the products from the local cache or the bugzilla instance and publishes them.
+	 * 
+	 * @return the products
+	 * @throws XmlRpcException
+	 *             if the products could not be queried
+	 * @throws NoHashArrayException
+	 *             if the fields of the products could not be decoded
+	 */
+	private List<Product> initProducts() throws XmlRpcException, NoHashArrayException {
 
 		// the availibility of the cache will only be checked and maintained, if
 		// the factory is configured to use the cache
@@ -76,68 +150,104 @@ public class ProductService extends AbstractService {
 			final List<Product> productsFromCache = LocalCache.getProducts(this.client);
 			cacheAvailable = productsFromCache != null;
 			if(cacheAvailable){
-				// update the cache in the backgroud...
-				new Thread() {
+				// return the results from the local cache...
+				this.products = productsFromCache;
+				// ... and update the cache in the backgroud
+				this.client.getExecutorService().execute(new Runnable() {
 
 					@Override
 					public void run() {
 						LOG.info("updating the product cache in the backgroud"); //$NON-NLS-1$
-						ProductService.this.products = ProductService.this.loadProducts();
-						LocalCache.setProducts(ProductService.this.client,
-								ProductService.this.products);
+						final List<Product> loaded;
+						try{
+							loaded = ProductService.this.loadProducts();
+						}catch(final Exception e){
+							// keep the products of the cache
+							LOG.warn("The product cache could not be updated", e); //$NON-NLS-1$
+							return;
+						}
+						ProductService.this.products = loaded;
+						LocalCache.setProducts(ProductService.this.client, loaded);
 					}
-				}.start();
-				// ... and return the results from the local cache
-				this.products = productsFromCache;
-				return this.products;
+				});
+				return productsFromCache;
 			}
 		}
 
-		this.products = this.loadProducts();
+		final List<Product> products = this.loadProducts();
+		this.products = products;
 		if(!cacheAvailable){
 			// the make it available the next time
 			LOG.info("updating the product cache"); //$NON-NLS-1$
-			LocalCache.setProducts(this.client, this.products);
+			LocalCache.setProducts(this.client, products);
 		}
-		return this.products;
+		return products;
 	}
 
-	protected List<Product> loadProducts() {
+	/**
+	 * @return the products with their components, versions, milestones and severities
+	 * @throws XmlRpcException
+	 *             if a call failed
+	 * @throws NoHashArrayException
+	 *             if the bug fields could not be decoded
+	 */
+	protected List<Product> loadProducts() throws XmlRpcException, NoHashArrayException {
 		final List<Product> prods = new LinkedList<Product>();
-		try{
-			// Param = a hash containing one item, ids, that is an array of
-			// product ids.
-			final HashMap<String, Object> params = new HashMap<String, Object>();
-			params.put("ids", this.getAccessibleProductIds()); //$NON-NLS-1$
-			final Map<?, ?> result = (Map<?, ?>) this.client.execute("Product.get", params); //$NON-NLS-1$
-
-			// result = a hash containing one item, products, that is an array
-			// of hashes.
-			final HashArray productHashes = new HashArray(result.values().iterator().next());
-			for(final Map<?, ?> productHash : productHashes){
-				// Each hash describes a product, and has the following items:
-				// id,name, description, and internals. The id item is the id of
-				// the product. The name item is the name of the product. The
-				// description is the description of the product. Finally, the
-				// internals is an internal representation of the product
-				final Integer id = (Integer) productHash.get(Product.ID);
-				final String name = (String) productHash.get(Product.NAME);
-				final Product product = new Product(id, name);
-				product.setComponents(this.getComponentsFor(product));
-				product.setVersions(this.getVersionsFor(product));
-				product.setMilestones(this.getMilestonesFor(product));
-				product.setSeverities(this.getSeverities());
-				prods.add(product);
-			}
+		this.prefetch();
+
+		// Param = a hash containing one item, ids, that is an array of
+		// product ids.
+		final HashMap<String, Object> params = new HashMap<String, Object>();
+		params.put("ids", this.getAccessibleProductIds()); //$NON-NLS-1$
+
+		// result = a hash containing one item, products, that is an array
+		// of hashes. The products are created while the response is parsed.
+		this.client.executeStreaming("Product.get", params, "products", productHash -> { //$NON-NLS-1$ //$NON-NLS-2$
+			// Each hash describes a product, and has the following items:
+			// id,name, description, and internals. The id item is the id of
+			// the product. The name item is the name of the product. The
+			// description is the description of the product. Finally, the
+			// internals is an internal representation of the product
+			final Integer id = (Integer) productHash.get(Product.ID);
+			final String name = (String) productHash.get(Product.NAME);
+			prods.add(new Product(id, name));
+		});
+		for(final Product product : prods){
+			product.setComponents(this.getComponentsFor(product));
+			product.setVersions(this.getVersionsFor(product));
+			product.setMilestones(this.getMilestonesFor(product));
+			product.setSeverities(this.getSeverities());
+		}
+		return prods;
+	}
 
-		}catch(final XmlRpcException e){
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+	/**
+	 * Queries the ids of the accessible products and the legal bug fields with a single request,
+	 * if neither of them has been loaded before. If that fails, both are queried separately
+	 * later on.
+	 * 
+	 * @see ProductService#getAccessibleProductIds()
+	 * @see BugFieldRegistry
+	 */
+	private void prefetch() {
+		final BugService bugService = this.bugService;
+		if(this.accessibleProductIds != null || bugService.isLegalBugFieldsLoaded()){
+			return;
+		}
+		final MultiCall multiCall = this.client.createMultiCall();
+		final Future<Object> productIds = multiCall.add("Product.get_accessible_products"); //$NON-NLS-1$
+		final Future<Object> fields = multiCall.add("Bug.fields"); //$NON-NLS-1$
+		multiCall.execute();
+		try{
+			this.accessibleProductIds = toIds(productIds.get());
+			bugService.setLegalBugFields(fields.get());
+		}catch(final InterruptedException e){
+			Thread.currentThread().interrupt();
+		}catch(final ExecutionException e){
+			LOG.warn("Products and bug fields could not be prefetched", e.getCause()); //$NON-NLS-1$
 		}catch(final NoHashArrayException e){
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+			LOG.warn("Products and bug fields could not be prefetched", e); //$NON-NLS-1$
 		}
-		return prods;
 	}
 
 	/**
@@ -150,61 +260,44 @@ public class ProductService extends AbstractService {
 	 * @see ProductService#getProducts()
 	 */
 	private Integer[] getAccessibleProductIds() throws XmlRpcException {
-		if(this.accessibleProductIds == null){
-
-			final Map<?, ?> result = (Map<?, ?>) this.client
-					.execute("Product.get_accessible_products"); //$NON-NLS-1$
-			final Object[] ints = (Object[]) result.values().iterator().next();
-			this.accessibleProductIds = new Integer[ints.length];
-			for(int i = 0; i < ints.length; i++){
-				this.accessibleProductIds[i] = (Integer) ints[i];
-			}
+		Integer[] accessibleProductIds = this.accessibleProductIds;
+		if(accessibleProductIds == null){
+			// concurrent callers may query the ids twice, but publish equal arrays
+			accessibleProductIds = toIds(this.client.execute("Product.get_accessible_products")); //$NON-NLS-1$
+			this.accessibleProductIds = accessibleProductIds;
 		}
-		return this.accessibleProductIds;
+		return accessibleProductIds;
+	}
+
+	/**
+	 * @param result
+	 *            the result of a <code>Product.get_accessible_products</code> call
+	 * @return the ids of the products
+	 */
+	private static Integer[] toIds(final Object result) {
+		final Object[] ints = (Object[]) ((Map<?, ?>) result).values().iterator().next();
+		final Integer[] ids = new Integer[ints.length];
+		for(int i = 0; i < ints.length; i++){
+			ids[i] = (Integer) ints[i];
+		}
+		return ids;
 	}
 
 	/**
-	 * TODO
-	 * 
 	 * @param product
-	 * @return
+	 * @return the names of the components of the given product
 	 * @throws NoHashArrayException
 	 * @throws XmlRpcException
 	 */
 	private Set<String> getComponentsFor(final Product product) throws XmlRpcException,
 			NoHashArrayException {
-
-		final HashArray fields = this.getLegalBugFields();
-
-		for(final Map<?, ?> field : fields){
-			// search for component field
-			if(!field.get("name").equals("component")){
-				continue;
-			}
-			// legal component values found
-			final HashArray values = new HashArray(field.get("values"));
-			final Set<String> components = new TreeSet<String>();
-			for(final Map<?, ?> value : values){
-				final String componentName = (String) value.get("name");
-				// extract product <-> component association
-				final Object[] visibilityValues = (Object[]) value.get("visibility_values");
-				for(final Object string : visibilityValues){
-					if(product.getName().equals(string)){
-						components.add(componentName);
-					}
-				}
-			}
-			return components;
-		}
-
-		return new TreeSet<String>();
+		return new TreeSet<String>(this.getBugFieldIndex().getValues("component", //$NON-NLS-1$
+				product.getName()));
 	}
 
 	/**
-	 * TODO
-	 * 
 	 * @param product
-	 * @return
+	 * @return the versions of the given product
 	 * @throws NoHashArrayException
 	 * @throws XmlRpcException
 	 */
@@ -213,36 +306,15 @@ public class ProductService extends AbstractService {
 
 		LOG.info("Loading versions for product " + product.getName()); //$NON-NLS-1$
 
-		final HashArray fields = this.getLegalBugFields();
-
-		for(final Map<?, ?> field : fields){
-			// search for component field
-			if(!field.get("name").equals("version")){
-				continue;
-			}
-			// legal component values found
-			final HashArray values = new HashArray(field.get("values"));
-			final Set<String> versions = new TreeSet<String>();
-			for(final Map<?, ?> value : values){
-				final String version = (String) value.get("name");
-				// extract product <-> component association
-				final Object[] visibilityValues = (Object[]) value.get("visibility_values");
-				for(final Object visibilityValue : visibilityValues){
-					if(product.getName().equals(visibilityValue)){
-						versions.add(version);
-					}
-				}
-			}
+		final Set<String> versions = new TreeSet<String>(this.getBugFieldIndex().getValues(
+				"version", product.getName())); //$NON-NLS-1$
+		if(LOG.isDebugEnabled()){
 			LOG.debug(versions.size() + " version found for product " + product.getName()); //$NON-NLS-1$
-			return versions;
 		}
-		LOG.debug("No versions found for product " + product.getName()); //$NON-NLS-1$
-		return new TreeSet<String>();
+		return versions;
 	}
 
 	/**
-	 * TODO
-	 * 
 	 * @param product
 	 * @return an empty array, if no {@link Milestone} exist for the given {@link Product}.
 	 * @throws NoHashArrayException
@@ -253,37 +325,16 @@ public class ProductService extends AbstractService {
 
 		LOG.debug("Loading milestones for product " + product.getName()); //$NON-NLS-1$
 
-		final HashArray fields = this.getLegalBugFields();
-
-		for(final Map<?, ?> field : fields){
-			// search for component field
-			if(!field.get("name").equals("target_milestone")){ //$NON-NLS-1$ //$NON-NLS-2$
-				continue;
-			}
-			// legal component values found
-			final HashArray values = new HashArray(field.get("values")); //$NON-NLS-1$
-			final Set<String> milestones = new TreeSet<String>();
-			for(final Map<?, ?> value : values){
-				final String milestone = (String) value.get("name");
-				// extract product <-> component association
-				final Object[] visibilityValues = (Object[]) value.get("visibility_values"); //$NON-NLS-1$
-				for(final Object visibilityValue : visibilityValues){
-					if(product.getName().equals(visibilityValue)){
-						milestones.add(milestone);
-					}
-				}
-			}
+		final Set<String> milestones = new TreeSet<String>(this.getBugFieldIndex().getValues(
+				"target_milestone", product.getName())); //$NON-NLS-1$
+		if(LOG.isDebugEnabled()){
 			LOG.debug(milestones.size() + " milestones found for product " + product.getName()); //$NON-NLS-1$
-			return milestones;
 		}
-		LOG.debug("No milestones found for product " + product.getName()); //$NON-NLS-1$
-		return new TreeSet<String>();
+		return milestones;
 	}
 
 	/**
-	 * TODO
-	 * 
-	 * @return an empty array, if no {@link Milestone} exist for the given {@link Product}.
+	 * @return the legal severities of bugs
 	 * @throws NoHashArrayException
 	 * @throws XmlRpcException
 	 */
@@ -291,31 +342,13 @@ public class ProductService extends AbstractService {
 
 		LOG.debug("Loading severities"); //$NON-NLS-1$
 
-		final HashArray fields = this.getLegalBugFields();
-
-		for(final Map<?, ?> field : fields){
-			// search for component field
-			if(!field.get("name").equals("bug_severity")){ //$NON-NLS-1$ //$NON-NLS-2$
-				continue;
-			}
-			// legal component values found
-			final HashArray values = new HashArray(field.get("values")); //$NON-NLS-1$
-			final Set<String> severities = new TreeSet<String>();
-			for(final Map<?, ?> value : values){
-				//$NON-NLS-1$
-				severities.add((String) value.get("name"));
-			}
-			LOG.debug(severities.size() + " severities found"); //$NON-NLS-1$
-			return severities;
-		}
-		LOG.debug("No severities found"); //$NON-NLS-1$
-		return new TreeSet<String>();
+		final Set<String> severities = new TreeSet<String>(this.getBugFieldIndex().getValues(
+				"bug_severity")); //$NON-NLS-1$
+		LOG.debug(severities.size() + " severities found"); //$NON-NLS-1$
+		return severities;
 	}
 
-	private HashArray getLegalBugFields() throws XmlRpcException, NoHashArrayException {
-		if(this.bugService == null){
-			this.bugService = new BugService(this.client);
-		}
-		return this.bugService.getLegalBugFields();
+	private BugFieldIndex getBugFieldIndex() throws XmlRpcException, NoHashArrayException {
+		return this.client.getBugFieldRegistry().getIndex();
 	}
 }
@@ -1,20 +1,27 @@
 package de.lightningbug.api.service;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.xmlrpc.XmlRpcException;
+import org.apache.xmlrpc.client.XmlRpcClientException;
 
 import de.lightningbug.api.BugzillaClient;
 import de.lightningbug.api.domain.User;
-import de.lightningbug.api.util.HashArray;
-import de.lightningbug.api.util.HashArray.NoHashArrayException;
 
 /**
  * This service is used to gather information about the users of the bugzilla instance.
@@ -26,6 +33,20 @@ public class UserService extends AbstractService {
 
 	protected final static Log LOG = LogFactory.getLog(UserService.class);
 
+	/**
+	 * The maximum number of login names queried with a single <code>User.get</code> call
+	 */
+	public static final int USER_GET_CHUNK_SIZE = 100;
+
+	/**
+	 * Decodes the hashes returned by <code>User.get</code>
+	 */
+	private static final FieldMapper<User.Builder, Void> USER_MAPPER = new FieldMapper<User.Builder, Void>()
+			.map("id", (user, value, none) -> user.id(FieldMapper.toInteger(value))) //$NON-NLS-1$
+			.map("real_name", (user, value, none) -> user.realName((String) value)) //$NON-NLS-1$
+			.map("email", (user, value, none) -> user.email((String) value)) //$NON-NLS-1$
+			.map("name", (user, value, none) -> user.loginName((String) value)); //$NON-NLS-1$
+
 	/**
 	 * @param client
 	 *            the client used by the service to query information from the
@@ -37,23 +58,53 @@ public class UserService extends AbstractService {
 
 	/**
 	 * @return a set of all active (not disabled) users of the connected bugzilla, ordered by thier
-	 *         id {@link User#getId()}.
+	 *         id {@link User#getId()}. The set is empty, if the users could not be queried.
 	 */
 	public Set<User> getActiveUsers() {
+		try{
+			return this.getActiveUsersOrFail();
+		}catch(final XmlRpcException e){
+			LOG.warn("Active users could not be queried", e); //$NON-NLS-1$
+			return new HashSet<User>();
+		}
+	}
+
+	/**
+	 * @return a set of all active (not disabled) users of the connected bugzilla, ordered by thier
+	 *         id {@link User#getId()}.
+	 * @throws XmlRpcException
+	 *             if the call failed
+	 */
+	Set<User> getActiveUsersOrFail() throws XmlRpcException {
 		LOG.info("Getting a list of all active users");//$NON-NLS-1$
 
 		final HashMap<String, Object> params = new HashMap<String, Object>();
 		params.put("match", new Object[] { "*" }); //$NON-NLS-1$ //$NON-NLS-2$
 
-		final Set<User> users = getUsers(params);
+		final Set<User> users = this.queryUsers(params);
 		LOG.info(String.format("%d active users have been found", users.size())); //$NON-NLS-1$
 		return users;
 	}
 
 	/**
-	 * @return a user with the given login name or null, if there is no such user.
+	 * @return a user with the given login name or null, if there is no such user or the user
+	 *         could not be queried.
 	 */
 	public User getUser(final String loginName) {
+		try{
+			return this.getUserOrFail(loginName);
+		}catch(final XmlRpcException e){
+			LOG.warn(String.format("User %s could not be queried", loginName), e); //$NON-NLS-1$
+			return null;
+		}
+	}
+
+	/**
+	 * @return a user with the given login name or null, if there is no such user.
+	 * @throws XmlRpcException
+	 *             if the call failed
+	 */
+	User getUserOrFail(final String loginName) throws XmlRpcException {
 
 		LOG.info(String.format("Searching for the users with the login name %s", loginName));//$NON-NLS-1$
 
@@ -61,34 +112,146 @@ public class UserService extends AbstractService {
 		params.put("match", new Object[] { loginName }); //$NON-NLS-1$ //$NON-NLS-2$
 		params.put("include_disabled", true); //$NON-NLS-1$
 
-		final Set<User> users = getUsers(params);
+		final Set<User> users = this.queryUsers(params);
 		if(users.isEmpty()){
-			LOG.warn(String.format("User %s not found!")); //$NON-NLS-1$
+			LOG.warn(String.format("User %s not found!", loginName)); //$NON-NLS-1$
+			return null;
 		}
 		return users.iterator().next();
 	}
 
+	/**
+	 * Resolves the users with the given login names like
+	 * {@link UserService#getUsersOrFail(Collection)}.
+	 * 
+	 * @param loginNames
+	 *            the login names of the users (duplicates and <code>null</code> are ignored)
+	 * @return a map of the found users by their login name. Login names without a matching user
+	 *         are missing in the map. The map is empty, if the users could not be queried.
+	 */
+	public Map<String, User> getUsers(final Collection<String> loginNames) {
+		try{
+			return this.getUsersOrFail(loginNames);
+		}catch(final XmlRpcException e){
+			LOG.warn("Users could not be resolved", e); //$NON-NLS-1$
+			return new HashMap<String, User>();
+		}
+	}
+
+	/**
+	 * Resolves the users with the given login names. The names are queried in chunks of
+	 * {@link UserService#USER_GET_CHUNK_SIZE} and the chunks are sent concurrently using the
+	 * executor of the client ({@link BugzillaClient#getExecutorService()}).
+	 * <p>
+	 * The calling thread runs every chunk, that no thread of the executor has started yet. So it
+	 * never waits for queued chunks, even if it is a thread of a bounded executor itself (e.g.
+	 * while searching for an asynchronous service).
+	 * </p>
+	 * 
+	 * @param loginNames
+	 *            the login names of the users (duplicates and <code>null</code> are ignored)
+	 * @return a map of the found users by their login name. Login names without a matching user
+	 *         are missing in the map.
+	 * @throws XmlRpcException
+	 *             if the users of a chunk could not be queried
+	 */
+	Map<String, User> getUsersOrFail(final Collection<String> loginNames) throws XmlRpcException {
+
+		final Map<String, User> result = new HashMap<String, User>();
+
+		final List<String> names = new ArrayList<String>(new LinkedHashSet<String>(loginNames));
+		names.remove(null);
+		if(names.isEmpty()){
+			return result;
+		}
+		LOG.info(String.format("Searching for %d users by their login names", names.size())); //$NON-NLS-1$
+
+		final List<FutureTask<Set<User>>> chunks = new ArrayList<FutureTask<Set<User>>>();
+		for(int i = 0; i < names.size(); i += USER_GET_CHUNK_SIZE){
+			final List<String> chunk = names.subList(i, Math.min(i + USER_GET_CHUNK_SIZE,
+					names.size()));
+			final HashMap<String, Object> params = new HashMap<String, Object>();
+			params.put("names", chunk.toArray()); //$NON-NLS-1$
+			chunks.add(new FutureTask<Set<User>>(() -> this.queryUsers(params)));
+		}
+
+		// the first chunk is run by the caller anyway
+		final ExecutorService executor = this.client.getExecutorService();
+		for(int i = 1; i < chunks.size(); i++){
+			try{
+				executor.execute(chunks.get(i));
+			}catch(final RejectedExecutionException e){
+				// run by the caller
+			}
+		}
+		try{
+			for(final FutureTask<Set<User>> chunk : chunks){
+				// does nothing, if a thread of the executor has already started the chunk
+				chunk.run();
+				this.addByLoginName(result, chunk.get());
+			}
+		}catch(final InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new XmlRpcClientException("Interrupted while waiting for the users", e); //$NON-NLS-1$
+		}catch(final ExecutionException e){
+			if(e.getCause() instanceof XmlRpcException){
+				throw (XmlRpcException) e.getCause();
+			}
+			throw new XmlRpcClientException("Users could not be resolved", e.getCause()); //$NON-NLS-1$
+		}finally{
+			// chunks not started yet are not needed anymore, if one has failed
+			for(final FutureTask<Set<User>> chunk : chunks){
+				chunk.cancel(false);
+			}
+		}
+		return result;
+	}
+
+	private void addByLoginName(final Map<String, User> usersByLoginName, final Set<User> users) {
+		for(final User user : users){
+			usersByLoginName.put(user.getLoginName(), user);
+		}
+	}
+
 	/**
 	 * @return a set of all users of the connected bugzilla, ordered by thier
-	 *         id {@link User#getId()}.
+	 *         id {@link User#getId()}. The set is empty, if the users could not be queried.
 	 */
 	public Set<User> getUsers() {
+		try{
+			return this.getUsersOrFail();
+		}catch(final XmlRpcException e){
+			LOG.warn("Users could not be queried", e); //$NON-NLS-1$
+			return new HashSet<User>();
+		}
+	}
+
+	/**
+	 * @return a set of all users of the connected bugzilla, ordered by thier
+	 *         id {@link User#getId()}.
+	 * @throws XmlRpcException
+	 *             if the call failed
+	 */
+	Set<User> getUsersOrFail() throws XmlRpcException {
 		LOG.info("Getting a list of all users");//$NON-NLS-1$
 
 		final HashMap<String, Object> params = new HashMap<String, Object>();
 		params.put("match", new Object[] { "*" }); //$NON-NLS-1$ //$NON-NLS-2$
 		params.put("include_disabled", true); //$NON-NLS-1$
 
-		final Set<User> users = getUsers(params);
+		final Set<User> users = this.queryUsers(params);
 		LOG.info(String.format("%d users have been found", users.size())); //$NON-NLS-1$
 		return users;
 	}
 
 	/**
 	 * @param params
-	 * @return
+	 *            the parameters of a <code>User.get</code> call
+	 * @return the found users, ordered by their id
+	 * @throws XmlRpcException
+	 *             if the call failed
 	 */
-	private Set<User> getUsers(final HashMap<String, Object> params) {
+	private Set<User> queryUsers(final HashMap<String, Object> params) throws XmlRpcException {
 
 		// Throw an execption if the client is not logged in
 		if(!this.client.isLoggedIn()){
@@ -96,56 +259,29 @@ public class UserService extends AbstractService {
 					"A list of users will only be revealed tho users, that logged in. (see BugzillaClient.login())"); //$NON-NLS-1$
 		}
 
-		try{
-			/*
-			 * From the bugzilla documentation
-			 * (http://www.bugzilla.org/docs/4.0/en/html/api/Bugzilla/WebService/User.html#___top):
-			 * 
-			 * A hash containing one item, users, that is an array of hashes. Each hash describes a
-			 * user
-			 */
-			final Set<User> users = new TreeSet<User>(new Comparator<User>() {
-
-				@Override
-				public int compare(User o1, User o2) {
-					if(o1.getId() == null && o2.getId() == null)
-						return 0;
-					if(o1.getId() == null)
-						return -1;
-					return o1.getId().compareTo(o2.getId());
-				}
-			});
-
-			// TODO may be null
-			final Map<?, ?> map = (Map<?, ?>) this.client.execute("User.get", params); //$NON-NLS-1$
-			final HashArray userHash = new HashArray((map).get("users")); //$NON-NLS-1$
-			for(final Map<?, ?> userMap : userHash){
-				final User user = new User();
-				for(final Object key : userMap.keySet()){
-					if("id".equals(key)){ //$NON-NLS-1$
-						user.setId((Integer) userMap.get(key));
-					}
-					if("real_name".equals(key)){ //$NON-NLS-1$
-						user.setRealName((String) userMap.get(key));
-					}
-					if("email".equals(key)){ //$NON-NLS-1$
-						user.setEMail((String) userMap.get(key));
-					}
-					if("name".equals(key)){ //$NON-NLS-1$
-						user.setLoginName((String) userMap.get(key));
-					}
-				}
-				users.add(user);
+		/*
+		 * From the bugzilla documentation
+		 * (http://www.bugzilla.org/docs/4.0/en/html/api/Bugzilla/WebService/User.html#___top):
+		 * 
+		 * A hash containing one item, users, that is an array of hashes. Each hash describes a
+		 * user
+		 */
+		final Set<User> users = new TreeSet<User>(new Comparator<User>() {
+
+			@Override
+			public int compare(User o1, User o2) {
+				if(o1.getId() == null && o2.getId() == null)
+					return 0;
+				if(o1.getId() == null)
+					return -1;
+				return o1.getId().compareTo(o2.getId());
 			}
-			return users;
-		}catch(XmlRpcException e){
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}catch(NoHashArrayException e){
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
+		});
 
-		return new HashSet<User>();
+		// the users are created while the response is parsed
+		this.client.executeStreaming("User.get", params, "users", //$NON-NLS-1$ //$NON-NLS-2$
+				userMap -> users.add(USER_MAPPER.populate(new User.Builder(), userMap, null)
+						.build()));
+		return users;
 	}
 }
@@ -0,0 +1,94 @@
+package de.lightningbug.api.store;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The rows holding each value of a dictionary encoded column: code -&gt; rows. A value is found and
+ * counted without scanning the column, and the rows of several values are combined with the
+ * operations of {@link BitSet}.
+ *
+ * @author Sebastian Kirchner
+ *
+ */
+final class BitmapIndex {
+
+	/**
+	 * code -&gt; rows holding the code
+	 */
+	private BitSet[] bitmaps = new BitSet[16];
+
+	/**
+	 * Adds a row to the rows of a code.
+	 *
+	 * @param code
+	 *            a code, {@link StringDictionary#NULL} is not indexed
+	 * @param row
+	 *            the row holding the code
+	 */
+	void add(final int code, final int row) {
+		if(code == StringDictionary.NULL){
+			return;
+		}
+		if(code >= this.bitmaps.length){
+			this.bitmaps = Arrays.copyOf(this.bitmaps, Math.max(code + 1, this.bitmaps.length * 2));
+		}
+		if(this.bitmaps[code] == null){
+			this.bitmaps[code] = new BitSet();
+		}
+		this.bitmaps[code].set(row);
+	}
+
+	/**
+	 * @param code
+	 *            a code
+	 * @return the number of rows holding the code
+	 */
+	int count(final int code) {
+		final BitSet rows = this.get(code);
+		return rows == null ? 0 : rows.cardinality();
+	}
+
+	/**
+	 * @param code
+	 *            a code
+	 * @return the rows holding the code, <code>null</code> if there are none. The set must not be
+	 *         modified.
+	 */
+	BitSet get(final int code) {
+		return code == StringDictionary.NULL || code >= this.bitmaps.length ? null
+				: this.bitmaps[code];
+	}
+
+	/**
+	 * Moves a row from the rows of one code to the rows of another.
+	 *
+	 * @param oldCode
+	 *            the code the row held
+	 * @param newCode
+	 *            the code the row holds
+	 * @param row
+	 *            the row
+	 */
+	void move(final int oldCode, final int newCode, final int row) {
+		if(oldCode != newCode){
+			this.remove(oldCode, row);
+			this.add(newCode, row);
+		}
+	}
+
+	/**
+	 * Removes a row from the rows of a code.
+	 *
+	 * @param code
+	 *            a code
+	 * @param row
+	 *            the row, that does not hold the code anymore
+	 */
+	void remove(final int code, final int row) {
+		final BitSet rows = this.get(code);
+		if(rows != null){
+			rows.clear(row);
+		}
+	}
+}
@@ -0,0 +1,370 @@
+package de.lightningbug.api.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.xmlrpc.XmlRpcException;
+
+import de.lightningbug.api.BugzillaClient;
+import de.lightningbug.api.domain.Bug;
+import de.lightningbug.api.service.BugService;
+import de.lightningbug.api.util.HashArray.NoHashArrayException;
+
+/**
+ * A local copy of all bugs of a bugzilla instance, that is kept up to date incrementally.
+ * <p>
+ * The first {@link BugReplica#sync()} fetches all bugs. Every following sync only fetches the
+ * bugs changed since the highest <code>last_change_time</code> seen so far (the watermark) and
+ * replaces them in the replica. The bugs and the watermark are stored in a file in the users home
+ * folder (<code>&lt;home&gt;/.lightningbug/replica-&lt;hash of the url&gt;.bin</code>), so a new
+ * process continues with a delta sync.
+ * </p>
+ * <p>
+ * The replica is safe for concurrent use: queries ({@link BugReplica#read(Function)}) run in
+ * parallel and only wait while a page of changed bugs is applied.
+ * </p>
+ * <b>Example:</b>
+ *
+ * <pre>
+ * final BugReplica replica = BugReplica.of(client);
+ * replica.sync();
+ * final int open = replica.read(store -&gt; store.count(BugStore.Column.STATUS, &quot;NEW&quot;));
+ * </pre>
+ *
+ * @author Sebastian Kirchner
+ *
+ */
+public class BugReplica {
+
+	/**
+	 * Collects fetched bugs and applies them to the replica in batches of the
+	 * {@link BugService#DEFAULT_PAGE_SIZE}.
+	 */
+	private class Batch {
+
+		final List<Bug> bugs = new ArrayList<Bug>(BugService.DEFAULT_PAGE_SIZE);
+
+		int count = 0;
+
+		long max;
+
+		Batch(final long max) {
+			this.max = max;
+		}
+
+		void add(final Bug bug) {
+			this.bugs.add(bug);
+			this.count++;
+			if(this.bugs.size() >= BugService.DEFAULT_PAGE_SIZE){
+				this.flush();
+			}
+		}
+
+		void flush() {
+			this.max = Math.max(this.max, BugReplica.this.apply(this.bugs));
+			this.bugs.clear();
+		}
+	}
+
+	/**
+	 * The name of the search parameter selecting bugs changed at or after a time
+	 */
+	public static final String LAST_CHANGE_TIME = "last_change_time"; //$NON-NLS-1$
+
+	private static final Log LOG = LogFactory.getLog(BugReplica.class);
+
+	private static final ConcurrentMap<String, BugReplica> REPLICAS = new ConcurrentHashMap<String, BugReplica>();
+
+	private static final File USER_SETTINGS_FOLDER = new File(System.getProperty("user.home"), //$NON-NLS-1$
+			".lightningbug"); //$NON-NLS-1$
+
+	private final BugzillaClient client;
+
+	private final File file;
+
+	private volatile long lastSyncTime = 0L;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private BugStore store;
+
+	private final Object syncLock = new Object();
+
+	private final String url;
+
+	private volatile Date watermark = null;
+
+	/**
+	 * Creates a replica, that is stored in the given file. If the file exists, the replica is
+	 * loaded from it.
+	 *
+	 * @param client
+	 *            the client used to fetch the bugs
+	 * @param file
+	 *            the file the replica is stored in
+	 */
+	public BugReplica(final BugzillaClient client, final File file) {
+		if(client == null){
+			throw new IllegalArgumentException("Paramter <client> must not be mull"); //$NON-NLS-1$
+		}
+		if(file == null){
+			throw new IllegalArgumentException("Paramter <file> must not be mull"); //$NON-NLS-1$
+		}
+		this.client = client;
+		this.file = file;
+		this.url = client.getURL().toString();
+		this.store = new BugStore();
+		this.load();
+	}
+
+	/**
+	 * Returns the replica of the bugzilla instance the client is connected to. There is a single
+	 * replica per URL, that uses the client it has been created with.
+	 *
+	 * @param client
+	 *            the client identifying the bugzilla instance by its URL
+	 * @return the replica of the bugzilla instance
+	 */
+	public static BugReplica of(final BugzillaClient client) {
+		final String url = client.getURL().toString();
+		BugReplica replica = REPLICAS.get(url);
+		if(replica == null){
+			replica = new BugReplica(client, new File(USER_SETTINGS_FOLDER, "replica-" //$NON-NLS-1$
+					+ hash(url) + ".bin")); //$NON-NLS-1$
+			final BugReplica concurrent = REPLICAS.putIfAbsent(url, replica);
+			if(concurrent != null){
+				replica = concurrent;
+			}
+		}
+		return replica;
+	}
+
+	/**
+	 * Replaces the bugs of a batch.
+	 *
+	 * @return the highest change time of the batch, {@link Long#MIN_VALUE} if none is known
+	 */
+	private long apply(final List<Bug> batch) {
+		long max = Long.MIN_VALUE;
+		this.lock.writeLock().lock();
+		try{
+			for(final Bug bug : batch){
+				this.store.upsert(bug);
+				if(bug.getLastChangeTime() != null){
+					max = Math.max(max, bug.getLastChangeTime().getTime());
+				}
+			}
+		}finally{
+			this.lock.writeLock().unlock();
+		}
+		return max;
+	}
+
+	/**
+	 * Removes all bugs and the watermark, so the next sync fetches all bugs again. The file of
+	 * the replica is deleted.
+	 */
+	public void clear() {
+		synchronized(this.syncLock){
+			this.lock.writeLock().lock();
+			try{
+				this.store = new BugStore();
+				this.watermark = null;
+				this.lastSyncTime = 0L;
+			}finally{
+				this.lock.writeLock().unlock();
+			}
+			if(this.file.exists() && !this.file.delete()){
+				LOG.warn("The replica file could not be deleted: " + this.file); //$NON-NLS-1$
+			}
+		}
+	}
+
+	/**
+	 * @return the file the replica is stored in
+	 */
+	public File getFile() {
+		return this.file;
+	}
+
+	/**
+	 * @return the time in milliseconds the last successful sync has been started at,
+	 *         <code>0</code> if the replica has never been synchronized
+	 */
+	public long getLastSyncTime() {
+		return this.lastSyncTime;
+	}
+
+	/**
+	 * @return the highest change time of all bugs in the replica, <code>null</code> if the
+	 *         replica is empty or the server does not provide change times
+	 */
+	public Date getWatermark() {
+		final Date watermark = this.watermark;
+		return watermark == null ? null : new Date(watermark.getTime());
+	}
+
+	private void load() {
+		if(!this.file.isFile()){
+			return;
+		}
+		try{
+			final ReplicaFile replicaFile = ReplicaFile.read(this.file);
+			if(!this.url.equals(replicaFile.url)){
+				LOG.warn("The replica file " + this.file + " belongs to " + replicaFile.url //$NON-NLS-1$ //$NON-NLS-2$
+						+ " and is ignored"); //$NON-NLS-1$
+				return;
+			}
+			this.store = replicaFile.store;
+			this.watermark = replicaFile.watermark;
+			this.lastSyncTime = replicaFile.lastSyncTime;
+			LOG.info(String.format("%d bugs loaded from the replica file %s", //$NON-NLS-1$
+					this.store.size(), this.file));
+		}catch(final IOException e){
+			LOG.warn("The replica file could not be read. All bugs will be fetched again.", e); //$NON-NLS-1$
+		}catch(final RuntimeException e){
+			// a corrupt file may fail to decode in other ways than a short read
+			this.store = new BugStore();
+			LOG.warn("The replica file is corrupt. All bugs will be fetched again.", e); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Runs a query against the bugs of the replica. Queries run concurrently, but never while
+	 * changed bugs are applied.
+	 *
+	 * @param query
+	 *            the query. It must not keep a reference to the store or its views.
+	 * @return the result of the query
+	 */
+	public <T> T read(final Function<BugStore, T> query) {
+		this.lock.readLock().lock();
+		try{
+			return query.apply(this.store);
+		}finally{
+			this.lock.readLock().unlock();
+		}
+	}
+
+	private void save() {
+		this.lock.readLock().lock();
+		try{
+			ReplicaFile.write(this.file, this.url, this.watermark, this.lastSyncTime, this.store);
+		}catch(final IOException e){
+			LOG.warn("The replica file could not be written", e); //$NON-NLS-1$
+		}finally{
+			this.lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return the number of bugs in the replica
+	 */
+	public int size() {
+		return this.read(store -> Integer.valueOf(store.size())).intValue();
+	}
+
+	/**
+	 * Fetches the bugs changed since the last sync (all bugs on the first sync), applies them to
+	 * the replica and stores the replica. Only one sync runs at a time.
+	 * <p>
+	 * The first sync pages through all bugs by offset. Changes while paging do not move a bug to
+	 * another page, as all bugs match. The bugs changed since the watermark are fetched with a
+	 * single search instead: a bug changing while paging would leave the earlier pages and shift
+	 * the later ones, so a bug at the border of a page would be skipped. The bugs of the search
+	 * are applied in batches while the response is read.
+	 * </p>
+	 * <p>
+	 * The watermark only moves and the replica is only stored, after all bugs have been fetched.
+	 * The bugs applied before a failure stay in the replica and are fetched again by the next
+	 * sync.
+	 * </p>
+	 *
+	 * @return the number of fetched bugs
+	 * @throws XmlRpcException
+	 *             if the bugs could not be fetched
+	 * @throws NoHashArrayException
+	 *             if a response contains no bugs array
+	 */
+	public int sync() throws XmlRpcException, NoHashArrayException {
+		synchronized(this.syncLock){
+			final long startedAt = System.currentTimeMillis();
+			final Date since = this.watermark;
+			final Map<String, Object> params = new HashMap<String, Object>();
+			if(since != null){
+				// bugs changed at the watermark are fetched again, so none is missed
+				params.put(LAST_CHANGE_TIME, since);
+			}
+			LOG.info(since == null ? "Fetching all bugs" : "Fetching the bugs changed since " + since); //$NON-NLS-1$ //$NON-NLS-2$
+
+			final BugService bugService = new BugService(this.client);
+			final Batch batch = new Batch(since == null ? Long.MIN_VALUE : since.getTime());
+			if(since == null){
+				// the results are paged by id: bugs changed while paging only cause duplicates
+				params.put(BugService.BUG_SEARCH_FIELD_LIMIT, Integer.valueOf(BugService.DEFAULT_PAGE_SIZE));
+				int fetched;
+				do{
+					fetched = batch.count;
+					params.put(BugService.BUG_SEARCH_FIELD_OFFSET, Integer.valueOf(fetched));
+					bugService.search(params, batch::add);
+					batch.flush();
+				}while(batch.count > fetched);
+				// the store grew page by page, drop the unused capacity
+				this.lock.writeLock().lock();
+				try{
+					this.store.trimToSize();
+				}finally{
+					this.lock.writeLock().unlock();
+				}
+			}else{
+				bugService.search(params, batch::add);
+				batch.flush();
+			}
+			final int count = batch.count;
+
+			if(batch.max != Long.MIN_VALUE){
+				this.watermark = new Date(batch.max);
+			}
+			this.lastSyncTime = startedAt;
+			if(count > 0 || !this.file.isFile()){
+				this.save();
+			}
+			LOG.info(String.format("%d bugs fetched in %d ms", count, //$NON-NLS-1$
+					System.currentTimeMillis() - startedAt));
+			return count;
+		}
+	}
+
+	/**
+	 * @return a file name safe hash of the url
+	 */
+	private static String hash(final String url) {
+		try{
+			final byte[] digest = MessageDigest.getInstance("SHA-1").digest( //$NON-NLS-1$
+					url.getBytes(Charset.forName("UTF-8"))); //$NON-NLS-1$
+			final StringBuilder hex = new StringBuilder();
+			for(int i = 0; i < 8; i++){
+				hex.append(String.format("%02x", digest[i] & 0xff)); //$NON-NLS-1$
+			}
+			return hex.toString();
+		}catch(final NoSuchAlgorithmException e){
+			// every JRE supports SHA-1
+			return Integer.toHexString(url.hashCode());
+		}
+	}
+}
@@ -0,0 +1,919 @@
+package de.lightningbug.api.store;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+import de.lightningbug.api.domain.Bug;
+import de.lightningbug.api.domain.Product;
+import de.lightningbug.api.domain.User;
+import de.lightningbug.api.service.BugService;
+
+/**
+ * A compact, column oriented store of bugs. Instead of one {@link Bug} object per bug, every
+ * property is held in an array indexed by row:
+ * <ul>
+ * <li>ids, estimated times and change times are primitive arrays</li>
+ * <li>product, component, version, severity, status and assignee are dictionary encoded: every
+ * distinct string is stored once and the rows hold its <code>int</code> code</li>
+ * <li>the dependencies of all bugs share a single <code>int[]</code>, every row points to its
+ * slice (compressed sparse rows)</li>
+ * <li>the summaries of all bugs are UTF-8 encoded into a single <code>byte[]</code> the same way,
+ * so a summary costs its bytes instead of a {@link String} and its <code>char[]</code></li>
+ * </ul>
+ * Every value of the columns with few distinct values (product, severity and status) has a bitmap
+ * of the rows holding it, so the rows of a value are found and counted without scanning the
+ * column. The other columns are scanned: an uncompressed bitmap takes a bit per row for every
+ * value, which for thousands of assignees, components or versions exceeds the column itself.
+ * <p>
+ * Rows can be read through a reusable {@link View} or converted back into {@link Bug} objects.
+ * Adding a bug, that is already stored, replaces its values.
+ * </p>
+ * <p>
+ * The store is not synchronized. Concurrent reads are safe as long as no bug is added.
+ * </p>
+ * <b>Example:</b>
+ *
+ * <pre>
+ * final BugStore store = BugStore.fromSearch(new BugService(client), null);
+ * final int open = store.count(BugStore.Column.STATUS, &quot;NEW&quot;);
+ * </pre>
+ *
+ * @author Sebastian Kirchner
+ *
+ */
+public class BugStore {
+
+	/**
+	 * The dictionary encoded columns of the store
+	 */
+	public enum Column {
+		/**
+		 * The login name of the assignee
+		 */
+		ASSIGNEE(false),
+		/**
+		 * The name of the component
+		 */
+		COMPONENT(false),
+		/**
+		 * The name of the product
+		 */
+		PRODUCT(true),
+		/**
+		 * The severity
+		 */
+		SEVERITY(true),
+		/**
+		 * The status
+		 */
+		STATUS(true),
+		/**
+		 * The version of the product
+		 */
+		VERSION(false);
+
+		private final boolean indexed;
+
+		private Column(final boolean indexed) {
+			this.indexed = indexed;
+		}
+
+		/**
+		 * @return <code>true</code> if every value of the column has a bitmap of its rows,
+		 *         <code>false</code> if the column is scanned
+		 */
+		public boolean isIndexed() {
+			return this.indexed;
+		}
+	}
+
+	/**
+	 * A flyweight, that reads the values of a single row. The same view can be moved over all
+	 * rows, so iterating the store does not create an object per bug. A view must not be used
+	 * after the store has been changed.
+	 */
+	public final class View {
+
+		private int row = -1;
+
+		/**
+		 * @return the login name of the assignee
+		 */
+		public String getAssigneeLoginName() {
+			return BugStore.this.getValue(Column.ASSIGNEE, this.row);
+		}
+
+		/**
+		 * @return the name of the component
+		 */
+		public String getComponent() {
+			return BugStore.this.getValue(Column.COMPONENT, this.row);
+		}
+
+		/**
+		 * @return the ids of the bugs, the bug depends on
+		 */
+		public int[] getDependsOn() {
+			return BugStore.this.getDependsOn(this.row);
+		}
+
+		/**
+		 * @return the estimated time, <code>null</code> if unknown
+		 */
+		public Double getEstimatedTime() {
+			return BugStore.this.getEstimatedTime(this.row);
+		}
+
+		/**
+		 * @return the id of the bug
+		 */
+		public int getId() {
+			return BugStore.this.getId(this.row);
+		}
+
+		/**
+		 * @return when the bug was last changed, <code>null</code> if unknown
+		 */
+		public Date getLastChangeTime() {
+			return BugStore.this.getLastChangeTime(this.row);
+		}
+
+		/**
+		 * @return the name of the product
+		 */
+		public String getProductName() {
+			return BugStore.this.getValue(Column.PRODUCT, this.row);
+		}
+
+		/**
+		 * @return the row the view currently reads
+		 */
+		public int getRow() {
+			return this.row;
+		}
+
+		/**
+		 * @return the severity
+		 */
+		public String getSeverity() {
+			return BugStore.this.getValue(Column.SEVERITY, this.row);
+		}
+
+		/**
+		 * @return the status
+		 */
+		public String getStatus() {
+			return BugStore.this.getValue(Column.STATUS, this.row);
+		}
+
+		/**
+		 * @return the summary
+		 */
+		public String getSummary() {
+			return BugStore.this.getSummary(this.row);
+		}
+
+		/**
+		 * @return the version of the product
+		 */
+		public String getVersion() {
+			return BugStore.this.getValue(Column.VERSION, this.row);
+		}
+
+		/**
+		 * @param row
+		 *            the row to read
+		 * @return this view
+		 * @throws IndexOutOfBoundsException
+		 *             if the row does not exist
+		 */
+		public View moveTo(final int row) {
+			BugStore.this.checkRow(row);
+			this.row = row;
+			return this;
+		}
+
+		/**
+		 * @return a new bug holding the values of the current row
+		 */
+		public Bug toBug() {
+			return BugStore.this.toBug(this.row);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+			return "BugStore.View [row=" + this.row + "]"; //$NON-NLS-1$ //$NON-NLS-2$
+		}
+	}
+
+	private static final int DEFAULT_CAPACITY = 1024;
+
+	/**
+	 * The minimum number of unused dependency slots or summary bytes, before they are removed
+	 * automatically
+	 */
+	private static final int MIN_COMPACT_GARBAGE = 4096;
+
+	static final int NO_ROW = -1;
+
+	/**
+	 * The summary length of bugs, that do not provide one
+	 */
+	private static final int NO_SUMMARY = -1;
+
+	/**
+	 * The change time of bugs, that do not provide one
+	 */
+	private static final long NO_TIME = Long.MIN_VALUE;
+
+	/**
+	 * column -> code -> rows holding the code, <code>null</code> for columns, that are not
+	 * {@link Column#isIndexed() indexed}
+	 */
+	private final BitmapIndex[] bitmaps = new BitmapIndex[Column.values().length];
+
+	/**
+	 * column -> row -> code
+	 */
+	private final int[][] codes = new int[Column.values().length][];
+
+	/**
+	 * the ids of the dependencies of all rows
+	 */
+	private int[] dependencies;
+
+	/**
+	 * row -> number of dependencies
+	 */
+	private int[] dependencyCounts;
+
+	/**
+	 * the first unused slot of {@link BugStore#dependencies}
+	 */
+	private int dependencyEnd = 0;
+
+	/**
+	 * row -> first slot in {@link BugStore#dependencies}
+	 */
+	private int[] dependencyStarts;
+
+	private final StringDictionary[] dictionaries = new StringDictionary[Column.values().length];
+
+	/**
+	 * row -> estimated time, {@link Double#NaN} if unknown
+	 */
+	private double[] estimatedTimes;
+
+	/**
+	 * row -> id
+	 */
+	private int[] ids;
+
+	/**
+	 * row -> last change time in milliseconds, {@link BugStore#NO_TIME} if unknown
+	 */
+	private long[] lastChangeTimes;
+
+	/**
+	 * the number of used slots of {@link BugStore#dependencies}
+	 */
+	private int liveDependencies = 0;
+
+	/**
+	 * product code -> product
+	 */
+	private Product[] products = new Product[16];
+
+	/**
+	 * id -> row, {@link BugStore#NO_ROW} for unknown ids. Bug ids are dense, so an array is
+	 * smaller than a map.
+	 */
+	private int[] rowsById = new int[0];
+
+	private int size = 0;
+
+	/**
+	 * the UTF-8 encoded summaries of all rows
+	 */
+	private byte[] summaries;
+
+	/**
+	 * the first unused byte of {@link BugStore#summaries}
+	 */
+	private int summaryEnd = 0;
+
+	/**
+	 * the number of used bytes of {@link BugStore#summaries}
+	 */
+	private int liveSummaryBytes = 0;
+
+	/**
+	 * row -> number of bytes of the summary, {@link BugStore#NO_SUMMARY} if unknown
+	 */
+	private int[] summaryLengths;
+
+	/**
+	 * row -> first byte in {@link BugStore#summaries}
+	 */
+	private int[] summaryStarts;
+
+	/**
+	 * assignee code -> user
+	 */
+	private User[] users = new User[16];
+
+	/**
+	 * Creates an empty store.
+	 */
+	public BugStore() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates an empty store.
+	 *
+	 * @param initialCapacity
+	 *            the number of bugs, the store can hold without growing
+	 */
+	public BugStore(final int initialCapacity) {
+		super();
+		final int capacity = Math.max(1, initialCapacity);
+		for(int i = 0; i < this.codes.length; i++){
+			this.codes[i] = new int[capacity];
+			this.dictionaries[i] = new StringDictionary();
+			this.bitmaps[i] = Column.values()[i].isIndexed() ? new BitmapIndex() : null;
+		}
+		this.ids = new int[capacity];
+		this.summaries = new byte[capacity];
+		this.summaryStarts = new int[capacity];
+		this.summaryLengths = new int[capacity];
+		this.estimatedTimes = new double[capacity];
+		this.lastChangeTimes = new long[capacity];
+		this.dependencyStarts = new int[capacity];
+		this.dependencyCounts = new int[capacity];
+		this.dependencies = new int[capacity];
+	}
+
+	/**
+	 * Fills a new store with the results of a search. The bugs are fetched page by page, so only
+	 * a single page of {@link Bug} objects is held in memory at a time.
+	 *
+	 * @param bugService
+	 *            the service used to search the bugs
+	 * @param searchParams
+	 *            the parameters of the search, <code>null</code> for all bugs
+	 * @return the filled store
+	 * @see BugService#searchPaged(Map)
+	 */
+	public static BugStore fromSearch(final BugService bugService,
+			final Map<String, Object> searchParams) {
+		final BugStore store = new BugStore();
+		store.addAll(bugService.searchPaged(searchParams));
+		store.trimToSize();
+		return store;
+	}
+
+	/**
+	 * Adds all bugs of the iterator.
+	 *
+	 * @param bugs
+	 *            the bugs to add
+	 * @see BugStore#upsert(Bug)
+	 */
+	public void addAll(final Iterator<? extends Bug> bugs) {
+		while(bugs.hasNext()){
+			this.upsert(bugs.next());
+		}
+	}
+
+	/**
+	 * Adds all bugs.
+	 *
+	 * @param bugs
+	 *            the bugs to add
+	 * @see BugStore#upsert(Bug)
+	 */
+	public void addAll(final Iterable<? extends Bug> bugs) {
+		this.addAll(bugs.iterator());
+	}
+
+	private void checkRow(final int row) {
+		if(row < 0 || row >= this.size){
+			throw new IndexOutOfBoundsException("Row " + row + " of " + this.size); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+	}
+
+	/**
+	 * Removes the slots of replaced dependencies and the bytes of replaced summaries, that are no
+	 * longer used.
+	 */
+	public void compact() {
+		this.compactDependencies();
+		this.compactSummaries();
+	}
+
+	private void compactDependencies() {
+		final int[] compacted = new int[Math.max(1, this.liveDependencies)];
+		int end = 0;
+		for(int row = 0; row < this.size; row++){
+			final int count = this.dependencyCounts[row];
+			System.arraycopy(this.dependencies, this.dependencyStarts[row], compacted, end, count);
+			this.dependencyStarts[row] = end;
+			end += count;
+		}
+		this.dependencies = compacted;
+		this.dependencyEnd = end;
+	}
+
+	private void compactSummaries() {
+		final byte[] compacted = new byte[Math.max(1, this.liveSummaryBytes)];
+		int end = 0;
+		for(int row = 0; row < this.size; row++){
+			final int length = Math.max(0, this.summaryLengths[row]);
+			System.arraycopy(this.summaries, this.summaryStarts[row], compacted, end, length);
+			this.summaryStarts[row] = end;
+			end += length;
+		}
+		this.summaries = compacted;
+		this.summaryEnd = end;
+	}
+
+	/**
+	 * Counts the rows having the given value.
+	 *
+	 * @param column
+	 *            the column to scan
+	 * @param value
+	 *            the value to count, may be <code>null</code>
+	 * @return the number of rows
+	 */
+	public int count(final Column column, final String value) {
+		final int code = this.codeOf(column, value);
+		if(value != null && code == StringDictionary.NULL){
+			// the value is not stored
+			return 0;
+		}
+		final BitmapIndex bitmap = this.bitmaps[column.ordinal()];
+		if(bitmap != null && code != StringDictionary.NULL){
+			return bitmap.count(code);
+		}
+		// rows without a value are not indexed
+		final int[] columnCodes = this.codes[column.ordinal()];
+		int count = 0;
+		for(int row = 0; row < this.size; row++){
+			if(columnCodes[row] == code){
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Counts the rows of every value of a column.
+	 *
+	 * @param column
+	 *            the column to scan
+	 * @return the number of rows by value. Rows without a value are missing.
+	 */
+	public Map<String, Integer> countByValue(final Column column) {
+		final StringDictionary dictionary = this.dictionaries[column.ordinal()];
+		final BitmapIndex bitmap = this.bitmaps[column.ordinal()];
+		final int[] counts = new int[dictionary.size()];
+		if(bitmap != null){
+			for(int code = 0; code < counts.length; code++){
+				counts[code] = bitmap.count(code);
+			}
+		}else{
+			// a single pass over the column counts all values
+			final int[] columnCodes = this.codes[column.ordinal()];
+			for(int row = 0; row < this.size; row++){
+				final int code = columnCodes[row];
+				if(code != StringDictionary.NULL){
+					counts[code]++;
+				}
+			}
+		}
+		final Map<String, Integer> result = new LinkedHashMap<String, Integer>();
+		for(int code = 0; code < counts.length; code++){
+			if(counts[code] > 0){
+				result.put(dictionary.decode(code), Integer.valueOf(counts[code]));
+			}
+		}
+		return result;
+	}
+
+	private int codeOf(final Column column, final String value) {
+		return this.dictionaries[column.ordinal()].codeOf(value);
+	}
+
+	private void ensureCapacity(final int capacity) {
+		if(capacity <= this.ids.length){
+			return;
+		}
+		final int newCapacity = Math.max(capacity, this.ids.length * 2);
+		for(int i = 0; i < this.codes.length; i++){
+			this.codes[i] = Arrays.copyOf(this.codes[i], newCapacity);
+		}
+		this.ids = Arrays.copyOf(this.ids, newCapacity);
+		this.summaryStarts = Arrays.copyOf(this.summaryStarts, newCapacity);
+		this.summaryLengths = Arrays.copyOf(this.summaryLengths, newCapacity);
+		this.estimatedTimes = Arrays.copyOf(this.estimatedTimes, newCapacity);
+		this.lastChangeTimes = Arrays.copyOf(this.lastChangeTimes, newCapacity);
+		this.dependencyStarts = Arrays.copyOf(this.dependencyStarts, newCapacity);
+		this.dependencyCounts = Arrays.copyOf(this.dependencyCounts, newCapacity);
+	}
+
+	/**
+	 * Calls the action for every row. The action gets the same {@link View} for all rows.
+	 *
+	 * @param action
+	 *            the action to call
+	 */
+	public void forEach(final Consumer<View> action) {
+		final View view = new View();
+		for(int row = 0; row < this.size; row++){
+			view.row = row;
+			action.accept(view);
+		}
+	}
+
+	/**
+	 * @param row
+	 *            a row
+	 * @return the number of bugs, the bug of the row depends on
+	 */
+	public int getDependencyCount(final int row) {
+		this.checkRow(row);
+		return this.dependencyCounts[row];
+	}
+
+	/**
+	 * @param row
+	 *            a row
+	 * @return a copy of the ids of the bugs, the bug of the row depends on
+	 */
+	public int[] getDependsOn(final int row) {
+		this.checkRow(row);
+		final int start = this.dependencyStarts[row];
+		return Arrays.copyOfRange(this.dependencies, start, start + this.dependencyCounts[row]);
+	}
+
+	/**
+	 * @param row
+	 *            a row
+	 * @return the estimated time of the bug of the row, <code>null</code> if unknown
+	 */
+	public Double getEstimatedTime(final int row) {
+		this.checkRow(row);
+		final double estimatedTime = this.estimatedTimes[row];
+		return Double.isNaN(estimatedTime) ? null : Double.valueOf(estimatedTime);
+	}
+
+	/**
+	 * @param row
+	 *            a row
+	 * @return the id of the bug of the row
+	 */
+	public int getId(final int row) {
+		this.checkRow(row);
+		return this.ids[row];
+	}
+
+	/**
+	 * @param row
+	 *            a row
+	 * @return when the bug of the row was last changed, <code>null</code> if unknown
+	 */
+	public Date getLastChangeTime(final int row) {
+		this.checkRow(row);
+		final long lastChangeTime = this.lastChangeTimes[row];
+		return lastChangeTime == NO_TIME ? null : new Date(lastChangeTime);
+	}
+
+	/**
+	 * @param row
+	 *            a row
+	 * @return the summary of the bug of the row
+	 */
+	public String getSummary(final int row) {
+		this.checkRow(row);
+		final int length = this.summaryLengths[row];
+		return length == NO_SUMMARY ? null : new String(this.summaries, this.summaryStarts[row],
+				length, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @param column
+	 *            a column
+	 * @param row
+	 *            a row
+	 * @return the value of the column in the row
+	 */
+	public String getValue(final Column column, final int row) {
+		this.checkRow(row);
+		return this.dictionaries[column.ordinal()].decode(this.codes[column.ordinal()][row]);
+	}
+
+	/**
+	 * @param column
+	 *            a column
+	 * @return all distinct values of the column, including values of replaced bugs
+	 */
+	public Set<String> getValues(final Column column) {
+		final StringDictionary dictionary = this.dictionaries[column.ordinal()];
+		final Set<String> values = new TreeSet<String>();
+		for(int code = 0; code < dictionary.size(); code++){
+			values.add(dictionary.decode(code));
+		}
+		return values;
+	}
+
+	/**
+	 * @param id
+	 *            the id of a bug
+	 * @return the row of the bug, <code>-1</code> if the bug is not stored
+	 */
+	public int rowOf(final int id) {
+		return id >= 0 && id < this.rowsById.length ? this.rowsById[id] : NO_ROW;
+	}
+
+	/**
+	 * Finds the rows having a value.
+	 *
+	 * @param column
+	 *            the column to scan
+	 * @param value
+	 *            the value to look for, may be <code>null</code>
+	 * @return a new set of the rows having the value
+	 */
+	public BitSet scan(final Column column, final String value) {
+		return this.scan(column, Collections.singleton(value));
+	}
+
+	/**
+	 * Finds the rows having one of the values.
+	 *
+	 * @param column
+	 *            the column to scan
+	 * @param values
+	 *            the values to look for
+	 * @return a new set of the rows having one of the values
+	 */
+	public BitSet scan(final Column column, final Collection<String> values) {
+		final BitmapIndex bitmap = this.bitmaps[column.ordinal()];
+		final BitSet rows = new BitSet();
+		// code + 1 of the values without a bitmap, so StringDictionary.NULL is 0
+		final BitSet scanned = new BitSet();
+		for(final String value : values){
+			final int code = this.codeOf(column, value);
+			if(value != null && code == StringDictionary.NULL){
+				// the value is not stored
+				continue;
+			}
+			if(bitmap != null && code != StringDictionary.NULL){
+				final BitSet valueRows = bitmap.get(code);
+				if(valueRows != null){
+					rows.or(valueRows);
+				}
+			}else{
+				scanned.set(code + 1);
+			}
+		}
+		if(!scanned.isEmpty()){
+			// a single pass over the column finds the rows of all remaining values
+			final int[] columnCodes = this.codes[column.ordinal()];
+			for(int row = 0; row < this.size; row++){
+				if(scanned.get(columnCodes[row] + 1)){
+					rows.set(row);
+				}
+			}
+		}
+		return rows;
+	}
+
+	private void setAssignee(final int row, final User assignee, final boolean replace) {
+		final int code = this.setCode(Column.ASSIGNEE, row, assignee == null ? null : assignee
+				.getLoginName(), replace);
+		if(code == StringDictionary.NULL){
+			return;
+		}
+		if(code >= this.users.length){
+			this.users = Arrays.copyOf(this.users, code * 2);
+		}
+		// prefer users resolved by User.get over users only carrying the login name
+		if(this.users[code] == null || (this.users[code].getId() == null && assignee.getId() != null)){
+			this.users[code] = assignee;
+		}
+	}
+
+	/**
+	 * Encodes the value of a column and moves the row from the bitmap of the old value to the
+	 * bitmap of the new one, if the column is indexed.
+	 *
+	 * @return the code of the value
+	 */
+	private int setCode(final Column column, final int row, final String value,
+			final boolean replace) {
+		final int c = column.ordinal();
+		final int code = this.dictionaries[c].encode(value);
+		if(this.bitmaps[c] != null){
+			this.bitmaps[c].move(replace ? this.codes[c][row] : StringDictionary.NULL, code, row);
+		}
+		this.codes[c][row] = code;
+		return code;
+	}
+
+	private void setDependencies(final int row, final Set<Integer> dependsOn, final boolean replace) {
+		final int count = dependsOn == null ? 0 : dependsOn.size();
+		final int oldCount = replace ? this.dependencyCounts[row] : 0;
+		int start = this.dependencyStarts[row];
+		if(!replace || count > oldCount){
+			// the old slice is too small, append a new one
+			start = this.dependencyEnd;
+			if(start + count > this.dependencies.length){
+				this.dependencies = Arrays.copyOf(this.dependencies,
+						Math.max(start + count, this.dependencies.length * 2));
+			}
+			this.dependencyEnd += count;
+		}
+		if(count > 0){
+			int i = start;
+			for(final Integer id : dependsOn){
+				this.dependencies[i++] = id.intValue();
+			}
+		}
+		this.dependencyStarts[row] = start;
+		this.dependencyCounts[row] = count;
+		this.liveDependencies += count - oldCount;
+
+		final int garbage = this.dependencyEnd - this.liveDependencies;
+		if(garbage > MIN_COMPACT_GARBAGE && garbage > this.liveDependencies){
+			this.compactDependencies();
+		}
+	}
+
+	private void setProduct(final int row, final Product product, final boolean replace) {
+		final int code = this.setCode(Column.PRODUCT, row, product == null ? null : product
+				.getName(), replace);
+		if(code == StringDictionary.NULL){
+			return;
+		}
+		if(code >= this.products.length){
+			this.products = Arrays.copyOf(this.products, code * 2);
+		}
+		if(this.products[code] == null){
+			// only the name is stored, the product is shared by all rows
+			this.products[code] = new Product.Builder().name(product.getName()).build();
+		}
+	}
+
+	private void setSummary(final int row, final String summary, final boolean replace) {
+		final byte[] bytes = summary == null ? null : summary.getBytes(StandardCharsets.UTF_8);
+		final int length = bytes == null ? 0 : bytes.length;
+		final int oldLength = replace ? Math.max(0, this.summaryLengths[row]) : 0;
+		int start = this.summaryStarts[row];
+		if(!replace || length > oldLength){
+			// the old slice is too small, append a new one
+			start = this.summaryEnd;
+			if(start + length > this.summaries.length){
+				this.summaries = Arrays.copyOf(this.summaries,
+						Math.max(start + length, this.summaries.length * 2));
+			}
+			this.summaryEnd += length;
+		}
+		if(length > 0){
+			System.arraycopy(bytes, 0, this.summaries, start, length);
+		}
+		this.summaryStarts[row] = start;
+		this.summaryLengths[row] = bytes == null ? NO_SUMMARY : length;
+		this.liveSummaryBytes += length - oldLength;
+
+		final int garbage = this.summaryEnd - this.liveSummaryBytes;
+		if(garbage > MIN_COMPACT_GARBAGE && garbage > this.liveSummaryBytes){
+			this.compactSummaries();
+		}
+	}
+
+	/**
+	 * @return the number of stored bugs
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * @param row
+	 *            a row
+	 * @return a new bug holding the values of the row
+	 */
+	public Bug toBug(final int row) {
+		this.checkRow(row);
+		final int productCode = this.codes[Column.PRODUCT.ordinal()][row];
+		final int assigneeCode = this.codes[Column.ASSIGNEE.ordinal()][row];
+		final Set<Integer> dependsOn = new TreeSet<Integer>();
+		final int start = this.dependencyStarts[row];
+		for(int i = start; i < start + this.dependencyCounts[row]; i++){
+			dependsOn.add(Integer.valueOf(this.dependencies[i]));
+		}
+		return new Bug.Builder().id(Integer.valueOf(this.ids[row]))
+				.summary(this.getSummary(row))
+				.product(productCode == StringDictionary.NULL ? null : this.products[productCode])
+				.component(this.getValue(Column.COMPONENT, row))
+				.version(this.getValue(Column.VERSION, row))
+				.severity(this.getValue(Column.SEVERITY, row))
+				.status(this.getValue(Column.STATUS, row))
+				.assignee(assigneeCode == StringDictionary.NULL ? null : this.users[assigneeCode])
+				.estimatedTime(this.getEstimatedTime(row))
+				.lastChangeTime(this.getLastChangeTime(row)).dependsOn(dependsOn).build();
+	}
+
+	/**
+	 * Shrinks the columns to the number of stored bugs and removes unused dependency slots and
+	 * summary bytes. The columns grow by doubling, so a store filled bug by bug may hold almost
+	 * twice the capacity it needs. Adding a bug afterwards grows the columns again.
+	 */
+	public void trimToSize() {
+		this.compact();
+		final int capacity = Math.max(1, this.size);
+		for(int i = 0; i < this.codes.length; i++){
+			this.codes[i] = Arrays.copyOf(this.codes[i], capacity);
+		}
+		this.ids = Arrays.copyOf(this.ids, capacity);
+		this.estimatedTimes = Arrays.copyOf(this.estimatedTimes, capacity);
+		this.lastChangeTimes = Arrays.copyOf(this.lastChangeTimes, capacity);
+		this.dependencyStarts = Arrays.copyOf(this.dependencyStarts, capacity);
+		this.dependencyCounts = Arrays.copyOf(this.dependencyCounts, capacity);
+		this.summaryStarts = Arrays.copyOf(this.summaryStarts, capacity);
+		this.summaryLengths = Arrays.copyOf(this.summaryLengths, capacity);
+		int maxId = NO_ROW;
+		for(int row = 0; row < this.size; row++){
+			maxId = Math.max(maxId, this.ids[row]);
+		}
+		this.rowsById = Arrays.copyOf(this.rowsById, maxId + 1);
+	}
+
+	/**
+	 * Adds a bug or replaces the values of a stored bug with the same id.
+	 *
+	 * @param bug
+	 *            the bug to store
+	 * @return the row of the bug
+	 * @throws IllegalArgumentException
+	 *             if the bug has no id
+	 */
+	public int upsert(final Bug bug) {
+		if(bug == null || bug.getId() == null || bug.getId().intValue() < 0){
+			throw new IllegalArgumentException("Only bugs with an id can be stored"); //$NON-NLS-1$
+		}
+		final int id = bug.getId().intValue();
+		int row = this.rowOf(id);
+		final boolean replace = row != NO_ROW;
+		if(!replace){
+			row = this.size;
+			this.ensureCapacity(row + 1);
+			if(id >= this.rowsById.length){
+				final int oldLength = this.rowsById.length;
+				this.rowsById = Arrays.copyOf(this.rowsById, Math.max(id + 1, oldLength * 2));
+				Arrays.fill(this.rowsById, oldLength, this.rowsById.length, NO_ROW);
+			}
+			this.rowsById[id] = row;
+			this.ids[row] = id;
+			this.size++;
+		}
+		this.setSummary(row, bug.getSummary(), replace);
+		this.estimatedTimes[row] = bug.getEstimatedTime() == null ? Double.NaN : bug
+				.getEstimatedTime().doubleValue();
+		this.lastChangeTimes[row] = bug.getLastChangeTime() == null ? NO_TIME : bug
+				.getLastChangeTime().getTime();
+		this.setProduct(row, bug.getProduct(), replace);
+		this.setAssignee(row, bug.getAssignee(), replace);
+		this.setCode(Column.COMPONENT, row, bug.getComponent(), replace);
+		this.setCode(Column.VERSION, row, bug.getVersion(), replace);
+		this.setCode(Column.SEVERITY, row, bug.getSeverity(), replace);
+		this.setCode(Column.STATUS, row, bug.getStatus(), replace);
+		this.setDependencies(row, bug.getDependsOn(), replace);
+		return row;
+	}
+
+	/**
+	 * @return a new view, that has to be moved to a row before reading
+	 */
+	public View view() {
+		return new View();
+	}
+}
@@ -0,0 +1,477 @@
+package de.lightningbug.api.store;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import de.lightningbug.api.domain.Bug;
+import de.lightningbug.api.domain.Product;
+import de.lightningbug.api.domain.User;
+
+/**
+ * A collection of bugs with a bitmap index over each {@link BugStore.Column}: the product name,
+ * component, version, severity, status and login name of the assignee.
+ * <p>
+ * The collection listens to the property changes of its bugs, so the indexes follow every change
+ * made through the setters of a {@link Bug}. Renaming a product or a user is not noticed.
+ * </p>
+ * <p>
+ * Filters are combined through {@link Selection}s, that are evaluated on the bitmaps without
+ * looking at the bugs. Like the bugs, the collection is not thread-safe and must be modified by a
+ * single thread at a time.
+ * </p>
+ * <b>Example:</b>
+ *
+ * <pre>
+ * final IndexedBugs bugs = new IndexedBugs(bugService.search(params));
+ * final int open = bugs.where(Column.STATUS, &quot;NEW&quot;, &quot;ASSIGNED&quot;)
+ * 		.and(bugs.where(Column.PRODUCT, &quot;Lightningbug&quot;))
+ * 		.and(bugs.where(Column.SEVERITY, &quot;enhancement&quot;).not()).count();
+ * </pre>
+ *
+ * @author Sebastian Kirchner
+ *
+ */
+public class IndexedBugs extends AbstractCollection<Bug> {
+
+	/**
+	 * The rows of a filter. Selections are immutable: combining them creates a new selection.
+	 *
+	 * @author Sebastian Kirchner
+	 *
+	 */
+	public final class Selection {
+
+		private final BitSet rows;
+
+		private Selection(final BitSet rows) {
+			this.rows = rows;
+		}
+
+		/**
+		 * @param selection
+		 *            another selection of the same collection
+		 * @return the bugs in both selections
+		 */
+		public Selection and(final Selection selection) {
+			final BitSet result = (BitSet) this.rows.clone();
+			result.and(IndexedBugs.this.check(selection).rows);
+			return new Selection(result);
+		}
+
+		/**
+		 * @return the number of selected bugs
+		 */
+		public int count() {
+			return this.rows.cardinality();
+		}
+
+		/**
+		 * Counts the selected bugs by the values of a column.
+		 *
+		 * @param column
+		 *            a column
+		 * @return value -&gt; number of selected bugs having the value. Values without any bug are
+		 *         left out.
+		 */
+		public Map<String, Integer> countByValue(final BugStore.Column column) {
+			return IndexedBugs.this.countByValue(column, this.rows);
+		}
+
+		/**
+		 * @return the bugs not in this selection
+		 */
+		public Selection not() {
+			final BitSet result = (BitSet) IndexedBugs.this.live.clone();
+			result.andNot(this.rows);
+			return new Selection(result);
+		}
+
+		/**
+		 * @param selection
+		 *            another selection of the same collection
+		 * @return the bugs in any of the selections
+		 */
+		public Selection or(final Selection selection) {
+			final BitSet result = (BitSet) this.rows.clone();
+			result.or(IndexedBugs.this.check(selection).rows);
+			return new Selection(result);
+		}
+
+		/**
+		 * @return the collection the selection belongs to
+		 */
+		private IndexedBugs owner() {
+			return IndexedBugs.this;
+		}
+
+		/**
+		 * @return the selected bugs in the order they have been added. Bugs removed from the
+		 *         collection after the selection has been created are left out.
+		 */
+		public List<Bug> toList() {
+			final List<Bug> bugs = new ArrayList<Bug>(this.rows.cardinality());
+			for(int row = this.rows.nextSetBit(0); row >= 0; row = this.rows.nextSetBit(row + 1)){
+				if(IndexedBugs.this.live.get(row)){
+					bugs.add(IndexedBugs.this.bugs[row]);
+				}
+			}
+			return bugs;
+		}
+	}
+
+	private static final BugStore.Column[] COLUMNS = BugStore.Column.values();
+
+	/**
+	 * row -> bug, <code>null</code> for free rows
+	 */
+	private Bug[] bugs = new Bug[16];
+
+	/**
+	 * column -> row -> code
+	 */
+	private final int[][] codes = new int[COLUMNS.length][];
+
+	/**
+	 * column -> dictionary of the values
+	 */
+	private final StringDictionary[] dictionaries = new StringDictionary[COLUMNS.length];
+
+	/**
+	 * column -> code -> rows holding the code
+	 */
+	private final BitmapIndex[] indexes = new BitmapIndex[COLUMNS.length];
+
+	/**
+	 * updates the indexes on changes of the bugs
+	 */
+	private final PropertyChangeListener listener = new PropertyChangeListener() {
+
+		@Override
+		public void propertyChange(final PropertyChangeEvent event) {
+			final BugStore.Column column = columnOf(event.getPropertyName());
+			if(column != null){
+				final Integer row = IndexedBugs.this.rows.get(event.getSource());
+				if(row != null){
+					IndexedBugs.this.index(column, row.intValue(), valueOf(column,
+							(Bug) event.getSource()));
+				}
+			}
+		}
+	};
+
+	/**
+	 * the rows holding a bug
+	 */
+	private final BitSet live = new BitSet();
+
+	private int modCount = 0;
+
+	/**
+	 * bug -> row
+	 */
+	private final Map<Bug, Integer> rows = new IdentityHashMap<Bug, Integer>();
+
+	/**
+	 * Creates an empty collection.
+	 */
+	public IndexedBugs() {
+		for(int i = 0; i < COLUMNS.length; i++){
+			this.codes[i] = new int[this.bugs.length];
+			this.dictionaries[i] = new StringDictionary();
+			this.indexes[i] = new BitmapIndex();
+		}
+	}
+
+	/**
+	 * Creates a collection of the given bugs.
+	 *
+	 * @param bugs
+	 *            the bugs to add
+	 */
+	public IndexedBugs(final Collection<? extends Bug> bugs) {
+		this();
+		this.addAll(bugs);
+	}
+
+	/**
+	 * Adds a bug and starts listening to its changes. Adding a bug twice has no effect.
+	 */
+	@Override
+	public boolean add(final Bug bug) {
+		if(bug == null){
+			throw new IllegalArgumentException("Paramter <bug> must not be mull"); //$NON-NLS-1$
+		}
+		if(this.rows.containsKey(bug)){
+			return false;
+		}
+		final int row = this.live.nextClearBit(0);
+		if(row == this.bugs.length){
+			this.bugs = Arrays.copyOf(this.bugs, row * 2);
+			for(int i = 0; i < COLUMNS.length; i++){
+				this.codes[i] = Arrays.copyOf(this.codes[i], row * 2);
+			}
+		}
+		this.bugs[row] = bug;
+		this.live.set(row);
+		this.rows.put(bug, Integer.valueOf(row));
+		for(final BugStore.Column column : COLUMNS){
+			this.codes[column.ordinal()][row] = StringDictionary.NULL;
+			this.index(column, row, valueOf(column, bug));
+		}
+		bug.addPropertyChangeListener(this.listener);
+		this.modCount++;
+		return true;
+	}
+
+	/**
+	 * @param selection
+	 *            a selection
+	 * @return the selection, if it belongs to this collection
+	 */
+	private Selection check(final Selection selection) {
+		if(selection == null){
+			throw new IllegalArgumentException("Paramter <selection> must not be mull"); //$NON-NLS-1$
+		}
+		if(selection.owner() != this){
+			throw new IllegalArgumentException("The selection belongs to another collection"); //$NON-NLS-1$
+		}
+		return selection;
+	}
+
+	@Override
+	public void clear() {
+		for(final Bug bug : this.rows.keySet()){
+			bug.removePropertyChangeListener(this.listener);
+		}
+		this.rows.clear();
+		this.live.clear();
+		Arrays.fill(this.bugs, null);
+		for(int i = 0; i < COLUMNS.length; i++){
+			this.dictionaries[i] = new StringDictionary();
+			this.indexes[i] = new BitmapIndex();
+		}
+		this.modCount++;
+	}
+
+	@Override
+	public boolean contains(final Object bug) {
+		return this.rows.containsKey(bug);
+	}
+
+	/**
+	 * Counts the bugs by the values of a column.
+	 *
+	 * @param column
+	 *            a column
+	 * @return value -&gt; number of bugs having the value. Values without any bug are left out.
+	 */
+	public Map<String, Integer> countByValue(final BugStore.Column column) {
+		return this.countByValue(column, null);
+	}
+
+	/**
+	 * @param selected
+	 *            the rows to count, <code>null</code> for all rows
+	 */
+	private Map<String, Integer> countByValue(final BugStore.Column column, final BitSet selected) {
+		final StringDictionary dictionary = this.dictionaries[column.ordinal()];
+		final BitmapIndex index = this.indexes[column.ordinal()];
+		final Map<String, Integer> result = new LinkedHashMap<String, Integer>();
+		for(int code = 0; code < dictionary.size(); code++){
+			final int count;
+			if(selected == null){
+				count = index.count(code);
+			}else{
+				final BitSet rows = index.get(code);
+				if(rows == null){
+					continue;
+				}
+				final BitSet selectedRows = (BitSet) rows.clone();
+				selectedRows.and(selected);
+				count = selectedRows.cardinality();
+			}
+			if(count > 0){
+				result.put(dictionary.decode(code), Integer.valueOf(count));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Updates the code of a row and moves the row to the bitmap of the new value.
+	 */
+	private void index(final BugStore.Column column, final int row, final String value) {
+		final int c = column.ordinal();
+		final int code = this.dictionaries[c].encode(value);
+		this.indexes[c].move(this.codes[c][row], code, row);
+		this.codes[c][row] = code;
+	}
+
+	@Override
+	public Iterator<Bug> iterator() {
+		return new Iterator<Bug>() {
+
+			private int expectedModCount = IndexedBugs.this.modCount;
+
+			private int next = IndexedBugs.this.live.nextSetBit(0);
+
+			private int current = -1;
+
+			@Override
+			public boolean hasNext() {
+				return this.next >= 0;
+			}
+
+			@Override
+			public Bug next() {
+				if(this.expectedModCount != IndexedBugs.this.modCount){
+					throw new ConcurrentModificationException();
+				}
+				if(this.next < 0){
+					throw new NoSuchElementException();
+				}
+				this.current = this.next;
+				this.next = IndexedBugs.this.live.nextSetBit(this.next + 1);
+				return IndexedBugs.this.bugs[this.current];
+			}
+
+			@Override
+			public void remove() {
+				if(this.current < 0){
+					throw new IllegalStateException();
+				}
+				IndexedBugs.this.remove(IndexedBugs.this.bugs[this.current]);
+				this.current = -1;
+				this.expectedModCount = IndexedBugs.this.modCount;
+			}
+		};
+	}
+
+	/**
+	 * Removes a bug and stops listening to its changes.
+	 */
+	@Override
+	public boolean remove(final Object bug) {
+		final Integer row = this.rows.remove(bug);
+		if(row == null){
+			return false;
+		}
+		final int r = row.intValue();
+		for(int c = 0; c < COLUMNS.length; c++){
+			this.indexes[c].remove(this.codes[c][r], r);
+			this.codes[c][r] = StringDictionary.NULL;
+		}
+		this.bugs[r].removePropertyChangeListener(this.listener);
+		this.bugs[r] = null;
+		this.live.clear(r);
+		this.modCount++;
+		return true;
+	}
+
+	/**
+	 * @return a selection of all bugs
+	 */
+	public Selection selectAll() {
+		return new Selection((BitSet) this.live.clone());
+	}
+
+	@Override
+	public int size() {
+		return this.live.cardinality();
+	}
+
+	/**
+	 * Selects the bugs having one of the given values.
+	 *
+	 * @param column
+	 *            the column to filter
+	 * @param values
+	 *            the values to look for. <code>null</code> selects the bugs without a value.
+	 * @return the bugs having one of the values
+	 */
+	public Selection where(final BugStore.Column column, final String... values) {
+		if(column == null){
+			throw new IllegalArgumentException("Paramter <column> must not be mull"); //$NON-NLS-1$
+		}
+		final int c = column.ordinal();
+		final BitSet result = new BitSet();
+		for(final String value : values == null ? new String[] { null } : values){
+			if(value == null){
+				// bugs without a value are not indexed
+				for(int row = this.live.nextSetBit(0); row >= 0; row = this.live.nextSetBit(row + 1)){
+					if(this.codes[c][row] == StringDictionary.NULL){
+						result.set(row);
+					}
+				}
+				continue;
+			}
+			final BitSet rows = this.indexes[c].get(this.dictionaries[c].codeOf(value));
+			if(rows != null){
+				result.or(rows);
+			}
+		}
+		return new Selection(result);
+	}
+
+	/**
+	 * @return the column indexing a property of {@link Bug}, <code>null</code> if the property is
+	 *         not indexed
+	 */
+	private static BugStore.Column columnOf(final String propertyName) {
+		if(Bug.ASSIGNEE.equals(propertyName)){
+			return BugStore.Column.ASSIGNEE;
+		}
+		if(Bug.COMPONENT.equals(propertyName)){
+			return BugStore.Column.COMPONENT;
+		}
+		if(Bug.PRODUCT.equals(propertyName)){
+			return BugStore.Column.PRODUCT;
+		}
+		if(Bug.SEVERITY.equals(propertyName)){
+			return BugStore.Column.SEVERITY;
+		}
+		if(Bug.STATUS.equals(propertyName)){
+			return BugStore.Column.STATUS;
+		}
+		if(Bug.VERSION.equals(propertyName)){
+			return BugStore.Column.VERSION;
+		}
+		return null;
+	}
+
+	/**
+	 * @return the value of a bug in a column
+	 */
+	private static String valueOf(final BugStore.Column column, final Bug bug) {
+		switch(column){
+			case ASSIGNEE:
+				final User assignee = bug.getAssignee();
+				return assignee == null ? null : assignee.getLoginName();
+			case COMPONENT:
+				return bug.getComponent();
+			case PRODUCT:
+				final Product product = bug.getProduct();
+				return product == null ? null : product.getName();
+			case SEVERITY:
+				return bug.getSeverity();
+			case STATUS:
+				return bug.getStatus();
+			case VERSION:
+				return bug.getVersion();
+			default:
+				return null;
+		}
+	}
+}
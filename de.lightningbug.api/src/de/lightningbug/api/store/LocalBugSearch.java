@@ -0,0 +1,235 @@
+package de.lightningbug.api.store;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import de.lightningbug.api.domain.Bug;
+import de.lightningbug.api.service.BugService;
+
+/**
+ * Answers <code>Bug.search</code> parameter maps from a {@link BugReplica} instead of the server.
+ * <p>
+ * The search parameters <code>product</code>, <code>component</code>, <code>version</code>,
+ * <code>severity</code>, <code>status</code>, <code>assigned_to</code> and <code>id</code> are
+ * answered from the value bitmaps of the {@link BugStore}, each with a single value, an array or
+ * a collection of values. The results are ordered by id and <code>limit</code> and
+ * <code>offset</code> are applied like the server does.
+ * </p>
+ * <p>
+ * A search is passed to the server, if it uses any other parameter or if the replica has not been
+ * synchronized within the freshness bound ({@link LocalBugSearch#setMaxStaleness(long)}).
+ * </p>
+ * <b>Example:</b>
+ *
+ * <pre>
+ * final LocalBugSearch search = new LocalBugSearch(BugReplica.of(client), new BugService(client));
+ * final Map&lt;String, Object&gt; params = new HashMap&lt;String, Object&gt;();
+ * params.put(&quot;status&quot;, new String[] { &quot;NEW&quot;, &quot;ASSIGNED&quot; });
+ * final List&lt;Bug&gt; bugs = search.search(params);
+ * </pre>
+ *
+ * @author Sebastian Kirchner
+ *
+ */
+public class LocalBugSearch {
+
+	/**
+	 * The default freshness bound: five minutes
+	 */
+	public static final long DEFAULT_MAX_STALENESS = 5L * 60L * 1000L;
+
+	private static final Log LOG = LogFactory.getLog(LocalBugSearch.class);
+
+	/**
+	 * search parameter -> column answering it
+	 */
+	private static final Map<String, BugStore.Column> COLUMNS = new HashMap<String, BugStore.Column>();
+
+	static{
+		COLUMNS.put("assigned_to", BugStore.Column.ASSIGNEE); //$NON-NLS-1$
+		COLUMNS.put("component", BugStore.Column.COMPONENT); //$NON-NLS-1$
+		COLUMNS.put("product", BugStore.Column.PRODUCT); //$NON-NLS-1$
+		COLUMNS.put(BugService.BUG_SEARCH_FIELD_SEVERITY, BugStore.Column.SEVERITY);
+		COLUMNS.put("status", BugStore.Column.STATUS); //$NON-NLS-1$
+		COLUMNS.put("version", BugStore.Column.VERSION); //$NON-NLS-1$
+	}
+
+	private final BugService fallback;
+
+	private volatile long maxStaleness = DEFAULT_MAX_STALENESS;
+
+	private final BugReplica replica;
+
+	/**
+	 * @param replica
+	 *            the replica answering the searches
+	 * @param fallback
+	 *            the service answering the searches the replica cannot answer
+	 */
+	public LocalBugSearch(final BugReplica replica, final BugService fallback) {
+		if(replica == null){
+			throw new IllegalArgumentException("Paramter <replica> must not be mull"); //$NON-NLS-1$
+		}
+		if(fallback == null){
+			throw new IllegalArgumentException("Paramter <fallback> must not be mull"); //$NON-NLS-1$
+		}
+		this.replica = replica;
+		this.fallback = fallback;
+	}
+
+	/**
+	 * @param searchParams
+	 *            the search parameters, <code>null</code> for all bugs
+	 * @return <code>true</code> if the search is answered by the replica
+	 */
+	public boolean canAnswer(final Map<String, Object> searchParams) {
+		final long lastSyncTime = this.replica.getLastSyncTime();
+		if(lastSyncTime == 0L || System.currentTimeMillis() - lastSyncTime > this.maxStaleness){
+			return false;
+		}
+		if(searchParams == null){
+			return true;
+		}
+		for(final String param : searchParams.keySet()){
+			if(!COLUMNS.containsKey(param) && !BugService.BUG_SEARCH_FIELD_ID.equals(param)
+					&& !BugService.BUG_SEARCH_FIELD_LIMIT.equals(param)
+					&& !BugService.BUG_SEARCH_FIELD_OFFSET.equals(param)){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the maximum age of the last sync in milliseconds, the replica is used for
+	 */
+	public long getMaxStaleness() {
+		return this.maxStaleness;
+	}
+
+	/**
+	 * @return the replica answering the searches
+	 */
+	public BugReplica getReplica() {
+		return this.replica;
+	}
+
+	/**
+	 * Searches the bugs matching the parameters. The search is answered by the replica if
+	 * possible ({@link LocalBugSearch#canAnswer(Map)}), else by the server.
+	 *
+	 * @param searchParams
+	 *            the parameters of a <code>Bug.search</code> call, <code>null</code> for all bugs
+	 *            (like {@link BugService#search(Map)})
+	 * @return the bugs matching the parameters
+	 */
+	public List<Bug> search(final Map<String, Object> searchParams) {
+		if(!this.canAnswer(searchParams)){
+			if(LOG.isDebugEnabled()){
+				LOG.debug("Search passed to the server: " + searchParams); //$NON-NLS-1$
+			}
+			return this.fallback.search(searchParams);
+		}
+		final Map<String, Object> params = searchParams == null ? Collections
+				.<String, Object> emptyMap() : searchParams;
+		final int offset = toInt(params.get(BugService.BUG_SEARCH_FIELD_OFFSET), 0);
+		final int limit = toInt(params.get(BugService.BUG_SEARCH_FIELD_LIMIT), 0);
+		return this.replica.read(store -> {
+			final BitSet rows = select(store, params);
+			final int[] ids = new int[rows.cardinality()];
+			int i = 0;
+			for(int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)){
+				ids[i++] = store.getId(row);
+			}
+			Arrays.sort(ids);
+			final int from = Math.min(Math.max(offset, 0), ids.length);
+			final int to = limit > 0 ? Math.min(from + limit, ids.length) : ids.length;
+			final List<Bug> bugs = new ArrayList<Bug>(to - from);
+			for(int j = from; j < to; j++){
+				bugs.add(store.toBug(store.rowOf(ids[j])));
+			}
+			return bugs;
+		});
+	}
+
+	/**
+	 * @param maxStaleness
+	 *            the maximum age of the last sync in milliseconds, the replica is used for
+	 */
+	public void setMaxStaleness(final long maxStaleness) {
+		if(maxStaleness < 0L){
+			throw new IllegalArgumentException("Paramter <maxStaleness> must not be negative"); //$NON-NLS-1$
+		}
+		this.maxStaleness = maxStaleness;
+	}
+
+	/**
+	 * @return the rows matching all parameters
+	 */
+	private static BitSet select(final BugStore store, final Map<String, Object> searchParams) {
+		final BitSet rows = new BitSet(store.size());
+		rows.set(0, store.size());
+		for(final Map.Entry<String, Object> param : searchParams.entrySet()){
+			final BugStore.Column column = COLUMNS.get(param.getKey());
+			if(column != null){
+				final Set<String> values = new HashSet<String>();
+				for(final Object value : toCollection(param.getValue())){
+					values.add(value == null ? null : value.toString());
+				}
+				rows.and(store.scan(column, values));
+			}else if(BugService.BUG_SEARCH_FIELD_ID.equals(param.getKey())){
+				final BitSet idRows = new BitSet();
+				for(final Object id : toCollection(param.getValue())){
+					final int row = id == null ? BugStore.NO_ROW : store.rowOf(toInt(id,
+							BugStore.NO_ROW));
+					if(row != BugStore.NO_ROW){
+						idRows.set(row);
+					}
+				}
+				rows.and(idRows);
+			}
+			if(rows.isEmpty()){
+				break;
+			}
+		}
+		return rows;
+	}
+
+	/**
+	 * @return the values of a parameter, that is either a single value, an array or a collection
+	 */
+	private static Collection<?> toCollection(final Object value) {
+		if(value instanceof Object[]){
+			return Arrays.asList((Object[]) value);
+		}
+		if(value instanceof Collection<?>){
+			return (Collection<?>) value;
+		}
+		return Collections.singletonList(value);
+	}
+
+	private static int toInt(final Object value, final int defaultValue) {
+		if(value instanceof Number){
+			return ((Number) value).intValue();
+		}
+		if(value != null){
+			try{
+				return Integer.parseInt(value.toString().trim());
+			}catch(final NumberFormatException e){
+				// not an integer
+			}
+		}
+		return defaultValue;
+	}
+}
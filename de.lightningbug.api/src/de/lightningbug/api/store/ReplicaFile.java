@@ -0,0 +1,220 @@
+package de.lightningbug.api.store;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Date;
+import java.util.Set;
+import java.util.TreeSet;
+
+import de.lightningbug.api.domain.Bug;
+import de.lightningbug.api.domain.Product;
+import de.lightningbug.api.domain.User;
+
+/**
+ * The binary file format of a {@link BugReplica}.
+ *
+ * <pre>
+ * file       := MAGIC VERSION url:string watermark:long lastSyncTime:long count:int bug*
+ * bug        := id:int summary:string product:string component:string version:string
+ *               severity:string status:string assignee:string estimatedTime:double
+ *               lastChangeTime:long dependencyCount:int dependency:int*
+ * string     := length:int (-1 for null) utf8-bytes
+ * </pre>
+ *
+ * Unknown times are written as {@link Long#MIN_VALUE}, unknown estimated times as
+ * {@link Double#NaN}. Assignees are stored by their login name only.
+ *
+ * @author Sebastian Kirchner
+ *
+ */
+final class ReplicaFile {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8"); //$NON-NLS-1$
+
+	/**
+	 * "LBR1"
+	 */
+	private static final int MAGIC = 0x4C425231;
+
+	private static final long NO_TIME = Long.MIN_VALUE;
+
+	private static final int VERSION = 1;
+
+	/**
+	 * the bugs read from the file
+	 */
+	final BugStore store;
+
+	/**
+	 * when the replica was last synchronized, <code>0</code> if never
+	 */
+	final long lastSyncTime;
+
+	/**
+	 * the url of the bugzilla instance
+	 */
+	final String url;
+
+	/**
+	 * the highest change time of all bugs, <code>null</code> if unknown
+	 */
+	final Date watermark;
+
+	private ReplicaFile(final String url, final Date watermark, final long lastSyncTime,
+			final BugStore store) {
+		this.url = url;
+		this.watermark = watermark;
+		this.lastSyncTime = lastSyncTime;
+		this.store = store;
+	}
+
+	/**
+	 * Reads a replica file.
+	 *
+	 * @param file
+	 *            a file written by {@link ReplicaFile#write(File, String, Date, long, BugStore)}
+	 * @return the content of the file
+	 * @throws IOException
+	 *             if the file could not be read or has an unknown format
+	 */
+	static ReplicaFile read(final File file) throws IOException {
+		final DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(file)));
+		try{
+			if(in.readInt() != MAGIC){
+				throw new IOException("Not a replica file: " + file); //$NON-NLS-1$
+			}
+			final int version = in.readInt();
+			if(version != VERSION){
+				throw new IOException("Unsupported version " + version + " of the replica file: " //$NON-NLS-1$ //$NON-NLS-2$
+						+ file);
+			}
+			final String url = readString(in);
+			final long watermark = in.readLong();
+			final long lastSyncTime = in.readLong();
+			final int count = in.readInt();
+			final BugStore store = new BugStore(count);
+			for(int i = 0; i < count; i++){
+				final Bug.Builder bug = new Bug.Builder().id(Integer.valueOf(in.readInt()))
+						.summary(readString(in));
+				final String product = readString(in);
+				bug.product(product == null ? null : new Product.Builder().name(product).build());
+				bug.component(readString(in)).version(readString(in)).severity(readString(in))
+						.status(readString(in));
+				final String assignee = readString(in);
+				bug.assignee(assignee == null ? null : new User.Builder().loginName(assignee)
+						.build());
+				final double estimatedTime = in.readDouble();
+				bug.estimatedTime(Double.isNaN(estimatedTime) ? null : Double.valueOf(estimatedTime));
+				final long lastChangeTime = in.readLong();
+				bug.lastChangeTime(lastChangeTime == NO_TIME ? null : new Date(lastChangeTime));
+				final int dependencyCount = in.readInt();
+				final Set<Integer> dependsOn = new TreeSet<Integer>();
+				for(int d = 0; d < dependencyCount; d++){
+					dependsOn.add(Integer.valueOf(in.readInt()));
+				}
+				store.upsert(bug.dependsOn(dependsOn).build());
+			}
+			store.trimToSize();
+			return new ReplicaFile(url, watermark == NO_TIME ? null : new Date(watermark),
+					lastSyncTime, store);
+		}finally{
+			in.close();
+		}
+	}
+
+	/**
+	 * Writes a replica into a new file, that replaces the given file.
+	 *
+	 * @param file
+	 *            the file to write
+	 * @param url
+	 *            the url of the bugzilla instance
+	 * @param watermark
+	 *            the highest change time of all bugs, <code>null</code> if unknown
+	 * @param lastSyncTime
+	 *            when the replica was last synchronized
+	 * @param store
+	 *            the bugs of the replica
+	 * @throws IOException
+	 *             if the file could not be written
+	 */
+	static void write(final File file, final String url, final Date watermark,
+			final long lastSyncTime, final BugStore store) throws IOException {
+		final File folder = file.getAbsoluteFile().getParentFile();
+		if(!folder.isDirectory() && !folder.mkdirs()){
+			throw new IOException("The folder of the replica file could not be created: " + folder); //$NON-NLS-1$
+		}
+		final File tmpFile = new File(folder, file.getName() + ".tmp"); //$NON-NLS-1$
+		final FileOutputStream fileOut = new FileOutputStream(tmpFile);
+		try{
+			final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut));
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			writeString(out, url);
+			out.writeLong(watermark == null ? NO_TIME : watermark.getTime());
+			out.writeLong(lastSyncTime);
+			out.writeInt(store.size());
+			for(int row = 0; row < store.size(); row++){
+				out.writeInt(store.getId(row));
+				writeString(out, store.getSummary(row));
+				writeString(out, store.getValue(BugStore.Column.PRODUCT, row));
+				writeString(out, store.getValue(BugStore.Column.COMPONENT, row));
+				writeString(out, store.getValue(BugStore.Column.VERSION, row));
+				writeString(out, store.getValue(BugStore.Column.SEVERITY, row));
+				writeString(out, store.getValue(BugStore.Column.STATUS, row));
+				writeString(out, store.getValue(BugStore.Column.ASSIGNEE, row));
+				final Double estimatedTime = store.getEstimatedTime(row);
+				out.writeDouble(estimatedTime == null ? Double.NaN : estimatedTime.doubleValue());
+				final Date lastChangeTime = store.getLastChangeTime(row);
+				out.writeLong(lastChangeTime == null ? NO_TIME : lastChangeTime.getTime());
+				final int[] dependsOn = store.getDependsOn(row);
+				out.writeInt(dependsOn.length);
+				for(final int id : dependsOn){
+					out.writeInt(id);
+				}
+			}
+			out.flush();
+		}finally{
+			fileOut.close();
+		}
+		// readers see either the old or the new file, never none or a partial one
+		try{
+			Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		}catch(final AtomicMoveNotSupportedException e){
+			Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	private static String readString(final DataInputStream in) throws IOException {
+		final int length = in.readInt();
+		if(length < 0){
+			return null;
+		}
+		final byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, UTF_8);
+	}
+
+	private static void writeString(final DataOutputStream out, final String value)
+			throws IOException {
+		if(value == null){
+			out.writeInt(-1);
+			return;
+		}
+		final byte[] bytes = value.getBytes(UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+}
@@ -0,0 +1,83 @@
+package de.lightningbug.api.store;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Assigns a dense integer code to every distinct string, so a column of repeated strings can be
+ * stored as an <code>int[]</code>. Codes are never reused or removed. <code>null</code> is
+ * encoded as {@link StringDictionary#NULL}.
+ *
+ * @author Sebastian Kirchner
+ *
+ */
+final class StringDictionary {
+
+	/**
+	 * The code of <code>null</code>
+	 */
+	static final int NULL = -1;
+
+	/**
+	 * string -> code
+	 */
+	private final Map<String, Integer> codes = new HashMap<String, Integer>();
+
+	/**
+	 * code -> string
+	 */
+	private String[] values = new String[16];
+
+	/**
+	 * @param value
+	 *            a string
+	 * @return the code of the string, {@link StringDictionary#NULL} if the string has not been
+	 *         encoded yet
+	 */
+	int codeOf(final String value) {
+		if(value == null){
+			return NULL;
+		}
+		final Integer code = this.codes.get(value);
+		return code == null ? NULL : code.intValue();
+	}
+
+	/**
+	 * @param code
+	 *            a code returned by {@link StringDictionary#encode(String)}
+	 * @return the string of the code
+	 */
+	String decode(final int code) {
+		return code == NULL ? null : this.values[code];
+	}
+
+	/**
+	 * @param value
+	 *            a string
+	 * @return the code of the string. A new code is assigned, if the string is unknown.
+	 */
+	int encode(final String value) {
+		if(value == null){
+			return NULL;
+		}
+		final Integer code = this.codes.get(value);
+		if(code != null){
+			return code.intValue();
+		}
+		final int newCode = this.codes.size();
+		if(newCode == this.values.length){
+			this.values = Arrays.copyOf(this.values, newCode * 2);
+		}
+		this.values[newCode] = value;
+		this.codes.put(value, Integer.valueOf(newCode));
+		return newCode;
+	}
+
+	/**
+	 * @return the number of distinct strings
+	 */
+	int size() {
+		return this.codes.size();
+	}
+}
@@ -0,0 +1,429 @@
+package de.lightningbug.api.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A streaming reader of JSON documents (RFC 4627). The document is read token by token, so large
+ * arrays can be processed item by item (see {@link JsonReader#beginArray()} and
+ * {@link JsonReader#hasNext()}) instead of being held in memory as a whole.
+ * <p>
+ * Values are read as the types used by XML-RPC: objects as {@link HashMap}, arrays as
+ * <code>Object[]</code>, integral numbers as {@link Integer} (or {@link Long} if they don't fit),
+ * other numbers as {@link Double}. Short strings are shared within a document, so repeated values
+ * and the names of the items of a large array of objects are stored once.
+ * </p>
+ * <b>Example:</b>
+ *
+ * <pre>
+ * reader.beginArray();
+ * while(reader.hasNext()){
+ * 	final Object item = reader.readValue();
+ * }
+ * reader.endArray();
+ * </pre>
+ *
+ * @author Sebastian Kirchner
+ *
+ * @see JsonWriter
+ */
+public class JsonReader implements Closeable {
+
+	/**
+	 * The kinds of JSON values
+	 */
+	public enum Kind {
+		ARRAY, BOOLEAN, NULL, NUMBER, OBJECT, STRING
+	}
+
+	/**
+	 * Thrown if a document is no valid JSON.
+	 *
+	 * @author Sebastian Kirchner
+	 *
+	 */
+	public static class MalformedJsonException extends IOException {
+
+		private static final long serialVersionUID = 1L;
+
+		public MalformedJsonException(final String message) {
+			super(message);
+		}
+	}
+
+	/**
+	 * Strings up to this length are shared within a document
+	 */
+	private static final int MAX_SHARED_STRING_LENGTH = 64;
+
+	private final char[] buffer = new char[8192];
+
+	private int depth = 0;
+
+	private final Reader in;
+
+	private int limit = 0;
+
+	private long offset = 0L;
+
+	private int pos = 0;
+
+	/**
+	 * whether an item of the open arrays and objects, innermost last, has been read and the
+	 * separator in front of the next item is due
+	 */
+	private boolean[] separatorsDue = new boolean[16];
+
+	private final Map<String, String> sharedStrings = new HashMap<String, String>();
+
+	private final StringBuilder text = new StringBuilder();
+
+	/**
+	 * @param in
+	 *            the document. It is buffered by the reader.
+	 */
+	public JsonReader(final Reader in) {
+		if(in == null){
+			throw new IllegalArgumentException("Paramter <in> must not be mull"); //$NON-NLS-1$
+		}
+		this.in = in;
+	}
+
+	/**
+	 * @param date
+	 *            a date in the format of Bugzilla, e.g. <code>2011-03-04T17:30:00Z</code>
+	 * @return the date or <code>null</code>, if the string is no date
+	 */
+	public static Date parseDate(final String date) {
+		try{
+			return Date.from(Instant.parse(date));
+		}catch(final RuntimeException e){
+			return null;
+		}
+	}
+
+	/**
+	 * Reads the beginning of an array. The items are read until {@link JsonReader#hasNext()}
+	 * returns <code>false</code>, followed by {@link JsonReader#endArray()}.
+	 */
+	public void beginArray() throws IOException {
+		this.separate();
+		this.expect('[');
+		this.push();
+	}
+
+	/**
+	 * Reads the beginning of an object. The items are read with {@link JsonReader#nextName()}
+	 * and a value until {@link JsonReader#hasNext()} returns <code>false</code>, followed by
+	 * {@link JsonReader#endObject()}.
+	 */
+	public void beginObject() throws IOException {
+		this.separate();
+		this.expect('{');
+		this.push();
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.in.close();
+	}
+
+	/**
+	 * Reads the end of an array.
+	 */
+	public void endArray() throws IOException {
+		this.expect(']');
+		this.depth--;
+		this.endValue();
+	}
+
+	/**
+	 * Reads the end of an object.
+	 */
+	public void endObject() throws IOException {
+		this.expect('}');
+		this.depth--;
+		this.endValue();
+	}
+
+	/**
+	 * @return <code>true</code> if the current array or object has another item
+	 */
+	public boolean hasNext() throws IOException {
+		final int c = this.peekChar();
+		if(c == ']' || c == '}' || c == -1){
+			return false;
+		}
+		this.separate();
+		return true;
+	}
+
+	/**
+	 * Reads the name of the next item of an object.
+	 *
+	 * @return the name
+	 */
+	public String nextName() throws IOException {
+		this.separate();
+		this.expect('"');
+		final String name = this.readString();
+		this.expect(':');
+		return name;
+	}
+
+	/**
+	 * @return the kind of the next value
+	 */
+	public Kind peek() throws IOException {
+		this.separate();
+		final int c = this.peekChar();
+		switch(c){
+		case '{':
+			return Kind.OBJECT;
+		case '[':
+			return Kind.ARRAY;
+		case '"':
+			return Kind.STRING;
+		case 't':
+		case 'f':
+			return Kind.BOOLEAN;
+		case 'n':
+			return Kind.NULL;
+		default:
+			if(c == '-' || (c >= '0' && c <= '9')){
+				return Kind.NUMBER;
+			}
+			throw this.syntaxError("Unexpected " + describe(c)); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Reads the next value with all nested values.
+	 *
+	 * @return a {@link Map}, an <code>Object[]</code>, a {@link String}, a {@link Number}, a
+	 *         {@link Boolean} or <code>null</code>
+	 */
+	public Object readValue() throws IOException {
+		switch(this.peek()){
+		case OBJECT:
+			final Map<String, Object> object = new HashMap<String, Object>();
+			this.beginObject();
+			while(this.hasNext()){
+				final String name = this.nextName();
+				object.put(name, this.readValue());
+			}
+			this.endObject();
+			return object;
+		case ARRAY:
+			final List<Object> array = new ArrayList<Object>();
+			this.beginArray();
+			while(this.hasNext()){
+				array.add(this.readValue());
+			}
+			this.endArray();
+			return array.toArray();
+		case STRING:
+			this.expect('"');
+			final String string = this.readString();
+			this.endValue();
+			return string;
+		case BOOLEAN:
+			final boolean value = this.peekChar() == 't';
+			this.expectLiteral(value ? "true" : "false"); //$NON-NLS-1$ //$NON-NLS-2$
+			this.endValue();
+			return Boolean.valueOf(value);
+		case NULL:
+			this.expectLiteral("null"); //$NON-NLS-1$
+			this.endValue();
+			return null;
+		default:
+			final Number number = this.readNumber();
+			this.endValue();
+			return number;
+		}
+	}
+
+	private static String describe(final int c) {
+		return c == -1 ? "end of document" : "'" + (char) c + "'"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+	}
+
+	/**
+	 * Marks the separator in front of the next item of the current array or object as due.
+	 */
+	private void endValue() {
+		if(this.depth > 0){
+			this.separatorsDue[this.depth - 1] = true;
+		}
+	}
+
+	private void expect(final char expected) throws IOException {
+		final int c = this.peekChar();
+		if(c != expected){
+			throw this.syntaxError("Expected '" + expected + "' instead of " + describe(c)); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		this.pos++;
+	}
+
+	private void expectLiteral(final String literal) throws IOException {
+		for(int i = 0; i < literal.length(); i++){
+			if(this.read() != literal.charAt(i)){
+				throw this.syntaxError("Expected " + literal); //$NON-NLS-1$
+			}
+		}
+	}
+
+	/**
+	 * @return <code>false</code> if the end of the document has been reached
+	 */
+	private boolean fill() throws IOException {
+		if(this.pos < this.limit){
+			return true;
+		}
+		this.offset += this.limit;
+		this.pos = 0;
+		this.limit = Math.max(this.in.read(this.buffer), 0);
+		return this.limit > 0;
+	}
+
+	/**
+	 * @return the next character, that is no white space, without consuming it, <code>-1</code>
+	 *         at the end of the document
+	 */
+	private int peekChar() throws IOException {
+		while(this.fill()){
+			final char c = this.buffer[this.pos];
+			if(c != ' ' && c != '\t' && c != '\n' && c != '\r'){
+				return c;
+			}
+			this.pos++;
+		}
+		return -1;
+	}
+
+	private void push() {
+		if(this.depth == this.separatorsDue.length){
+			this.separatorsDue = Arrays.copyOf(this.separatorsDue, this.depth * 2);
+		}
+		this.separatorsDue[this.depth++] = false;
+	}
+
+	/**
+	 * @return the next character, <code>-1</code> at the end of the document
+	 */
+	private int read() throws IOException {
+		return this.fill() ? this.buffer[this.pos++] : -1;
+	}
+
+	private Number readNumber() throws IOException {
+		this.text.setLength(0);
+		boolean integral = true;
+		while(this.fill()){
+			final char c = this.buffer[this.pos];
+			if(c == '.' || c == 'e' || c == 'E'){
+				integral = false;
+			}else if(c != '-' && c != '+' && (c < '0' || c > '9')){
+				break;
+			}
+			this.text.append(c);
+			this.pos++;
+		}
+		final String number = this.text.toString();
+		try{
+			if(integral){
+				final long value = Long.parseLong(number);
+				if(value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE){
+					return Integer.valueOf((int) value);
+				}
+				return Long.valueOf(value);
+			}
+			return Double.valueOf(number);
+		}catch(final NumberFormatException e){
+			throw this.syntaxError("Invalid number " + number); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Reads the rest of a string, after the opening quote.
+	 */
+	private String readString() throws IOException {
+		this.text.setLength(0);
+		while(true){
+			final int c = this.read();
+			if(c == '"'){
+				break;
+			}
+			if(c == -1){
+				throw this.syntaxError("Unterminated string"); //$NON-NLS-1$
+			}
+			if(c != '\\'){
+				this.text.append((char) c);
+				continue;
+			}
+			final int escaped = this.read();
+			switch(escaped){
+			case '"':
+			case '\\':
+			case '/':
+				this.text.append((char) escaped);
+				break;
+			case 'b':
+				this.text.append('\b');
+				break;
+			case 'f':
+				this.text.append('\f');
+				break;
+			case 'n':
+				this.text.append('\n');
+				break;
+			case 'r':
+				this.text.append('\r');
+				break;
+			case 't':
+				this.text.append('\t');
+				break;
+			case 'u':
+				int code = 0;
+				for(int i = 0; i < 4; i++){
+					final int digit = Character.digit(this.read(), 16);
+					if(digit < 0){
+						throw this.syntaxError("Invalid unicode escape"); //$NON-NLS-1$
+					}
+					code = code * 16 + digit;
+				}
+				this.text.append((char) code);
+				break;
+			default:
+				throw this.syntaxError("Invalid escape " + describe(escaped)); //$NON-NLS-1$
+			}
+		}
+		if(this.text.length() > MAX_SHARED_STRING_LENGTH){
+			return this.text.toString();
+		}
+		final String string = this.text.toString();
+		final String shared = this.sharedStrings.putIfAbsent(string, string);
+		return shared == null ? string : shared;
+	}
+
+	/**
+	 * Reads the separator in front of the next item of the current array or object, if it is
+	 * due.
+	 */
+	private void separate() throws IOException {
+		if(this.depth > 0 && this.separatorsDue[this.depth - 1]){
+			this.expect(',');
+			this.separatorsDue[this.depth - 1] = false;
+		}
+	}
+
+	private MalformedJsonException syntaxError(final String message) {
+		return new MalformedJsonException(message + " at position " + (this.offset + this.pos)); //$NON-NLS-1$
+	}
+}
@@ -0,0 +1,157 @@
+package de.lightningbug.api.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Array;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * Writes values as JSON documents (RFC 4627). The types used by XML-RPC are supported:
+ * {@link Map}s with string keys as objects, arrays and {@link Iterable}s as arrays,
+ * {@link Number}s, {@link Boolean}s, {@link String}s and <code>null</code>. Dates are written as
+ * strings in the format of Bugzilla (<code>2011-03-04T17:30:00Z</code>), byte arrays as base64
+ * strings.
+ *
+ * @author Sebastian Kirchner
+ *
+ * @see JsonReader
+ */
+public class JsonWriter {
+
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray(); //$NON-NLS-1$
+
+	private final Writer out;
+
+	/**
+	 * @param out
+	 *            receives the documents. It is neither flushed nor closed by the writer.
+	 */
+	public JsonWriter(final Writer out) {
+		if(out == null){
+			throw new IllegalArgumentException("Paramter <out> must not be mull"); //$NON-NLS-1$
+		}
+		this.out = out;
+	}
+
+	/**
+	 * @param date
+	 *            a date
+	 * @return the date in the format of Bugzilla, e.g. <code>2011-03-04T17:30:00Z</code>
+	 */
+	public static String formatDate(final Date date) {
+		return DateTimeFormatter.ISO_INSTANT.format(date.toInstant().truncatedTo(
+				ChronoUnit.SECONDS));
+	}
+
+	/**
+	 * Writes a value with all nested values.
+	 *
+	 * @param value
+	 *            the value
+	 * @throws IllegalArgumentException
+	 *             if the value or a nested value has no JSON representation
+	 */
+	public void write(final Object value) throws IOException {
+		if(value == null){
+			this.out.write("null"); //$NON-NLS-1$
+		}else if(value instanceof String || value instanceof Character){
+			this.writeString(value.toString());
+		}else if(value instanceof Boolean){
+			this.out.write(value.toString());
+		}else if(value instanceof Number){
+			this.writeNumber((Number) value);
+		}else if(value instanceof Map){
+			this.out.write('{');
+			boolean first = true;
+			for(final Map.Entry<?, ?> item : ((Map<?, ?>) value).entrySet()){
+				if(!first){
+					this.out.write(',');
+				}
+				first = false;
+				this.writeString(String.valueOf(item.getKey()));
+				this.out.write(':');
+				this.write(item.getValue());
+			}
+			this.out.write('}');
+		}else if(value instanceof Date){
+			this.writeString(formatDate((Date) value));
+		}else if(value instanceof byte[]){
+			this.writeString(Base64.getEncoder().encodeToString((byte[]) value));
+		}else if(value.getClass().isArray()){
+			this.out.write('[');
+			final int length = Array.getLength(value);
+			for(int i = 0; i < length; i++){
+				if(i > 0){
+					this.out.write(',');
+				}
+				this.write(Array.get(value, i));
+			}
+			this.out.write(']');
+		}else if(value instanceof Iterable){
+			this.out.write('[');
+			boolean first = true;
+			for(final Object item : (Iterable<?>) value){
+				if(!first){
+					this.out.write(',');
+				}
+				first = false;
+				this.write(item);
+			}
+			this.out.write(']');
+		}else{
+			throw new IllegalArgumentException("No JSON representation of " //$NON-NLS-1$
+					+ value.getClass().getName());
+		}
+	}
+
+	private void writeNumber(final Number number) throws IOException {
+		if(number instanceof Double || number instanceof Float){
+			final double value = number.doubleValue();
+			if(Double.isNaN(value) || Double.isInfinite(value)){
+				throw new IllegalArgumentException("No JSON representation of " + value); //$NON-NLS-1$
+			}
+		}
+		this.out.write(number.toString());
+	}
+
+	private void writeString(final String string) throws IOException {
+		this.out.write('"');
+		int start = 0;
+		for(int i = 0; i < string.length(); i++){
+			final char c = string.charAt(i);
+			if(c >= 0x20 && c != '"' && c != '\\' && c != 0x2028 && c != 0x2029){
+				continue;
+			}
+			this.out.write(string, start, i - start);
+			start = i + 1;
+			switch(c){
+			case '"':
+				this.out.write("\\\""); //$NON-NLS-1$
+				break;
+			case '\\':
+				this.out.write("\\\\"); //$NON-NLS-1$
+				break;
+			case '\n':
+				this.out.write("\\n"); //$NON-NLS-1$
+				break;
+			case '\r':
+				this.out.write("\\r"); //$NON-NLS-1$
+				break;
+			case '\t':
+				this.out.write("\\t"); //$NON-NLS-1$
+				break;
+			default:
+				this.out.write("\\u"); //$NON-NLS-1$
+				for(int shift = 12; shift >= 0; shift -= 4){
+					this.out.write(HEX_DIGITS[(c >> shift) & 0xF]);
+				}
+			}
+		}
+		this.out.write(string, start, string.length() - start);
+		this.out.write('"');
+	}
+}
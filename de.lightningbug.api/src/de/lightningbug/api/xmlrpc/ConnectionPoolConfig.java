@@ -0,0 +1,137 @@
+package de.lightningbug.api.xmlrpc;
+
+/**
+ * Settings of the pool of persistent (keep-alive) HTTP connections, that can be used by an
+ * {@link XmlRpcClient} instead of opening a new connection for every call.
+ *
+ * @author Sebastian Kirchner
+ *
+ * @see XmlRpcClient#setConnectionPoolConfig(ConnectionPoolConfig)
+ */
+public class ConnectionPoolConfig {
+
+	/**
+	 * Default for the property {@link ConnectionPoolConfig#maxConnectionsPerHost}
+	 */
+	public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 8;
+
+	/**
+	 * Default for the property {@link ConnectionPoolConfig#maxTotalConnections}
+	 */
+	public static final int DEFAULT_MAX_TOTAL_CONNECTIONS = 32;
+
+	/**
+	 * Default for the property {@link ConnectionPoolConfig#idleTimeout} (in milliseconds)
+	 */
+	public static final long DEFAULT_IDLE_TIMEOUT = 30000L;
+
+	private long idleTimeout = DEFAULT_IDLE_TIMEOUT;
+
+	private int maxConnectionsPerHost = DEFAULT_MAX_CONNECTIONS_PER_HOST;
+
+	private int maxTotalConnections = DEFAULT_MAX_TOTAL_CONNECTIONS;
+
+	private boolean staleCheckingEnabled = true;
+
+	/**
+	 * Creates a pool configuration using the default limits.
+	 */
+	public ConnectionPoolConfig() {
+		super();
+	}
+
+	/**
+	 * Creates a pool configuration using the given limits.
+	 *
+	 * @param maxConnectionsPerHost
+	 *            the maximum number of connections kept open to a single host
+	 * @param maxTotalConnections
+	 *            the maximum number of connections kept open overall
+	 */
+	public ConnectionPoolConfig(final int maxConnectionsPerHost, final int maxTotalConnections) {
+		this();
+		this.setMaxConnectionsPerHost(maxConnectionsPerHost);
+		this.setMaxTotalConnections(maxTotalConnections);
+	}
+
+	/**
+	 * @return the time in milliseconds a pooled connection may be idle before it is closed
+	 */
+	public long getIdleTimeout() {
+		return this.idleTimeout;
+	}
+
+	/**
+	 * @return the maximum number of connections kept open to a single host
+	 */
+	public int getMaxConnectionsPerHost() {
+		return this.maxConnectionsPerHost;
+	}
+
+	/**
+	 * @return the maximum number of connections kept open overall
+	 */
+	public int getMaxTotalConnections() {
+		return this.maxTotalConnections;
+	}
+
+	/**
+	 * @return <code>true</code> if a pooled connection is checked for being closed by the server
+	 *         before it is reused
+	 */
+	public boolean isStaleCheckingEnabled() {
+		return this.staleCheckingEnabled;
+	}
+
+	/**
+	 * @param idleTimeout
+	 *            the time in milliseconds a pooled connection may be idle before it is closed. A
+	 *            value of <code>0</code> or less keeps idle connections open.
+	 */
+	public void setIdleTimeout(final long idleTimeout) {
+		this.idleTimeout = idleTimeout;
+	}
+
+	/**
+	 * @param maxConnectionsPerHost
+	 *            the maximum number of connections kept open to a single host
+	 */
+	public void setMaxConnectionsPerHost(final int maxConnectionsPerHost) {
+		if(maxConnectionsPerHost < 1){
+			throw new IllegalArgumentException("Paramter <maxConnectionsPerHost> must be positive"); //$NON-NLS-1$
+		}
+		this.maxConnectionsPerHost = maxConnectionsPerHost;
+	}
+
+	/**
+	 * @param maxTotalConnections
+	 *            the maximum number of connections kept open overall
+	 */
+	public void setMaxTotalConnections(final int maxTotalConnections) {
+		if(maxTotalConnections < 1){
+			throw new IllegalArgumentException("Paramter <maxTotalConnections> must be positive"); //$NON-NLS-1$
+		}
+		this.maxTotalConnections = maxTotalConnections;
+	}
+
+	/**
+	 * @param staleCheckingEnabled
+	 *            <code>true</code> if a pooled connection should be checked for being closed by
+	 *            the server before it is reused
+	 */
+	public void setStaleCheckingEnabled(final boolean staleCheckingEnabled) {
+		this.staleCheckingEnabled = staleCheckingEnabled;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "ConnectionPoolConfig [maxConnectionsPerHost=" + this.maxConnectionsPerHost //$NON-NLS-1$
+				+ ", maxTotalConnections=" + this.maxTotalConnections + ", idleTimeout=" //$NON-NLS-1$ //$NON-NLS-2$
+				+ this.idleTimeout + ", staleCheckingEnabled=" + this.staleCheckingEnabled + "]"; //$NON-NLS-1$ //$NON-NLS-2$
+	}
+}
@@ -1,22 +1,125 @@
 /**
- * 
+ *
  */
 package de.lightningbug.api.xmlrpc;
 
 import java.net.HttpCookie;
+import java.net.URL;
 import java.net.URLConnection;
+import java.util.AbstractSet;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * A store to manage HTTP cookies (to retreive, cache and apply them).
- * 
+ * A store to manage HTTP cookies (to retreive, cache and apply them). A cookie replaces a stored
+ * cookie of the same name, expired cookies are dropped.
+ * <p>
+ * The store is shared by the concurrent calls of a client, so it may be modified and iterated by
+ * several threads at once. Its iterators are weakly consistent and never throw a
+ * {@link java.util.ConcurrentModificationException}. The value of the <code>Cookie</code>
+ * request header is built once and reused by all requests, until the cookies change or one of
+ * them expires.
+ * </p>
+ *
  * @author Sebastian Kirchner
- * 
+ *
+ * @see CookieStore#getCookieHeader(URL)
  */
-public class CookieStore extends HashSet<HttpCookie> {
+public class CookieStore extends AbstractSet<HttpCookie> {
+
+	/**
+	 * The immutable value of a <code>Cookie</code> header, built for a certain version of the
+	 * store and URL
+	 */
+	private static class CookieHeader {
+
+		/**
+		 * the point of time the first of the cookies expires at
+		 */
+		final long expiresAt;
+
+		final URL url;
+
+		/**
+		 * the header value, <code>null</code> if there are no cookies to apply
+		 */
+		final String value;
+
+		/**
+		 * the version of the store the header has been built for
+		 */
+		final long version;
+
+		CookieHeader(final URL url, final long version, final long expiresAt, final String value) {
+			this.url = url;
+			this.version = version;
+			this.expiresAt = expiresAt;
+			this.value = value;
+		}
+
+		boolean isValidFor(final URL url, final long version, final long now) {
+			return this.version == version && now < this.expiresAt
+					&& (this.url == url || this.url.toExternalForm().equals(url.toExternalForm()));
+		}
+	}
+
+	/**
+	 * A cookie with the point of time it expires at
+	 */
+	private static class StoredCookie {
+
+		final HttpCookie cookie;
+
+		/**
+		 * {@link Long#MAX_VALUE} for a cookie of the session
+		 */
+		final long expiresAt;
+
+		StoredCookie(final HttpCookie cookie, final long now) {
+			this.cookie = cookie;
+			final long maxAge = cookie.getMaxAge();
+			this.expiresAt = maxAge < 0L ? Long.MAX_VALUE : now + maxAge * 1000L;
+		}
+
+		/**
+		 * @return <code>true</code> if the cookie is sent with requests to the given URL
+		 */
+		boolean appliesTo(final URL url) {
+			final String domain = this.cookie.getDomain();
+			if(domain != null && !domainMatches(domain, url.getHost())){
+				return false;
+			}
+			final String path = this.cookie.getPath();
+			final String urlPath = url.getPath().isEmpty() ? "/" : url.getPath(); //$NON-NLS-1$
+			if(path != null && !urlPath.startsWith(path)){
+				return false;
+			}
+			return !this.cookie.getSecure()
+					|| "https".equalsIgnoreCase(url.getProtocol()); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * the cookies by their names
+	 */
+	private final ConcurrentHashMap<String, StoredCookie> cookies =
+			new ConcurrentHashMap<String, StoredCookie>();
+
+	/**
+	 * the header built last, <code>null</code> if none has been built yet
+	 */
+	private volatile CookieHeader header = null;
+
+	/**
+	 * incremented on every change of the cookies, invalidating the header built before
+	 */
+	private final AtomicLong version = new AtomicLong();
 
 	/**
 	 * Create a cookies strore, that can be used to manage cookies of an HTTP
@@ -41,30 +144,40 @@ public class CookieStore extends HashSet<HttpCookie> {
 	 */
 	public static Set<HttpCookie> retrieveCoockies(final URLConnection connection,
 			final String cookieDomain) {
+		// header names are case-insensitive, e.g. the HTTP server of the JRE sends "Set-cookie"
+		final List<String> cookieHeaders = new ArrayList<String>();
+		for(final Map.Entry<String, List<String>> header : connection.getHeaderFields().entrySet()){
+			if("Set-Cookie".equalsIgnoreCase(header.getKey())){ //$NON-NLS-1$
+				cookieHeaders.addAll(header.getValue());
+			}
+		}
+		return retrieveCoockies(cookieHeaders, cookieDomain);
+	}
 
-		final Map<String, List<String>> headerFields = connection.getHeaderFields();
-		final List<String> cookieHeaders = headerFields.get("Set-Cookie");
+	/**
+	 * @param cookieHeaders
+	 *            the values of all <code>Set-Cookie</code> headers of an HTTP response, may be
+	 *            <code>null</code>
+	 * @param cookieDomain
+	 * @return an empty set, if no cookies are found in the given headers.
+	 */
+	public static Set<HttpCookie> retrieveCoockies(final List<String> cookieHeaders,
+			final String cookieDomain) {
 
 		final HashSet<HttpCookie> cookies = new HashSet<HttpCookie>();
 
-		if (cookieHeaders == null) {
+		if(cookieHeaders == null){
 			return cookies;
 		}
-		for (final String cookieHeader : cookieHeaders) {
-
-			// Implementation of HttpCookie cannot handle empty params :(
-			final String cleanCoockieHeader = cookieHeader.replace("; HttpOnly", "");
-			final List<HttpCookie> cookieList = HttpCookie.parse("Set-Cookie: "
-					+ cleanCoockieHeader);
-			if (cookieList == null) {
-				return cookies;
-			}
-			for (final HttpCookie cookie : cookieList) {
-
+		for(final String cookieHeader : cookieHeaders){
+			// the header name makes the parser read the value as a single Netscape cookie,
+			// whose expiry date contains a comma. HttpOnly is known to the parser.
+			final List<HttpCookie> cookieList = HttpCookie.parse("Set-Cookie:" + cookieHeader); //$NON-NLS-1$
+			for(final HttpCookie cookie : cookieList){
 				final String domain = cookie.getDomain();
-				if (cookieDomain == null) {
+				if(cookieDomain == null){
 					cookies.add(cookie);
-				} else if (domain != null && HttpCookie.domainMatches(domain, cookieDomain)) {
+				}else if(domain != null && HttpCookie.domainMatches(domain, cookieDomain)){
 					// a cookie domain has been specified and the domain of the
 					// cookie matches
 					cookies.add(cookie);
@@ -75,26 +188,185 @@ public class CookieStore extends HashSet<HttpCookie> {
 		return cookies;
 	}
 
+	/**
+	 * Appends a cookie to the value of a <code>Cookie</code> request header. Only name and value
+	 * are sent, as requests don't carry the attributes of cookies.
+	 */
+	private static void appendCookie(final StringBuilder header, final HttpCookie cookie) {
+		if(header.length() > 0){
+			header.append("; "); //$NON-NLS-1$
+		}
+		header.append(cookie.getName()).append('=').append(cookie.getValue());
+	}
+
 	/**
 	 * Applies the registered cookies to the connection.
-	 * 
+	 *
 	 * @param connection
 	 *            the HTTP connection the given cookies should be applied to
 	 * @param cookies
 	 *            the set of cookie to apply
 	 */
 	public static void applyCookies(final URLConnection connection, final Set<HttpCookie> cookies) {
+		final String cookieHeader = cookies instanceof CookieStore ? ((CookieStore) cookies)
+				.getCookieHeader(connection.getURL()) : toCookieHeader(cookies);
+		if(cookieHeader != null){
+			connection.setRequestProperty("Cookie", cookieHeader); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Builds the value of the <code>Cookie</code> request header for the given cookies.
+	 *
+	 * @param cookies
+	 *            the set of cookie to apply
+	 * @return <code>null</code>, if there are no cookies to apply.
+	 *
+	 * @see CookieStore#getCookieHeader(URL)
+	 */
+	public static String toCookieHeader(final Set<HttpCookie> cookies) {
+
+		final StringBuilder rc = new StringBuilder();
+		for(final HttpCookie cookie : cookies){
+			appendCookie(rc, cookie);
+		}
+		return rc.length() > 0 ? rc.toString() : null;
+	}
+
+	/**
+	 * Stores a cookie. It replaces a stored cookie of the same name. An expired cookie removes
+	 * the stored cookie of its name, that is how servers delete cookies.
+	 *
+	 * @return <code>true</code> if the cookies have changed
+	 */
+	@Override
+	public boolean add(final HttpCookie cookie) {
+		if(cookie == null){
+			throw new IllegalArgumentException("Paramter <cookie> must not be mull"); //$NON-NLS-1$
+		}
+		final boolean changed;
+		if(cookie.getMaxAge() == 0L || cookie.hasExpired()){
+			changed = this.cookies.remove(cookie.getName()) != null;
+		}else{
+			final StoredCookie previous = this.cookies.put(cookie.getName(), new StoredCookie(
+					cookie, System.currentTimeMillis()));
+			changed = previous == null || previous.cookie != cookie;
+		}
+		if(changed){
+			this.version.incrementAndGet();
+		}
+		return changed;
+	}
+
+	@Override
+	public void clear() {
+		this.cookies.clear();
+		this.version.incrementAndGet();
+	}
+
+	@Override
+	public boolean contains(final Object o) {
+		if(!(o instanceof HttpCookie)){
+			return false;
+		}
+		final StoredCookie stored = this.cookies.get(((HttpCookie) o).getName());
+		return stored != null && stored.cookie.equals(o);
+	}
 
-		final StringBuffer rc = new StringBuffer();
-		for (final HttpCookie cookie : cookies) {
+	/**
+	 * Returns the value of the <code>Cookie</code> header for requests to the given URL, i.e.
+	 * the cookies matching the domain, path and protocol of the URL. The value is built only if
+	 * the cookies or the URL have changed or a cookie has expired since the last call. Expired
+	 * cookies are removed then.
+	 *
+	 * @param url
+	 *            the URL requested
+	 * @return <code>null</code>, if there are no cookies to apply.
+	 */
+	public String getCookieHeader(final URL url) {
+		if(url == null){
+			throw new IllegalArgumentException("Paramter <url> must not be mull"); //$NON-NLS-1$
+		}
+		final long now = System.currentTimeMillis();
+		// read before the cookies, so a concurrent change invalidates the header built here
+		final long version = this.version.get();
+		final CookieHeader header = this.header;
+		if(header != null && header.isValidFor(url, version, now)){
+			return header.value;
+		}
+		final StringBuilder value = new StringBuilder();
+		long expiresAt = Long.MAX_VALUE;
+		for(final Map.Entry<String, StoredCookie> entry : this.cookies.entrySet()){
+			final StoredCookie stored = entry.getValue();
+			if(stored.expiresAt <= now){
+				this.cookies.remove(entry.getKey(), stored);
+				continue;
+			}
+			expiresAt = Math.min(expiresAt, stored.expiresAt);
+			if(stored.appliesTo(url)){
+				appendCookie(value, stored.cookie);
+			}
+		}
+		final CookieHeader built = new CookieHeader(url, version, expiresAt,
+				value.length() > 0 ? value.toString() : null);
+		this.header = built;
+		return built.value;
+	}
 
-			if (rc.length() > 0) {
-				rc.append(";");
+	/**
+	 * Matches a host against the domain of a cookie like browsers do (RFC 6265): the host is the
+	 * domain or one of its subdomains.
+	 */
+	private static boolean domainMatches(final String domain, final String host) {
+		final String name = domain.startsWith(".") ? domain.substring(1) : domain; //$NON-NLS-1$
+		if(host.equalsIgnoreCase(name)){
+			return true;
+		}
+		final int dot = host.length() - name.length() - 1;
+		return dot > 0 && host.charAt(dot) == '.'
+				&& host.regionMatches(true, dot + 1, name, 0, name.length());
+	}
+
+	@Override
+	public Iterator<HttpCookie> iterator() {
+		final Iterator<StoredCookie> stored = this.cookies.values().iterator();
+		return new Iterator<HttpCookie>() {
+
+			@Override
+			public boolean hasNext() {
+				return stored.hasNext();
 			}
-			rc.append(cookie.toString());
+
+			@Override
+			public HttpCookie next() {
+				return stored.next().cookie;
+			}
+
+			@Override
+			public void remove() {
+				stored.remove();
+				CookieStore.this.version.incrementAndGet();
+			}
+		};
+	}
+
+	@Override
+	public boolean remove(final Object o) {
+		if(!(o instanceof HttpCookie)){
+			return false;
 		}
-		if (rc.length() > 0) {
-			connection.setRequestProperty("Cookie", rc.toString());
+		final HttpCookie cookie = (HttpCookie) o;
+		final StoredCookie stored = this.cookies.get(cookie.getName());
+		if(stored == null || !stored.cookie.equals(cookie)
+				|| !this.cookies.remove(cookie.getName(), stored)){
+			return false;
 		}
+		this.version.incrementAndGet();
+		return true;
+	}
+
+	@Override
+	public int size() {
+		return this.cookies.size();
 	}
 }
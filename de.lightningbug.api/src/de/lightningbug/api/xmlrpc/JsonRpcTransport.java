@@ -0,0 +1,226 @@
+package de.lightningbug.api.xmlrpc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.xmlrpc.XmlRpcException;
+import org.apache.xmlrpc.XmlRpcRequest;
+import org.apache.xmlrpc.client.XmlRpcClient;
+import org.apache.xmlrpc.client.XmlRpcClientException;
+import org.apache.xmlrpc.client.XmlRpcHttpClientConfig;
+import org.apache.xmlrpc.client.XmlRpcHttpTransportException;
+import org.apache.xmlrpc.client.XmlRpcTransportImpl;
+import org.apache.xmlrpc.util.HttpUtil;
+
+import de.lightningbug.api.util.JsonReader;
+import de.lightningbug.api.util.JsonWriter;
+
+/**
+ * Sends a call as JSON-RPC 1.0 request to the <code>jsonrpc.cgi</code> of Bugzilla. The
+ * response is read with a {@link JsonReader}, the values have the same types as those of
+ * XML-RPC, except for dates, that are strings.
+ * <p>
+ * Cookies, compression and the {@link TransferStatistics} are handled like in the XML-RPC
+ * transports of the {@link XmlRpcCookiesTransportFactory}. The records of streamed calls are
+ * passed to the consumer while the response is read. The connections are kept alive by the
+ * {@link HttpURLConnection}s of the JRE.
+ * </p>
+ *
+ * @author Sebastian Kirchner
+ *
+ * @see RpcProtocol#JSON_RPC
+ */
+class JsonRpcTransport extends XmlRpcTransportImpl {
+
+	/**
+	 * the id of the next request
+	 */
+	private static final AtomicLong NEXT_ID = new AtomicLong(1L);
+
+	private final XmlRpcCookiesTransportFactory factory;
+
+	/**
+	 * @param client
+	 *            the client sending the calls
+	 * @param factory
+	 *            the factory compressing the requests, counting the bytes and providing the
+	 *            cookies
+	 */
+	JsonRpcTransport(final XmlRpcClient client, final XmlRpcCookiesTransportFactory factory) {
+		super(client);
+		this.factory = factory;
+	}
+
+	@Override
+	public Object sendRequest(final XmlRpcRequest pRequest) throws XmlRpcException {
+		final XmlRpcHttpClientConfig config = (XmlRpcHttpClientConfig) pRequest.getConfig();
+		try{
+			final HttpURLConnection connection = (HttpURLConnection) config.getServerURL()
+					.openConnection();
+			connection.setUseCaches(false);
+			connection.setDoOutput(true);
+			connection.setRequestMethod("POST"); //$NON-NLS-1$
+			connection.setRequestProperty("Content-Type", "application/json; charset=UTF-8"); //$NON-NLS-1$ //$NON-NLS-2$
+			connection.setRequestProperty("Accept", "application/json"); //$NON-NLS-1$ //$NON-NLS-2$
+			connection.setRequestProperty("User-Agent", config.getUserAgent()); //$NON-NLS-1$
+			if(config.isGzipRequesting()){
+				connection.setRequestProperty("Accept-Encoding", "gzip"); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+			if(config.getBasicUserName() != null){
+				connection.setRequestProperty("Authorization", "Basic " //$NON-NLS-1$ //$NON-NLS-2$
+						+ HttpUtil.encodeBasicAuthentication(config.getBasicUserName(), config
+								.getBasicPassword(), config.getBasicEncoding()));
+			}
+			if(config.getConnectionTimeout() > 0){
+				connection.setConnectTimeout(config.getConnectionTimeout());
+			}
+			if(config.getReplyTimeout() > 0){
+				connection.setReadTimeout(config.getReplyTimeout());
+			}
+			final CookieStore cookies = this.factory.cookiesOf(config);
+			CookieStore.applyCookies(connection, cookies);
+
+			final byte[] body = this.factory.encodeRequest(this.writeRequest(pRequest),
+					connection::setRequestProperty, connection::setFixedLengthStreamingMode);
+			final OutputStream out = connection.getOutputStream();
+			try{
+				out.write(body);
+			}finally{
+				out.close();
+			}
+
+			final int status = connection.getResponseCode();
+			cookies.addAll(CookieStore.retrieveCoockies(connection));
+			final String contentType = connection.getContentType();
+			if(status != HttpURLConnection.HTTP_OK
+					&& (contentType == null || !contentType.startsWith("application/json"))){ //$NON-NLS-1$
+				throw new XmlRpcHttpTransportException(status, connection.getResponseMessage());
+			}
+			final InputStream in = this.factory.getStatistics().countReceived(
+					status == HttpURLConnection.HTTP_OK ? connection.getInputStream() : connection
+							.getErrorStream());
+			try{
+				final boolean compressed = "gzip".equalsIgnoreCase(connection.getContentEncoding()); //$NON-NLS-1$
+				return this.readResponse(config, this.factory.getStatistics().countResponse(
+						compressed ? new GZIPInputStream(in) : in, compressed));
+			}finally{
+				in.close();
+			}
+		}catch(final IOException e){
+			throw new XmlRpcClientException("Failed to call " + pRequest.getMethodName() + ": " //$NON-NLS-1$ //$NON-NLS-2$
+					+ e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Reads the result of a response. If the call is streamed, the records are passed to the
+	 * consumer and replaced by an empty array.
+	 */
+	private Object readResponse(final XmlRpcHttpClientConfig config, final InputStream in)
+			throws IOException, XmlRpcException {
+		final JsonReader reader = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+		Object result = null;
+		Object error = null;
+		reader.beginObject();
+		while(reader.hasNext()){
+			final String name = reader.nextName();
+			if("result".equals(name)){ //$NON-NLS-1$
+				result = XmlRpcCookiesTransportFactory.isStreaming(config) ? readRecords(reader,
+						(RecordStreamConfig) config) : reader.readValue();
+			}else if("error".equals(name)){ //$NON-NLS-1$
+				error = reader.readValue();
+			}else{
+				reader.readValue();
+			}
+		}
+		reader.endObject();
+		if(error != null){
+			if(!(error instanceof Map)){
+				throw new XmlRpcException(0, String.valueOf(error));
+			}
+			final Object code = ((Map<?, ?>) error).get("code"); //$NON-NLS-1$
+			throw new XmlRpcException(code instanceof Integer ? ((Integer) code).intValue() : 0,
+					String.valueOf(((Map<?, ?>) error).get("message"))); //$NON-NLS-1$
+		}
+		return result;
+	}
+
+	/**
+	 * Reads a result and passes the items of the array of records to the consumer.
+	 */
+	private static Object readRecords(final JsonReader reader, final RecordStreamConfig config)
+			throws IOException, XmlRpcException {
+		if(reader.peek() != JsonReader.Kind.OBJECT){
+			return reader.readValue();
+		}
+		final Consumer<? super Map<String, Object>> records = config.getRecords();
+		final Map<String, Object> result = new HashMap<String, Object>();
+		reader.beginObject();
+		while(reader.hasNext()){
+			final String name = reader.nextName();
+			if(!name.equals(config.getRecordsItem()) || reader.peek() != JsonReader.Kind.ARRAY){
+				result.put(name, reader.readValue());
+				continue;
+			}
+			int recordCount = 0;
+			reader.beginArray();
+			while(reader.hasNext()){
+				final Object record = reader.readValue();
+				if(!(record instanceof Map)){
+					continue;
+				}
+				recordCount++;
+				try{
+					@SuppressWarnings("unchecked")
+					final Map<String, Object> map = (Map<String, Object>) record;
+					records.accept(map);
+				}catch(final RuntimeException e){
+					throw new XmlRpcClientException("The record " + recordCount //$NON-NLS-1$
+							+ " could not be processed", e); //$NON-NLS-1$
+				}
+			}
+			reader.endArray();
+			result.put(name, new Object[0]);
+		}
+		reader.endObject();
+		return result;
+	}
+
+	/**
+	 * @return the JSON of the request
+	 */
+	private ByteArrayOutputStream writeRequest(final XmlRpcRequest pRequest) throws IOException,
+			XmlRpcClientException {
+		final Object[] params = new Object[pRequest.getParameterCount()];
+		for(int i = 0; i < params.length; i++){
+			params[i] = pRequest.getParameter(i);
+		}
+		final Map<String, Object> request = new HashMap<String, Object>();
+		request.put("method", pRequest.getMethodName()); //$NON-NLS-1$
+		request.put("params", params); //$NON-NLS-1$
+		request.put("id", Long.valueOf(NEXT_ID.getAndIncrement())); //$NON-NLS-1$
+
+		final ByteArrayOutputStream json = new ByteArrayOutputStream();
+		final Writer writer = new OutputStreamWriter(json, StandardCharsets.UTF_8);
+		try{
+			new JsonWriter(writer).write(request);
+		}catch(final IllegalArgumentException e){
+			throw new XmlRpcClientException("Failed to write the parameters of " //$NON-NLS-1$
+					+ pRequest.getMethodName() + ": " + e.getMessage(), e); //$NON-NLS-1$
+		}
+		writer.close();
+		return json;
+	}
+}
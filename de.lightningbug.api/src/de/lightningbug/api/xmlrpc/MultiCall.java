@@ -0,0 +1,337 @@
+package de.lightningbug.api.xmlrpc;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.xmlrpc.XmlRpcException;
+
+/**
+ * A batch of XML-RPC calls, that are sent to the server with a single
+ * <code>system.multicall</code> request.
+ * <p>
+ * Every queued call returns a {@link Future}, that holds the result of that call after
+ * {@link MultiCall#execute()} has been invoked. Errors are reported per call: a fault of one call
+ * does not affect the others. If the server does not support <code>system.multicall</code>, the
+ * calls are executed concurrently instead. The client remembers this, so later batches skip the
+ * multicall attempt.
+ * </p>
+ * <b>Example:</b>
+ *
+ * <pre>
+ * final MultiCall multiCall = bugzillaClient.createMultiCall();
+ * final Future&lt;Object&gt; products = multiCall.add(&quot;Product.get_accessible_products&quot;);
+ * final Future&lt;Object&gt; fields = multiCall.add(&quot;Bug.fields&quot;);
+ * multiCall.execute();
+ * </pre>
+ *
+ * @author Sebastian Kirchner
+ *
+ */
+public class MultiCall {
+
+	/**
+	 * The result of a single call of a {@link MultiCall}.
+	 */
+	private static class Call implements Future<Object> {
+
+		private final CountDownLatch done = new CountDownLatch(1);
+
+		private Throwable error = null;
+
+		private final String methodName;
+
+		private final List<Object> params;
+
+		private Object result = null;
+
+		Call(final String methodName, final List<Object> params) {
+			this.methodName = methodName;
+			this.params = params;
+		}
+
+		@Override
+		public boolean cancel(final boolean mayInterruptIfRunning) {
+			return false;
+		}
+
+		void fail(final Throwable error) {
+			this.error = error;
+			this.done.countDown();
+		}
+
+		@Override
+		public Object get() throws InterruptedException, ExecutionException {
+			this.done.await();
+			return this.getResult();
+		}
+
+		@Override
+		public Object get(final long timeout, final TimeUnit unit) throws InterruptedException,
+				ExecutionException, TimeoutException {
+			if(!this.done.await(timeout, unit)){
+				throw new TimeoutException();
+			}
+			return this.getResult();
+		}
+
+		private Object getResult() throws ExecutionException {
+			if(this.error != null){
+				throw new ExecutionException(this.error);
+			}
+			return this.result;
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return false;
+		}
+
+		@Override
+		public boolean isDone() {
+			return this.done.getCount() == 0;
+		}
+
+		void succeed(final Object result) {
+			this.result = result;
+			this.done.countDown();
+		}
+	}
+
+	private static final Log LOG = LogFactory.getLog(MultiCall.class);
+
+	private static final String FAULT_CODE = "faultCode"; //$NON-NLS-1$
+
+	private static final String FAULT_STRING = "faultString"; //$NON-NLS-1$
+
+	/**
+	 * The fault code of an unknown method (XML-RPC fault code interoperability spec). Some servers
+	 * report it without the sign.
+	 */
+	private static final int FAULT_UNKNOWN_METHOD = -32601;
+
+	private static final String METHOD_NAME = "methodName"; //$NON-NLS-1$
+
+	private static final String PARAMS = "params"; //$NON-NLS-1$
+
+	private final List<Call> calls = new ArrayList<Call>();
+
+	private final XmlRpcClient client;
+
+	private final ExecutorService executorService;
+
+	/**
+	 * @param client
+	 *            the client used to send the calls
+	 * @param executorService
+	 *            the executor used to run the calls concurrently, if the server does not support
+	 *            <code>system.multicall</code>
+	 */
+	public MultiCall(final XmlRpcClient client, final ExecutorService executorService) {
+		if(client == null){
+			throw new IllegalArgumentException("Paramter <client> must not be mull"); //$NON-NLS-1$
+		}
+		this.client = client;
+		this.executorService = executorService;
+	}
+
+	/**
+	 * Queues a call without parameters.
+	 *
+	 * @param methodName
+	 *            the name of the remote method (e.g. <code>Bug.fields</code>)
+	 * @return the result of the call, available after {@link MultiCall#execute()}
+	 */
+	public Future<Object> add(final String methodName) {
+		return this.add(methodName, new ArrayList<Object>());
+	}
+
+	/**
+	 * Queues a call, that takes a struct of named parameters.
+	 *
+	 * @param methodName
+	 *            the name of the remote method (e.g. <code>User.get</code>)
+	 * @param params
+	 *            a Map of parameter names (Strings) an their corresponing value(s). If a parameter
+	 *            has multiple values package them into an object array.
+	 * @return the result of the call, available after {@link MultiCall#execute()}
+	 */
+	public Future<Object> add(final String methodName, final Map<String, Object> params) {
+		final List<Object> pParams = new ArrayList<Object>();
+		pParams.add(params);
+		return this.add(methodName, pParams);
+	}
+
+	/**
+	 * Queues a call.
+	 *
+	 * @param methodName
+	 *            the name of the remote method
+	 * @param params
+	 *            the positional parameters of the call
+	 * @return the result of the call, available after {@link MultiCall#execute()}
+	 */
+	public synchronized Future<Object> add(final String methodName, final List<Object> params) {
+		final Call call = new Call(methodName, params);
+		this.calls.add(call);
+		return call;
+	}
+
+	/**
+	 * Sends all queued calls and waits until every call is done. Afterwards the batch is empty
+	 * and can be reused.
+	 */
+	public void execute() {
+		final List<Call> pending;
+		synchronized(this){
+			pending = new ArrayList<Call>(this.calls);
+			this.calls.clear();
+		}
+		if(pending.isEmpty()){
+			return;
+		}
+		if(pending.size() == 1){
+			// a multicall would only add overhead
+			this.executeSingle(pending.get(0));
+			return;
+		}
+		if(!Boolean.FALSE.equals(this.client.isMultiCallSupported())){
+			try{
+				this.executeMultiCall(pending);
+				this.client.setMultiCallSupported(Boolean.TRUE);
+				return;
+			}catch(final XmlRpcException e){
+				if(!isFault(e)){
+					for(final Call call : pending){
+						call.fail(e);
+					}
+					return;
+				}
+				if(isUnknownMethod(e)){
+					LOG.info("The server does not support system.multicall. " //$NON-NLS-1$
+							+ "Calls will be executed concurrently: " + e.getMessage()); //$NON-NLS-1$
+					this.client.setMultiCallSupported(Boolean.FALSE);
+				}else{
+					// e.g. an expired login, the next batch tries system.multicall again
+					LOG.info("system.multicall failed. The calls of this batch will be executed " //$NON-NLS-1$
+							+ "concurrently: " + e.getMessage()); //$NON-NLS-1$
+				}
+			}
+		}
+		this.executeConcurrently(pending);
+	}
+
+	private void executeConcurrently(final List<Call> pending) {
+		if(this.executorService == null){
+			for(final Call call : pending){
+				this.executeSingle(call);
+			}
+			return;
+		}
+		final List<Future<?>> futures = new ArrayList<Future<?>>(pending.size());
+		for(final Call call : pending){
+			futures.add(this.executorService.submit(new Runnable() {
+
+				@Override
+				public void run() {
+					MultiCall.this.executeSingle(call);
+				}
+			}));
+		}
+		for(int i = 0; i < futures.size(); i++){
+			try{
+				futures.get(i).get();
+			}catch(final InterruptedException e){
+				Thread.currentThread().interrupt();
+				pending.get(i).fail(e);
+			}catch(final ExecutionException e){
+				pending.get(i).fail(e.getCause());
+			}catch(final CancellationException e){
+				pending.get(i).fail(e);
+			}
+		}
+	}
+
+	private void executeMultiCall(final List<Call> pending) throws XmlRpcException {
+		final Object[] structs = new Object[pending.size()];
+		for(int i = 0; i < structs.length; i++){
+			final Call call = pending.get(i);
+			final Map<String, Object> struct = new HashMap<String, Object>();
+			struct.put(METHOD_NAME, call.methodName);
+			struct.put(PARAMS, call.params.toArray());
+			structs[i] = struct;
+		}
+		final List<Object> params = new ArrayList<Object>();
+		params.add(structs);
+		final Object result = this.client.execute("system.multicall", params); //$NON-NLS-1$
+		if(!(result instanceof Object[]) || ((Object[]) result).length != pending.size()){
+			throw new XmlRpcException(-32600, "Unexpected response to system.multicall"); //$NON-NLS-1$
+		}
+
+		// every item is either an array containing the result or a fault struct
+		final Object[] items = (Object[]) result;
+		for(int i = 0; i < items.length; i++){
+			final Call call = pending.get(i);
+			final Object item = items[i];
+			if(item instanceof Object[] && ((Object[]) item).length == 1){
+				call.succeed(((Object[]) item)[0]);
+			}else if(item instanceof Map<?, ?>){
+				final Map<?, ?> fault = (Map<?, ?>) item;
+				final Object code = fault.get(FAULT_CODE);
+				call.fail(new XmlRpcException(code instanceof Number ? ((Number) code).intValue()
+						: 0, String.valueOf(fault.get(FAULT_STRING))));
+			}else{
+				call.fail(new XmlRpcException("Unexpected result of " + call.methodName + ": " //$NON-NLS-1$ //$NON-NLS-2$
+						+ item));
+			}
+		}
+	}
+
+	private void executeSingle(final Call call) {
+		try{
+			call.succeed(this.client.execute(call.methodName, call.params));
+		}catch(final XmlRpcException e){
+			call.fail(e);
+		}catch(final RuntimeException e){
+			call.fail(e);
+		}
+	}
+
+	/**
+	 * @param e
+	 *            an exception thrown by a call
+	 * @return <code>true</code> if the exception is a fault returned by the server, not an error
+	 *         of the transport
+	 */
+	private static boolean isFault(final XmlRpcException e) {
+		return e.getClass() == XmlRpcException.class && e.getCause() == null;
+	}
+
+	/**
+	 * @param e
+	 *            an exception thrown by a call
+	 * @return <code>true</code> if the exception is the fault of an unknown method. Servers
+	 *         answering unknown methods with another code (e.g. <code>0</code>) are asked for
+	 *         <code>system.multicall</code> again with every batch.
+	 */
+	private static boolean isUnknownMethod(final XmlRpcException e) {
+		return isFault(e) && Math.abs(e.code) == -FAULT_UNKNOWN_METHOD;
+	}
+
+	/**
+	 * @return the number of queued calls
+	 */
+	public synchronized int size() {
+		return this.calls.size();
+	}
+}
@@ -0,0 +1,77 @@
+package de.lightningbug.api.xmlrpc;
+
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.apache.xmlrpc.client.XmlRpcClientConfigImpl;
+
+/**
+ * The configuration of the calls of a {@link XmlRpcClient}. A copy of it carries the consumer
+ * of the records of a single streamed call or the cookies of a single call to the transport.
+ *
+ * @author Sebastian Kirchner
+ *
+ * @see XmlRpcClient#executeStreaming(String, Map, String, Consumer)
+ * @see RecordStreamParser
+ */
+class RecordStreamConfig extends XmlRpcClientConfigImpl {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * the cookies of a single call, <code>null</code> to use the cookie store of the client
+	 */
+	private transient CookieStore cookies = null;
+
+	/**
+	 * receives the records, <code>null</code> if the response is parsed as a whole
+	 */
+	private transient Consumer<? super Map<String, Object>> records = null;
+
+	/**
+	 * the name of the item of the result holding the array of records
+	 */
+	private String recordsItem = null;
+
+	/**
+	 * @return a copy of this configuration streaming the records of the given item to the consumer
+	 */
+	RecordStreamConfig copyFor(final String recordsItem,
+			final Consumer<? super Map<String, Object>> records) {
+		final RecordStreamConfig config = (RecordStreamConfig) this.cloneMe();
+		config.recordsItem = recordsItem;
+		config.records = records;
+		return config;
+	}
+
+	/**
+	 * @return a copy of this configuration sending and receiving the given cookies instead of the
+	 *         cookie store of the client
+	 */
+	RecordStreamConfig copyWithCookies(final CookieStore cookies) {
+		final RecordStreamConfig config = (RecordStreamConfig) this.cloneMe();
+		config.cookies = cookies;
+		return config;
+	}
+
+	/**
+	 * @return the cookies of the call, <code>null</code> to use the cookie store of the client
+	 */
+	CookieStore getCookies() {
+		return this.cookies;
+	}
+
+	/**
+	 * @return the consumer of the records, <code>null</code> if the response is parsed as a whole
+	 */
+	Consumer<? super Map<String, Object>> getRecords() {
+		return this.records;
+	}
+
+	/**
+	 * @return the name of the item of the result holding the array of records
+	 */
+	String getRecordsItem() {
+		return this.recordsItem;
+	}
+}
@@ -0,0 +1,333 @@
+package de.lightningbug.api.xmlrpc;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.function.Consumer;
+
+import org.apache.ws.commons.util.Base64;
+import org.apache.xmlrpc.XmlRpcException;
+import org.apache.xmlrpc.client.XmlRpcClientException;
+import org.apache.xmlrpc.util.SAXParsers;
+import org.apache.xmlrpc.util.XmlRpcDateTimeDateFormat;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Parses an XML-RPC response, whose result is a struct with an array of structs (e.g. the
+ * <code>bugs</code> of <code>Bug.search</code>). The structs of the array, the records, are
+ * passed to a consumer as soon as they have been parsed and are not kept, so only a single
+ * record exists at a time instead of the tree of the whole response.
+ * <p>
+ * Values are decoded like the parser of the xmlrpc library does it. Short strings are shared
+ * within a response, so repeated values like the status of a bug are stored once.
+ * </p>
+ *
+ * @author Sebastian Kirchner
+ *
+ * @see RecordStreamConfig
+ */
+class RecordStreamParser extends DefaultHandler {
+
+	/**
+	 * An open struct or array
+	 */
+	private static class Container {
+
+		/**
+		 * the items of an array, <code>null</code> for a struct
+		 */
+		final List<Object> array;
+
+		/**
+		 * the name of the current item of a struct
+		 */
+		String name = null;
+
+		/**
+		 * whether the items of the array are passed to the consumer
+		 */
+		final boolean records;
+
+		/**
+		 * the items of a struct, <code>null</code> for an array
+		 */
+		final Map<String, Object> struct;
+
+		Container(final boolean isArray, final boolean records) {
+			this.array = isArray && !records ? new ArrayList<Object>() : null;
+			this.struct = isArray ? null : new HashMap<String, Object>();
+			this.records = records;
+		}
+
+		boolean isArray() {
+			return this.struct == null;
+		}
+	}
+
+	/**
+	 * Strings up to this length are shared within a response
+	 */
+	private static final int MAX_SHARED_STRING_LENGTH = 64;
+
+	private final List<Container> containers = new ArrayList<Container>();
+
+	private final XmlRpcDateTimeDateFormat dateFormat;
+
+	private boolean fault = false;
+
+	private final Consumer<? super Map<String, Object>> records;
+
+	private final String recordsItem;
+
+	private int recordCount = 0;
+
+	private Object result = null;
+
+	private final Map<String, String> sharedStrings = new HashMap<String, String>();
+
+	private final StringBuilder text = new StringBuilder();
+
+	/**
+	 * whether the text of the current element is collected
+	 */
+	private boolean textCollected = false;
+
+	/**
+	 * the value of the current value element, if it has already been decoded
+	 */
+	private Object value = null;
+
+	private boolean valueDecoded = false;
+
+	private RecordStreamParser(final RecordStreamConfig config) {
+		final TimeZone timeZone = config.getTimeZone();
+		this.dateFormat = new XmlRpcDateTimeDateFormat() {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected TimeZone getTimeZone() {
+				return timeZone;
+			}
+		};
+		this.records = config.getRecords();
+		this.recordsItem = config.getRecordsItem();
+	}
+
+	/**
+	 * Parses a response and passes the records to the consumer of the configuration.
+	 *
+	 * @param config
+	 *            the configuration of the call, carrying the consumer
+	 * @param in
+	 *            the response
+	 * @return the result of the call. The array of records is replaced by an empty array.
+	 * @throws XmlRpcException
+	 *             if the server returned a fault or the response could not be parsed
+	 */
+	static Object parse(final RecordStreamConfig config, final InputStream in)
+			throws XmlRpcException {
+		final RecordStreamParser parser = new RecordStreamParser(config);
+		final XMLReader reader = SAXParsers.newXMLReader();
+		reader.setContentHandler(parser);
+		try{
+			reader.parse(new InputSource(in));
+		}catch(final SAXException e){
+			if(e.getException() instanceof XmlRpcException){
+				throw (XmlRpcException) e.getException();
+			}
+			throw new XmlRpcClientException("Failed to parse server's response: " //$NON-NLS-1$
+					+ e.getMessage(), e);
+		}catch(final IOException e){
+			throw new XmlRpcClientException("Failed to read server's response: " //$NON-NLS-1$
+					+ e.getMessage(), e);
+		}
+		if(parser.fault){
+			final Map<?, ?> fault = (Map<?, ?>) parser.result;
+			final Object code = fault.get("faultCode"); //$NON-NLS-1$
+			throw new XmlRpcException(code instanceof Integer ? ((Integer) code).intValue() : 0,
+					(String) fault.get("faultString")); //$NON-NLS-1$
+		}
+		return parser.result;
+	}
+
+	@Override
+	public void characters(final char[] ch, final int start, final int length) {
+		if(this.textCollected){
+			this.text.append(ch, start, length);
+		}
+	}
+
+	@Override
+	public void endElement(final String uri, final String localName, final String qName)
+			throws SAXException {
+		switch(localName){
+		case "name": //$NON-NLS-1$
+			this.top().name = this.text.toString();
+			this.textCollected = false;
+			break;
+		case "value": //$NON-NLS-1$
+			if(!this.valueDecoded){
+				// a value without a type is a string
+				this.decoded(this.share(this.text.toString()));
+			}
+			this.addValue();
+			break;
+		case "struct": //$NON-NLS-1$
+			this.decoded(this.containers.remove(this.containers.size() - 1).struct);
+			break;
+		case "array": //$NON-NLS-1$
+			final Container array = this.containers.remove(this.containers.size() - 1);
+			this.decoded(array.records ? new Object[0] : array.array.toArray());
+			break;
+		case "data": //$NON-NLS-1$
+		case "member": //$NON-NLS-1$
+		case "param": //$NON-NLS-1$
+		case "params": //$NON-NLS-1$
+		case "fault": //$NON-NLS-1$
+		case "methodResponse": //$NON-NLS-1$
+			break;
+		default:
+			if(this.textCollected){
+				this.decoded(this.decode(localName, this.text.toString()));
+			}
+		}
+	}
+
+	@Override
+	public void startElement(final String uri, final String localName, final String qName,
+			final Attributes attributes) {
+		switch(localName){
+		case "value": //$NON-NLS-1$
+			this.valueDecoded = false;
+			this.value = null;
+			this.collectText();
+			break;
+		case "name": //$NON-NLS-1$
+			this.collectText();
+			break;
+		case "struct": //$NON-NLS-1$
+			this.textCollected = false;
+			this.containers.add(new Container(false, false));
+			break;
+		case "array": //$NON-NLS-1$
+			this.textCollected = false;
+			// the records are the items of the array of the records item of the result
+			final boolean records = this.containers.size() == 1 && !this.fault
+					&& !this.top().isArray() && this.recordsItem.equals(this.top().name);
+			this.containers.add(new Container(true, records));
+			break;
+		case "fault": //$NON-NLS-1$
+			this.fault = true;
+			break;
+		case "data": //$NON-NLS-1$
+		case "member": //$NON-NLS-1$
+		case "param": //$NON-NLS-1$
+		case "params": //$NON-NLS-1$
+		case "methodResponse": //$NON-NLS-1$
+			break;
+		default:
+			// a typed scalar
+			this.collectText();
+		}
+	}
+
+	/**
+	 * Adds the value of the current value element to the enclosing struct or array or sets it
+	 * as result.
+	 */
+	private void addValue() throws SAXException {
+		final Object value = this.value;
+		this.value = null;
+		this.valueDecoded = false;
+		this.textCollected = false;
+		if(this.containers.isEmpty()){
+			this.result = value;
+			return;
+		}
+		final Container container = this.top();
+		if(!container.isArray()){
+			container.struct.put(container.name, value);
+		}else if(!container.records){
+			container.array.add(value);
+		}else if(value instanceof Map){
+			this.recordCount++;
+			@SuppressWarnings("unchecked")
+			final Map<String, Object> record = (Map<String, Object>) value;
+			try{
+				this.records.accept(record);
+			}catch(final RuntimeException e){
+				throw new SAXException(new XmlRpcClientException(
+						"The record " + this.recordCount + " could not be processed", e)); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+		}
+	}
+
+	private void collectText() {
+		this.text.setLength(0);
+		this.textCollected = true;
+	}
+
+	/**
+	 * Decodes a typed scalar.
+	 */
+	private Object decode(final String type, final String text) throws SAXException {
+		try{
+			switch(type){
+			case "i4": //$NON-NLS-1$
+			case "int": //$NON-NLS-1$
+				return Integer.valueOf(text.trim());
+			case "i8": //$NON-NLS-1$
+				return Long.valueOf(text.trim());
+			case "boolean": //$NON-NLS-1$
+				return Boolean.valueOf("1".equals(text.trim())); //$NON-NLS-1$
+			case "double": //$NON-NLS-1$
+				return Double.valueOf(text.trim());
+			case "dateTime.iso8601": //$NON-NLS-1$
+				return this.dateFormat.parseObject(text.trim());
+			case "base64": //$NON-NLS-1$
+				return Base64.decode(text);
+			case "nil": //$NON-NLS-1$
+				return null;
+			default:
+				return this.share(text);
+			}
+		}catch(final NumberFormatException e){
+			throw new SAXException("Invalid " + type + " value: " + text, e); //$NON-NLS-1$ //$NON-NLS-2$
+		}catch(final ParseException e){
+			throw new SAXException("Invalid " + type + " value: " + text, e); //$NON-NLS-1$ //$NON-NLS-2$
+		}catch(final Base64.DecodingException e){
+			throw new SAXException("Invalid " + type + " value: " + text, e); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+	}
+
+	private void decoded(final Object value) {
+		this.value = value;
+		this.valueDecoded = true;
+		this.textCollected = false;
+	}
+
+	/**
+	 * @return the given string or an equal string of the same response
+	 */
+	private String share(final String string) {
+		if(string.length() > MAX_SHARED_STRING_LENGTH){
+			return string;
+		}
+		final String shared = this.sharedStrings.putIfAbsent(string, string);
+		return shared == null ? string : shared;
+	}
+
+	private Container top() {
+		return this.containers.get(this.containers.size() - 1);
+	}
+}
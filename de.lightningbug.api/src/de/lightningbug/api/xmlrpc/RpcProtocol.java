@@ -0,0 +1,37 @@
+package de.lightningbug.api.xmlrpc;
+
+/**
+ * The protocols of the web services of Bugzilla. Both offer the same methods with the same
+ * parameters and results, so the services of the client work with either of them.
+ *
+ * @author Sebastian Kirchner
+ *
+ * @see XmlRpcClient#getProtocol()
+ */
+public enum RpcProtocol {
+
+	/**
+	 * JSON-RPC 1.0 (<code>jsonrpc.cgi</code>, Bugzilla 3.6+). The calls are smaller and cheaper
+	 * to parse, but <code>system.multicall</code> is not supported.
+	 */
+	JSON_RPC("jsonrpc.cgi"), //$NON-NLS-1$
+
+	/**
+	 * XML-RPC (<code>xmlrpc.cgi</code>), supported by all Bugzilla versions
+	 */
+	XML_RPC("xmlrpc.cgi"); //$NON-NLS-1$
+
+	private final String endpoint;
+
+	private RpcProtocol(final String endpoint) {
+		this.endpoint = endpoint;
+	}
+
+	/**
+	 * @return the path of the endpoint relative to the base URL of the Bugzilla instance, e.g.
+	 *         <code>xmlrpc.cgi</code>
+	 */
+	public String getEndpoint() {
+		return this.endpoint;
+	}
+}
@@ -0,0 +1,206 @@
+package de.lightningbug.api.xmlrpc;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the bytes of the calls of a {@link XmlRpcClient}, before and after compression. The
+ * difference between the XML sent or read and the bytes on the wire are the savings of the
+ * compression.
+ * <p>
+ * The counters are updated concurrently by all calls of the client.
+ * </p>
+ *
+ * @author Sebastian Kirchner
+ *
+ * @see XmlRpcClient#setGzipRequesting(boolean)
+ * @see XmlRpcClient#setRequestCompressionThreshold(int)
+ */
+public class TransferStatistics {
+
+	/**
+	 * Adds every byte read to a counter.
+	 */
+	private static class CountingInputStream extends FilterInputStream {
+
+		private final AtomicLong counter;
+
+		CountingInputStream(final InputStream in, final AtomicLong counter) {
+			super(in);
+			this.counter = counter;
+		}
+
+		@Override
+		public int read() throws IOException {
+			final int b = super.read();
+			if(b >= 0){
+				this.counter.incrementAndGet();
+			}
+			return b;
+		}
+
+		@Override
+		public int read(final byte[] b, final int off, final int len) throws IOException {
+			final int count = super.read(b, off, len);
+			if(count > 0){
+				this.counter.addAndGet(count);
+			}
+			return count;
+		}
+
+		@Override
+		public long skip(final long n) throws IOException {
+			final long count = super.skip(n);
+			if(count > 0){
+				this.counter.addAndGet(count);
+			}
+			return count;
+		}
+	}
+
+	private final AtomicLong compressedRequests = new AtomicLong();
+
+	private final AtomicLong compressedResponses = new AtomicLong();
+
+	private final AtomicLong receivedBytes = new AtomicLong();
+
+	private final AtomicLong requestBytes = new AtomicLong();
+
+	private final AtomicLong requests = new AtomicLong();
+
+	private final AtomicLong responseBytes = new AtomicLong();
+
+	private final AtomicLong responses = new AtomicLong();
+
+	private final AtomicLong sentBytes = new AtomicLong();
+
+	/**
+	 * @param in
+	 *            the XML of a response after decompression
+	 * @param compressed
+	 *            whether the response has been compressed
+	 * @return a stream counting the bytes of the XML
+	 */
+	InputStream countResponse(final InputStream in, final boolean compressed) {
+		this.responses.incrementAndGet();
+		if(compressed){
+			this.compressedResponses.incrementAndGet();
+		}
+		return new CountingInputStream(in, this.responseBytes);
+	}
+
+	/**
+	 * @param in
+	 *            the body of a response as received
+	 * @return a stream counting the received bytes
+	 */
+	InputStream countReceived(final InputStream in) {
+		return new CountingInputStream(in, this.receivedBytes);
+	}
+
+	/**
+	 * @param length
+	 *            the length of the XML of a request
+	 * @param sentLength
+	 *            the length of the body as sent
+	 * @param compressed
+	 *            whether the body has been compressed
+	 */
+	void countRequest(final int length, final int sentLength, final boolean compressed) {
+		this.requests.incrementAndGet();
+		if(compressed){
+			this.compressedRequests.incrementAndGet();
+		}
+		this.requestBytes.addAndGet(length);
+		this.sentBytes.addAndGet(sentLength);
+	}
+
+	/**
+	 * @return the number of compressed requests
+	 */
+	public long getCompressedRequests() {
+		return this.compressedRequests.get();
+	}
+
+	/**
+	 * @return the number of compressed responses
+	 */
+	public long getCompressedResponses() {
+		return this.compressedResponses.get();
+	}
+
+	/**
+	 * @return the bytes of all responses as received
+	 */
+	public long getReceivedBytes() {
+		return this.receivedBytes.get();
+	}
+
+	/**
+	 * @return the bytes of the XML of all requests
+	 */
+	public long getRequestBytes() {
+		return this.requestBytes.get();
+	}
+
+	/**
+	 * @return the number of requests
+	 */
+	public long getRequests() {
+		return this.requests.get();
+	}
+
+	/**
+	 * @return the bytes of the XML of all responses, that have been read
+	 */
+	public long getResponseBytes() {
+		return this.responseBytes.get();
+	}
+
+	/**
+	 * @return the number of responses
+	 */
+	public long getResponses() {
+		return this.responses.get();
+	}
+
+	/**
+	 * @return the bytes saved by compressing requests and responses
+	 */
+	public long getSavedBytes() {
+		return this.getRequestBytes() - this.getSentBytes() + this.getResponseBytes()
+				- this.getReceivedBytes();
+	}
+
+	/**
+	 * @return the bytes of all requests as sent
+	 */
+	public long getSentBytes() {
+		return this.sentBytes.get();
+	}
+
+	/**
+	 * Sets all counters to <code>0</code>.
+	 */
+	public void reset() {
+		this.compressedRequests.set(0L);
+		this.compressedResponses.set(0L);
+		this.receivedBytes.set(0L);
+		this.requestBytes.set(0L);
+		this.requests.set(0L);
+		this.responseBytes.set(0L);
+		this.responses.set(0L);
+		this.sentBytes.set(0L);
+	}
+
+	@Override
+	public String toString() {
+		return "TransferStatistics [requests=" + this.getRequests() + " (" //$NON-NLS-1$ //$NON-NLS-2$
+				+ this.getCompressedRequests() + " compressed, " + this.getRequestBytes() //$NON-NLS-1$
+				+ " bytes, " + this.getSentBytes() + " sent), responses=" + this.getResponses() //$NON-NLS-1$ //$NON-NLS-2$
+				+ " (" + this.getCompressedResponses() + " compressed, " //$NON-NLS-1$ //$NON-NLS-2$
+				+ this.getResponseBytes() + " bytes, " + this.getReceivedBytes() + " received)]"; //$NON-NLS-1$ //$NON-NLS-2$
+	}
+}
@@ -4,9 +4,12 @@
 package de.lightningbug.api.xmlrpc;
 
 import java.net.URL;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
-import org.apache.xmlrpc.client.XmlRpcClientConfigImpl;
-import org.apache.xmlrpc.client.XmlRpcCommonsTransportFactory;
+import org.apache.xmlrpc.XmlRpcException;
 
 /**
  * Eine Version {@link org.apache.xmlrpc.client.XmlRpcClient} mit Cookie-Verwaltung.
@@ -20,7 +23,18 @@ public class XmlRpcClient extends org.apache.xmlrpc.client.XmlRpcClient {
 	 */
 	public static final String COOKIE_STORE = "cookieStore"; //$NON-NLS-1$
 
-	private CookieStore cookieStore = new CookieStore();
+	private final CookieStore cookieStore = new CookieStore();
+
+	private final RecordStreamConfig config;
+
+	private final RpcProtocol protocol;
+
+	private final XmlRpcCookiesTransportFactory transportFactory;
+
+	/**
+	 * Whether the server supports <code>system.multicall</code>, <code>null</code> if unknown
+	 */
+	private volatile Boolean multiCallSupported = null;
 
 	/**
 	 * Gibt den Wert der Eigenschaft {@link XmlRpcClient#cookieStore} zurück.
@@ -31,16 +45,197 @@ public class XmlRpcClient extends org.apache.xmlrpc.client.XmlRpcClient {
 		return this.cookieStore;
 	}
 
+	/**
+	 * @param apiURL
+	 *            the URL of the XML-RPC endpoint
+	 */
 	public XmlRpcClient(final URL apiURL) {
+		this(apiURL, RpcProtocol.XML_RPC);
+	}
+
+	/**
+	 * @param apiURL
+	 *            the URL of the endpoint of the protocol
+	 * @param protocol
+	 *            the protocol of the calls
+	 */
+	public XmlRpcClient(final URL apiURL, final RpcProtocol protocol) {
 		super();
+		if(protocol == null){
+			throw new IllegalArgumentException("Paramter <protocol> must not be mull"); //$NON-NLS-1$
+		}
+		this.protocol = protocol;
 
-		final XmlRpcClientConfigImpl config = new XmlRpcClientConfigImpl();
-		config.setServerURL(apiURL);
+		this.config = new RecordStreamConfig();
+		this.config.setServerURL(apiURL);
+		// accept compressed responses, they are inflated while they are parsed
+		this.config.setGzipRequesting(true);
+
+		this.transportFactory = new XmlRpcCookiesTransportFactory(this, this.getCookieStore(),
+				protocol);
+		this.setTransportFactory(this.transportFactory);
+		this.setConfig(this.config);
+	}
 
-		final XmlRpcCommonsTransportFactory factory = new XmlRpcCookiesTransportFactory(this,
-				this.getCookieStore());
-		this.setTransportFactory(factory);
-		this.setConfig(config);
+	/**
+	 * Executes a call, whose result is a struct with an array of structs (e.g. the
+	 * <code>bugs</code> of <code>Bug.search</code>), and passes the structs to the consumer while
+	 * the response is parsed. Neither the whole array nor the tree of the response are kept in
+	 * memory, so the consumer should turn the structs into the objects needed right away.
+	 * <p>
+	 * The consumer is called by the calling thread. A {@link RuntimeException} thrown by it
+	 * aborts the call.
+	 * </p>
+	 * 
+	 * @param methodName
+	 *            the name of the method, e.g. <code>Bug.search</code>
+	 * @param params
+	 *            the parameters of the method
+	 * @param recordsItem
+	 *            the name of the item of the result holding the array, e.g. <code>bugs</code>
+	 * @param records
+	 *            receives the structs of the array one by one
+	 * @return the result of the call without the streamed structs: the item holds an empty
+	 *         array, if the result contained the array
+	 * @throws XmlRpcException
+	 *             if the call failed
+	 */
+	public Object executeStreaming(final String methodName, final Map<String, Object> params,
+			final String recordsItem, final Consumer<? super Map<String, Object>> records)
+			throws XmlRpcException {
+		if(recordsItem == null){
+			throw new IllegalArgumentException("Paramter <recordsItem> must not be mull"); //$NON-NLS-1$
+		}
+		if(records == null){
+			throw new IllegalArgumentException("Paramter <records> must not be mull"); //$NON-NLS-1$
+		}
+		return this.execute(this.config.copyFor(recordsItem, records), methodName, Collections
+				.singletonList(params));
+	}
+
+	/**
+	 * Executes a call with the given cookies instead of the cookie store of this client. The
+	 * cookies set by the response are added to the given cookies, the cookie store is left alone.
+	 * 
+	 * @param methodName
+	 *            the name of the method, e.g. <code>User.logout</code>
+	 * @param params
+	 *            the parameters of the method
+	 * @param cookies
+	 *            the cookies sent with the call
+	 * @return the result of the call
+	 * @throws XmlRpcException
+	 *             if the call failed
+	 */
+	protected Object executeWithCookies(final String methodName, final List<?> params,
+			final CookieStore cookies) throws XmlRpcException {
+		if(cookies == null){
+			throw new IllegalArgumentException("Paramter <cookies> must not be mull"); //$NON-NLS-1$
+		}
+		return this.execute(this.config.copyWithCookies(cookies), methodName, params);
+	}
+
+	/**
+	 * @return the settings of the pool of persistent HTTP connections or <code>null</code>, if
+	 *         every call opens a new connection (default). The pool is only used by
+	 *         {@link RpcProtocol#XML_RPC}.
+	 */
+	public ConnectionPoolConfig getConnectionPoolConfig() {
+		return this.transportFactory.getConnectionPoolConfig();
+	}
+
+	/**
+	 * Sends all following calls through a shared pool of persistent (keep-alive) HTTP
+	 * connections. This saves the TCP and TLS handshake for every call.
+	 * 
+	 * @param connectionPoolConfig
+	 *            the settings of the connection pool or <code>null</code>, if every call should
+	 *            open a new connection
+	 * @throws IllegalStateException
+	 *             if Apache Commons Codec, a dependency of Apache Commons HttpClient, is missing
+	 *             on the classpath
+	 */
+	public void setConnectionPoolConfig(final ConnectionPoolConfig connectionPoolConfig) {
+		this.transportFactory.setConnectionPoolConfig(connectionPoolConfig);
+	}
+
+	/**
+	 * @return the protocol of the calls
+	 */
+	public RpcProtocol getProtocol() {
+		return this.protocol;
+	}
+
+	/**
+	 * @return the size in bytes from which on requests are compressed, <code>-1</code> if no
+	 *         request is compressed (default)
+	 */
+	public int getRequestCompressionThreshold() {
+		return this.transportFactory.getRequestCompressionThreshold();
+	}
+
+	/**
+	 * @return the byte counters of all calls, before and after compression
+	 */
+	public TransferStatistics getTransferStatistics() {
+		return this.transportFactory.getStatistics();
+	}
+
+	/**
+	 * @return <code>true</code> if compressed responses are accepted (default)
+	 */
+	public boolean isGzipRequesting() {
+		return this.config.isGzipRequesting();
+	}
+
+	/**
+	 * @return <code>true</code> if the server is known to support <code>system.multicall</code>,
+	 *         <code>false</code> if it is known not to support it and <code>null</code> if it
+	 *         has not been tried yet
+	 */
+	Boolean isMultiCallSupported() {
+		return this.multiCallSupported;
+	}
+
+	/**
+	 * Sets whether the server may compress its responses (<code>Accept-Encoding: gzip</code>).
+	 * Compressed responses are inflated while they are parsed, so large searches are not buffered.
+	 * 
+	 * @param gzipRequesting
+	 *            <code>true</code> to accept compressed responses
+	 */
+	public void setGzipRequesting(final boolean gzipRequesting) {
+		this.config.setGzipRequesting(gzipRequesting);
+	}
+
+	/**
+	 * @param multiCallSupported
+	 *            whether the server supports <code>system.multicall</code>
+	 */
+	void setMultiCallSupported(final Boolean multiCallSupported) {
+		this.multiCallSupported = multiCallSupported;
+	}
+
+	/**
+	 * Compresses the requests, that are at least as large as the threshold (e.g. a
+	 * <code>Bug.create</code> with a long description). Only use it, if the server accepts
+	 * compressed requests (<code>Content-Encoding: gzip</code>), e.g. through the
+	 * <code>mod_deflate</code> input filter of Apache.
+	 * 
+	 * @param requestCompressionThreshold
+	 *            the size in bytes from which on requests are compressed, <code>-1</code> if no
+	 *            request should be compressed
+	 */
+	public void setRequestCompressionThreshold(final int requestCompressionThreshold) {
+		this.transportFactory.setRequestCompressionThreshold(requestCompressionThreshold);
+	}
+
+	/**
+	 * Closes all pooled HTTP connections. The client can still be used afterwards, but every call
+	 * will open a new connection.
+	 */
+	public void shutdown() {
+		this.transportFactory.setConnectionPoolConfig(null);
 	}
 
 }
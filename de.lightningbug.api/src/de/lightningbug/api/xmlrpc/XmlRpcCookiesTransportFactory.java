@@ -1,16 +1,34 @@
 package de.lightningbug.api.xmlrpc;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
 import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.IntConsumer;
+import java.util.zip.GZIPOutputStream;
 
+import org.apache.commons.httpclient.Header;
 import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.cookie.CookiePolicy;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
+import org.apache.commons.httpclient.util.IdleConnectionTimeoutThread;
+import org.apache.xmlrpc.XmlRpcException;
 import org.apache.xmlrpc.XmlRpcRequest;
+import org.apache.xmlrpc.XmlRpcRequestConfig;
 import org.apache.xmlrpc.client.XmlRpcClient;
 import org.apache.xmlrpc.client.XmlRpcClientException;
+import org.apache.xmlrpc.client.XmlRpcCommonsTransport;
 import org.apache.xmlrpc.client.XmlRpcCommonsTransportFactory;
+import org.apache.xmlrpc.client.XmlRpcHttpClientConfig;
 import org.apache.xmlrpc.client.XmlRpcSunHttpTransport;
 import org.apache.xmlrpc.client.XmlRpcTransport;
+import org.apache.xmlrpc.common.XmlRpcStreamRequestConfig;
+import org.xml.sax.SAXException;
 
 import de.lightningbug.api.BugzillaClient;
 
@@ -19,18 +37,124 @@ import de.lightningbug.api.BugzillaClient;
  * {@link org.apache.xmlrpc.client.XmlRpcCommonsTransportFactory}, that uses a
  * {@link CookieStore} to handle login information over application lifecycle.
  * The cookie store has to be provided when constructing the object.
- * 
+ * <p>
+ * By default every call opens a new {@link URLConnection}. If a {@link ConnectionPoolConfig} is
+ * set, the calls are sent through a shared pool of persistent HTTP connections instead.
+ * </p>
+ * <p>
+ * Compressed responses are inflated while they are parsed. Requests are compressed, if they
+ * exceed the request compression threshold. The bytes of all calls are counted in the
+ * {@link TransferStatistics} of the factory.
+ * </p>
+ * <p>
+ * The responses of streamed calls are parsed by a {@link RecordStreamParser}. If the client uses
+ * {@link RpcProtocol#JSON_RPC}, the calls are sent by a {@link JsonRpcTransport} instead.
+ * </p>
+ *
  * @author Sebastian Kirchner
- * 
+ *
  * @see BugzillaClient
  * @see CookieStore
- * 
+ * @see ConnectionPoolConfig
+ *
  */
 class XmlRpcCookiesTransportFactory extends XmlRpcCommonsTransportFactory {
 
-	private CookieStore cookieStore = null;
+	/**
+	 * A transport, that sends the calls through the pooled connections of the factories
+	 * {@link HttpClient} and uses the {@link CookieStore} instead of the cookie handling of the
+	 * {@link HttpClient}.
+	 */
+	private class PooledCookiesTransport extends XmlRpcCommonsTransport {
+
+		/**
+		 * the cookies of the call
+		 */
+		private CookieStore cookies = XmlRpcCookiesTransportFactory.this.cookieStore;
+
+		PooledCookiesTransport() {
+			super(XmlRpcCookiesTransportFactory.this);
+		}
+
+		@Override
+		protected void close() throws XmlRpcClientException {
+			try{
+				final Header[] headers = this.method.getResponseHeaders("Set-Cookie"); //$NON-NLS-1$
+				final List<String> cookieHeaders = new ArrayList<String>(headers.length);
+				for(final Header header : headers){
+					cookieHeaders.add(header.getValue());
+				}
+				this.cookies.addAll(CookieStore.retrieveCoockies(cookieHeaders, null));
+			}finally{
+				// hand the connection back to the pool
+				super.close();
+			}
+		}
+
+		@Override
+		protected InputStream getInputStream() throws XmlRpcException {
+			return XmlRpcCookiesTransportFactory.this.statistics.countReceived(super
+					.getInputStream());
+		}
+
+		@Override
+		protected void initHttpHeaders(final XmlRpcRequest pRequest) throws XmlRpcClientException {
+			super.initHttpHeaders(pRequest);
+			final XmlRpcHttpClientConfig config = (XmlRpcHttpClientConfig) pRequest.getConfig();
+			this.cookies = XmlRpcCookiesTransportFactory.this.cookiesOf(config);
+			final String cookieHeader = this.cookies.getCookieHeader(config.getServerURL());
+			if(cookieHeader != null){
+				this.setRequestHeader("Cookie", cookieHeader); //$NON-NLS-1$
+			}
+		}
+
+		@Override
+		protected ReqWriter newReqWriter(final XmlRpcRequest pRequest) throws XmlRpcException,
+				IOException, SAXException {
+			final ByteArrayOutputStream xml = new ByteArrayOutputStream();
+			super.newReqWriter(pRequest).write(xml);
+			final byte[] body = XmlRpcCookiesTransportFactory.this.encodeRequest(xml,
+					this::setRequestHeader, this::setContentLength);
+			return out -> {
+				try{
+					out.write(body);
+				}finally{
+					out.close();
+				}
+			};
+		}
+
+		@Override
+		protected Object readResponse(final XmlRpcStreamRequestConfig pConfig,
+				final InputStream pStream) throws XmlRpcException {
+			final InputStream in = XmlRpcCookiesTransportFactory.this.statistics.countResponse(
+					pStream, this.isResponseGzipCompressed(pConfig));
+			if(isStreaming(pConfig)){
+				return RecordStreamParser.parse((RecordStreamConfig) pConfig, in);
+			}
+			return super.readResponse(pConfig, in);
+		}
+	}
+
+	private final CookieStore cookieStore;
+
+	private IdleConnectionTimeoutThread idleConnectionTimeoutThread = null;
+
+	private MultiThreadedHttpConnectionManager connectionManager = null;
+
+	private volatile ConnectionPoolConfig connectionPoolConfig = null;
+
+	private final RpcProtocol protocol;
 
-	private XmlRpcClient xmlRpcClient = null;
+	/**
+	 * the size in bytes from which on requests are compressed, <code>-1</code> if no request is
+	 * compressed
+	 */
+	private volatile int requestCompressionThreshold = -1;
+
+	private final TransferStatistics statistics = new TransferStatistics();
+
+	private final XmlRpcClient xmlRpcClient;
 
 	/**
 	 * @param xmlRpcClient
@@ -38,25 +162,98 @@ class XmlRpcCookiesTransportFactory extends XmlRpcCommonsTransportFactory {
 	 * @param cookieStore
 	 *            store, that should be used to manage the cookies (eg. login
 	 *            cookie) of the url connection over the application runtime
+	 * @param protocol
+	 *            the protocol of the calls
 	 */
 	public XmlRpcCookiesTransportFactory(final XmlRpcClient xmlRpcClient,
-			final CookieStore cookieStore) {
+			final CookieStore cookieStore, final RpcProtocol protocol) {
 		super(xmlRpcClient);
 		this.xmlRpcClient = xmlRpcClient;
 		this.cookieStore = cookieStore;
+		this.protocol = protocol;
 		this.setHttpClient(new HttpClient());
 	}
 
+	/**
+	 * Compresses a request, if it exceeds the request compression threshold.
+	 *
+	 * @param xml
+	 *            the XML of the request
+	 * @param headers
+	 *            sets a header of the request
+	 * @param contentLength
+	 *            sets the length of the request body
+	 * @return the body of the request
+	 */
+	byte[] encodeRequest(final ByteArrayOutputStream xml, final BiConsumer<String, String> headers,
+			final IntConsumer contentLength) throws IOException {
+		final int threshold = this.requestCompressionThreshold;
+		final boolean compressed = threshold >= 0 && xml.size() >= threshold;
+		final byte[] body;
+		if(compressed){
+			final ByteArrayOutputStream gzip = new ByteArrayOutputStream(xml.size() / 4);
+			final GZIPOutputStream out = new GZIPOutputStream(gzip);
+			xml.writeTo(out);
+			out.close();
+			body = gzip.toByteArray();
+			headers.accept("Content-Encoding", "gzip"); //$NON-NLS-1$ //$NON-NLS-2$
+		}else{
+			body = xml.toByteArray();
+		}
+		contentLength.accept(body.length);
+		this.statistics.countRequest(xml.size(), body.length, compressed);
+		return body;
+	}
+
+	/**
+	 * @return the settings of the connection pool or <code>null</code>, if every call opens a new
+	 *         connection
+	 */
+	public ConnectionPoolConfig getConnectionPoolConfig() {
+		return this.connectionPoolConfig;
+	}
+
+	/**
+	 * @return the size in bytes from which on requests are compressed, <code>-1</code> if no
+	 *         request is compressed
+	 */
+	public int getRequestCompressionThreshold() {
+		return this.requestCompressionThreshold;
+	}
+
+	/**
+	 * @return the byte counters of all calls
+	 */
+	public TransferStatistics getStatistics() {
+		return this.statistics;
+	}
+
 	@Override
 	public XmlRpcTransport getTransport() {
-		final CookieStore cookieStore = this.cookieStore;
+		if(this.protocol == RpcProtocol.JSON_RPC){
+			return new JsonRpcTransport(this.xmlRpcClient, this);
+		}
+		if(this.connectionPoolConfig != null){
+			return new PooledCookiesTransport();
+		}
+		final TransferStatistics statistics = this.statistics;
 		return new XmlRpcSunHttpTransport(this.xmlRpcClient) {
 
 			private URLConnection connection;
 
+			/**
+			 * the cookies of the call
+			 */
+			private CookieStore cookies = XmlRpcCookiesTransportFactory.this.cookieStore;
+
 			@Override
 			protected void close() throws XmlRpcClientException {
-				cookieStore.addAll(CookieStore.retrieveCoockies(this.connection));
+				this.cookies.addAll(CookieStore.retrieveCoockies(this.connection));
+			}
+
+			@Override
+			protected InputStream getInputStream() throws XmlRpcException {
+				return statistics.countReceived(super.getInputStream());
 			}
 
 			@Override
@@ -66,7 +263,24 @@ class XmlRpcCookiesTransportFactory extends XmlRpcCommonsTransportFactory {
 				} catch (XmlRpcClientException e) {
 					e.printStackTrace();
 				}
-				CookieStore.applyCookies(this.connection, cookieStore);
+				this.cookies = XmlRpcCookiesTransportFactory.this.cookiesOf(pRequest.getConfig());
+				CookieStore.applyCookies(this.connection, this.cookies);
+			}
+
+			@Override
+			protected ReqWriter newReqWriter(final XmlRpcRequest pRequest) throws XmlRpcException,
+					IOException, SAXException {
+				final ByteArrayOutputStream xml = new ByteArrayOutputStream();
+				super.newReqWriter(pRequest).write(xml);
+				final byte[] body = XmlRpcCookiesTransportFactory.this.encodeRequest(xml,
+						this::setRequestHeader, this::setContentLength);
+				return out -> {
+					try{
+						out.write(body);
+					}finally{
+						out.close();
+					}
+				};
 			}
 
 			@Override
@@ -75,6 +289,124 @@ class XmlRpcCookiesTransportFactory extends XmlRpcCommonsTransportFactory {
 				this.connection = super.newURLConnection(url);
 				return this.connection;
 			}
+
+			@Override
+			protected Object readResponse(final XmlRpcStreamRequestConfig pConfig,
+					final InputStream pStream) throws XmlRpcException {
+				final InputStream in = statistics.countResponse(pStream, this
+						.isResponseGzipCompressed(pConfig));
+				if(isStreaming(pConfig)){
+					return RecordStreamParser.parse((RecordStreamConfig) pConfig, in);
+				}
+				return super.readResponse(pConfig, in);
+			}
 		};
 	}
+
+	/**
+	 * @return <code>true</code> if the classes needed by the pool are available. Every HTTP
+	 *         method of Apache Commons HttpClient needs Apache Commons Codec.
+	 */
+	static boolean isConnectionPoolingSupported() {
+		try{
+			Class.forName("org.apache.commons.codec.DecoderException", false, //$NON-NLS-1$
+					XmlRpcCookiesTransportFactory.class.getClassLoader());
+			return true;
+		}catch(final ClassNotFoundException e){
+			return false;
+		}
+	}
+
+	/**
+	 * @return the cookies of a call: the cookies of its configuration, if it carries any,
+	 *         otherwise the cookie store of the client
+	 * @see de.lightningbug.api.xmlrpc.XmlRpcClient#executeWithCookies(String, List, CookieStore)
+	 */
+	CookieStore cookiesOf(final XmlRpcRequestConfig config) {
+		if(config instanceof RecordStreamConfig && ((RecordStreamConfig) config).getCookies() != null){
+			return ((RecordStreamConfig) config).getCookies();
+		}
+		return this.cookieStore;
+	}
+
+	/**
+	 * @return <code>true</code> if the records of the response are passed to a consumer
+	 */
+	static boolean isStreaming(final XmlRpcStreamRequestConfig config) {
+		return config instanceof RecordStreamConfig
+				&& ((RecordStreamConfig) config).getRecords() != null;
+	}
+
+	/**
+	 * Switches between a new connection per call (<code>null</code>) and a shared pool of
+	 * persistent connections. A previously created pool is closed.
+	 *
+	 * @param connectionPoolConfig
+	 *            the settings of the connection pool or <code>null</code>, if every call should
+	 *            open a new connection
+	 * @throws IllegalStateException
+	 *             if the pool cannot be used, because Apache Commons Codec is missing on the
+	 *             classpath. The calls keep using the current connections then.
+	 */
+	public synchronized void setConnectionPoolConfig(final ConnectionPoolConfig connectionPoolConfig) {
+		if(connectionPoolConfig != null && !isConnectionPoolingSupported()){
+			throw new IllegalStateException("The connection pool needs Apache Commons Codec, " //$NON-NLS-1$
+					+ "a dependency of Apache Commons HttpClient, on the classpath"); //$NON-NLS-1$
+		}
+		this.shutdown();
+		if(connectionPoolConfig == null){
+			return;
+		}
+
+		final MultiThreadedHttpConnectionManager manager = new MultiThreadedHttpConnectionManager();
+		final HttpConnectionManagerParams params = manager.getParams();
+		params.setDefaultMaxConnectionsPerHost(connectionPoolConfig.getMaxConnectionsPerHost());
+		params.setMaxTotalConnections(connectionPoolConfig.getMaxTotalConnections());
+		params.setStaleCheckingEnabled(connectionPoolConfig.isStaleCheckingEnabled());
+		this.connectionManager = manager;
+
+		final HttpClient httpClient = new HttpClient(manager);
+		// cookies are managed by the cookie store
+		httpClient.getParams().setCookiePolicy(CookiePolicy.IGNORE_COOKIES);
+		this.setHttpClient(httpClient);
+
+		if(connectionPoolConfig.getIdleTimeout() > 0){
+			// evict connections, that have not been used for a while
+			final IdleConnectionTimeoutThread thread = new IdleConnectionTimeoutThread();
+			thread.setConnectionTimeout(connectionPoolConfig.getIdleTimeout());
+			thread.setTimeoutInterval(Math.max(1000L, connectionPoolConfig.getIdleTimeout() / 2));
+			thread.addConnectionManager(manager);
+			thread.start();
+			this.idleConnectionTimeoutThread = thread;
+		}
+		this.connectionPoolConfig = connectionPoolConfig;
+	}
+
+	/**
+	 * @param requestCompressionThreshold
+	 *            the size in bytes from which on requests are compressed, <code>-1</code> if no
+	 *            request should be compressed
+	 */
+	public void setRequestCompressionThreshold(final int requestCompressionThreshold) {
+		this.requestCompressionThreshold = requestCompressionThreshold < 0 ? -1
+				: requestCompressionThreshold;
+	}
+
+	/**
+	 * Closes all pooled connections and stops the eviction of idle connections. Calls made
+	 * afterwards open a new connection per call.
+	 */
+	public synchronized void shutdown() {
+		// stop handing out pooled transports, before the pool is closed
+		this.connectionPoolConfig = null;
+		this.setHttpClient(new HttpClient());
+		if(this.idleConnectionTimeoutThread != null){
+			this.idleConnectionTimeoutThread.shutdown();
+			this.idleConnectionTimeoutThread = null;
+		}
+		if(this.connectionManager != null){
+			this.connectionManager.shutdown();
+			this.connectionManager = null;
+		}
+	}
 }